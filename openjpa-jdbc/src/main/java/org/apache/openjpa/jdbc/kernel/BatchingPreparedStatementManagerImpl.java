@@ -20,14 +20,18 @@ package org.apache.openjpa.jdbc.kernel;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 
 import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.PrimaryKey;
+import org.apache.openjpa.jdbc.schema.Table;
 import org.apache.openjpa.jdbc.sql.Row;
 import org.apache.openjpa.jdbc.sql.RowImpl;
 import org.apache.openjpa.jdbc.sql.SQLExceptions;
@@ -147,7 +151,14 @@ public class BatchingPreparedStatementManagerImpl extends
             return;
 
         int batchSize = batchedRows.size();
-        if (batchedSql != null &&  batchSize > 0) {
+        if (batchedSql != null && batchSize > 1 && isMultiRowInsert(batchedRows)) {
+            try {
+                flushMultiRowInsert(batchedRows);
+            } finally {
+                _batchedSql = null;
+                batchedRows.clear();
+            }
+        } else if (batchedSql != null &&  batchSize > 0) {
             PreparedStatement ps = null;
             try {
                 RowImpl onerow = null;
@@ -245,6 +256,77 @@ public class BatchingPreparedStatementManagerImpl extends
         }
     }
 
+    /*
+     * Compute if the given batch of rows can be flushed as multi-row
+     * inserts, based on the batch limit and database characteristics.
+     */
+    private boolean isMultiRowInsert(List<RowImpl> batchedRows) {
+        RowImpl row = batchedRows.get(0);
+        return _batchLimit != 1 && row.getAction() == Row.ACTION_INSERT
+            && _dict.getMaxRowsPerInsert(row.getInsertParameterCount()) > 1;
+    }
+
+    /**
+     * Flush the given batch of inserts, which all share the same SQL. The
+     * rows are handed to the dictionary for bulk loading first; otherwise
+     * they are sent as multi-row inserts of at most as many rows as the
+     * database allows and the batch limit, so a batch still takes at most
+     * one round trip per batch limit rows.
+     */
+    protected void flushMultiRowInsert(List<RowImpl> batchedRows)
+        throws SQLException {
+        if (_dict.insertBulk(_conn, _store, batchedRows))
+            return;
+
+        RowImpl first = batchedRows.get(0);
+        int params = first.getInsertParameterCount();
+        int limit = _dict.getMaxRowsPerInsert(params);
+        if (_batchLimit > 0)
+            limit = Math.min(limit, _batchLimit);
+
+        PreparedStatement ps = null;
+        String sql = null;
+        int psRows = 0;
+        try {
+            for (int start = 0; start < batchedRows.size(); start += limit) {
+                int rows = Math.min(limit, batchedRows.size() - start);
+                if (rows != psRows) {
+                    if (ps != null)
+                        ps.close();
+                    sql = first.getMultiRowInsertSQL(_dict, rows);
+                    ps = prepareStatement(sql);
+                    psRows = rows;
+                }
+                if (ps != null)
+                    for (int i = 0; i < rows; i++)
+                        batchedRows.get(start + i).flush(ps, 1 + i * params,
+                            _dict, _store);
+
+                int count;
+                try {
+                    count = executeUpdate(ps, sql, batchedRows.get(start));
+                } catch (SQLException se) {
+                    throw SQLExceptions.getStore(se, rows == 1
+                        ? batchedRows.get(start).getFailedObject() : ps, _dict);
+                }
+                if (count != rows) {
+                    logSQLWarnings(ps);
+                    throw new SQLException(_loc.get(
+                        "update-failed-no-failed-obj", String.valueOf(count),
+                        sql).getMessage());
+                }
+            }
+        } finally {
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException sqex) {
+                    throw SQLExceptions.getStore(sqex, ps, _dict);
+                }
+            }
+        }
+    }
+
     /*
      * Execute an update of a single row.
      */
@@ -279,6 +361,8 @@ public class BatchingPreparedStatementManagerImpl extends
         // Oracle        -2 / -2         -2 / -2       -2 / SQLException
         int cnt = 0;
         int updateSuccessCnt = _dict.getBatchUpdateCount(ps);
+        int failedCnt = 0;
+        List<RowImpl> unverified = null;
         Object failed = null;
         List<RowImpl> batchedRows = getBatchedRows();
         for (int i = 0; i < count.length; i++) {
@@ -287,6 +371,7 @@ public class BatchingPreparedStatementManagerImpl extends
             failed = row.getFailedObject();
             switch (cnt) {
             case Statement.EXECUTE_FAILED: // -3
+                failedCnt++;
                 if (failed != null || row.getAction() == Row.ACTION_UPDATE)
                     _exceptions.add(new OptimisticException(failed));
                 else if (row.getAction() == Row.ACTION_INSERT)
@@ -304,9 +389,16 @@ public class BatchingPreparedStatementManagerImpl extends
                     // 1. transaction should be rolled back.
                     // 2. if DataCache is enabled, objects in
                     //    cache should be removed.
-                    if (failed != null)
+                    // updates and deletes are verified once the whole
+                    // batch is processed, to fail only the rows that
+                    // did not match
+                    if (row.getAction() != Row.ACTION_INSERT) {
+                        if (unverified == null)
+                            unverified = new ArrayList<>();
+                        unverified.add(row);
+                    } else if (failed != null)
                         _exceptions.add(new OptimisticException(failed));
-                    else if (row.getAction() == Row.ACTION_INSERT)
+                    else
                         throw new SQLException(_loc.get(
                             "update-failed-no-failed-obj",
                             String.valueOf(count[i]),
@@ -319,6 +411,7 @@ public class BatchingPreparedStatementManagerImpl extends
                 break;
             case 0: // no row is inserted, treats it as failed
                 // case
+                failedCnt++;
                 logSQLWarnings(ps);
                 if (failed != null)
                     _exceptions.add(new OptimisticException(failed));
@@ -329,6 +422,175 @@ public class BatchingPreparedStatementManagerImpl extends
                         row.getSQL(_dict)).getMessage());
             }
         }
+
+        if (unverified != null) {
+            // the update count of the whole batch tells how many of the
+            // unverified rows failed; if the verification query cannot
+            // single out exactly that many rows, fail them all
+            List<RowImpl> failedRows = unverified;
+            int expected = count.length - updateSuccessCnt - failedCnt;
+            if (updateSuccessCnt >= 0 && expected == 0)
+                failedRows = new ArrayList<>();
+            else if (updateSuccessCnt >= 0 && expected > 0
+                && expected <= unverified.size()) {
+                List<RowImpl> verified = findFailedRows(unverified);
+                if (verified != null && verified.size() == expected)
+                    failedRows = verified;
+            }
+            if (_log.isTraceEnabled())
+                _log.trace(_loc.get("batch_verify_info",
+                    String.valueOf(unverified.size()),
+                    String.valueOf(failedRows.size())));
+            for (RowImpl row : failedRows) {
+                failed = row.getFailedObject();
+                if (failed != null)
+                    _exceptions.add(new OptimisticException(failed));
+            }
+        }
+    }
+
+    /**
+     * Return the given updates or deletes of a single batch that did not
+     * take effect, as told by UNION ALL queries over them: an update
+     * took effect if its row now has the primary key and new version it
+     * set, a delete if its row is gone. Each query covers at most
+     * {@link #getMaxRowsPerVerify} rows. Returns null if the rows cannot be
+     * verified.
+     */
+    protected List<RowImpl> findFailedRows(List<RowImpl> rows)
+        throws SQLException {
+        RowImpl first = rows.get(0);
+        Table table = first.getTable();
+        PrimaryKey pk = table.getPrimaryKey();
+        if (pk == null || pk.getColumns().length == 0)
+            return null;
+
+        Column[] pkCols = pk.getColumns();
+        Column[] cols = first.getColumns();
+        boolean delete = first.getAction() == Row.ACTION_DELETE;
+        String from = " FROM " + _dict.getFullName(table, false) + " WHERE ";
+        String[] selects = new String[rows.size()];
+        List<Object> vals = new ArrayList<>();
+        List<Column> valCols = new ArrayList<>();
+        List<Integer> valTypes = new ArrayList<>();
+        int params = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            RowImpl row = rows.get(i);
+            if (row.getTable() != table || row.getAction() != first.getAction())
+                return null;
+            Object[] rowVals = row.getVals();
+            int[] rowTypes = row.getTypes();
+
+            StringBuilder sql = new StringBuilder();
+            sql.append("SELECT ").append(i).append(from);
+            boolean hasCond = false;
+            for (Column col : pkCols) {
+                int idx = col.getIndex() + cols.length;
+                if (rowVals[idx] == null || rowVals[idx] == RowImpl.NULL
+                    || rowTypes[idx] == RowImpl.RAW)
+                    return null;
+                if (hasCond)
+                    sql.append(" AND ");
+                sql.append(_dict.getColumnDBName(col)).append(" = ?");
+                vals.add(rowVals[idx]);
+                valCols.add(col);
+                valTypes.add(rowTypes[idx]);
+                hasCond = true;
+            }
+            if (!delete) {
+                for (Column col : cols) {
+                    int idx = col.getIndex();
+                    if (col.getVersionStrategy() == null || rowVals[idx] == null)
+                        continue;
+                    if (rowVals[idx] == RowImpl.NULL
+                        || rowTypes[idx] == RowImpl.RAW)
+                        return null;
+                    sql.append(" AND ").append(_dict.getColumnDBName(col)).
+                        append(" = ?");
+                    vals.add(rowVals[idx]);
+                    valCols.add(col);
+                    valTypes.add(rowTypes[idx]);
+                }
+            }
+            // the rows of a batch share their SQL, and so bind as many
+            // values each
+            if (i == 0)
+                params = vals.size();
+            else if (vals.size() != (i + 1) * params)
+                return null;
+            selects[i] = sql.toString();
+        }
+
+        int limit = Math.max(1, getMaxRowsPerVerify(params));
+        BitSet found = new BitSet(rows.size());
+        for (int start = 0; start < rows.size(); start += limit) {
+            int end = Math.min(start + limit, rows.size());
+            StringBuilder sql = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                if (i > start)
+                    sql.append(" UNION ALL ");
+                sql.append(selects[i]);
+            }
+            if (!findRows(sql.toString(), vals.subList(start * params,
+                end * params), valCols.subList(start * params, end * params),
+                valTypes.subList(start * params, end * params), found))
+                return null;
+        }
+
+        List<RowImpl> failedRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++)
+            if (found.get(i) == delete)
+                failedRows.add(rows.get(i));
+        return failedRows;
+    }
+
+    /**
+     * Return the most rows that {@link #findFailedRows} checks with a
+     * single query, given the number of values each row binds. Defaults
+     * to 100 rows, within the parameter limit of the dictionary.
+     */
+    protected int getMaxRowsPerVerify(int paramsPerRow) {
+        int limit = 100;
+        if (_dict.maxParametersPerStatement > 0 && paramsPerRow > 0)
+            limit = Math.min(limit,
+                _dict.maxParametersPerStatement / paramsPerRow);
+        return limit;
+    }
+
+    /*
+     * Run the given verification query, setting the row indexes it
+     * selects. Returns false if the statement could not be prepared.
+     */
+    private boolean findRows(String sql, List<Object> vals,
+        List<Column> valCols, List<Integer> valTypes, BitSet found)
+        throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = prepareStatement(sql);
+            if (ps == null)
+                return false;
+            for (int i = 0; i < vals.size(); i++)
+                _dict.setTyped(ps, i + 1, vals.get(i), valCols.get(i),
+                    valTypes.get(i), _store);
+            rs = ps.executeQuery();
+            while (rs.next())
+                found.set(rs.getInt(1));
+            return true;
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException se) {
+                }
+            }
+            if (ps != null) {
+                try {
+                    ps.close();
+                } catch (SQLException se) {
+                }
+            }
+        }
     }
 
     public boolean isBatchDisabled() {
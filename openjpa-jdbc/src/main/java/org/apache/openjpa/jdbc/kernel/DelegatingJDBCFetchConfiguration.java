@@ -340,4 +340,23 @@ public class DelegatingJDBCFetchConfiguration
             throw translate(re);
         }
     }
+
+    @Override
+    public boolean getSkipLocked() {
+        try {
+            return getJDBCDelegate().getSkipLocked();
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
+    @Override
+    public JDBCFetchConfiguration setSkipLocked(boolean skip) {
+        try {
+            getJDBCDelegate().setSkipLocked(skip);
+            return this;
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
 }
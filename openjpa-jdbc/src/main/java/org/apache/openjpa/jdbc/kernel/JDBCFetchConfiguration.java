@@ -261,4 +261,24 @@ public interface JDBCFetchConfiguration
      * @since 2.2.0
      */
     void setIgnoreDfgForFkSelect(boolean b);
+
+    /**
+     * Affirms if rows that are locked by another transaction are skipped
+     * rather than waited for when this configuration locks rows as they are
+     * selected. Together with a maximum result count this lets concurrent
+     * consumers each take a different set of rows off a work queue.
+     *
+     * @since 3.2.3
+     */
+    boolean getSkipLocked();
+
+    /**
+     * Sets whether rows that are locked by another transaction are skipped
+     * rather than waited for when this configuration locks rows as they are
+     * selected. Requires a database dictionary that supports skipping locked
+     * rows; an error is raised for a locking select otherwise.
+     *
+     * @since 3.2.3
+     */
+    JDBCFetchConfiguration setSkipLocked(boolean skip);
 }
@@ -75,6 +75,7 @@ public class JDBCFetchConfigurationImpl
         populateHintSetter(target, "LRSSize", int.class, prefixes);
         populateHintSetter(target, "setLRSSize", "LRSSizeAlgorithm", int.class, prefixes);
         populateHintSetter(target, "ResultSetType", int.class, prefixes);
+        populateHintSetter(target, "SkipLocked", boolean.class, prefixes);
     }
 
     /**
@@ -93,6 +94,7 @@ public class JDBCFetchConfigurationImpl
         public Set<String> fetchInnerJoins = null;
         public int isolationLevel = -1;
         public boolean ignoreDfgForFkSelect = false;
+        public boolean skipLocked = false;
     }
 
     protected final JDBCConfigurationState _state;
@@ -140,6 +142,7 @@ public class JDBCFetchConfigurationImpl
         setJoinSyntax(jf.getJoinSyntax());
         addJoins(jf.getJoins());
         setIgnoreDfgForFkSelect(jf.getIgnoreDfgForFkSelect());
+        setSkipLocked(jf.getSkipLocked());
     }
 
     @Override
@@ -152,6 +155,17 @@ public class JDBCFetchConfigurationImpl
         _state.ignoreDfgForFkSelect = b;
     }
 
+    @Override
+    public boolean getSkipLocked() {
+        return _state.skipLocked;
+    }
+
+    @Override
+    public JDBCFetchConfiguration setSkipLocked(boolean skip) {
+        _state.skipLocked = skip;
+        return this;
+    }
+
     @Override
     public int getEagerFetchMode() {
         return _state.eagerMode;
@@ -40,12 +40,14 @@ import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
 import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.meta.Discriminator;
 import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.RowHydrator;
 import org.apache.openjpa.jdbc.meta.ValueMapping;
 import org.apache.openjpa.jdbc.meta.strats.SuperclassDiscriminatorStrategy;
 import org.apache.openjpa.jdbc.sql.DBDictionary;
 import org.apache.openjpa.jdbc.sql.JoinSyntaxes;
 import org.apache.openjpa.jdbc.sql.Joins;
 import org.apache.openjpa.jdbc.sql.Result;
+import org.apache.openjpa.jdbc.sql.ResultSetResult;
 import org.apache.openjpa.jdbc.sql.SQLExceptions;
 import org.apache.openjpa.jdbc.sql.SQLFactory;
 import org.apache.openjpa.jdbc.sql.Select;
@@ -414,7 +416,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
                         // setInverseRelation() when the sm owner is fully
                         // initialized.
                         int index = mappedByFieldMapping.getIndex();
-                        if (sm.getLoaded().get(index)) {
+                        if (sm.isLoaded(index)) {
                             sm.setImplData(index, mappedByObject);
                         } else {
                             sm.setIntermediate(index, mappedByObject);
@@ -659,7 +661,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
 
             // if the instance is hollow and there's a customized
             // get by id method, use it
-            if (sm.getLoaded().length() == 0
+            if (isUnloaded(sm)
                 && mapping.customLoad(sm, this, null, jfetch))
                 removeLoadedFields(sm, fields);
 
@@ -693,7 +695,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
             // now allow the fields to load themselves individually too
             FieldMapping[] fms = mapping.getFieldMappings();
             for (int i = 0; i < fms.length; i++)
-                if (fields.get(i) && (!sm.getLoaded().get(i) || sm.isDelayed(i))) {
+                if (fields.get(i) && (!sm.isLoaded(i) || sm.isDelayed(i))) {
                     if (_log.isTraceEnabled()) {
                         _log.trace("load field: '"+ fms[i].getName() + "' for oid="+sm.getObjectId()
                             +" "+mapping.getDescribedType());
@@ -717,7 +719,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         FieldMapping[] fms = mapping.getFieldMappings();
         for (int i = 0; i < fms.length; i++) {
             if (fields.get(i)) {
-                if (!(fms[i].isDelayCapable() && (!sm.getLoaded().get(i) || sm.isDelayed(i)))) {
+                if (!(fms[i].isDelayCapable() && (!sm.isLoaded(i) || sm.isDelayed(i)))) {
                     return false;
                 }
             }
@@ -725,12 +727,22 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         return true;
     }
 
+    /**
+     * Whether none of the fields of the given instance is loaded.
+     */
+    private static boolean isUnloaded(OpenJPAStateManager sm) {
+        for (int i = 0, len = sm.getMetaData().getFields().length; i < len; i++)
+            if (sm.isLoaded(i))
+                return false;
+        return true;
+    }
+
     /**
      * Return a list formed by removing all loaded fields from the given one.
      */
     private void removeLoadedFields(OpenJPAStateManager sm, BitSet fields) {
         for (int i = 0, len = fields.length(); i < len; i++)
-            if (fields.get(i) && sm.getLoaded().get(i))
+            if (fields.get(i) && sm.isLoaded(i))
                 fields.clear(i);
     }
 
@@ -1129,11 +1141,22 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         else if (sm.getVersion() == null)
             mapping.getVersion().load(sm, this, res);
 
+        // load primitive fields through the generated hydrator, if any
+        BitSet hydrated = null;
+        if (_conf.getDynamicDataStructs() && res instanceof ResultSetResult) {
+            RowHydrator hydrator = mapping.getRowHydrator();
+            if (hydrator != null) {
+                hydrator.load(sm, res);
+                hydrated = hydrator.getFields();
+            }
+        }
+
         // load unloaded fields
         FieldMapping[] fms = mapping.getDefinedFieldMappings();
         Object eres, processed;
         for (FieldMapping fm : fms) {
-            if (fm.isPrimaryKey() || sm.getLoaded().get(fm.getIndex()))
+            if (fm.isPrimaryKey() || sm.isLoaded(fm.getIndex())
+                || (hydrated != null && hydrated.get(fm.getIndex())))
                 continue;
 
             // check for eager result, and if not present do standard load
@@ -1324,7 +1347,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         if (fields != null)
             return fields.get(fm.getIndex());
         if (sm != null && sm.getPCState() != PCState.TRANSIENT
-            && sm.getLoaded().get(fm.getIndex()))
+            && sm.isLoaded(fm.getIndex()))
             return false;
         return fetch.requiresFetch(fm) == FetchConfiguration.FETCH_LOAD;
     }
@@ -1454,7 +1477,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
             fetch.getIgnoreDfgForFkSelect() ||
                 !fm.isInDefaultFetchGroup() && !fm.isDefaultFetchGroupExplicit();
 
-        return dfg && (sm == null || sm.getPCState() == PCState.TRANSIENT || !sm.getLoaded().get(fm.getIndex()))
+        return dfg && (sm == null || sm.getPCState() == PCState.TRANSIENT || !sm.isLoaded(fm.getIndex()))
             && fm.supportsSelect(sel, Select.TYPE_TWO_PART, sm, this, fetch) > 0;
     }
 
@@ -258,6 +258,14 @@ public class JDBCStoreQuery
             || start != range.start || end != range.end)
             rop = new RangeResultObjectProvider(rop, range.start, range.end);
 
+        // results that are read eagerly lock the rows the query could not
+        // lock as it selected them in batches once they have all been read
+        JDBCLockManager lm = _store.getLockManager();
+        if (!range.lrs && lm instanceof PessimisticLockManager
+            && ((PessimisticLockManager) lm).isRowLockLevel(
+                fetch.getReadLockLevel()))
+            rop = ((PessimisticLockManager) lm).deferLocks(rop);
+
         localContext.remove();
         return rop;
     }
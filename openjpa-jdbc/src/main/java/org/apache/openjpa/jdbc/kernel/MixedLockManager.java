@@ -105,6 +105,24 @@ public class MixedLockManager extends PessimisticLockManager {
         return sqls;
     }
 
+    @Override
+    protected boolean isRowLockLevel(int level) {
+        return level >= MixedLockLevels.LOCK_PESSIMISTIC_READ;
+    }
+
+    @Override
+    protected boolean isBatchLockable(ClassMapping mapping, DBDictionary dict) {
+        if (!super.isBatchLockable(mapping, dict))
+            return false;
+        if (dict.supportsLockingWithMultipleTables)
+            return true;
+        // secondary table rows are locked one instance at a time
+        for (FieldMapping fm : mapping.getFieldMappings())
+            if (!DBIdentifier.isNull(fm.getMappingInfo().getTableIdentifier()))
+                return false;
+        return true;
+    }
+
     @Override
     protected void optimisticLockInternal(OpenJPAStateManager sm, int level,
         int timeout, Object sdata, boolean postLockVersionCheck) {
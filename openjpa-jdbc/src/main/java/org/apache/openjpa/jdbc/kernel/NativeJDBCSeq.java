@@ -23,6 +23,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
@@ -78,6 +80,10 @@ public class NativeJDBCSeq
     private String _select = null;
     private long _nextValue = 0;
     private long _maxValue = -1;
+    private int _prefetch = 0;
+    private long _prefetchedValue = -1;
+    private boolean _prefetching = false;
+    private ExecutorService _prefetcher = null;
 
     private DBIdentifier _schema = DBIdentifier.NULL;
 
@@ -142,6 +148,24 @@ public class NativeJDBCSeq
         _increment = increment;
     }
 
+    /**
+     * The low-water mark, as a percentage of the allocated block, at which
+     * the next block is fetched from the database sequence in the
+     * background. Database sequences are not transactional, so the fetch
+     * always uses its own connection. Defaults to 0, which disables
+     * prefetching.
+     */
+    public int getPrefetchThreshold() {
+        return _prefetch;
+    }
+
+    /**
+     * @see #getPrefetchThreshold
+     */
+    public void setPrefetchThreshold(int prefetch) {
+        _prefetch = Math.max(0, Math.min(prefetch, 100));
+    }
+
     @Override
     public void addSchema(ClassMapping mapping, SchemaGroup group) {
         // sequence already exists?
@@ -202,14 +226,96 @@ public class NativeJDBCSeq
             allocateInternal(0, store, mapping);
             alterIncrementBy = true;
         }
-        if (_nextValue >= _maxValue) {
-            allocateInternal(0, store, mapping);
+        while (_nextValue >= _maxValue) {
+            if (_prefetchedValue != -1) {
+                // switch to the block fetched in the background
+                _nextValue = _prefetchedValue;
+                _maxValue = _nextValue + _allocate * _increment;
+                _prefetchedValue = -1;
+            } else if (_prefetching) {
+                // wait for the block that is already on its way
+                try {
+                    wait(100);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    allocateInternal(0, store, mapping);
+                }
+            } else
+                allocateInternal(0, store, mapping);
         }
         long result = _nextValue;
         _nextValue += _increment;
+        if (isPrefetchDue())
+            prefetchSequence();
         return result;
     }
 
+    /**
+     * Whether the current block has dropped below the prefetch low-water
+     * mark and no next block is present or on its way.
+     */
+    private boolean isPrefetchDue() {
+        if (_prefetch == 0 || _allocate <= 1 || _prefetching
+            || _prefetchedValue != -1)
+            return false;
+        long remaining = (_maxValue - _nextValue) / _increment;
+        return remaining * 100 <= (long) _allocate * _prefetch;
+    }
+
+    /**
+     * Fetch the next block from the database sequence in the background.
+     * Must be called while holding this sequence's lock.
+     */
+    private void prefetchSequence() {
+        _prefetching = true;
+        Runnable prefetch = () -> {
+            long next = -1;
+            Connection conn = null;
+            try {
+                conn = _conf.getDataSource2(null).getConnection();
+                next = getSequence(conn);
+                if (!conn.getAutoCommit())
+                    conn.commit();
+            } catch (Exception e) {
+                // the next allocation falls back to a synchronous fetch
+                next = -1;
+                Log log = _conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
+                if (log.isWarnEnabled())
+                    log.warn(_loc.get("prefetch-native-seq-failed", _seqName),
+                        e);
+            } finally {
+                if (conn != null)
+                    try { conn.close(); } catch (SQLException se) {}
+                synchronized (NativeJDBCSeq.this) {
+                    _prefetchedValue = next;
+                    _prefetching = false;
+                    NativeJDBCSeq.this.notifyAll();
+                }
+            }
+        };
+        try {
+            if (_prefetcher == null)
+                _prefetcher = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "OpenJPA sequence prefetch");
+                    t.setDaemon(true);
+                    return t;
+                });
+            _prefetcher.execute(prefetch);
+        } catch (RuntimeException re) {
+            // executor shut down; stay synchronous
+            _prefetching = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (_prefetcher != null) {
+            _prefetcher.shutdown();
+            _prefetcher = null;
+        }
+        super.close();
+    }
+
     /**
      * Allocate additional sequence values.
      * @param additional ignored - the allocation size is fixed and determined by allocate and increment properties.
@@ -254,7 +360,13 @@ public class NativeJDBCSeq
                     alreadyLoggedAlterSeqDisabled = true;
                 }
             }
-            _nextValue = getSequence(conn);
+            // a block fetched in the background comes first, so that the
+            // values it holds are not skipped for a newer block
+            if (_prefetchedValue != -1) {
+                _nextValue = _prefetchedValue;
+                _prefetchedValue = -1;
+            } else
+                _nextValue = getSequence(conn);
             _maxValue = _nextValue + _allocate * _increment;
         } finally {
             closeConnection(conn);
@@ -23,12 +23,19 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.meta.FieldMapping;
 import org.apache.openjpa.jdbc.meta.Strategy;
 import org.apache.openjpa.jdbc.meta.strats.ContainerFieldStrategy;
+import org.apache.openjpa.jdbc.schema.Column;
 import org.apache.openjpa.jdbc.schema.ForeignKey;
 import org.apache.openjpa.jdbc.sql.DBDictionary;
 import org.apache.openjpa.jdbc.sql.SQLBuffer;
@@ -40,9 +47,11 @@ import org.apache.openjpa.kernel.MixedLockLevels;
 import org.apache.openjpa.kernel.OpenJPAStateManager;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.kernel.VersionLockManager;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.util.LockException;
 import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.UnsupportedException;
 
 /**
  * Lock manager that uses exclusive database locks.
@@ -58,8 +67,24 @@ public class PessimisticLockManager
     private static final Localizer _loc = Localizer.forPackage
         (PessimisticLockManager.class);
 
+    /**
+     * The maximum number of rows locked by a single batched select. The
+     * dictionary's <code>inClauseLimit</code> lowers it further.
+     *
+     * @since 3.2.3
+     */
+    public static final int LOCK_BATCH_SIZE = 500;
+
     protected JDBCStore _store;
 
+    // locks of instances loaded from results that could not lock, deferred
+    // to be obtained in batches once the results are read; null when the
+    // results of no query are being read
+    private List<DeferredLock> _deferred = null;
+
+    // instances whose rows have been locked by a batched select
+    private Set<OpenJPAStateManager> _batchLocked = null;
+
     public PessimisticLockManager() {
         setVersionCheckOnReadLock(false);
         setVersionUpdateOnWriteLock(false);
@@ -93,6 +118,28 @@ public class PessimisticLockManager
         return true;
     }
 
+    /**
+     * Return whether the given select should lock the rows it selects, as
+     * {@link #selectForUpdate(Select, int)} does, for a select that is
+     * executed with the given fetch configuration. If the configuration
+     * {@linkplain JDBCFetchConfiguration#getSkipLocked skips locked rows} and
+     * the select cannot lock, an exception is thrown rather than locking the
+     * selected objects after they are loaded, as those locks would wait for
+     * the rows the select was meant to skip.
+     *
+     * @since 3.2.3
+     */
+    public boolean selectForUpdate(Select sel, int lockLevel,
+        JDBCFetchConfiguration fetch) {
+        boolean forUpdate = selectForUpdate(sel, lockLevel);
+        if (!forUpdate && fetch != null && fetch.getSkipLocked()
+            && isRowLockLevel(lockLevel)
+            && !_store.getDBDictionary().simulateLocking)
+            throw new UnsupportedException(_loc.get("cant-skip-locked",
+                sel.toSelect(false, null).getSQL()));
+        return forUpdate;
+    }
+
     @Override
     public void loadedForUpdate(OpenJPAStateManager sm) {
         // we set a low lock level to indicate that we don't need datastore
@@ -110,11 +157,228 @@ public class PessimisticLockManager
 
         // only need to lock if not loaded from locking result
         ConnectionInfo info = (ConnectionInfo) sdata;
-        if (info == null || info.result == null || !info.result.isLocking())
+        if (_batchLocked != null && _batchLocked.remove(sm)) {
+            // row already locked by a batched select
+        } else if (info == null || info.result == null
+            || !info.result.isLocking()) {
+            if (_deferred != null && info != null && info.result != null) {
+                _deferred.add(new DeferredLock(sm, level, timeout,
+                    postVersionCheck));
+                return;
+            }
             lockRow(sm, timeout, level);
+        }
         optimisticLockInternal(sm, level, timeout, sdata, postVersionCheck);
     }
 
+    /**
+     * Lock the rows of the given instances with batched
+     * "SELECT ... FOR UPDATE" statements before locking each instance.
+     */
+    @Override
+    public void lockAll(Collection sms, int level, int timeout,
+        Object sdata) {
+        if (sdata == null && isRowLockLevel(level)) {
+            List<OpenJPAStateManager> toLock = new ArrayList<>(sms.size());
+            OpenJPAStateManager sm;
+            for (Object o : sms) {
+                sm = (OpenJPAStateManager) o;
+                while (sm.getOwner() != null)
+                    sm = sm.getOwner();
+                if (sm.isPersistent() && !sm.isNew()
+                    && level > getLockLevel(sm))
+                    toLock.add(sm);
+            }
+            lockRows(toLock, level, timeout);
+        }
+        try {
+            super.lockAll(sms, level, timeout, sdata);
+        } finally {
+            _batchLocked = null;
+        }
+    }
+
+    /**
+     * Return a provider that defers the row locks of the instances it loads
+     * while it cannot lock their rows as it selects them, and obtains them
+     * with batched selects once all results have been read. Use for
+     * results that are read eagerly.
+     *
+     * @since 3.2.3
+     */
+    public ResultObjectProvider deferLocks(ResultObjectProvider rop) {
+        if (_store.getDBDictionary().simulateLocking)
+            return rop;
+        return new DeferredLockResultObjectProvider(rop);
+    }
+
+    /**
+     * Whether the given lock level requires locking rows in the database.
+     *
+     * @since 3.2.3
+     */
+    protected boolean isRowLockLevel(int level) {
+        return level != LOCK_NONE;
+    }
+
+    /**
+     * Whether the rows of instances of the given mapping can be locked in
+     * batches. The base mapping whose table holds the rows must have a
+     * single primary key column.
+     *
+     * @since 3.2.3
+     */
+    protected boolean isBatchLockable(ClassMapping mapping, DBDictionary dict) {
+        return getBaseMapping(mapping).getPrimaryKeyColumns().length == 1;
+    }
+
+    /**
+     * Return the base mapping whose table holds the rows of instances of
+     * the given mapping.
+     */
+    private static ClassMapping getBaseMapping(ClassMapping mapping) {
+        while (mapping.getJoinablePCSuperclassMapping() != null)
+            mapping = mapping.getJoinablePCSuperclassMapping();
+        return mapping;
+    }
+
+    /**
+     * Obtain the given deferred locks, locking the rows in batches first.
+     */
+    private void lockDeferred(List<DeferredLock> locks) {
+        List<OpenJPAStateManager> sms = new ArrayList<>(locks.size());
+        for (DeferredLock lock : locks)
+            sms.add(lock.sm);
+        DeferredLock first = locks.get(0);
+        lockRows(sms, first.level, first.timeout);
+        try {
+            int oldLevel;
+            for (DeferredLock lock : locks) {
+                oldLevel = getLockLevel(lock.sm);
+                if (lock.level <= oldLevel)
+                    continue;
+                try {
+                    lockInternal(lock.sm, lock.level, lock.timeout, null,
+                        lock.postVersionCheck);
+                } catch (RuntimeException re) {
+                    setLockLevel(lock.sm, oldLevel);
+                    throw re;
+                }
+            }
+        } finally {
+            _batchLocked = null;
+        }
+    }
+
+    /**
+     * Lock the rows of the given instances with one
+     * "SELECT ... FOR UPDATE ... WHERE pk IN (...)" per base mapping and
+     * chunk of instances, recording the instances whose rows were locked.
+     * Instances that cannot be locked this way are left to be locked one by
+     * one.
+     */
+    private void lockRows(List<OpenJPAStateManager> sms, int level,
+        int timeout) {
+        DBDictionary dict = _store.getDBDictionary();
+        if (sms.size() < 2 || dict.simulateLocking
+            || !dict.supportsSelectForUpdate
+            || ctx.getFetchConfiguration().getLockScope()
+                == LockScopes.LOCKSCOPE_EXTENDED)
+            return;
+
+        // group by the base mapping whose table holds the rows to lock
+        Map<ClassMapping, List<OpenJPAStateManager>> groups =
+            new LinkedHashMap<>();
+        ClassMapping mapping;
+        for (OpenJPAStateManager sm : sms) {
+            if (sm.getLock() != null && !sm.getLock().equals(LOCK_NONE))
+                continue;
+            // check the instance's own mapping, as a subclass may add
+            // fields that are stored outside the base table
+            mapping = (ClassMapping) sm.getMetaData();
+            if (!isBatchLockable(mapping, dict))
+                continue;
+            mapping = getBaseMapping(mapping);
+            List<OpenJPAStateManager> group = groups.get(mapping);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(mapping, group);
+            }
+            group.add(sm);
+        }
+
+        int size = LOCK_BATCH_SIZE;
+        if (dict.inClauseLimit > 0)
+            size = Math.min(size, dict.inClauseLimit);
+        ensureStoreManagerTransaction();
+        for (Map.Entry<ClassMapping, List<OpenJPAStateManager>> entry
+            : groups.entrySet()) {
+            List<OpenJPAStateManager> group = entry.getValue();
+            for (int i = 0; i < group.size(); i += size) {
+                List<OpenJPAStateManager> chunk = group.subList(i,
+                    Math.min(i + size, group.size()));
+                if (chunk.size() > 1)
+                    lockRows(entry.getKey(), chunk, level, timeout, dict);
+            }
+        }
+    }
+
+    /**
+     * Lock the rows of the given instances of the given base mapping with a
+     * single select.
+     */
+    private void lockRows(ClassMapping mapping, List<OpenJPAStateManager> sms,
+        int level, int timeout, DBDictionary dict) {
+        JDBCFetchConfiguration fetch = _store.getFetchConfiguration();
+        Column[] pks = mapping.getPrimaryKeyColumns();
+        Select select = _store.getSQLFactory().newSelect();
+        select.select(pks);
+        SQLBuffer where = new SQLBuffer(dict);
+        where.append(select.getColumnAlias(pks[0])).append(" IN (");
+        for (int i = 0; i < sms.size(); i++) {
+            if (i > 0)
+                where.append(", ");
+            where.appendValue(mapping.toDataStoreValue(sms.get(i).
+                getManagedInstance(), pks, _store), pks[0]);
+        }
+        where.append(")");
+        select.where(where);
+        SQLBuffer sql = select.toSelect(true, fetch);
+
+        int rows = 0;
+        Connection conn = _store.getConnection();
+        PreparedStatement stmnt = null;
+        ResultSet rs = null;
+        try {
+            stmnt = prepareStatement(conn, sql);
+            dict.setTimeouts(stmnt, fetch, true);
+            rs = executeQuery(conn, stmnt, sql);
+            while (rs.next())
+                rows++;
+        } catch (SQLException se) {
+            LockException e = new LockException(sms.get(0).
+                getPersistenceCapable(), timeout, level);
+            e.setCause(se);
+            e.setFatal(dict.isFatalException(StoreException.LOCK, se)
+                    || level >= MixedLockLevels.LOCK_PESSIMISTIC_READ);
+            throw e;
+        } finally {
+            if (stmnt != null)
+                try { stmnt.close(); } catch (SQLException se) {}
+            if (rs != null)
+                try { rs.close(); } catch (SQLException se) {}
+            try { conn.close(); } catch (SQLException se) {}
+        }
+
+        // if rows are missing, lock the instances one by one so that the
+        // ones whose rows no longer exist are reported
+        if (rows != sms.size())
+            return;
+        if (_batchLocked == null)
+            _batchLocked = Collections.newSetFromMap(new IdentityHashMap<>());
+        _batchLocked.addAll(sms);
+    }
+
     /**
      * Lock the specified instance row by issuing a "SELECT ... FOR UPDATE"
      * statement.
@@ -243,4 +507,106 @@ public class PessimisticLockManager
             throw new LockException(sm.getManagedInstance(), timeout);
         return;
     }
+
+    /**
+     * A lock deferred while reading the results of a query.
+     */
+    private static class DeferredLock {
+        final OpenJPAStateManager sm;
+        final int level;
+        final int timeout;
+        final boolean postVersionCheck;
+
+        DeferredLock(OpenJPAStateManager sm, int level, int timeout,
+            boolean postVersionCheck) {
+            this.sm = sm;
+            this.level = level;
+            this.timeout = timeout;
+            this.postVersionCheck = postVersionCheck;
+        }
+    }
+
+    /**
+     * Defers the row locks of the instances loaded by the delegate while
+     * it is read, and obtains them in batches once it is exhausted.
+     */
+    private class DeferredLockResultObjectProvider
+        implements ResultObjectProvider {
+
+        private final ResultObjectProvider _rop;
+        private List<DeferredLock> _locks = null;
+        private List<DeferredLock> _outer = null;
+
+        DeferredLockResultObjectProvider(ResultObjectProvider rop) {
+            _rop = rop;
+        }
+
+        @Override
+        public boolean supportsRandomAccess() {
+            return _rop.supportsRandomAccess();
+        }
+
+        @Override
+        public void open() throws Exception {
+            _rop.open();
+            _locks = new ArrayList<>();
+            _outer = _deferred;
+            _deferred = _locks;
+        }
+
+        @Override
+        public Object getResultObject() throws Exception {
+            return _rop.getResultObject();
+        }
+
+        @Override
+        public boolean next() throws Exception {
+            if (_rop.next())
+                return true;
+            lockResults();
+            return false;
+        }
+
+        @Override
+        public boolean absolute(int pos) throws Exception {
+            return _rop.absolute(pos);
+        }
+
+        @Override
+        public int size() throws Exception {
+            return _rop.size();
+        }
+
+        @Override
+        public void reset() throws Exception {
+            _rop.reset();
+        }
+
+        @Override
+        public void close() throws Exception {
+            try {
+                lockResults();
+            } finally {
+                _rop.close();
+            }
+        }
+
+        @Override
+        public void handleCheckedException(Exception e) {
+            _rop.handleCheckedException(e);
+        }
+
+        /**
+         * Stop deferring and obtain the locks deferred so far.
+         */
+        private void lockResults() {
+            if (_locks == null)
+                return;
+            List<DeferredLock> locks = _locks;
+            _locks = null;
+            _deferred = _outer;
+            if (!locks.isEmpty())
+                lockDeferred(locks);
+        }
+    }
 }
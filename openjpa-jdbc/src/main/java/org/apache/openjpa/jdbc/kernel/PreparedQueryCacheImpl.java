@@ -59,6 +59,7 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 	private final List<Exclusion> _exclusionPatterns;
 	private QueryStatistics<String> _stats;
 	private boolean _statsEnabled;
+	private boolean _autoParameterize;
 
 	private Lock _writeLock;
 	private Lock _readLock;
@@ -380,6 +381,16 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
         return _statsEnabled;
     }
 
+    @Override
+    public void setAutoParameterize(boolean enable) {
+        _autoParameterize = enable;
+    }
+
+    @Override
+    public boolean getAutoParameterize() {
+        return _autoParameterize;
+    }
+
     public void setMaxCacheSize(int size) {
         ((CacheMap)_delegate).setCacheSize(size);
     }
@@ -240,6 +240,9 @@ public class PreparedQueryImpl implements PreparedQuery {
         if (provider instanceof QueryImpl.PackingResultObjectProvider) {
             provider = ((QueryImpl.PackingResultObjectProvider)provider).getDelegate();
         }
+        if (provider instanceof QueryImpl.ReleasingResultObjectProvider) {
+            provider = ((QueryImpl.ReleasingResultObjectProvider)provider).getDelegate();
+        }
         if (provider instanceof RangeResultObjectProvider) {
             provider = ((RangeResultObjectProvider)provider).getDelegate();
         }
@@ -25,6 +25,8 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.transaction.NotSupportedException;
 
@@ -80,13 +82,27 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
     public static final String ACTION_SET = "set";
     public static final String DEFAULT_TABLE = "OPENJPA_SEQUENCE_TABLE";
 
+    /**
+     * Target lifetime of an allocated block, in milliseconds, when the
+     * allocation size adapts to the rate of use.
+     *
+     * @see #getMaxAllocate
+     */
+    public static final long ADAPT_INTERVAL = 1000L;
+
+    // longest wait for a prefetch in flight before re-checking the status
+    private static final long PREFETCH_WAIT = 100L;
+
     private static final Localizer _loc = Localizer.forPackage
         (TableJDBCSeq.class);
 
     private transient JDBCConfiguration _conf = null;
     private transient Log _log = null;
     private int _alloc = 50;
+    private int _maxAlloc = 0;
+    private int _prefetch = 0;
     private int _intValue = 1;
+    private transient ExecutorService _prefetcher = null;
     private final ConcurrentHashMap<ClassMapping, Status> _stat = new ConcurrentHashMap<>();
 
     private DBIdentifier _table = DBIdentifier.newTable(DEFAULT_TABLE);
@@ -190,6 +206,48 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         _alloc = alloc;
     }
 
+    /**
+     * The upper bound for the adaptive allocation size. When greater than
+     * {@link #getAllocate}, blocks that are used up in less than
+     * {@link #ADAPT_INTERVAL} milliseconds double the size of the next
+     * allocation, and blocks that last much longer halve it again, never
+     * going below {@link #getAllocate}. Defaults to 0, which keeps the
+     * allocation size fixed.
+     */
+    public int getMaxAllocate() {
+        return _maxAlloc;
+    }
+
+    /**
+     * The upper bound for the adaptive allocation size.
+     *
+     * @see #getMaxAllocate
+     */
+    public void setMaxAllocate(int maxAlloc) {
+        _maxAlloc = maxAlloc;
+    }
+
+    /**
+     * The low-water mark, as a percentage of the current block, at which
+     * the next block of sequence values is requested in the background so
+     * that inserting threads do not stall on the sequence table. Only
+     * applies to non-transactional sequences. Defaults to 0, which
+     * disables prefetching.
+     */
+    public int getPrefetchThreshold() {
+        return _prefetch;
+    }
+
+    /**
+     * The low-water mark, as a percentage of the current block, at which
+     * the next block is requested in the background.
+     *
+     * @see #getPrefetchThreshold
+     */
+    public void setPrefetchThreshold(int prefetch) {
+        _prefetch = Math.max(0, Math.min(prefetch, 100));
+    }
+
     /**
      * Return the number as the initial number for the
      * GeneratedValue.TABLE strategy to start with.
@@ -301,16 +359,151 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
 
         while (true) {
             synchronized (stat) {
+                usePrefetched(stat);
+
                 // make sure seq is at least 1, since autoassigned ids of 0 can
                 // conflict with uninitialized values
                 stat.seq = Math.max(stat.seq, 1);
-                if (stat.seq < stat.max)
-                    return stat.seq++;
-                allocateSequence(store, mapping, stat, _alloc, true);
+                if (stat.seq < stat.max) {
+                    long seq = stat.seq++;
+                    if (isPrefetchDue(stat))
+                        prefetchSequence(mapping, stat);
+                    return seq;
+                }
+
+                // rather than allocating a second block, wait for the one
+                // that is already on its way
+                if (stat.prefetching) {
+                    stat.wait(PREFETCH_WAIT);
+                    continue;
+                }
+                allocateSequence(store, mapping, stat, nextAllocation(stat),
+                    true);
+                stat.allocated = System.currentTimeMillis();
             }
         }
     }
 
+    /**
+     * Move the prefetched block, if any, into the current block: switch to
+     * it once the current block is used up, or append it when it directly
+     * follows the current block. A prefetched block that does not follow
+     * the current one is kept aside until the current block is used up.
+     * Must be called while holding the status lock.
+     */
+    private static void usePrefetched(Status stat) {
+        if (stat.nextMax == 0)
+            return;
+        if (stat.seq >= stat.max)
+            stat.seq = stat.nextSeq;
+        else if (stat.nextSeq != stat.max)
+            return;
+        stat.max = stat.nextMax;
+        stat.nextSeq = 0L;
+        stat.nextMax = 0L;
+    }
+
+    /**
+     * Return the size of the next block to allocate, adapting it to the
+     * rate at which the previous block was used up. Must be called while
+     * holding the status lock.
+     */
+    private int nextAllocation(Status stat) {
+        if (_maxAlloc <= _alloc)
+            return _alloc;
+        if (stat.alloc < _alloc)
+            stat.alloc = _alloc;
+        else if (stat.allocated > 0) {
+            long elapsed = System.currentTimeMillis() - stat.allocated;
+            if (elapsed < ADAPT_INTERVAL)
+                stat.alloc = (int) Math.min((long) stat.alloc * 2, _maxAlloc);
+            else if (elapsed > ADAPT_INTERVAL * 4)
+                stat.alloc = Math.max(stat.alloc / 2, _alloc);
+        }
+        return stat.alloc;
+    }
+
+    /**
+     * Whether the current block has dropped below the prefetch low-water
+     * mark and no next block is present or on its way. Must be called while
+     * holding the status lock.
+     */
+    private boolean isPrefetchDue(Status stat) {
+        if (_prefetch == 0 || stat.prefetching || stat.nextMax > 0
+            || type == TYPE_TRANSACTIONAL || type == TYPE_CONTIGUOUS)
+            return false;
+        long size = Math.max(stat.alloc, _alloc);
+        return (stat.max - stat.seq) * 100 <= size * _prefetch;
+    }
+
+    /**
+     * Request the next block of sequence values in the background. The
+     * block is claimed on its own connection from the non-transactional
+     * data source and kept aside in the status until the current block is
+     * used up. Must be called while holding the status lock.
+     */
+    private void prefetchSequence(final ClassMapping mapping,
+        final Status stat) {
+        final int alloc = nextAllocation(stat);
+        stat.prefetching = true;
+        Runnable prefetch = () -> {
+            Connection conn = null;
+            long cur = -1;
+            try {
+                conn = _conf.getDataSource2(null).getConnection();
+                if (conn.getAutoCommit())
+                    conn.setAutoCommit(false);
+                cur = claimSequence(mapping, alloc, conn);
+                conn.commit();
+            } catch (Exception e) {
+                // the next allocation falls back to a synchronous update
+                cur = -1;
+                if (_log.isWarnEnabled())
+                    _log.warn(_loc.get("prefetch-seq-failed", mapping), e);
+            } finally {
+                if (conn != null)
+                    try { conn.close(); } catch (SQLException se) {}
+                synchronized (stat) {
+                    if (cur != -1) {
+                        stat.nextSeq = cur;
+                        stat.nextMax = cur + alloc;
+                        stat.allocated = System.currentTimeMillis();
+                    }
+                    stat.prefetching = false;
+                    stat.notifyAll();
+                }
+            }
+        };
+        try {
+            getPrefetcher().execute(prefetch);
+        } catch (RuntimeException re) {
+            // executor shut down; stay synchronous
+            stat.prefetching = false;
+        }
+    }
+
+    private synchronized ExecutorService getPrefetcher() {
+        if (_prefetcher == null)
+            _prefetcher = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "OpenJPA sequence prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+        return _prefetcher;
+    }
+
+    @Override
+    public void close() {
+        ExecutorService prefetcher;
+        synchronized (this) {
+            prefetcher = _prefetcher;
+            _prefetcher = null;
+        }
+        if (prefetcher != null)
+            prefetcher.shutdown();
+        super.close();
+    }
+
     @Override
     protected Object currentInternal(JDBCStore store, ClassMapping mapping)
         throws Exception {
@@ -344,6 +537,7 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         while (true) {
             int available;
             synchronized (stat) {
+                usePrefetched(stat);
                 available = (int) (stat.max - stat.seq);
                 if (available >= count)
                     return;
@@ -579,6 +773,37 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         if (_log.isTraceEnabled())
             _log.trace(_loc.get("update-seq"));
 
+        long cur = claimSequence(mapping, inc, conn);
+        if (cur == -1)
+            return false;
+
+        // setup new sequence range
+        synchronized (stat) {
+            if (stat.max < cur) {
+                // the claimed block does not follow the current one, as the
+                // values in between went to a prefetched block or to another
+                // process; never stretch the current block over that gap
+                stat.seq = cur;
+                stat.max = cur + inc;
+            } else {
+                if (updateStatSeq && stat.seq < cur)
+                    stat.seq = cur;
+                if (stat.max < cur + inc)
+                    stat.max = cur + inc;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Atomically advances the sequence row of the given mapping by
+     * <code>inc</code>.
+     *
+     * @return the first value of the claimed block, or -1 if no sequence
+     * row existed for this mapping
+     */
+    protected long claimSequence(ClassMapping mapping, int inc, Connection conn)
+        throws SQLException {
         Object pk = getPrimaryKey(mapping);
         if (pk == null)
             throw new InvalidStateException(_loc.get("bad-seq-type",
@@ -599,7 +824,7 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
             try {
                 cur = getSequence(mapping, conn);
                 if (cur == -1)
-                    return false;
+                    return -1;
 
                 // update the value
                 upd = new SQLBuffer(dict);
@@ -623,16 +848,9 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
                     try { stmnt.close(); } catch (SQLException se) {}
             }
         }
-
-        // setup new sequence range
-        synchronized (stat) {
-            if (updateStatSeq && stat.seq < cur)
-                stat.seq = cur;
-            if (stat.max < cur + inc)
-                stat.max = cur + inc;
-        }
-        return true;
+        return cur;
     }
+
     /**
      * Resolve a fully qualified table name
      *
@@ -820,6 +1038,15 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         private static final long serialVersionUID = 1L;
         public long seq = 1L;
         public long max = 0L;
+
+        // prefetched block, used once seq reaches max; nextMax is 0 if absent
+        public long nextSeq = 0L;
+        public long nextMax = 0L;
+
+        // adaptive allocation size and the time the last block arrived
+        transient int alloc = 0;
+        transient long allocated = 0L;
+        transient boolean prefetching = false;
     }
 
     /**
@@ -91,6 +91,10 @@ public class ClassMapping
     // maps columns to joinables
     private final Map _joinables = new ConcurrentHashMap();
 
+    // generated loader of the primitive fields, resolved on first use
+    private transient RowHydrator _hydrator = null;
+    private transient volatile boolean _hydratorResolved = false;
+
     /**
      * Constructor. Supply described type and owning repository.
      */
@@ -635,6 +639,26 @@ public class ClassMapping
         return (ClassMapping) getMappedPCSuperclassMetaData();
     }
 
+    /**
+     * Return the generated hydrator that loads the primitive fields this
+     * mapping defines, or null if none of them qualifies.
+     *
+     * @see RowHydratorGenerator
+     * @since 3.2.3
+     */
+    public RowHydrator getRowHydrator() {
+        if (!_hydratorResolved) {
+            synchronized (this) {
+                if (!_hydratorResolved) {
+                    _hydrator = new RowHydratorGenerator(getMappingRepository().
+                        getConfiguration()).generate(this);
+                    _hydratorResolved = true;
+                }
+            }
+        }
+        return _hydrator;
+    }
+
     /**
      * Return the nearest mapped superclass that can join to this class.
      */
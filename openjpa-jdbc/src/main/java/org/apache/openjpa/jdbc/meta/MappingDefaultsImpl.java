@@ -69,6 +69,7 @@ public class MappingDefaultsImpl
     private boolean _addNullInd = false;
     private boolean _ordinalEnum = false;
     private boolean _stringifyUnmapped = false;
+    private boolean _lazyLobs = false;
     private DBIdentifier _dsIdName = DBIdentifier.NULL;
     private DBIdentifier _versName = DBIdentifier.NULL;
     private DBIdentifier _discName = DBIdentifier.NULL;
@@ -201,6 +202,30 @@ public class MappingDefaultsImpl
         _stringifyUnmapped = stringify;
     }
 
+    /**
+     * Whether to leave <code>byte[]</code>, <code>char[]</code> and string
+     * fields mapped to a LOB column out of the default fetch group unless
+     * they declare a fetch type, and to skip writing such values when they
+     * are unchanged since load. Defaults to false.
+     *
+     * @since 3.2.3
+     */
+    public boolean getLazyLobs() {
+        return _lazyLobs;
+    }
+
+    /**
+     * Whether to leave <code>byte[]</code>, <code>char[]</code> and string
+     * fields mapped to a LOB column out of the default fetch group unless
+     * they declare a fetch type, and to skip writing such values when they
+     * are unchanged since load. Defaults to false.
+     *
+     * @since 3.2.3
+     */
+    public void setLazyLobs(boolean lazyLobs) {
+        _lazyLobs = lazyLobs;
+    }
+
     /**
      * Default foreign key action for join keys. Defaults to logical keys.
      */
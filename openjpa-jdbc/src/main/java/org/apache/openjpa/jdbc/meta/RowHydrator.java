@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.meta;
+
+import java.sql.SQLException;
+import java.util.BitSet;
+
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.sql.Result;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+
+/**
+ * Loads the primitive fields of a class mapping straight from a result.
+ * Subclasses are generated by {@link RowHydratorGenerator} with one
+ * unrolled read and store per field, in place of a dispatch through each
+ * field's strategy.
+ *
+ * @since 3.2.3
+ */
+public abstract class RowHydrator {
+
+    private Column[] _cols = null;
+    private BitSet _fields = null;
+
+    /**
+     * Set the columns read for the hydrated fields, in generation order,
+     * and the indexes of those fields.
+     */
+    void initialize(Column[] cols, BitSet fields) {
+        _cols = cols;
+        _fields = fields;
+    }
+
+    /**
+     * The columns read for the hydrated fields, in generation order.
+     */
+    protected final Column[] getColumns() {
+        return _cols;
+    }
+
+    /**
+     * The indexes of the fields this hydrator loads.
+     */
+    public BitSet getFields() {
+        return _fields;
+    }
+
+    /**
+     * Load each hydrated field that is not loaded yet and whose column is
+     * in the given result.
+     */
+    public abstract void load(OpenJPAStateManager sm, Result res)
+        throws SQLException;
+}
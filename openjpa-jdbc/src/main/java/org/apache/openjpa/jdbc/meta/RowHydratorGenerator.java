@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.meta;
+
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.jdbc.meta.strats.PrimitiveFieldStrategy;
+import org.apache.openjpa.jdbc.meta.strats.StateComparisonVersionStrategy;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.sql.Result;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.util.GeneratedClasses;
+import org.apache.openjpa.util.InternalException;
+
+import serp.bytecode.BCClass;
+import serp.bytecode.BCMethod;
+import serp.bytecode.Code;
+import serp.bytecode.Instruction;
+import serp.bytecode.JumpInstruction;
+import serp.bytecode.Project;
+
+/**
+ * Generates a {@link RowHydrator} for the primitive fields a class mapping
+ * defines. The generated code checks, reads and stores each field with
+ * constant field indexes and typed calls, so loading a wide entity does
+ * not dispatch through every field's strategy. Only fields mapped by a
+ * plain {@link PrimitiveFieldStrategy} qualify; all others keep loading
+ * through their strategies.
+ *
+ * @since 3.2.3
+ */
+public class RowHydratorGenerator {
+
+    private static final Localizer _loc = Localizer.forPackage
+        (RowHydratorGenerator.class);
+
+    protected static final String POSTFIX = "$openjpahydrator";
+
+    private final Log _log;
+
+    public RowHydratorGenerator(OpenJPAConfiguration conf) {
+        _log = conf.getLogFactory().getLog(OpenJPAConfiguration.LOG_ENHANCE);
+    }
+
+    /**
+     * Return a hydrator for the qualifying fields defined by the given
+     * mapping, or null if none of them qualifies.
+     */
+    public RowHydrator generate(ClassMapping mapping) {
+        List<FieldMapping> fields = new ArrayList<>();
+        for (FieldMapping fm : mapping.getDefinedFieldMappings())
+            if (isHydrated(fm))
+                fields.add(fm);
+        if (fields.isEmpty())
+            return null;
+
+        if (_log.isTraceEnabled())
+            _log.trace(_loc.get("hydrator-generate", mapping,
+                String.valueOf(fields.size())));
+
+        Project project = new Project();
+        BCClass bc = project.loadClass(getUniqueName(mapping));
+        bc.setSuperclass(RowHydrator.class);
+        bc.addDefaultConstructor().makePublic();
+        addLoadMethod(bc, fields);
+
+        Column[] cols = new Column[fields.size()];
+        BitSet indexes = new BitSet();
+        for (int i = 0; i < cols.length; i++) {
+            cols[i] = fields.get(i).getColumns()[0];
+            indexes.set(fields.get(i).getIndex());
+        }
+
+        Class<?> cls = GeneratedClasses.loadBCClass(bc,
+            AccessController.doPrivileged(J2DoPrivHelper.
+                getClassLoaderAction(RowHydrator.class)));
+        RowHydrator hydrator;
+        try {
+            hydrator = (RowHydrator) cls.getConstructor((Class[]) null).
+                newInstance((Object[]) null);
+        } catch (Throwable t) {
+            throw new InternalException("cons-access", t).setFatal(true);
+        }
+        hydrator.initialize(cols, indexes);
+        return hydrator;
+    }
+
+    /**
+     * Whether the given field is loaded by generated code. The field must
+     * be mapped to a single column by a {@link PrimitiveFieldStrategy}
+     * that neither externalizes the value nor records null columns for
+     * a state image version.
+     */
+    protected boolean isHydrated(FieldMapping fm) {
+        if (fm.isPrimaryKey() || fm.isExternalized()
+            || fm.getStrategy() == null
+            || fm.getStrategy().getClass() != PrimitiveFieldStrategy.class
+            || fm.getColumns().length != 1
+            || getType(fm.getTypeCode()) == null)
+            return false;
+        Version vers = fm.getDefiningMapping().getVersion();
+        return vers.getStrategy() == null || !StateComparisonVersionStrategy.
+            ALIAS.equals(vers.getStrategy().getAlias());
+    }
+
+    /**
+     * Creates a unique name for the given mapping's hydrator.
+     */
+    protected String getUniqueName(ClassMapping mapping) {
+        return mapping.getDescribedType().getName() + "$"
+            + System.identityHashCode(mapping) + POSTFIX;
+    }
+
+    /**
+     * Implement the load method with one block per field.
+     */
+    private void addLoadMethod(BCClass bc, List<FieldMapping> fields) {
+        // public void load(OpenJPAStateManager sm, Result res)
+        BCMethod meth = bc.declareMethod("load", void.class,
+            new Class[]{ OpenJPAStateManager.class, Result.class });
+        meth.makePublic();
+        Code code = meth.getCode(true);
+
+        // Column[] cols = getColumns();
+        int cols = code.getNextLocalsIndex();
+        code.aload().setThis();
+        code.invokevirtual().setMethod(RowHydrator.class, "getColumns",
+            Column[].class, null);
+        code.astore().setLocal(cols);
+
+        Collection<Instruction> jumps = new LinkedList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            FieldMapping fm = fields.get(i);
+            int typeCode = fm.getTypeCode();
+            Class<?> type = getType(typeCode);
+            String suffix = getMethodSuffix(typeCode);
+
+            // if (!sm.isLoaded(<index>) && res.contains(cols[<i>]))
+            setTarget(code.aload().setParam(0), jumps);
+            code.constant().setValue(fm.getIndex());
+            code.invokeinterface().setMethod(OpenJPAStateManager.class,
+                "isLoaded", boolean.class, new Class[]{ int.class });
+            jumps.add(code.ifne());
+            code.aload().setParam(1);
+            code.aload().setLocal(cols);
+            code.constant().setValue(i);
+            code.aaload();
+            code.invokeinterface().setMethod(Result.class, "contains",
+                boolean.class, new Class[]{ Object.class });
+            jumps.add(code.ifeq());
+
+            // sm.store<Type>Field(<index>, res.get<Type>(cols[<i>]));
+            code.aload().setParam(0);
+            code.constant().setValue(fm.getIndex());
+            code.aload().setParam(1);
+            code.aload().setLocal(cols);
+            code.constant().setValue(i);
+            code.aaload();
+            code.invokeinterface().setMethod(Result.class, "get" + suffix,
+                type, new Class[]{ Object.class });
+            code.invokeinterface().setMethod(OpenJPAStateManager.class,
+                "store" + suffix + "Field", void.class,
+                new Class[]{ int.class, type });
+        }
+        setTarget(code.vreturn(), jumps);
+
+        code.calculateMaxStack();
+        code.calculateMaxLocals();
+    }
+
+    /**
+     * Set the given instruction as the target of all given jumps.
+     */
+    private static void setTarget(Instruction ins,
+        Collection<Instruction> jumps) {
+        for (Instruction jump : jumps)
+            ((JumpInstruction) jump).setTarget(ins);
+        jumps.clear();
+    }
+
+    /**
+     * The primitive type for the given type code, or null if the type is
+     * not primitive.
+     */
+    private static Class<?> getType(int typeCode) {
+        switch (typeCode) {
+            case JavaTypes.BOOLEAN:
+                return boolean.class;
+            case JavaTypes.BYTE:
+                return byte.class;
+            case JavaTypes.CHAR:
+                return char.class;
+            case JavaTypes.DOUBLE:
+                return double.class;
+            case JavaTypes.FLOAT:
+                return float.class;
+            case JavaTypes.INT:
+                return int.class;
+            case JavaTypes.LONG:
+                return long.class;
+            case JavaTypes.SHORT:
+                return short.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The suffix of the typed result and state manager methods for the
+     * given primitive type code.
+     */
+    private static String getMethodSuffix(int typeCode) {
+        String name = getType(typeCode).getName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
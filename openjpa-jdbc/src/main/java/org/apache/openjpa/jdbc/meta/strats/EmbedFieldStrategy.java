@@ -244,7 +244,7 @@ public class EmbedFieldStrategy
     public void delete(OpenJPAStateManager sm, JDBCStore store, RowManager rm)
         throws SQLException {
         OpenJPAStateManager em = null;
-        if (sm.getLoaded().get(field.getIndex()))
+        if (sm.isLoaded(field.getIndex()))
             em = store.getContext().getStateManager(sm.fetchObject
                 (field.getIndex()));
         Row row = field.getRow(sm, store, rm, Row.ACTION_DELETE);
@@ -533,7 +533,7 @@ public class EmbedFieldStrategy
                 } else {
                     fields[i].load(em, store, fetch, res);
                 }
-                needsLoad = needsLoad || (!em.getLoaded().get(i) &&
+                needsLoad = needsLoad || (!em.isLoaded(i) &&
                     fetch.requiresFetch(fields[i])
                         == FetchConfiguration.FETCH_LOAD);
             } finally {
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
@@ -47,6 +48,7 @@ import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.FieldMetaData;
 import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.util.ChangeTracker;
+import org.apache.openjpa.util.CollectionChangeTracker;
 import org.apache.openjpa.util.MetaDataException;
 import org.apache.openjpa.util.Proxies;
 import org.apache.openjpa.util.Proxy;
@@ -243,15 +245,21 @@ public class HandlerCollectionTableFieldStrategy
         }
 
         Column order = field.getOrderColumn();
+        int pos = getChangedPosition(ct);
 
         // if no fine-grained change tracking or if an item was removed
-        // from an ordered collection, delete and reinsert
-        if (ct == null || !ct.isTracking() ||
-            (order != null && !ct.getRemoved().isEmpty())) {
+        // from an ordered collection and the positions are not known,
+        // delete and reinsert
+        if (ct == null || !ct.isTracking() || pos == 0 ||
+            (order != null && pos == -1 && !ct.getRemoved().isEmpty())) {
             delete(sm, store, rm);
             insert(sm, store, rm, obj);
             return;
         }
+        if (pos > 0) {
+            updatePositions(sm, store, rm, (List) obj, ct, pos);
+            return;
+        }
 
         // delete the removes
         ValueMapping elem = field.getElementMapping();
@@ -290,6 +298,86 @@ public class HandlerCollectionTableFieldStrategy
         }
     }
 
+    /**
+     * Return the lowest changed position of the given tracker if the
+     * elements can be written by position, 0 if the collection must be
+     * written again, or -1 if it is not written by position. Replacing
+     * an element, or removing some elements and adding others, writes
+     * the collection again.
+     */
+    private int getChangedPosition(ChangeTracker ct) {
+        Column order = field.getOrderColumn();
+        if (order == null || !(ct instanceof CollectionChangeTracker))
+            return -1;
+        int pos = ((CollectionChangeTracker) ct).getChangedPosition();
+        if (pos > 0 && (_embed
+            || !field.getOrderColumnIO().isInsertable(order, false)
+            || !_io.isAllUpdatable(_cols, false)))
+            return 0;
+
+        // elements that were both removed and added may move in both
+        // directions, and no order of updates keeps each of them in a
+        // single row
+        if (pos > 0 && !ct.getRemoved().isEmpty() && !ct.getAdded().isEmpty())
+            return 0;
+        return pos;
+    }
+
+    /**
+     * Write the elements of an ordered collection from the given position
+     * on by position. Rows past the new end are deleted first, and the
+     * remaining rows are updated in the direction the elements move, so
+     * that no element is held by two rows at once.
+     */
+    private void updatePositions(OpenJPAStateManager sm, JDBCStore store,
+        RowManager rm, List list, ChangeTracker ct, int pos)
+        throws SQLException {
+        Column order = field.getOrderColumn();
+        ValueMapping elem = field.getElementMapping();
+        Object[] vals = list.toArray();
+        int stored = ct.getNextSequence();
+        pos = Math.min(pos, stored);
+
+        if (vals.length < stored) {
+            Row delRow = rm.getSecondaryRow(field.getTable(),
+                Row.ACTION_DELETE);
+            delRow.whereForeignKey(field.getJoinForeignKey(), sm);
+            for (int i = Math.max(vals.length, pos); i < stored; i++) {
+                delRow.whereInt(order, i);
+                rm.flushSecondaryRow(delRow);
+            }
+        }
+
+        int end = Math.min(vals.length, stored);
+        if (pos < end) {
+            Row updRow = rm.getSecondaryRow(field.getTable(),
+                Row.ACTION_UPDATE);
+            updRow.whereForeignKey(field.getJoinForeignKey(), sm);
+            boolean down = vals.length < stored;
+            for (int i = pos; i < end; i++) {
+                int idx = (down) ? pos + end - 1 - i : i;
+                updRow.whereInt(order, idx);
+                HandlerStrategies.set(elem, vals[idx], store, updRow, _cols,
+                    _io, true);
+                rm.flushSecondaryRow(updRow);
+            }
+        }
+
+        if (stored < vals.length) {
+            Row addRow = rm.getSecondaryRow(field.getTable(),
+                Row.ACTION_INSERT);
+            addRow.setForeignKey(field.getJoinForeignKey(),
+                field.getJoinColumnIO(), sm);
+            for (int i = Math.max(stored, pos); i < vals.length; i++) {
+                HandlerStrategies.set(elem, vals[i], store, addRow, _cols,
+                    _io, true);
+                addRow.setInt(order, i);
+                rm.flushSecondaryRow(addRow);
+            }
+        }
+        ct.setNextSequence(vals.length);
+    }
+
     @Override
     public void delete(OpenJPAStateManager sm, JDBCStore store, RowManager rm)
         throws SQLException {
@@ -18,7 +18,11 @@
  */
 package org.apache.openjpa.jdbc.meta.strats;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import org.apache.openjpa.jdbc.kernel.EagerFetchModes;
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
@@ -60,6 +64,7 @@ public class HandlerFieldStrategy
     private static final long serialVersionUID = 1L;
 
     private static final Object NULL = new Object();
+    private static final byte[] NULL_DIGEST = new byte[0];
 
     private static final Localizer _loc = Localizer.forPackage
         (HandlerFieldStrategy.class);
@@ -69,6 +74,7 @@ public class HandlerFieldStrategy
     protected Object[] _args = null;
     protected boolean _load = false;
     protected boolean _lob = false;
+    protected boolean _lazyLob = false;
 
     @Override
     public void map(boolean adapt) {
@@ -121,6 +127,12 @@ public class HandlerFieldStrategy
         for (int i = 0; !_lob && i < _cols.length; i++)
             _lob = _cols[i].isLob();
 
+        // lazy lobs remember a digest of the loaded value so that unchanged
+        // values are not written back
+        _lazyLob = !_load && HandlerStrategies.mapLazyLob(field, _cols);
+        if (_lazyLob)
+            field.setUsesImplData(Boolean.TRUE);
+
         Object args = field.getHandler().getResultArgument(field);
         if (args == null)
             _args = null;
@@ -150,9 +162,11 @@ public class HandlerFieldStrategy
     public void update(OpenJPAStateManager sm, JDBCStore store, RowManager rm)
         throws SQLException {
         if (field.getColumnIO().isUpdatable(0, false)) {
+            Object value = sm.fetch(field.getIndex());
+            if (_lazyLob && isUnchanged(sm, value, store))
+                return;
             Row row = field.getRow(sm, store, rm, Row.ACTION_UPDATE);
             if (row != null) {
-                Object value = sm.fetch(field.getIndex());
                 if (!HandlerStrategies.set(field, value, store, row, _cols,
                     _io, field.getNullValue() == FieldMetaData.NULL_NONE))
                     if (field.getValueStrategy() != ValueStrategies.AUTOASSIGN)
@@ -200,10 +214,12 @@ public class HandlerFieldStrategy
             return;
 
         Object val = HandlerStrategies.loadDataStore(field, res, null, _cols);
-        if (!_load)
+        if (!_load) {
             sm.store(field.getIndex(), field.getHandler().
                 toObjectValue(field, val));
-        else {
+            if (_lazyLob)
+                sm.setImplData(field.getIndex(), digest(val));
+        } else {
             if (val == null)
                 val = NULL;
             sm.setIntermediate(field.getIndex(), val);
@@ -251,6 +267,48 @@ public class HandlerFieldStrategy
         }
 
         loadEmbedded(sm, store, fetch, val);
+        if (_lazyLob)
+            sm.setImplData(field.getIndex(), digest(val));
+    }
+
+    /**
+     * Whether the given value of a lazy lob matches the digest recorded
+     * when the field was loaded. The digest is cleared either way, so that
+     * a value is only ever skipped against the state it was loaded with.
+     */
+    private boolean isUnchanged(OpenJPAStateManager sm, Object value,
+        JDBCStore store) {
+        byte[] loaded = (byte[]) sm.setImplData(field.getIndex(), null);
+        if (loaded == null)
+            return false;
+        byte[] cur = digest(HandlerStrategies.toDataStoreValue(field, value,
+            _cols, store));
+        return cur != null && Arrays.equals(loaded, cur);
+    }
+
+    /**
+     * Return a digest of the given datastore value of a lazy lob, or null
+     * if the value cannot be digested.
+     */
+    private static byte[] digest(Object val) {
+        if (val == null)
+            return NULL_DIGEST;
+
+        byte[] bytes;
+        if (val instanceof byte[])
+            bytes = (byte[]) val;
+        else if (val instanceof char[])
+            bytes = new String((char[]) val).getBytes(StandardCharsets.UTF_8);
+        else if (val instanceof String)
+            bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+        else
+            return null;
+
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException nsae) {
+            return null;
+        }
     }
 
     @Override
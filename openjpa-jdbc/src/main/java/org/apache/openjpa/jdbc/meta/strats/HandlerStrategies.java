@@ -24,6 +24,9 @@ import org.apache.openjpa.jdbc.identifier.DBIdentifier;
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.MappingDefaults;
+import org.apache.openjpa.jdbc.meta.MappingDefaultsImpl;
 import org.apache.openjpa.jdbc.meta.RelationId;
 import org.apache.openjpa.jdbc.meta.ValueHandler;
 import org.apache.openjpa.jdbc.meta.ValueMapping;
@@ -266,6 +269,39 @@ public class HandlerStrategies {
         return val;
     }
 
+    /**
+     * Whether the given field is a lazy LOB under the
+     * {@link MappingDefaultsImpl#getLazyLobs} mapping default, in which case
+     * it is taken out of the default fetch group. The field must hold a
+     * <code>byte[]</code>, <code>char[]</code> or string value in a single
+     * LOB column of an unembedded class, and must not set its fetch type
+     * explicitly.
+     *
+     * @since 3.2.3
+     */
+    public static boolean mapLazyLob(FieldMapping field, Column[] cols) {
+        MappingDefaults defaults = field.getMappingRepository().
+            getMappingDefaults();
+        if (!(defaults instanceof MappingDefaultsImpl)
+            || !((MappingDefaultsImpl) defaults).getLazyLobs())
+            return false;
+        if (cols.length != 1 || !cols[0].isLob() || field.isPrimaryKey()
+            || field.isVersion() || field.isDefaultFetchGroupExplicit()
+            || field.getDefiningMetaData().getEmbeddingMetaData() != null)
+            return false;
+
+        Class<?> type = field.getDeclaredType();
+        if (type != byte[].class && type != char[].class
+            && type != String.class)
+            return false;
+
+        // keep the setting implicit so that it is not written back out
+        // as part of the field's metadata
+        field.setInDefaultFetchGroup(false);
+        field.setDefaultFetchGroupExplicit(false);
+        return true;
+    }
+
     /**
      * Throw the proper exception if the given handler-controlled value
      * represents an unjoinable relation.
@@ -109,6 +109,7 @@ abstract class MaxEmbeddedLobFieldStrategy
         field.setColumnIO(_io);
         field.mapConstraints(fieldName, adapt);
         field.mapPrimaryKey(adapt);
+        HandlerStrategies.mapLazyLob(field, _cols);
     }
 
     @Override
@@ -419,7 +419,7 @@ public class RelationFieldStrategy
             return;
 
         if (field.getJoinDirection() == ValueMapping.JOIN_INVERSE) {
-            if (sm.getLoaded().get(field.getIndex())) {
+            if (sm.isLoaded(field.getIndex())) {
                 OpenJPAStateManager rel = RelationStrategies.getStateManager(sm.
                     fetchObjectField(field.getIndex()), store.getContext());
                 updateInverse(sm, rel, store, rm);
@@ -21,6 +21,7 @@ package org.apache.openjpa.jdbc.meta.strats;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
@@ -43,6 +44,7 @@ import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.meta.MetaDataModes;
 import org.apache.openjpa.util.ChangeTracker;
+import org.apache.openjpa.util.CollectionChangeTracker;
 import org.apache.openjpa.util.MetaDataException;
 import org.apache.openjpa.util.Proxies;
 import org.apache.openjpa.util.Proxy;
@@ -212,15 +214,21 @@ public abstract class RelationToManyTableFieldStrategy
         }
 
         Column order = field.getOrderColumn();
+        int pos = getChangedPosition(ct);
 
         // if no fine-grained change tracking or if an item was removed
-        // from an ordered collection, delete and reinsert
-        if (ct == null || !ct.isTracking() ||
-            (order != null && !ct.getRemoved().isEmpty())) {
+        // from an ordered collection and the positions are not known,
+        // delete and reinsert
+        if (ct == null || !ct.isTracking() || pos == 0 ||
+            (order != null && pos == -1 && !ct.getRemoved().isEmpty())) {
             delete(sm, store, rm);
             insert(sm, rm, obj);
             return;
         }
+        if (pos > 0) {
+            updatePositions(sm, rm, (List) obj, ct, pos);
+            return;
+        }
 
         StoreContext ctx = store.getContext();
         ValueMapping elem = field.getElementMapping();
@@ -263,6 +271,88 @@ public abstract class RelationToManyTableFieldStrategy
         }
     }
 
+    /**
+     * Return the lowest changed position of the given tracker if the
+     * elements can be written by position, 0 if the collection must be
+     * written again, or -1 if it is not written by position. Replacing
+     * an element, or removing some elements and adding others, writes
+     * the collection again.
+     */
+    private int getChangedPosition(ChangeTracker ct) {
+        Column order = field.getOrderColumn();
+        if (order == null || !(ct instanceof CollectionChangeTracker))
+            return -1;
+        int pos = ((CollectionChangeTracker) ct).getChangedPosition();
+        if (pos > 0 && (!field.getOrderColumnIO().isInsertable(order, false)
+            || field.getElementMapping().getForeignKey() == null
+            || !field.getElementMapping().getColumnIO().isAllUpdatable
+            (field.getElementMapping().getForeignKey(), false)))
+            return 0;
+
+        // elements that were both removed and added may move in both
+        // directions, and no order of updates keeps each of them in a
+        // single row
+        if (pos > 0 && !ct.getRemoved().isEmpty() && !ct.getAdded().isEmpty())
+            return 0;
+        return pos;
+    }
+
+    /**
+     * Write the elements of an ordered collection from the given position
+     * on by position. Rows past the new end are deleted first, and the
+     * remaining rows are updated in the direction the elements move, so
+     * that no element is held by two rows at once.
+     */
+    private void updatePositions(OpenJPAStateManager sm, RowManager rm,
+        List list, ChangeTracker ct, int pos)
+        throws SQLException {
+        Column order = field.getOrderColumn();
+        ValueMapping elem = field.getElementMapping();
+        StoreContext ctx = sm.getContext();
+        Object[] vals = list.toArray();
+        int stored = ct.getNextSequence();
+        pos = Math.min(pos, stored);
+
+        if (vals.length < stored) {
+            Row delRow = rm.getSecondaryRow(field.getTable(),
+                Row.ACTION_DELETE);
+            delRow.whereForeignKey(field.getJoinForeignKey(), sm);
+            for (int i = Math.max(vals.length, pos); i < stored; i++) {
+                delRow.whereInt(order, i);
+                rm.flushSecondaryRow(delRow);
+            }
+        }
+
+        int end = Math.min(vals.length, stored);
+        if (pos < end) {
+            Row updRow = rm.getSecondaryRow(field.getTable(),
+                Row.ACTION_UPDATE);
+            updRow.whereForeignKey(field.getJoinForeignKey(), sm);
+            boolean down = vals.length < stored;
+            for (int i = pos; i < end; i++) {
+                int idx = (down) ? pos + end - 1 - i : i;
+                updRow.whereInt(order, idx);
+                elem.setForeignKey(updRow,
+                    RelationStrategies.getStateManager(vals[idx], ctx));
+                rm.flushSecondaryRow(updRow);
+            }
+        }
+
+        if (stored < vals.length) {
+            Row addRow = rm.getSecondaryRow(field.getTable(),
+                Row.ACTION_INSERT);
+            addRow.setForeignKey(field.getJoinForeignKey(),
+                field.getJoinColumnIO(), sm);
+            for (int i = Math.max(stored, pos); i < vals.length; i++) {
+                elem.setForeignKey(addRow,
+                    RelationStrategies.getStateManager(vals[i], ctx));
+                addRow.setInt(order, i);
+                rm.flushSecondaryRow(addRow);
+            }
+        }
+        ct.setNextSequence(vals.length);
+    }
+
     @Override
     public void delete(OpenJPAStateManager sm, JDBCStore store, RowManager rm)
         throws SQLException {
@@ -202,7 +202,7 @@ public class StateComparisonVersionStrategy
         for (int i = 0; i < fields.length; i++) {
             if (!fields[i].isPrimaryKey()
                 && fields[i].isVersionable()
-                && sm.getLoaded().get(fields[i].getIndex())
+                && sm.isLoaded(fields[i].getIndex())
                 && !loaded.get(i)
                 && !sm.getDirty().get(fields[i].getIndex())) {
                 loaded.set(i);
@@ -135,6 +135,7 @@ public class DB2Dictionary
         supportsAlterTableWithDropColumn = false;
         supportsLockingWithOrderClause = true;
         supportsNullUniqueColumn = false;
+        skipLockedClause = "SKIP LOCKED DATA";
 
         supportsNullTableForGetColumns = false;
         requiresCastForMathFunctions = true;
@@ -332,6 +333,11 @@ public class DB2Dictionary
             supportsXMLColumn = versionEqualOrLaterThan(9, 0);
 
         }
+        // SKIP LOCKED DATA is available from DB2 9 for z/OS and 9.5 for LUW
+        if (db2ServerType == db2ZOSV8xOrLater)
+            supportsSkipLocked = versionEqualOrLaterThan(9, 0);
+        else if (db2ServerType == db2UDBV82OrLater)
+            supportsSkipLocked = versionEqualOrLaterThan(9, 5);
 
         // platform specific settings
         switch (db2ServerType) {
@@ -413,6 +419,14 @@ public class DB2Dictionary
             MixedLockLevels.LOCK_PESSIMISTIC_WRITE)
             isolationLevel = Connection.TRANSACTION_SERIALIZABLE;
 
+        // DB2 does not skip locked rows under RR, so lock with RS instead
+        boolean skipLocked = isForUpdate && fetch != null
+            && fetch.getSkipLocked();
+        if (skipLocked) {
+            assertSupport(supportsSkipLocked, "SupportsSkipLocked");
+            isolationLevel = Connection.TRANSACTION_REPEATABLE_READ;
+        }
+
         if (isForUpdate) {
             switch (db2ServerType) {
             case db2ISeriesV5R3OrEarlier:
@@ -447,6 +461,8 @@ public class DB2Dictionary
                 }
                 break;
             }
+            if (skipLocked)
+                forUpdateString.append(" ").append(skipLockedClause);
         } else {
         	if ( fetch != null && fetch.getIsolation() == Connection.TRANSACTION_READ_UNCOMMITTED
         			&& sel != null && sel.getParent() == null) { // i.e. not a subquery
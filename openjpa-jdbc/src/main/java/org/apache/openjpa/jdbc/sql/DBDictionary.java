@@ -67,6 +67,10 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
@@ -111,6 +115,7 @@ import org.apache.openjpa.lib.identifier.IdentifierConfiguration;
 import org.apache.openjpa.lib.identifier.IdentifierRule;
 import org.apache.openjpa.lib.identifier.IdentifierUtil;
 import org.apache.openjpa.lib.jdbc.ConnectionDecorator;
+import org.apache.openjpa.lib.jdbc.DelegatingConnection;
 import org.apache.openjpa.lib.jdbc.LoggingConnectionDecorator;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Localizer;
@@ -243,8 +248,10 @@ public class DBDictionary
     public boolean requiresConditionForCrossJoin = false;
     public String forUpdateClause = "FOR UPDATE";
     public String tableForUpdateClause = null;
+    public String skipLockedClause = "SKIP LOCKED";
     public String distinctCountColumnSeparator = null;
     public boolean supportsSelectForUpdate = true;
+    public boolean supportsSkipLocked = false;
     public boolean supportsLockingWithDistinctClause = true;
     public boolean supportsLockingWithMultipleTables = true;
     public boolean supportsLockingWithOrderClause = true;
@@ -264,6 +271,7 @@ public class DBDictionary
     public boolean requiresTargetForDelete = false;
     public boolean allowsAliasInBulkClause = true;
     public boolean supportsMultipleNontransactionalResultSets = true;
+    public boolean requiresNoAutoCommitForFetchSize = false;
     public boolean requiresSearchStringEscapeForLike = false;
     public String searchStringEscape = "\\";
     public boolean requiresCastForMathFunctions = false;
@@ -272,6 +280,9 @@ public class DBDictionary
     public boolean supportsXMLColumn = false;
     public boolean supportsCaseConversionForLob = false;
     public boolean reportsSuccessNoInfoOnBatchUpdates = false;
+    public int maxRowsPerInsert = 0;
+    public int maxParametersPerStatement = 0;
+    public int maxConcurrentEagerSelects = 0;
     public boolean supportsSelectFromFinalTable = false;
     public boolean supportsSimpleCaseExpression = true;
     public boolean supportsGeneralCaseExpression = true;
@@ -517,6 +528,9 @@ public class DBDictionary
         new HashMap<>();
 
     protected ProxyManager _proxyManager;
+    private RowBinderGenerator _binders = null;
+    private Boolean _setTypedOverridden = null;
+    private ThreadPoolExecutor _eagerExecutor = null;
 
     public DBDictionary() {
         fixedSizeTypeNameSet.addAll(Arrays.asList(new String[]{
@@ -2897,6 +2911,10 @@ public class DBDictionary
                 "isolation-level-config-not-supported", getClass().getName()));
         } else if (isForUpdate && !simulateLocking) {
             assertSupport(supportsSelectForUpdate, "SupportsSelectForUpdate");
+            if (fetch != null && fetch.getSkipLocked()) {
+                assertSupport(supportsSkipLocked, "SupportsSkipLocked");
+                return forUpdateClause + " " + skipLockedClause;
+            }
             return forUpdateClause;
         } else {
             return null;
@@ -3758,6 +3776,27 @@ public class DBDictionary
         return batchFetchSize;
     }
 
+    /**
+     * Prepare the given connection for reading a large result set through
+     * a forward-only cursor. Some drivers only honor the fetch size, and so
+     * only stream rows through a server-side cursor, outside of auto-commit
+     * mode; if {@link #requiresNoAutoCommitForFetchSize} is set, auto-commit
+     * is turned off while the result is open and turned back on when the
+     * returned connection is closed outside of a transaction.
+     *
+     * @since 3.2.3
+     */
+    public Connection prepareCursorConnection(Connection conn,
+        JDBCStore store, JDBCFetchConfiguration fetch)
+        throws SQLException {
+        if (!requiresNoAutoCommitForFetchSize || fetch == null
+            || fetch.getFetchBatchSize() <= 0
+            || conf.isConnectionFactoryModeManaged() || !conn.getAutoCommit())
+            return conn;
+        conn.setAutoCommit(false);
+        return new CursorConnection(conn, store);
+    }
+
     protected StringBuilder comment(StringBuilder buf, String comment) {
         return buf.append("-- ").append(comment);
     }
@@ -5183,6 +5222,22 @@ public class DBDictionary
         }
     }
 
+    /**
+     * Limit the rows returned by the given statement of the given select,
+     * for dictionaries that leave the range of some selects out of their
+     * SQL. Does nothing by default, as the range is part of the SQL of
+     * {@link #toSelect(Select, boolean, JDBCFetchConfiguration)}.
+     *
+     * @param stmnt the statement of the select
+     * @param sel the select, whose end index is the row limit
+     * @param fetch the fetch configuration the select is executed with
+     * @param forUpdate whether the select locks the rows it selects
+     * @since 3.2.3
+     */
+    public void setMaxRows(PreparedStatement stmnt, Select sel,
+        JDBCFetchConfiguration fetch, boolean forUpdate) throws SQLException {
+    }
+
     /**
      * Provides the default validation handling of setting a query timeout.
      * @param stmnt
@@ -5379,6 +5434,32 @@ public class DBDictionary
         DataSourceFactory.closeDataSource(dataSource);
     }
 
+    /**
+     * Connection that turns auto-commit back on when it is closed outside
+     * of a transaction.
+     *
+     * @see #prepareCursorConnection
+     */
+    private static class CursorConnection extends DelegatingConnection {
+
+        private final JDBCStore _store;
+
+        public CursorConnection(Connection conn, JDBCStore store) {
+            super(conn);
+            _store = store;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (!_store.getContext().isActive() && !getAutoCommit())
+                    setAutoCommit(true);
+            } finally {
+                super.close();
+            }
+        }
+    }
+
     /**
      * Used by some mappings to represent data that has already been
      * serialized so that we don't have to serialize multiple times.
@@ -5606,6 +5687,104 @@ public class DBDictionary
         return disableBatch;
     }
 
+    /**
+     * Return the number of rows a batch of inserts that each set
+     * <code>params</code> parameters may be rewritten into per multi-row
+     * <code>INSERT ... VALUES</code> statement, based on
+     * {@link #maxRowsPerInsert} and {@link #maxParametersPerStatement}.
+     * A return value of 1 or less disables the rewrite.
+     *
+     * @since 3.2.3
+     */
+    public int getMaxRowsPerInsert(int params) {
+        int rows = maxRowsPerInsert;
+        if (rows > 1 && maxParametersPerStatement > 0 && params > 0)
+            rows = Math.min(rows, maxParametersPerStatement / params);
+        return rows;
+    }
+
+    /**
+     * Insert the given batch of rows, which all share the same insert SQL,
+     * through a database-specific bulk load mechanism. Returns false if the
+     * rows should be inserted through SQL statements instead, which is what
+     * this implementation always does.
+     *
+     * @since 3.2.3
+     */
+    public boolean insertBulk(Connection conn, JDBCStore store,
+        List<RowImpl> rows)
+        throws SQLException {
+        return false;
+    }
+
+    /**
+     * Return the generated binder for the values of the given row, or null
+     * if the row's values should be bound one by one through
+     * {@link #setTyped}. Binders are only used when
+     * {@link JDBCConfiguration#getDynamicDataStructs} is enabled, and never
+     * for a dictionary that overrides {@link #setTyped}, as the binders
+     * call the typed setters directly.
+     *
+     * @since 3.2.3
+     */
+    public RowBinder getRowBinder(RowImpl row) {
+        if (conf == null || !conf.getDynamicDataStructs())
+            return null;
+        if (_binders == null) {
+            if (_setTypedOverridden == null)
+                _setTypedOverridden = isSetTypedOverridden();
+            if (_setTypedOverridden)
+                return null;
+            _binders = new RowBinderGenerator(conf.getLog(
+                JDBCConfiguration.LOG_ENHANCE));
+        }
+        return _binders.getRowBinder(row);
+    }
+
+    /**
+     * Whether this dictionary overrides {@link #setTyped}.
+     */
+    private boolean isSetTypedOverridden() {
+        try {
+            return getClass().getMethod("setTyped", PreparedStatement.class,
+                int.class, Object.class, Column.class, int.class,
+                JDBCStore.class).getDeclaringClass() != DBDictionary.class;
+        } catch (NoSuchMethodException nsme) {
+            return true;
+        }
+    }
+
+    /**
+     * Return the executor that runs the independent eager parallel selects
+     * of a select concurrently, or null if {@link #maxConcurrentEagerSelects}
+     * does not allow more than one of them at a time. The executor's
+     * threads are shared by all contexts using this dictionary, and end
+     * when they are idle. Each running select takes a connection of its
+     * own while its context keeps holding one, so the connection pool must
+     * have room for {@link #maxConcurrentEagerSelects} connections beyond
+     * those of the active contexts, or the selects and the contexts
+     * waiting for them can block each other.
+     *
+     * @since 3.2.3
+     */
+    public Executor getEagerSelectExecutor() {
+        int threads = maxConcurrentEagerSelects;
+        if (threads < 2)
+            return null;
+        synchronized (this) {
+            if (_eagerExecutor == null) {
+                _eagerExecutor = new ThreadPoolExecutor(threads, threads, 60,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread t = new Thread(r, "OpenJPA eager select");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                _eagerExecutor.allowCoreThreadTimeOut(true);
+            }
+            return _eagerExecutor;
+        }
+    }
+
     /**
      * This method is to provide override for non-JDBC or JDBC-like
      * implementation of executing query.
@@ -101,6 +101,7 @@ public class MariaDBDictionary extends DBDictionary {
         requiresTargetForDelete = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
+        maxParametersPerStatement = 65535;
 
         datePrecision = MICRO;
 
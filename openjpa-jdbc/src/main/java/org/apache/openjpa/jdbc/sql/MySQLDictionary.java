@@ -98,6 +98,7 @@ public class MySQLDictionary
         requiresTargetForDelete = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
+        maxParametersPerStatement = 65535;
 
         datePrecision = MICRO;
 
@@ -215,6 +216,9 @@ public class MySQLDictionary
             fixedSizeTypeNameSet.remove(timestampTypeName);
             fractionalTypeNameSet.add(timestampTypeName);
         }
+        if (maj >= 8) {
+            supportsSkipLocked = true;
+        }
 
         if (metaData.getDriverMajorVersion() < 5) {
             driverDeserializesBlobs = true;
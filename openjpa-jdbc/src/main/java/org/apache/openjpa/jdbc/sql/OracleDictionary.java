@@ -65,6 +65,7 @@ import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.UnsupportedException;
 import org.apache.openjpa.util.UserException;
 
 
@@ -193,6 +194,7 @@ public class OracleDictionary
 
         supportsDeferredConstraints = true;
         supportsLockingWithDistinctClause = false;
+        supportsSkipLocked = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
 
@@ -568,6 +570,17 @@ public class OracleDictionary
                 order, distinct, forUpdate, 0, Long.MAX_VALUE, sel);
         }
 
+        // ROWNUM is assigned before locked rows are skipped, and the inline
+        // views below cannot be locked, so lock the plain select and limit
+        // its rows through the statement; see setMaxRows
+        if (isSkipLocked(fetch, forUpdate)) {
+            if (isUsingOffset(start))
+                throw new UnsupportedException(_loc.get(
+                    "oracle-skip-locked-offset", start));
+            return super.toSelect(select, fetch, tables, where, group, having,
+                order, distinct, forUpdate, 0, Long.MAX_VALUE, sel);
+        }
+
         // if no skip, ordering, or distinct can use rownum directly
         SQLBuffer buf = new SQLBuffer(this);
         if (!requiresSubselectForRange(start, end, distinct, order)) {
@@ -603,6 +616,24 @@ public class OracleDictionary
         return buf;
     }
 
+    /**
+     * Limit the rows of a select that skips locked rows, as its SQL leaves
+     * out the range. Oracle locks such rows as they are fetched, so the
+     * statement stops at the limit without locking any further rows.
+     */
+    @Override
+    public void setMaxRows(PreparedStatement stmnt, Select sel,
+        JDBCFetchConfiguration fetch, boolean forUpdate) throws SQLException {
+        if (isSkipLocked(fetch, forUpdate) && isUsingLimit(sel.getEndIndex()))
+            stmnt.setMaxRows((int) Math.min(sel.getEndIndex(),
+                Integer.MAX_VALUE));
+    }
+
+    private static boolean isSkipLocked(JDBCFetchConfiguration fetch,
+        boolean forUpdate) {
+        return forUpdate && fetch != null && fetch.getSkipLocked();
+    }
+
     /**
      * Return true if the select with the given parameters needs a
      * subselect to apply a range.
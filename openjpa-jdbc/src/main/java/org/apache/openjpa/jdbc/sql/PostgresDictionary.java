@@ -21,9 +21,11 @@ package org.apache.openjpa.jdbc.sql;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
 import java.security.AccessController;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -31,17 +33,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -73,6 +81,18 @@ public class PostgresDictionary extends DBDictionary {
 
     private static final Localizer _loc = Localizer.forPackage(PostgresDictionary.class);
 
+    // text formats of the dates and times loaded with COPY
+    private static final DateTimeFormatter COPY_DATE =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd");
+    private static final DateTimeFormatter COPY_TIME =
+        DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSSSSS");
+    private static final DateTimeFormatter COPY_TIME_TZ =
+        DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSSSSSxxxxx");
+    private static final DateTimeFormatter COPY_TIMESTAMP =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss.SSSSSSSSS");
+    private static final DateTimeFormatter COPY_TIMESTAMP_TZ =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss.SSSSSSSSSxxxxx");
+
 
     private Method dbcpGetDelegate;
     private Method connectionUnwrap;
@@ -125,6 +145,14 @@ public class PostgresDictionary extends DBDictionary {
      */
     public String isOwnedSequenceSQL = "SELECT pg_get_serial_sequence(?, ?)";
 
+    /**
+     * Minimum number of rows in a batch of inserts into the same table for
+     * which the rows are loaded with <code>COPY ... FROM STDIN</code> rather
+     * than with insert statements. Defaults to 0, which never uses
+     * <code>COPY</code>.
+     */
+    public int copyInsertThreshold = 0;
+
 
     public PostgresDictionary() {
         platform = "PostgreSQL";
@@ -134,6 +162,8 @@ public class PostgresDictionary extends DBDictionary {
         supportsDeferredConstraints = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
+        requiresNoAutoCommitForFetchSize = true;
+        maxParametersPerStatement = Short.MAX_VALUE;
 
         maxTableNameLength = 63;
         maxColumnNameLength = 63;
@@ -831,6 +861,9 @@ public class PostgresDictionary extends DBDictionary {
         if ((maj >= 9 || (maj == 8 && min >= 3))) {
             supportsXMLColumn = true;
         }
+        if (maj > 9 || (maj == 9 && min >= 5)) {
+            supportsSkipLocked = true;
+        }
         if (maj < 10) {
             // setQueryTimeout only got implemented pretty late
             supportsQueryTimeout = false;
@@ -969,6 +1002,166 @@ public class PostgresDictionary extends DBDictionary {
         }
     }
 
+    /**
+     * Load batches of at least {@link #copyInsertThreshold} rows with
+     * <code>COPY ... FROM STDIN</code>. Batches that set SQL expressions,
+     * XML or values without a plain text form are left to insert statements.
+     */
+    @Override
+    public boolean insertBulk(Connection conn, JDBCStore store,
+        List<RowImpl> rows)
+        throws SQLException {
+        if (copyInsertThreshold <= 0 || rows.size() < copyInsertThreshold
+            || !(conn instanceof DelegatingConnection))
+            return false;
+
+        RowImpl first = rows.get(0);
+        Column[] cols = first.getColumns();
+        Object[] vals = first.getVals();
+        int[] types = first.getTypes();
+        StringBuilder sql = new StringBuilder("COPY ").
+            append(getFullName(first.getTable(), false)).append(" (");
+        boolean hasCol = false;
+        for (int i = 0; i < cols.length; i++) {
+            if (vals[i] == null)
+                continue;
+            if (types[i] == RowImpl.RAW || cols[i].isXML())
+                return false;
+            if (hasCol)
+                sql.append(", ");
+            sql.append(getColumnDBName(cols[i]));
+            hasCol = true;
+        }
+        sql.append(") FROM STDIN");
+
+        Object[] firstVals = vals;
+        StringBuilder data = new StringBuilder();
+        for (RowImpl row : rows) {
+            vals = row.getVals();
+            boolean hasVal = false;
+            for (int i = 0; i < cols.length; i++) {
+                // every row must set the columns of the first
+                if ((vals[i] == null) != (firstVals[i] == null))
+                    return false;
+                if (vals[i] == null)
+                    continue;
+                if (hasVal)
+                    data.append('\t');
+                if (!appendCopyValue(data, vals[i], cols[i]))
+                    return false;
+                hasVal = true;
+            }
+            data.append('\n');
+        }
+
+        long count;
+        try {
+            count = getPGConnection((DelegatingConnection) conn).getCopyAPI().
+                copyIn(sql.toString(), new StringReader(data.toString()));
+        } catch (IOException ioe) {
+            throw new SQLException(ioe);
+        }
+        if (count != rows.size())
+            throw new SQLException(_loc.get("copy-insert-failed", sql,
+                String.valueOf(count), String.valueOf(rows.size())).getMessage());
+        for (RowImpl row : rows)
+            row.setFlushed(true);
+        return true;
+    }
+
+    /**
+     * Append the given row value in the text format of <code>COPY</code>.
+     * Returns false if the value has no plain text form.
+     */
+    private boolean appendCopyValue(StringBuilder data, Object val,
+        Column col) {
+        if (val == RowImpl.NULL) {
+            data.append("\\N");
+        } else if (val instanceof String || val instanceof Character) {
+            String str = val.toString();
+            for (int i = 0; i < str.length(); i++) {
+                char c = str.charAt(i);
+                switch (c) {
+                    case '\\':
+                        data.append("\\\\");
+                        break;
+                    case '\t':
+                        data.append("\\t");
+                        break;
+                    case '\n':
+                        data.append("\\n");
+                        break;
+                    case '\r':
+                        data.append("\\r");
+                        break;
+                    default:
+                        data.append(c);
+                }
+            }
+        } else if (val instanceof BigDecimal) {
+            data.append(((BigDecimal) val).toPlainString());
+        } else if (val instanceof Number) {
+            data.append(val);
+        } else if (val instanceof Boolean) {
+            if (col.getType() != Types.BIT && col.getType() != Types.BOOLEAN)
+                return false;
+            data.append((Boolean) val ? 't' : 'f');
+        } else if (val instanceof Date || val instanceof LocalDate
+            || val instanceof LocalTime || val instanceof LocalDateTime
+            || val instanceof OffsetDateTime || val instanceof OffsetTime) {
+            return appendCopyTemporal(data, val);
+        } else if (val instanceof byte[]) {
+            data.append("\\\\x");
+            for (byte b : (byte[]) val)
+                data.append(Character.forDigit((b >> 4) & 0xF, 16)).
+                    append(Character.forDigit(b & 0xF, 16));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Append the given date or time value in the text format of
+     * <code>COPY</code>. <code>java.util</code> and <code>java.sql</code>
+     * values are written in the JVM time zone, as the driver binds them, and
+     * timestamps carry the offset of that zone so that the session time zone
+     * of the server does not shift them. Returns false for years outside of
+     * 1 to 9999, which have no plain text form here.
+     */
+    private static boolean appendCopyTemporal(StringBuilder data, Object val) {
+        if (val instanceof java.sql.Date)
+            val = ((java.sql.Date) val).toLocalDate();
+        else if (val instanceof Time)
+            val = Instant.ofEpochMilli(((Time) val).getTime()).
+                atZone(ZoneId.systemDefault()).toLocalTime();
+        else if (val instanceof Timestamp)
+            val = ((Timestamp) val).toInstant().
+                atZone(ZoneId.systemDefault()).toOffsetDateTime();
+        else if (val instanceof Date)
+            val = Instant.ofEpochMilli(((Date) val).getTime()).
+                atZone(ZoneId.systemDefault()).toOffsetDateTime();
+
+        int year;
+        if (val instanceof LocalDate) {
+            year = ((LocalDate) val).getYear();
+            data.append(COPY_DATE.format((LocalDate) val));
+        } else if (val instanceof LocalDateTime) {
+            year = ((LocalDateTime) val).getYear();
+            data.append(COPY_TIMESTAMP.format((LocalDateTime) val));
+        } else if (val instanceof OffsetDateTime) {
+            year = ((OffsetDateTime) val).getYear();
+            data.append(COPY_TIMESTAMP_TZ.format((OffsetDateTime) val));
+        } else if (val instanceof LocalTime) {
+            year = 1;
+            data.append(COPY_TIME.format((LocalTime) val));
+        } else {
+            year = 1;
+            data.append(COPY_TIME_TZ.format((OffsetTime) val));
+        }
+        return year >= 1 && year <= 9999;
+    }
+
     /**
      * Get the native PostgreSQL Large Object Manager used for LOB handling.
      */
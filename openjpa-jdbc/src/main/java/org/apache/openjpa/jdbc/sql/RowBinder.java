@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.schema.Column;
+
+/**
+ * Binds the values of the rows of one table to a prepared statement.
+ * Subclasses are generated by {@link RowBinderGenerator} with one unrolled
+ * block per value, which binds primitive values of the column's own type
+ * through the matching typed setter of the dictionary. Values of any other
+ * type are bound through {@link DBDictionary#setTyped}, exactly as
+ * {@link RowImpl#flush} binds them.
+ *
+ * @since 3.2.3
+ */
+public abstract class RowBinder {
+
+    private Column[] _cols = null;
+
+    /**
+     * Set the columns of the table the binder was generated for.
+     */
+    void initialize(Column[] cols) {
+        _cols = cols;
+    }
+
+    /**
+     * The columns of the table the binder was generated for.
+     */
+    public final Column[] getColumns() {
+        return _cols;
+    }
+
+    /**
+     * Bind the values of the given row to the given statement, starting
+     * at the given parameter index.
+     *
+     * @return the index of the next parameter
+     */
+    public abstract int bind(PreparedStatement stmnt, int idx, RowImpl row,
+        DBDictionary dict, JDBCStore store)
+        throws SQLException;
+
+    /**
+     * Bind the value in the given slot of the row's value array through
+     * {@link DBDictionary#setTyped}, skipping the slots that
+     * {@link RowImpl#flush} skips.
+     *
+     * @return the index of the next parameter
+     */
+    protected final int bindValue(PreparedStatement stmnt, int idx,
+        RowImpl row, int slot, DBDictionary dict, JDBCStore store)
+        throws SQLException {
+        Object val = row.getVals()[slot];
+        int type = row.getTypes()[slot];
+        if (val == null)
+            return idx;
+
+        // null params in the WHERE clause use the NULL keyword instead
+        if (val == RowImpl.NULL) {
+            if (row.getAction() != Row.ACTION_INSERT && slot >= _cols.length)
+                return idx;
+            val = null;
+        }
+        if (val == null || type != RowImpl.RAW) {
+            dict.setTyped(stmnt, idx, val, _cols[slot % _cols.length], type,
+                store);
+            idx++;
+        }
+        return idx;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.security.AccessController;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.util.GeneratedClasses;
+import org.apache.openjpa.util.InternalException;
+
+import serp.bytecode.BCClass;
+import serp.bytecode.BCMethod;
+import serp.bytecode.Code;
+import serp.bytecode.Instruction;
+import serp.bytecode.JumpInstruction;
+import serp.bytecode.Project;
+
+/**
+ * Generates and caches a {@link RowBinder} per table. The generated code
+ * binds each primitive or wrapper value whose meta type is the Java type
+ * of its column with a constant slot, a direct cast and the dictionary's
+ * typed setter, rather than through the type switch of
+ * {@link DBDictionary#setTyped}. All other values, and values of another
+ * meta type, are bound through {@link DBDictionary#setTyped}.
+ *
+ * @since 3.2.3
+ */
+public class RowBinderGenerator {
+
+    private static final Localizer _loc = Localizer.forPackage
+        (RowBinderGenerator.class);
+
+    protected static final String POSTFIX = "$openjpabinder";
+
+    private final Map<Table, RowBinder> _binders = new ConcurrentHashMap<>();
+    private final Log _log;
+
+    public RowBinderGenerator(Log log) {
+        _log = log;
+    }
+
+    /**
+     * Return the binder for the table of the given row, generating it on
+     * first use or when the table's columns have changed. Returns null if
+     * the row does not hold the table's columns.
+     */
+    public RowBinder getRowBinder(RowImpl row) {
+        Column[] cols = row.getColumns();
+        if (cols.length == 0)
+            return null;
+        Table table = row.getTable();
+        if (table == null || cols != table.getColumns())
+            return null;
+
+        RowBinder binder = _binders.get(table);
+        if (binder == null || binder.getColumns() != cols) {
+            binder = generate(table, cols);
+            _binders.put(table, binder);
+        }
+        return binder;
+    }
+
+    /**
+     * Generate a binder for the given columns of the given table.
+     */
+    private RowBinder generate(Table table, Column[] cols) {
+        if (_log != null && _log.isTraceEnabled())
+            _log.trace(_loc.get("binder-generate", table));
+
+        Project project = new Project();
+        BCClass bc = project.loadClass(RowBinder.class.getName() + "$"
+            + System.identityHashCode(table) + "$"
+            + System.identityHashCode(cols) + POSTFIX);
+        bc.setSuperclass(RowBinder.class);
+        bc.addDefaultConstructor().makePublic();
+        addBindMethod(bc, cols);
+
+        Class<?> cls = GeneratedClasses.loadBCClass(bc,
+            AccessController.doPrivileged(J2DoPrivHelper.
+                getClassLoaderAction(RowBinder.class)));
+        RowBinder binder;
+        try {
+            binder = (RowBinder) cls.getConstructor((Class[]) null).
+                newInstance((Object[]) null);
+        } catch (Throwable t) {
+            throw new InternalException("cons-access", t).setFatal(true);
+        }
+        binder.initialize(cols);
+        return binder;
+    }
+
+    /**
+     * Implement the bind method with one block per set value, followed by
+     * one block per where value.
+     */
+    private void addBindMethod(BCClass bc, Column[] cols) {
+        // public int bind(PreparedStatement stmnt, int idx, RowImpl row,
+        //     DBDictionary dict, JDBCStore store)
+        BCMethod meth = bc.declareMethod("bind", int.class,
+            new Class[]{ PreparedStatement.class, int.class, RowImpl.class,
+                DBDictionary.class, JDBCStore.class });
+        meth.makePublic();
+        Code code = meth.getCode(true);
+
+        // Object[] vals = row.getVals();
+        int vals = code.getNextLocalsIndex();
+        code.aload().setParam(2);
+        code.invokevirtual().setMethod(RowImpl.class, "getVals",
+            Object[].class, null);
+        code.astore().setLocal(vals);
+
+        // int[] types = row.getTypes();
+        int types = code.getNextLocalsIndex();
+        code.aload().setParam(2);
+        code.invokevirtual().setMethod(RowImpl.class, "getTypes",
+            int[].class, null);
+        code.astore().setLocal(types);
+
+        // Column[] cols = getColumns();
+        int colsLocal = code.getNextLocalsIndex();
+        code.aload().setThis();
+        code.invokevirtual().setMethod(RowBinder.class, "getColumns",
+            Column[].class, null);
+        code.astore().setLocal(colsLocal);
+
+        int val = code.getNextLocalsIndex();
+        code.constant().setNull();
+        code.astore().setLocal(val);
+
+        // if (row.getAction() != Row.ACTION_DELETE), bind set values
+        code.aload().setParam(2);
+        code.invokevirtual().setMethod(RowImpl.class, "getAction",
+            int.class, null);
+        code.constant().setValue(Row.ACTION_DELETE);
+        Collection<Instruction> toWhere = new LinkedList<>();
+        toWhere.add(code.ificmpeq());
+
+        Collection<Instruction> jumps = new LinkedList<>();
+        for (int i = 0; i < cols.length; i++)
+            addBindBlock(code, cols[i], i, i, vals, types, colsLocal, val,
+                jumps);
+
+        // if (vals.length > cols.length), bind where values
+        Instruction where = code.aload().setLocal(vals);
+        setTarget(where, jumps);
+        setTarget(where, toWhere);
+        code.arraylength();
+        code.constant().setValue(cols.length);
+        Collection<Instruction> toEnd = new LinkedList<>();
+        toEnd.add(code.ificmple());
+
+        for (int i = 0; i < cols.length; i++)
+            addBindBlock(code, cols[i], cols.length + i, i, vals, types,
+                colsLocal, val, jumps);
+
+        // return idx;
+        Instruction end = code.iload().setParam(1);
+        setTarget(end, jumps);
+        setTarget(end, toEnd);
+        code.ireturn();
+
+        code.calculateMaxStack();
+        code.calculateMaxLocals();
+    }
+
+    /**
+     * Add the code binding the value in the given slot. Leaves the jumps
+     * to the code that follows in the given collection.
+     */
+    private void addBindBlock(Code code, Column col, int slot, int colIdx,
+        int vals, int types, int cols, int val, Collection<Instruction> jumps) {
+        // Object val = vals[<slot>];
+        setTarget(code.aload().setLocal(vals), jumps);
+        code.constant().setValue(slot);
+        code.aaload();
+        code.astore().setLocal(val);
+
+        // if (val != null)
+        code.aload().setLocal(val);
+        jumps.add(code.ifnull());
+
+        int type = col.getJavaType();
+        Collection<Instruction> generic = new LinkedList<>();
+        if (isTyped(type)) {
+            // if (val != RowImpl.NULL && types[<slot>] == <type>)
+            code.aload().setLocal(val);
+            code.getstatic().setField(RowImpl.class, "NULL", Object.class);
+            generic.add(code.ifacmpeq());
+            code.aload().setLocal(types);
+            code.constant().setValue(slot);
+            code.iaload();
+            code.constant().setValue(type);
+            generic.add(code.ificmpne());
+
+            // dict.set<Type>(stmnt, idx, (<type>) val, cols[<colIdx>]);
+            code.aload().setParam(3);
+            code.aload().setParam(0);
+            code.iload().setParam(1);
+            code.aload().setLocal(val);
+            Class<?> valType = addUnwrap(code, type);
+            code.aload().setLocal(cols);
+            code.constant().setValue(colIdx);
+            code.aaload();
+            code.invokevirtual().setMethod(DBDictionary.class,
+                getSetter(type), void.class, new Class[]{
+                    PreparedStatement.class, int.class, valType,
+                    Column.class });
+
+            // idx++;
+            code.iload().setParam(1);
+            code.constant().setValue(1);
+            code.iadd();
+            code.istore().setParam(1);
+            jumps.add(code.go2());
+        }
+
+        // idx = bindValue(stmnt, idx, row, <slot>, dict, store);
+        setTarget(code.aload().setThis(), generic);
+        code.aload().setParam(0);
+        code.iload().setParam(1);
+        code.aload().setParam(2);
+        code.constant().setValue(slot);
+        code.aload().setParam(3);
+        code.aload().setParam(4);
+        code.invokevirtual().setMethod(RowBinder.class, "bindValue",
+            int.class, new Class[]{ PreparedStatement.class, int.class,
+                RowImpl.class, int.class, DBDictionary.class,
+                JDBCStore.class });
+        code.istore().setParam(1);
+    }
+
+    /**
+     * Whether values of the given meta type are bound with a typed setter.
+     * Only primitives and their wrappers are; all other values go through
+     * {@link DBDictionary#setTyped}.
+     */
+    private static boolean isTyped(int type) {
+        return getSetter(type) != null;
+    }
+
+    /**
+     * The name of the typed dictionary setter for the given primitive or
+     * wrapper meta type.
+     */
+    private static String getSetter(int type) {
+        switch (type) {
+            case JavaTypes.BOOLEAN:
+            case JavaTypes.BOOLEAN_OBJ:
+                return "setBoolean";
+            case JavaTypes.BYTE:
+            case JavaTypes.BYTE_OBJ:
+                return "setByte";
+            case JavaTypes.CHAR:
+            case JavaTypes.CHAR_OBJ:
+                return "setChar";
+            case JavaTypes.DOUBLE:
+            case JavaTypes.DOUBLE_OBJ:
+                return "setDouble";
+            case JavaTypes.FLOAT:
+            case JavaTypes.FLOAT_OBJ:
+                return "setFloat";
+            case JavaTypes.INT:
+            case JavaTypes.INT_OBJ:
+                return "setInt";
+            case JavaTypes.LONG:
+            case JavaTypes.LONG_OBJ:
+                return "setLong";
+            case JavaTypes.SHORT:
+            case JavaTypes.SHORT_OBJ:
+                return "setShort";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Convert the value on the stack into the parameter type of the typed
+     * setter for the given meta type, and return that type.
+     */
+    private static Class<?> addUnwrap(Code code, int type) {
+        switch (type) {
+            case JavaTypes.BOOLEAN:
+            case JavaTypes.BOOLEAN_OBJ:
+                code.checkcast().setType(Boolean.class);
+                code.invokevirtual().setMethod(Boolean.class, "booleanValue",
+                    boolean.class, null);
+                return boolean.class;
+            case JavaTypes.CHAR:
+            case JavaTypes.CHAR_OBJ:
+                code.checkcast().setType(Character.class);
+                code.invokevirtual().setMethod(Character.class, "charValue",
+                    char.class, null);
+                return char.class;
+            default:
+                Class<?> prim = getPrimitive(type);
+                code.checkcast().setType(Number.class);
+                code.invokevirtual().setMethod(Number.class,
+                    prim.getName() + "Value", prim, null);
+                return prim;
+        }
+    }
+
+    /**
+     * The primitive type of the given numeric meta type.
+     */
+    private static Class<?> getPrimitive(int type) {
+        switch (type) {
+            case JavaTypes.BYTE:
+            case JavaTypes.BYTE_OBJ:
+                return byte.class;
+            case JavaTypes.DOUBLE:
+            case JavaTypes.DOUBLE_OBJ:
+                return double.class;
+            case JavaTypes.FLOAT:
+            case JavaTypes.FLOAT_OBJ:
+                return float.class;
+            case JavaTypes.INT:
+            case JavaTypes.INT_OBJ:
+                return int.class;
+            case JavaTypes.LONG:
+            case JavaTypes.LONG_OBJ:
+                return long.class;
+            default:
+                return short.class;
+        }
+    }
+
+    /**
+     * Set the given instruction as the target of all given jumps.
+     */
+    private static void setTarget(Instruction ins,
+        Collection<Instruction> jumps) {
+        for (Instruction jump : jumps)
+            ((JumpInstruction) jump).setTarget(ins);
+        jumps.clear();
+    }
+}
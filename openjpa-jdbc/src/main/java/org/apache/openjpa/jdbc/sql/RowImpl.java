@@ -880,7 +880,6 @@ public class RowImpl
      */
     private String getInsertSQL(DBDictionary dict) {
         StringBuilder buf = new StringBuilder();
-        StringBuilder vals = new StringBuilder();
         buf.append("INSERT INTO ").
             append(dict.getFullName(getTable(), false)).append(" (");
 
@@ -889,20 +888,54 @@ public class RowImpl
             if (_vals[i] == null)
                 continue;
 
-            if (hasVal) {
+            if (hasVal)
                 buf.append(", ");
-                vals.append(", ");
-            }
             buf.append(dict.getColumnDBName(_cols[i]));
+            hasVal = true;
+        }
+
+        buf.append(") VALUES (").append(getInsertValuesSQL(dict)).append(")");
+        return buf.toString();
+    }
+
+    /**
+     * Return the SQL for a prepared statement insert of this row followed
+     * by <code>count - 1</code> more rows that set the same columns, as
+     * a single multi-row <code>INSERT ... VALUES</code> statement.
+     */
+    public String getMultiRowInsertSQL(DBDictionary dict, int count) {
+        String sql = getSQL(dict);
+        if (count < 2 || getAction() != ACTION_INSERT)
+            return sql;
+
+        String vals = getInsertValuesSQL(dict);
+        StringBuilder buf = new StringBuilder(sql.length()
+            + (count - 1) * (vals.length() + 4));
+        buf.append(sql);
+        for (int i = 1; i < count; i++)
+            buf.append(", (").append(vals).append(")");
+        return buf.toString();
+    }
+
+    /**
+     * Return the parameter markers and raw values of an insert of this row.
+     */
+    private String getInsertValuesSQL(DBDictionary dict) {
+        StringBuilder vals = new StringBuilder();
+        boolean hasVal = false;
+        for (int i = 0; i < _cols.length; i++) {
+            if (_vals[i] == null)
+                continue;
+
+            if (hasVal)
+                vals.append(", ");
             if (_types[i] == RAW)
                 vals.append(_vals[i]);
             else
                 vals.append(dict.getMarkerForInsertUpdate(_cols[i], _vals[i]));
             hasVal = true;
         }
-
-        buf.append(") VALUES (").append(vals.toString()).append(")");
-        return buf.toString();
+        return vals.toString();
     }
 
     /**
@@ -953,6 +986,18 @@ public class RowImpl
         return _vals.length;
     }
 
+    /**
+     * The number of parameters that {@link #flush} sets for an insert of
+     * this row.
+     */
+    public int getInsertParameterCount() {
+        int count = 0;
+        for (int i = 0; i < _cols.length; i++)
+            if (_vals[i] != null && (_vals[i] == NULL || _types[i] != RAW))
+                count++;
+        return count;
+    }
+
     /**
      * Flush the row's values to the given prepared statement.
      */
@@ -968,6 +1013,12 @@ public class RowImpl
     public void flush(PreparedStatement stmnt, int idx, DBDictionary dict,
         JDBCStore store)
         throws SQLException {
+        RowBinder binder = dict.getRowBinder(this);
+        if (binder != null) {
+            binder.bind(stmnt, idx, this, dict, store);
+            setFlushed(true);
+            return;
+        }
 
         // this simple method works because the SQL is always prepared
         // based on the indexing of the columns in the table object -- the
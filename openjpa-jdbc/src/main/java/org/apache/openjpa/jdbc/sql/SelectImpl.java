@@ -37,6 +37,9 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
 import org.apache.openjpa.jdbc.kernel.EagerFetchModes;
@@ -44,6 +47,7 @@ import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
 import org.apache.openjpa.jdbc.kernel.JDBCLockManager;
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.kernel.JDBCStoreManager;
+import org.apache.openjpa.jdbc.kernel.PessimisticLockManager;
 import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.meta.FieldMapping;
 import org.apache.openjpa.jdbc.meta.Joinable;
@@ -52,6 +56,7 @@ import org.apache.openjpa.jdbc.meta.strats.RelationStrategies;
 import org.apache.openjpa.jdbc.schema.Column;
 import org.apache.openjpa.jdbc.schema.ForeignKey;
 import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.kernel.LockLevels;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.kernel.exps.Context;
 import org.apache.openjpa.kernel.exps.Value;
@@ -433,7 +438,10 @@ public class SelectImpl
         boolean forUpdate = false;
         if (!isAggregate() && _grouping == null) {
             JDBCLockManager lm = store.getLockManager();
-            if (lm != null)
+            if (lm instanceof PessimisticLockManager)
+                forUpdate = ((PessimisticLockManager) lm).selectForUpdate(this,
+                    lockLevel, fetch);
+            else if (lm != null)
                 forUpdate = lm.selectForUpdate(this, lockLevel);
         }
 
@@ -446,12 +454,15 @@ public class SelectImpl
         PreparedStatement stmnt = null;
         ResultSet rs = null;
         try {
+            if (isLRS && rsType == ResultSet.TYPE_FORWARD_ONLY)
+                conn = _dict.prepareCursorConnection(conn, store, fetch);
             if (isLRS)
                 stmnt = prepareStatement(conn, sql, fetch, rsType, -1, true);
             else
                 stmnt = prepareStatement(conn, sql, null, rsType, -1, false);
 
             _dict.setTimeouts(stmnt, fetch, forUpdate);
+            _dict.setMaxRows(stmnt, this, fetch, forUpdate);
 
             rs = executeQuery(conn, stmnt, sql, isLRS, store);
         } catch (SQLException se) {
@@ -469,34 +480,200 @@ public class SelectImpl
      * to the given result.
      */
     private static void addEagerResults(SelectResult res, SelectImpl sel,
-        JDBCStore store, JDBCFetchConfiguration fetch)
+        Connection conn, JDBCStore store, JDBCFetchConfiguration fetch)
         throws SQLException {
         if (sel._eager == null)
             return;
 
+        // start the independent eager selects on their own connections,
+        // if the dictionary allows it
+        Map<Object, FutureTask<Result>> concurrent =
+            startConcurrentEagerSelects(sel, conn, store, fetch);
+
         // execute eager selects
         Map.Entry entry;
         Result eres;
         Map eager;
+        try {
+            for (Object o : sel._eager.entrySet()) {
+                entry = (Map.Entry) o;
+
+                // simulated batched selects for inner/outer joins; for
+                // separate selects, don't pass on lock level, because
+                // they're probably for relations and therefore should use
+                // default level
+                if (entry.getValue() == sel)
+                    eres = res;
+                else if (concurrent != null
+                    && concurrent.containsKey(entry.getKey()))
+                    eres = getConcurrentResult(concurrent.remove
+                        (entry.getKey()), (SelectExecutor) entry.getValue(),
+                        store, fetch);
+                else
+                    eres = ((SelectExecutor) entry.getValue()).execute(store,
+                        fetch);
+
+                eager = res.getEagerMap(false);
+                if (eager == null) {
+                    eager = new HashMap();
+                    res.setEagerMap(eager);
+                }
+                eager.put(entry.getKey(), eres);
+            }
+        } finally {
+            // selects we never got to are cancelled if they have not
+            // started yet, or their results are closed once they finish
+            if (concurrent != null && !concurrent.isEmpty()) {
+                Executor executor = sel._dict.getEagerSelectExecutor();
+                Log log = sel._conf.getLog(JDBCConfiguration.LOG_JDBC);
+                for (FutureTask<Result> task : concurrent.values())
+                    if (!task.cancel(false))
+                        executor.execute(() -> closeConcurrentResult(task,
+                            log));
+            }
+        }
+    }
+
+    /**
+     * Start the eager selects of the given select that can run at the same
+     * time on connections of their own, if at least two of them qualify.
+     * Their SQL is built on the calling thread, and each select gets a
+     * clone of the fetch configuration, so that the executor's threads only
+     * share the store to get their connections from.
+     *
+     * @return the started selects keyed on their eager keys, or null
+     */
+    private static Map<Object, FutureTask<Result>> startConcurrentEagerSelects
+        (SelectImpl sel, Connection conn, JDBCStore store,
+        JDBCFetchConfiguration fetch)
+        throws SQLException {
+        Executor executor = sel._dict.getEagerSelectExecutor();
+        if (executor == null)
+            return null;
+
+        Map<Object, SelectImpl> sels = null;
+        Map.Entry entry;
         for (Object o : sel._eager.entrySet()) {
             entry = (Map.Entry) o;
+            if (entry.getValue() == sel
+                || !(entry.getValue() instanceof SelectImpl))
+                continue;
 
-            // simulated batched selects for inner/outer joins; for separate
-            // selects, don't pass on lock level, because they're probably
-            // for relations and therefore should use default level
-            if (entry.getValue() == sel)
-                eres = res;
-            else
-                eres = ((SelectExecutor) entry.getValue()).execute(store,
-                        fetch);
+            // selects with eager selects of their own stay on the context's
+            // connection
+            SelectImpl esel = (SelectImpl) entry.getValue();
+            if (esel.isLRS() || esel.hasMultipleSelects())
+                continue;
+            if (sels == null)
+                sels = new HashMap<>();
+            sels.put(entry.getKey(), esel);
+        }
+        if (sels == null || sels.size() < 2
+            || !isConcurrentEagerSafe(conn, store, fetch))
+            return null;
 
-            eager = res.getEagerMap(false);
-            if (eager == null) {
-                eager = new HashMap();
-                res.setEagerMap(eager);
-            }
-            eager.put(entry.getKey(), eres);
+        Map<Object, FutureTask<Result>> tasks = new HashMap<>();
+        for (Map.Entry<Object, SelectImpl> e : sels.entrySet()) {
+            SelectImpl esel = e.getValue();
+            SQLBuffer sql = esel.toSelect(false, fetch);
+            JDBCFetchConfiguration efetch =
+                (JDBCFetchConfiguration) fetch.clone();
+            FutureTask<Result> task = new FutureTask<>(() ->
+                esel.executeOnNewConnection(sql, store, efetch));
+            executor.execute(task);
+            tasks.put(e.getKey(), task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Whether a new connection sees the same data as the given connection
+     * of the context. This is only the case outside of managed and
+     * datastore transactions, when the connection is in auto-commit mode
+     * with no transaction of its own, no lock is requested, and neither the
+     * fetch configuration nor the connection raise the isolation level to
+     * repeatable read or above.
+     */
+    private static boolean isConcurrentEagerSafe(Connection conn,
+        JDBCStore store, JDBCFetchConfiguration fetch)
+        throws SQLException {
+        StoreContext ctx = store.getContext();
+        if (ctx.isManaged() || ctx.isStoreActive()
+            || fetch.getReadLockLevel() != LockLevels.LOCK_NONE
+            || fetch.getIsolation() >= Connection.TRANSACTION_REPEATABLE_READ)
+            return false;
+        return conn.getAutoCommit() && conn.getTransactionIsolation()
+            < Connection.TRANSACTION_REPEATABLE_READ;
+    }
+
+    /**
+     * Wait for the result of a concurrent eager select. A select that no
+     * thread has picked up yet is run on the context's connection instead,
+     * so that waiting for it never depends on a free executor thread or
+     * pool connection.
+     */
+    private static Result getConcurrentResult(FutureTask<Result> task,
+        SelectExecutor sel, JDBCStore store, JDBCFetchConfiguration fetch)
+        throws SQLException {
+        if (task.cancel(false))
+            return sel.execute(store, fetch);
+        try {
+            return task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new SQLException(cause);
+        }
+    }
+
+    /**
+     * Close the result of a concurrent eager select that was started but
+     * never used, once the select finishes.
+     */
+    private static void closeConcurrentResult(FutureTask<Result> task,
+        Log log) {
+        try {
+            task.get().close();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            if (log.isWarnEnabled())
+                log.warn(_loc.get("eager-select-unused", ee.getCause()),
+                    ee.getCause());
+        } catch (RuntimeException re) {
+            if (log.isWarnEnabled())
+                log.warn(_loc.get("eager-select-unused", re), re);
+        }
+    }
+
+    /**
+     * Execute the given SQL of this select on a new connection of the given
+     * store, which the returned result closes.
+     */
+    private Result executeOnNewConnection(SQLBuffer sql, JDBCStore store,
+        JDBCFetchConfiguration fetch)
+        throws SQLException {
+        Connection conn = store.getNewConnection();
+        PreparedStatement stmnt = null;
+        ResultSet rs = null;
+        try {
+            stmnt = prepareStatement(conn, sql, null,
+                ResultSet.TYPE_FORWARD_ONLY, -1, false);
+            _dict.setTimeouts(stmnt, fetch, false);
+            rs = executeQuery(conn, stmnt, sql, false, store);
+        } catch (SQLException se) {
+            if (stmnt != null)
+                try { stmnt.close(); } catch (SQLException se2) {}
+            try { conn.close(); } catch (SQLException se2) {}
+            throw se;
         }
+        return getEagerResult(conn, stmnt, rs, store, fetch, false, sql);
     }
 
 
@@ -563,7 +740,7 @@ public class SelectImpl
         res.setStore(store);
         res.setLocking(forUpdate);
         try {
-            addEagerResults(res, this, store, fetch);
+            addEagerResults(res, this, conn, store, fetch);
         } catch (SQLException se) {
             res.close();
             throw se;
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.kernel;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.meta.VersionStrategy;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.PrimaryKey;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.jdbc.sql.PrimaryRow;
+import org.apache.openjpa.jdbc.sql.Row;
+import org.apache.openjpa.jdbc.sql.RowImpl;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.util.OptimisticException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Verifies the updates and deletes of a batch whose update counts do not
+ * tell which rows took effect. The rows are checked with UNION ALL queries
+ * of a bounded number of rows each, which must single out the same failed
+ * rows as checking each row with its own query.
+ */
+public class BatchVerifyTest {
+
+    private static final int ROWS = 7;
+
+    // reports how many rows of a batch were updated, but not which
+    static class Dictionary extends DBDictionary {
+        int updated;
+
+        Dictionary() {
+            reportsSuccessNoInfoOnBatchUpdates = true;
+        }
+
+        @Override
+        public int getBatchUpdateCount(PreparedStatement ps) {
+            return updated;
+        }
+    }
+
+    // runs the batch and the verification queries against a map of rows
+    static class Manager extends BatchingPreparedStatementManagerImpl {
+        final Map<Long, Long> db;
+        final int maxRows;
+        final List<String> queries = new ArrayList<>();
+
+        Manager(JDBCStore store, Map<Long, Long> db, int maxRows) {
+            super(store, mock(Connection.class), 100);
+            this.db = db;
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(String sql)
+            throws java.sql.SQLException {
+            if (!sql.startsWith("SELECT")) {
+                PreparedStatement ps = mock(PreparedStatement.class);
+                int[] counts = new int[ROWS];
+                Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+                when(ps.executeBatch()).thenReturn(counts);
+                return ps;
+            }
+
+            queries.add(sql);
+            Map<Integer, Object> params = new TreeMap<>();
+            PreparedStatement ps = mock(PreparedStatement.class, inv -> {
+                Object[] args = inv.getArguments();
+                if (inv.getMethod().getName().startsWith("set")
+                    && args.length >= 2 && args[0] instanceof Integer)
+                    params.put((Integer) args[0], args[1]);
+                return null;
+            });
+            when(ps.executeQuery()).thenAnswer(inv -> {
+                Iterator<Object> vals = params.values().iterator();
+                List<Integer> found = new ArrayList<>();
+                for (String select : sql.split(" UNION ALL ")) {
+                    int idx = Integer.parseInt(select.split(" ")[1]);
+                    Long id = (Long) vals.next();
+                    Long version = select.contains("VER = ?")
+                        ? (Long) vals.next() : null;
+                    if (db.containsKey(id) && (version == null
+                        || version.equals(db.get(id))))
+                        found.add(idx);
+                }
+                Iterator<Integer> itr = found.iterator();
+                int[] current = new int[1];
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.next()).thenAnswer(n -> {
+                    if (!itr.hasNext())
+                        return false;
+                    current[0] = itr.next();
+                    return true;
+                });
+                when(rs.getInt(1)).thenAnswer(n -> current[0]);
+                return rs;
+            });
+            return ps;
+        }
+
+        @Override
+        protected int getMaxRowsPerVerify(int paramsPerRow) {
+            return maxRows > 0 ? maxRows : super.getMaxRowsPerVerify(paramsPerRow);
+        }
+    }
+
+    private Dictionary dict;
+    private JDBCStore store;
+    private Table table;
+    private Column id;
+    private Column version;
+
+    @Before
+    public void setUp() {
+        dict = new Dictionary();
+        JDBCConfiguration conf = mock(JDBCConfiguration.class);
+        when(conf.getLog(anyString())).thenReturn(mock(Log.class));
+        store = mock(JDBCStore.class);
+        when(store.getDBDictionary()).thenReturn(dict);
+        when(store.getConfiguration()).thenReturn(conf);
+
+        table = new Table("T", null);
+        id = table.addColumn("ID");
+        id.setType(Types.BIGINT);
+        version = table.addColumn("VER");
+        version.setType(Types.BIGINT);
+        version.setVersionStrategy(mock(VersionStrategy.class));
+        PrimaryKey pk = table.addPrimaryKey();
+        pk.addColumn(id);
+    }
+
+    @Test
+    public void updatesVerifiedInChunks() throws Exception {
+        // rows 2 and 5 were changed by another writer to another version
+        Map<Long, Long> db = new HashMap<>();
+        for (long i = 0; i < ROWS; i++)
+            db.put(i, i == 2 || i == 5 ? 9L : 1L);
+        dict.updated = ROWS - 2;
+
+        List<Object> perRow = failed(flush(db, 1, Row.ACTION_UPDATE), ROWS);
+        assertEquals(Arrays.asList("row2", "row5"), perRow);
+        assertEquals(perRow, failed(flush(db, 3, Row.ACTION_UPDATE), 3));
+        assertEquals(perRow, failed(flush(db, 0, Row.ACTION_UPDATE), 1));
+    }
+
+    @Test
+    public void deletesVerifiedInChunks() throws Exception {
+        // rows 1 and 4 were not deleted
+        Map<Long, Long> db = new HashMap<>();
+        db.put(1L, 1L);
+        db.put(4L, 1L);
+        dict.updated = ROWS - 2;
+
+        List<Object> perRow = failed(flush(db, 1, Row.ACTION_DELETE), ROWS);
+        assertEquals(Arrays.asList("row1", "row4"), perRow);
+        assertEquals(perRow, failed(flush(db, 2, Row.ACTION_DELETE), 4));
+        assertEquals(perRow, failed(flush(db, 0, Row.ACTION_DELETE), 1));
+    }
+
+    @Test
+    public void chunksBoundByParameterLimit() throws Exception {
+        Map<Long, Long> db = new HashMap<>();
+        for (long i = 0; i < ROWS; i++)
+            db.put(i, i == 6 ? 9L : 1L);
+        dict.updated = ROWS - 1;
+
+        // each update binds its key and version
+        dict.maxParametersPerStatement = 4;
+        assertEquals(Arrays.asList("row6"),
+            failed(flush(db, 0, Row.ACTION_UPDATE), 4));
+    }
+
+    @Test
+    public void unexpectedFailuresFailAllRows() throws Exception {
+        Map<Long, Long> db = new HashMap<>();
+        for (long i = 0; i < ROWS; i++)
+            db.put(i, i == 3 ? 9L : 1L);
+
+        // the batch lost two rows, but only one can be found
+        dict.updated = ROWS - 2;
+        Manager mgr = flush(db, 0, Row.ACTION_UPDATE);
+        assertEquals(ROWS, mgr.getExceptions().size());
+
+        // the batch lost no row
+        dict.updated = ROWS;
+        mgr = flush(db, 0, Row.ACTION_UPDATE);
+        assertEquals(0, mgr.getExceptions().size());
+        assertEquals(0, mgr.queries.size());
+    }
+
+    private Manager flush(Map<Long, Long> db, int maxRows, int action)
+        throws Exception {
+        Manager mgr = new Manager(store, db, maxRows);
+        for (long i = 0; i < ROWS; i++) {
+            RowImpl row = new PrimaryRow(table, action, null);
+            if (action == Row.ACTION_UPDATE) {
+                row.setLong(version, 1L);
+                row.whereLong(version, 0L);
+            }
+            row.whereLong(id, i);
+            row.setFailedObject("row" + i);
+            mgr.flushAndUpdate(row);
+        }
+        mgr.flushBatch();
+        return mgr;
+    }
+
+    /**
+     * The failed objects of the given flush, checking that its rows were
+     * verified with the given number of queries.
+     */
+    private static List<Object> failed(Manager mgr, int queries) {
+        assertEquals(queries, mgr.queries.size());
+        List<Object> failed = new ArrayList<>();
+        for (Exception e : mgr.getExceptions())
+            failed.add(((OptimisticException) e).getFailedObject());
+        return failed;
+    }
+}
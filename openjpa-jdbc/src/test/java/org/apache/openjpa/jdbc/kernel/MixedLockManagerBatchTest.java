@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.kernel;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.jdbc.identifier.DBIdentifier;
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.FieldMappingInfo;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.jdbc.sql.SQLBuffer;
+import org.apache.openjpa.jdbc.sql.SQLFactory;
+import org.apache.openjpa.jdbc.sql.Select;
+import org.apache.openjpa.kernel.DelegatingStoreManager;
+import org.apache.openjpa.kernel.FetchConfiguration;
+import org.apache.openjpa.kernel.MixedLockLevels;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.lib.log.Log;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Decides whether the rows of instances can be locked in batches. On
+ * databases that cannot lock multiple tables at once, an instance whose
+ * own mapping stores fields in a secondary table must be locked one by
+ * one, even if the base mapping of its hierarchy has no secondary table.
+ */
+public class MixedLockManagerBatchTest {
+
+    private final MixedLockManager lockManager = new MixedLockManager();
+
+    // counts the batched selects and leaves the per-instance locks alone
+    static class RecordingLockManager extends MixedLockManager {
+        final List<String> batches = new ArrayList<>();
+        final List<OpenJPAStateManager> locked = new ArrayList<>();
+
+        @Override
+        protected PreparedStatement prepareStatement(Connection conn,
+            SQLBuffer sql) {
+            batches.add(sql.getSQL());
+            return mock(PreparedStatement.class);
+        }
+
+        @Override
+        protected ResultSet executeQuery(Connection conn,
+            PreparedStatement stmnt, SQLBuffer sql) throws SQLException {
+            int[] rows = { 2 };
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.next()).thenAnswer(inv -> rows[0]-- > 0);
+            return rs;
+        }
+
+        @Override
+        protected void lockInternal(OpenJPAStateManager sm, int level,
+            int timeout, Object sdata, boolean postLockVersionCheck) {
+            locked.add(sm);
+        }
+    }
+
+    @Test
+    public void lockAllBatchesBaseInstancesOnly() {
+        DBDictionary dict = new DBDictionary();
+        dict.supportsLockingWithMultipleTables = false;
+        dict.supportsQueryTimeout = false;
+        RecordingLockManager mgr = newLockManager(dict);
+
+        ClassMapping base = mapping(null, field(null));
+        ClassMapping sub = mapping(base, field(null), field("SUB_SEC"));
+        List<OpenJPAStateManager> subs = Arrays.asList(sm(sub), sm(sub));
+        mgr.lockAll(subs, MixedLockLevels.LOCK_PESSIMISTIC_WRITE, -1, null);
+        assertEquals(0, mgr.batches.size());
+        assertEquals(subs, mgr.locked);
+
+        List<OpenJPAStateManager> bases = Arrays.asList(sm(base), sm(base));
+        mgr.lockAll(bases, MixedLockLevels.LOCK_PESSIMISTIC_WRITE, -1, null);
+        assertEquals(1, mgr.batches.size());
+    }
+
+    @Test
+    public void subclassSecondaryTableLockedOneByOne() {
+        ClassMapping base = mapping(null, field(null));
+        ClassMapping sub = mapping(base, field(null), field("SUB_SEC"));
+        DBDictionary dict = new DBDictionary();
+        dict.supportsLockingWithMultipleTables = false;
+
+        assertTrue(lockManager.isBatchLockable(base, dict));
+        assertFalse(lockManager.isBatchLockable(sub, dict));
+
+        dict.supportsLockingWithMultipleTables = true;
+        assertTrue(lockManager.isBatchLockable(sub, dict));
+    }
+
+    @Test
+    public void compoundBaseKeyLockedOneByOne() {
+        ClassMapping base = mapping(null, field(null));
+        when(base.getPrimaryKeyColumns()).thenReturn(
+            new Column[]{ mock(Column.class), mock(Column.class) });
+        ClassMapping sub = mapping(base, field(null));
+        DBDictionary dict = new DBDictionary();
+
+        assertFalse(lockManager.isBatchLockable(sub, dict));
+    }
+
+    private static RecordingLockManager newLockManager(DBDictionary dict) {
+        Select select = mock(Select.class);
+        when(select.getColumnAlias(any(Column.class))).thenReturn("t0.ID");
+        when(select.toSelect(anyBoolean(), any())).thenAnswer(inv ->
+            new SQLBuffer(dict).append("SELECT t0.ID FROM T t0 FOR UPDATE"));
+        SQLFactory factory = mock(SQLFactory.class);
+        when(factory.newSelect()).thenReturn(select);
+
+        JDBCStoreManager store = mock(JDBCStoreManager.class);
+        when(store.getDBDictionary()).thenReturn(dict);
+        when(store.getSQLFactory()).thenReturn(factory);
+        when(store.getFetchConfiguration()).thenReturn(
+            mock(JDBCFetchConfiguration.class));
+        when(store.getConnection()).thenReturn(mock(Connection.class));
+
+        OpenJPAConfiguration conf = mock(OpenJPAConfiguration.class);
+        when(conf.getLog(anyString())).thenReturn(mock(Log.class));
+        DelegatingStoreManager delegate = mock(DelegatingStoreManager.class);
+        when(delegate.getInnermostDelegate()).thenReturn(store);
+        StoreContext ctx = mock(StoreContext.class);
+        when(ctx.getConfiguration()).thenReturn(conf);
+        when(ctx.getStoreManager()).thenReturn(delegate);
+        when(ctx.getFetchConfiguration()).thenReturn(
+            mock(FetchConfiguration.class));
+        when(ctx.isStoreActive()).thenReturn(true);
+        when(store.getContext()).thenReturn(ctx);
+
+        RecordingLockManager mgr = new RecordingLockManager();
+        mgr.setContext(ctx);
+        return mgr;
+    }
+
+    private static OpenJPAStateManager sm(ClassMapping mapping) {
+        OpenJPAStateManager sm = mock(OpenJPAStateManager.class);
+        when(sm.getMetaData()).thenReturn(mapping);
+        when(sm.isPersistent()).thenReturn(true);
+        return sm;
+    }
+
+    private static ClassMapping mapping(ClassMapping sup,
+        FieldMapping... fields) {
+        ClassMapping mapping = mock(ClassMapping.class);
+        when(mapping.getJoinablePCSuperclassMapping()).thenReturn(sup);
+        when(mapping.getPrimaryKeyColumns()).thenReturn(
+            new Column[]{ mock(Column.class) });
+        when(mapping.getFieldMappings()).thenReturn(fields);
+        return mapping;
+    }
+
+    private static FieldMapping field(String table) {
+        FieldMappingInfo info = mock(FieldMappingInfo.class);
+        when(info.getTableIdentifier()).thenReturn(table == null
+            ? DBIdentifier.NULL : DBIdentifier.newTable(table));
+        FieldMapping field = mock(FieldMapping.class);
+        when(field.getMappingInfo()).thenReturn(info);
+        return field;
+    }
+}
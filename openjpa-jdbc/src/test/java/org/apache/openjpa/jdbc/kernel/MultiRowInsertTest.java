@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.kernel;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.jdbc.sql.H2Dictionary;
+import org.apache.openjpa.jdbc.sql.MariaDBDictionary;
+import org.apache.openjpa.jdbc.sql.MySQLDictionary;
+import org.apache.openjpa.jdbc.sql.PostgresDictionary;
+import org.apache.openjpa.jdbc.sql.Row;
+import org.apache.openjpa.jdbc.sql.RowImpl;
+import org.apache.openjpa.jdbc.sql.SQLServerDictionary;
+import org.apache.openjpa.lib.log.Log;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Flushes batches of inserts through BatchingPreparedStatementManagerImpl.
+ * Multi-row inserts must stay off unless they are configured, because a
+ * failure of a multi-row statement cannot be traced back to its row.
+ */
+public class MultiRowInsertTest {
+
+    private static final String SQL = "INSERT INTO T (A, B) VALUES (?, ?)";
+
+    @Test
+    public void multiRowInsertsOffByDefault() {
+        DBDictionary[] dicts = { new H2Dictionary(), new MariaDBDictionary(),
+            new MySQLDictionary(), new PostgresDictionary(),
+            new SQLServerDictionary(), new DBDictionary() };
+        for (DBDictionary dict : dicts)
+            assertTrue(dict.getClass().getSimpleName(),
+                dict.getMaxRowsPerInsert(2) <= 1);
+    }
+
+    @Test
+    public void parameterLimitCapsRows() {
+        DBDictionary dict = new SQLServerDictionary();
+        dict.maxRowsPerInsert = 1000;
+        assertEquals(1000, dict.getMaxRowsPerInsert(2));
+        assertEquals(21, dict.getMaxRowsPerInsert(100));
+    }
+
+    @Test
+    public void defaultBatchKeepsOneRowPerInsert() throws Exception {
+        DBDictionary dict = new MySQLDictionary();
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(conn.prepareStatement(SQL)).thenReturn(ps);
+        when(ps.executeBatch()).thenReturn(new int[]{ 1, 1, 1 });
+
+        RowImpl[] rows = { row(), row(), row() };
+        flush(dict, conn, rows);
+
+        verify(ps, times(3)).addBatch();
+        verify(ps).executeBatch();
+        for (RowImpl row : rows)
+            verify(row, never()).getMultiRowInsertSQL(any(), anyInt());
+    }
+
+    @Test
+    public void configuredBatchUsesMultiRowInserts() throws Exception {
+        DBDictionary dict = new MySQLDictionary();
+        dict.maxRowsPerInsert = 2;
+        Connection conn = mock(Connection.class);
+        PreparedStatement ps2 = mock(PreparedStatement.class);
+        PreparedStatement ps1 = mock(PreparedStatement.class);
+        when(conn.prepareStatement("MULTI2")).thenReturn(ps2);
+        when(conn.prepareStatement("MULTI1")).thenReturn(ps1);
+        when(ps2.executeUpdate()).thenReturn(2);
+        when(ps1.executeUpdate()).thenReturn(1);
+
+        RowImpl[] rows = { row(), row(), row() };
+        flush(dict, conn, rows);
+
+        // three rows go out as one statement of two rows and one of one
+        verify(ps2).executeUpdate();
+        verify(ps1).executeUpdate();
+        verify(rows[0]).flush(eq(ps2), eq(1), eq(dict), any());
+        verify(rows[1]).flush(eq(ps2), eq(3), eq(dict), any());
+        verify(rows[2]).flush(eq(ps1), eq(1), eq(dict), any());
+        verify(ps2, never()).addBatch();
+    }
+
+    private static void flush(DBDictionary dict, Connection conn,
+        RowImpl[] rows) throws Exception {
+        JDBCConfiguration conf = mock(JDBCConfiguration.class);
+        when(conf.getLog(anyString())).thenReturn(mock(Log.class));
+        JDBCStore store = mock(JDBCStore.class);
+        when(store.getDBDictionary()).thenReturn(dict);
+        when(store.getConfiguration()).thenReturn(conf);
+        BatchingPreparedStatementManagerImpl psMgr =
+            new BatchingPreparedStatementManagerImpl(store, conn, -1);
+        for (RowImpl row : rows)
+            psMgr.flushAndUpdate(row);
+        psMgr.flushBatch();
+    }
+
+    private static RowImpl row() {
+        Table table = mock(Table.class);
+        when(table.getAutoAssignedColumns()).thenReturn(new Column[0]);
+        RowImpl row = mock(RowImpl.class);
+        when(row.getAction()).thenReturn(Row.ACTION_INSERT);
+        when(row.getTable()).thenReturn(table);
+        when(row.getSQL(any())).thenReturn(SQL);
+        when(row.getInsertParameterCount()).thenReturn(2);
+        when(row.getMultiRowInsertSQL(any(), eq(2))).thenReturn("MULTI2");
+        when(row.getMultiRowInsertSQL(any(), eq(1))).thenReturn("MULTI1");
+        return row;
+    }
+}
@@ -20,15 +20,33 @@
 package org.apache.openjpa.jdbc.kernel;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.conf.Compatibility;
 import org.apache.openjpa.kernel.*;
+import org.apache.openjpa.kernel.exps.Parameter;
+import org.apache.openjpa.lib.util.OrderedMap;
+import org.apache.openjpa.persistence.EntityManagerImpl;
+import org.apache.openjpa.persistence.EntityManagerImplExt;
+import org.apache.openjpa.persistence.OpenJPAQuery;
+import org.apache.openjpa.persistence.criteria.OpenJPACriteriaBuilder;
+import org.apache.openjpa.persistence.criteria.OpenJPACriteriaQuery;
 import org.apache.openjpa.util.CacheMap;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import javax.persistence.criteria.ParameterExpression;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 
 public class PreparedQueryCacheIT {
@@ -151,6 +169,169 @@ public class PreparedQueryCacheIT {
         assertTrue(uncachables.containsKey(queryId)); //deve essere nella map excluded
 
     }
-  
-}
 
+    @Test
+    public void criteriaQueryRebuiltWithNewParameters() throws Exception {
+        String fingerprint = "SELECT p FROM Person p WHERE p.age > :minAge";
+
+        //Usiamo una PreparedQueryCacheImpl a parte, così da non toccare le CacheMap condivise dagli altri test
+        PreparedQueryCacheImpl cache = new PreparedQueryCacheImpl();
+        cache.endConfiguration();
+
+        //In cache mettiamo la prepared query che la prima esecuzione della criteria query avrebbe lasciato: l'SQL
+        //ha un solo parametro, nella posizione 0, che corrisponde al parametro con nome "minAge"
+        PreparedQueryImpl pq = cachePreparedQuery(cache, fingerprint,
+            "SELECT t0.NAME FROM PERSON t0 WHERE t0.AGE > ?", "minAge");
+
+        List<Map<?, ?>> executions = new ArrayList<>();
+        org.apache.openjpa.kernel.Query kernelQuery = kernelQuery(new OrderedMap<>(), executions);
+        DelegatingBroker broker = mock(DelegatingBroker.class);
+        Mockito.when(broker.newQuery(QueryLanguages.LANG_PREPARED_SQL, pq)).thenReturn(kernelQuery);
+        EntityManagerImpl em = entityManager(cache, broker);
+
+        //Ricostruiamo la stessa criteria query due volte, ogni volta con una nuova espressione per il parametro e un
+        //nuovo valore: entrambe devono usare la prepared query in cache, e ognuna deve vedere i risultati del suo valore
+        assertEquals(Arrays.asList("Bruno", "Carla", "Dario"), execute(em, fingerprint, 30));
+        assertEquals(Arrays.asList("Carla", "Dario"), execute(em, fingerprint, 50));
+
+        Mockito.verify(broker, Mockito.times(2)).newQuery(QueryLanguages.LANG_PREPARED_SQL, pq);
+        Mockito.verify(broker, Mockito.never()).newQuery(eq(OpenJPACriteriaBuilder.LANG_CRITERIA), any());
+        assertEquals(Collections.singletonMap(0, 30), executions.get(0));
+        assertEquals(Collections.singletonMap(0, 50), executions.get(1));
+        assertSame(pq, cache.get(fingerprint)); //la prepared query non deve essere stata invalidata
+    }
+
+    @Test
+    public void literalQueriesShareOnePreparedQuery() throws Exception {
+        String parameterized = "SELECT p FROM Person p WHERE p.age > :_lit0 AND p.city = :city";
+
+        //Con l'auto-parametrizzazione attiva, le query che differiscono solo per i loro letterali devono usare la
+        //stessa prepared query, identificata dalla stringa in cui i letterali sono sostituiti da parametri sintetici
+        PreparedQueryCacheImpl cache = new PreparedQueryCacheImpl();
+        cache.setAutoParameterize(true);
+        cache.endConfiguration();
+        PreparedQueryImpl pq = cachePreparedQuery(cache, parameterized,
+            "SELECT t0.NAME FROM PERSON t0 WHERE t0.AGE > ? AND t0.CITY = ?", "_lit0", "city");
+
+        OrderedMap<Object, Class<?>> paramTypes = new OrderedMap<>();
+        paramTypes.put("_lit0", Long.class);
+        paramTypes.put("city", String.class);
+        List<Map<?, ?>> executions = new ArrayList<>();
+        org.apache.openjpa.kernel.Query kernelQuery = kernelQuery(paramTypes, executions);
+        DelegatingBroker broker = mock(DelegatingBroker.class);
+        Mockito.when(broker.newQuery(QueryLanguages.LANG_PREPARED_SQL, pq)).thenReturn(kernelQuery);
+        EntityManagerImpl em = entityManager(cache, broker);
+
+        for (int minAge : new int[]{ 30, 50 }) {
+            String jpql = "SELECT p FROM Person p WHERE p.age > " + minAge + " AND p.city = :city";
+            OpenJPAQuery<?> query = em.createQuery(jpql);
+
+            //L'utente deve vedere la sua query e i suoi parametri, non quelli sintetici
+            assertEquals(jpql, query.getQueryString());
+            assertEquals(Collections.singleton("city"), query.getNamedParameters().keySet());
+            assertEquals(1, query.getParameters().size());
+            assertEquals("city", query.getParameters().iterator().next().getName());
+
+            //Anche impostando tutti i parametri in una volta, il valore del letterale deve restare legato
+            query.setParameters(Collections.singletonMap("city", "Roma"));
+            assertEquals(minAge == 30 ? Arrays.asList("Bruno", "Carla") : Collections.singletonList("Carla"),
+                query.getResultList());
+        }
+
+        Mockito.verify(broker, Mockito.times(2)).newQuery(QueryLanguages.LANG_PREPARED_SQL, pq);
+        Mockito.verify(broker, Mockito.never()).newQuery(eq(QueryLanguages.LANG_PREPARED_SQL), any(String.class));
+        assertEquals(map(0, 30L, 1, "Roma"), executions.get(0));
+        assertEquals(map(0, 50L, 1, "Roma"), executions.get(1));
+        assertSame(pq, cache.get(parameterized));
+    }
+
+    private static List<?> execute(EntityManagerImpl em, String fingerprint, int minAge) {
+        ParameterExpression<Integer> param = mock(ParameterExpression.class);
+        Mockito.when(param.getName()).thenReturn("minAge");
+        Mockito.when(param.getParameterType()).thenReturn(Integer.class);
+        OpenJPACriteriaQuery<Object> criteria = mock(OpenJPACriteriaQuery.class);
+        Mockito.when(criteria.compile()).thenReturn(criteria);
+        Mockito.when(criteria.getFingerprint()).thenReturn(fingerprint);
+        Mockito.when(criteria.getParameters()).thenReturn(Collections.singleton(param));
+
+        return em.createQuery(criteria).setParameter(param, minAge).getResultList();
+    }
+
+    /*
+     * Mette in cache la prepared query che la prima esecuzione avrebbe lasciato, con un parametro dell'SQL per ognuna
+     * delle chiavi date, nell'ordine.
+     */
+    private static PreparedQueryImpl cachePreparedQuery(PreparedQueryCacheImpl cache, String id, String sql,
+        String... keys) throws Exception {
+        PreparedQueryImpl pq = new PreparedQueryImpl(id, sql, null);
+        List<Object> template = new ArrayList<>();
+        List<Object> positions = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            Parameter param = mock(Parameter.class);
+            Mockito.when(param.getParameterKey()).thenReturn(keys[i]);
+            template.add(null);
+            positions.add(i);
+            positions.add(param);
+        }
+        pq.setParameters(template);
+        pq.setUserParameterPositions(positions);
+        Field initialized = PreparedQueryImpl.class.getDeclaredField("_initialized");
+        initialized.setAccessible(true);
+        initialized.set(pq, true);
+        assertTrue(cache.cache(pq));
+        return pq;
+    }
+
+    private static EntityManagerImpl entityManager(PreparedQueryCache cache, DelegatingBroker broker)
+        throws Exception {
+        EntityManagerImpl em = new EntityManagerImplExt(cache);
+        Field brokerField = EntityManagerImpl.class.getDeclaredField("_broker");
+        brokerField.setAccessible(true);
+        brokerField.set(em, broker);
+        return em;
+    }
+
+    /*
+     * La query "kernel" restituisce le persone più anziane del valore che riceve nella posizione 0 e, se ne riceve
+     * uno nella posizione 1, che vivono in quella città.
+     */
+    private static org.apache.openjpa.kernel.Query kernelQuery(OrderedMap<Object, Class<?>> paramTypes,
+        List<Map<?, ?>> executions) {
+        Map<String, Object[]> people = new LinkedHashMap<>();
+        people.put("Anna", new Object[]{ 25, "Roma" });
+        people.put("Bruno", new Object[]{ 40, "Roma" });
+        people.put("Carla", new Object[]{ 60, "Roma" });
+        people.put("Dario", new Object[]{ 70, "Milano" });
+
+        OpenJPAConfiguration conf = mock(OpenJPAConfiguration.class);
+        Mockito.when(conf.getCompatibilityInstance()).thenReturn(mock(Compatibility.class));
+        Broker context = mock(BrokerImpl.class);
+        Mockito.when(context.getConfiguration()).thenReturn(conf);
+
+        org.apache.openjpa.kernel.Query query = mock(org.apache.openjpa.kernel.Query.class);
+        Mockito.when(query.getLanguage()).thenReturn(QueryLanguages.LANG_PREPARED_SQL);
+        Mockito.when(query.getStoreContext()).thenReturn(context);
+        Mockito.when(query.getFetchConfiguration()).thenReturn(mock(FetchConfiguration.class));
+        Mockito.when(query.getOperation()).thenReturn(QueryOperations.OP_SELECT);
+        Mockito.when(query.getOrderedParameterTypes()).thenReturn(paramTypes);
+        Mockito.when(query.execute(any(Map.class))).thenAnswer(inv -> {
+            Map<?, ?> params = inv.getArgument(0);
+            executions.add(new HashMap<>(params));
+            List<String> result = new ArrayList<>();
+            for (Map.Entry<String, Object[]> person : people.entrySet()) {
+                if (((Number) person.getValue()[0]).longValue() > ((Number) params.get(0)).longValue()
+                    && (!params.containsKey(1) || params.get(1).equals(person.getValue()[1])))
+                    result.add(person.getKey());
+            }
+            return result;
+        });
+        return query;
+    }
+
+    private static Map<Integer, Object> map(Object... entries) {
+        Map<Integer, Object> map = new HashMap<>();
+        for (int i = 0; i < entries.length; i += 2)
+            map.put((Integer) entries[i], entries[i + 1]);
+        return map;
+    }
+}
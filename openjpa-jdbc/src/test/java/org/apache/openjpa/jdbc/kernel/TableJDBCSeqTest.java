@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.kernel;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.lib.log.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Interleaves background prefetches with synchronous allocations of
+ * TableJDBCSeq. The sequence row is simulated by a counter, so every
+ * claimed block is disjoint from all others, and the sequence must never
+ * hand out a value twice.
+ */
+public class TableJDBCSeqTest {
+
+    private CountingSeq seq;
+
+    // simulates the sequence table row shared by all allocations
+    static class CountingSeq extends TableJDBCSeq {
+        final ClassMapping mapping = mock(ClassMapping.class);
+        long row = 1;
+
+        @Override
+        protected synchronized long claimSequence(ClassMapping mapping, int inc, Connection conn) {
+            long cur = row;
+            row += inc;
+            return cur;
+        }
+
+        @Override
+        protected Connection getConnection(JDBCStore store, boolean forceNewConnection) {
+            return mock(Connection.class);
+        }
+
+        @Override
+        protected void closeConnection(Connection conn) {
+        }
+
+        long next() throws Exception {
+            return (Long) nextInternal(null, mapping);
+        }
+
+        Status status() {
+            return getStatus(mapping);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        DataSource ds = mock(DataSource.class);
+        when(ds.getConnection()).thenAnswer(inv -> mock(Connection.class));
+        JDBCConfiguration conf = mock(JDBCConfiguration.class);
+        when(conf.getDataSource2(any())).thenReturn(ds);
+        when(conf.getLog(anyString())).thenReturn(mock(Log.class));
+
+        seq = new CountingSeq();
+        seq.setConfiguration(conf);
+        seq.setAllocate(50);
+        seq.setPrefetchThreshold(20);
+    }
+
+    @After
+    public void tearDown() {
+        seq.close();
+    }
+
+    @Test
+    public void allocateAfterPrefetchKeepsValuesUnique() throws Exception {
+        Set<Long> values = new HashSet<>();
+        drawUntilPrefetched(values);
+
+        // the prefetched block directly follows the current one and is
+        // merged into it before the synchronous claim
+        seq.allocateInternal(80, null, seq.mapping);
+        TableJDBCSeq.Status stat = seq.status();
+        assertEquals(0L, stat.nextMax);
+        assertTrue(stat.max - stat.seq >= 80);
+
+        draw(values, 300);
+    }
+
+    @Test
+    public void allocateAcrossForeignBlockKeepsValuesUnique() throws Exception {
+        Set<Long> values = new HashSet<>();
+        drawUntilPrefetched(values);
+
+        // another process claims the values after the prefetched block, so
+        // the synchronous claim leaves a gap behind the current block
+        seq.row += 1000;
+        seq.allocateInternal(80, null, seq.mapping);
+
+        draw(values, 300);
+    }
+
+    @Test
+    public void prefetchAfterAllocateKeepsValuesUnique() throws Exception {
+        Set<Long> values = new HashSet<>();
+        draw(values, 10);
+
+        // the synchronous claim happens while no prefetch is pending, and
+        // the prefetch that follows claims the block after it
+        seq.allocateInternal(70, null, seq.mapping);
+        draw(values, 300);
+    }
+
+    /**
+     * Draws values until the background prefetch of the next block has
+     * completed.
+     */
+    private void drawUntilPrefetched(Set<Long> values) throws Exception {
+        TableJDBCSeq.Status stat = seq.status();
+        while (true) {
+            synchronized (stat) {
+                if (stat.nextMax > 0)
+                    return;
+                if (stat.prefetching) {
+                    stat.wait(1000);
+                    continue;
+                }
+            }
+            draw(values, 1);
+        }
+    }
+
+    private void draw(Set<Long> values, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            long value = seq.next();
+            assertTrue("value " + value + " handed out twice", values.add(value));
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.meta;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.jdbc.meta.strats.NumberVersionStrategy;
+import org.apache.openjpa.jdbc.meta.strats.PrimitiveFieldStrategy;
+import org.apache.openjpa.jdbc.meta.strats.StateComparisonVersionStrategy;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.sql.Result;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.log.LogFactory;
+import org.apache.openjpa.meta.JavaTypes;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyByte;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Generates the hydrators that load the primitive fields of a mapping
+ * without dispatching through each field's strategy. The generated class
+ * must load and verify, store the same values as the strategy it stands in
+ * for, including for null columns, and leave out every field that its
+ * strategy loads in another way.
+ */
+public class RowHydratorGeneratorTest {
+
+    public static class Entity {
+    }
+
+    private static final int[] TYPES = { JavaTypes.BOOLEAN, JavaTypes.BYTE,
+        JavaTypes.CHAR, JavaTypes.DOUBLE, JavaTypes.FLOAT, JavaTypes.INT,
+        JavaTypes.LONG, JavaTypes.SHORT };
+
+    private RowHydratorGenerator generator;
+    private ClassMapping mapping;
+    private Version version;
+
+    @Before
+    public void setUp() {
+        LogFactory logs = mock(LogFactory.class);
+        when(logs.getLog(anyString())).thenReturn(mock(Log.class));
+        OpenJPAConfiguration conf = mock(OpenJPAConfiguration.class);
+        when(conf.getLogFactory()).thenReturn(logs);
+        generator = new RowHydratorGenerator(conf);
+
+        version = mock(Version.class);
+        mapping = mock(ClassMapping.class);
+        when(mapping.getDescribedType()).thenReturn((Class) Entity.class);
+        when(mapping.getVersion()).thenReturn(version);
+    }
+
+    @Test
+    public void generatedClassLoads() throws Exception {
+        List<FieldMapping> fields = primitiveFields();
+        RowHydrator hydrator = generate(fields);
+        assertNotNull(hydrator);
+        assertTrue(hydrator.getClass().getName().startsWith(
+            Entity.class.getName() + "$"));
+        assertTrue(hydrator.getClass().getName().endsWith(
+            RowHydratorGenerator.POSTFIX));
+
+        // running the load method links and verifies the generated code
+        hydrator.load(mock(OpenJPAStateManager.class), mock(Result.class));
+        assertEquals(TYPES.length, hydrator.getFields().cardinality());
+    }
+
+    @Test
+    public void valuesMatchStrategy() throws Exception {
+        List<FieldMapping> fields = primitiveFields();
+        Result res = result(fields, false);
+        assertEquals(strategyLoad(fields, res), hydratorLoad(fields, res));
+    }
+
+    @Test
+    public void nullColumnsMatchStrategy() throws Exception {
+        List<FieldMapping> fields = primitiveFields();
+        Result res = result(fields, true);
+        Map<Integer, Object> values = hydratorLoad(fields, res);
+        assertEquals(strategyLoad(fields, res), values);
+        assertEquals(TYPES.length, values.size());
+    }
+
+    @Test
+    public void loadedAndUnselectedFieldsSkipped() throws Exception {
+        List<FieldMapping> fields = primitiveFields();
+        Result res = result(fields, false);
+        when(res.contains(fields.get(1).getColumns()[0])).thenReturn(false);
+        OpenJPAStateManager sm = mock(OpenJPAStateManager.class);
+        when(sm.isLoaded(fields.get(0).getIndex())).thenReturn(true);
+
+        generate(fields).load(sm, res);
+        verify(sm, never()).storeBooleanField(anyInt(), anyBoolean());
+        verify(sm, never()).storeByteField(anyInt(), anyByte());
+        verify(sm).storeCharField(2, 'c');
+    }
+
+    @Test
+    public void otherFieldsExcluded() throws Exception {
+        FieldMapping plain = field(0, JavaTypes.INT);
+        FieldMapping pk = field(1, JavaTypes.INT);
+        when(pk.isPrimaryKey()).thenReturn(true);
+        FieldMapping externalized = field(2, JavaTypes.INT);
+        when(externalized.isExternalized()).thenReturn(true);
+        FieldMapping multiColumn = field(3, JavaTypes.INT);
+        when(multiColumn.getColumns()).thenReturn(
+            new Column[]{ new Column(), new Column() });
+        FieldMapping object = field(4, JavaTypes.INT_OBJ);
+        FieldMapping string = field(5, JavaTypes.STRING);
+        FieldMapping custom = field(6, JavaTypes.INT);
+        when(custom.getStrategy()).thenReturn(new PrimitiveFieldStrategy() {
+        });
+        FieldMapping unmapped = field(7, JavaTypes.INT);
+        when(unmapped.getStrategy()).thenReturn(null);
+
+        List<FieldMapping> fields = new ArrayList<>();
+        for (FieldMapping fm : new FieldMapping[]{ plain, pk, externalized,
+            multiColumn, object, string, custom, unmapped })
+            fields.add(fm);
+        BitSet expected = new BitSet();
+        expected.set(0);
+        assertEquals(expected, generate(fields).getFields());
+
+        fields.remove(plain);
+        assertNull(generate(fields));
+    }
+
+    @Test
+    public void stateImageVersionExcludesAllFields() throws Exception {
+        List<FieldMapping> fields = primitiveFields();
+        VersionStrategy strat = mock(VersionStrategy.class);
+        when(version.getStrategy()).thenReturn(strat);
+        when(strat.getAlias()).thenReturn(NumberVersionStrategy.ALIAS);
+        assertNotNull(generate(fields));
+
+        when(strat.getAlias()).thenReturn(StateComparisonVersionStrategy.ALIAS);
+        assertNull(generate(fields));
+    }
+
+    private RowHydrator generate(List<FieldMapping> fields) {
+        when(mapping.getDefinedFieldMappings()).thenReturn(
+            fields.toArray(new FieldMapping[0]));
+        return generator.generate(mapping);
+    }
+
+    private List<FieldMapping> primitiveFields() {
+        List<FieldMapping> fields = new ArrayList<>();
+        for (int i = 0; i < TYPES.length; i++)
+            fields.add(field(i, TYPES[i]));
+        return fields;
+    }
+
+    private FieldMapping field(int index, int type) {
+        FieldMapping fm = mock(FieldMapping.class);
+        when(fm.getIndex()).thenReturn(index);
+        when(fm.getTypeCode()).thenReturn(type);
+        when(fm.getColumns()).thenReturn(new Column[]{ new Column() });
+        when(fm.getDefiningMapping()).thenReturn(mapping);
+        PrimitiveFieldStrategy strat = new PrimitiveFieldStrategy();
+        strat.setFieldMapping(fm);
+        when(fm.getStrategy()).thenReturn(strat);
+        return fm;
+    }
+
+    /**
+     * A result holding a value for each of the given fields, or the values
+     * the driver returns for SQL nulls.
+     */
+    private static Result result(List<FieldMapping> fields, boolean nulls)
+        throws Exception {
+        Result res = mock(Result.class);
+        for (FieldMapping fm : fields) {
+            Column col = fm.getColumns()[0];
+            when(res.contains(col)).thenReturn(true);
+            if (nulls)
+                continue;
+            when(res.getBoolean(col)).thenReturn(true);
+            when(res.getByte(col)).thenReturn((byte) -2);
+            when(res.getChar(col)).thenReturn('c');
+            when(res.getDouble(col)).thenReturn(1.5d);
+            when(res.getFloat(col)).thenReturn(2.5f);
+            when(res.getInt(col)).thenReturn(Integer.MIN_VALUE);
+            when(res.getLong(col)).thenReturn(Long.MAX_VALUE);
+            when(res.getShort(col)).thenReturn((short) 300);
+        }
+        when(res.wasNull()).thenReturn(nulls);
+        return res;
+    }
+
+    private Map<Integer, Object> hydratorLoad(List<FieldMapping> fields,
+        Result res) throws Exception {
+        Map<Integer, Object> values = new HashMap<>();
+        generate(fields).load(recorder(values), res);
+        return values;
+    }
+
+    private static Map<Integer, Object> strategyLoad(List<FieldMapping> fields,
+        Result res) throws Exception {
+        Map<Integer, Object> values = new HashMap<>();
+        OpenJPAStateManager sm = recorder(values);
+        for (FieldMapping fm : fields)
+            fm.getStrategy().load(sm, null, null, res);
+        return values;
+    }
+
+    /**
+     * A state manager recording the values stored into each field, whether
+     * through the external or the field manager store methods.
+     */
+    private static OpenJPAStateManager recorder(Map<Integer, Object> values) {
+        return mock(OpenJPAStateManager.class, inv -> {
+            String name = inv.getMethod().getName();
+            if (name.startsWith("store") && inv.getArguments().length == 2)
+                values.put(inv.getArgument(0), inv.getArgument(1));
+            else if (name.equals("setImplData"))
+                values.put(-1 - (Integer) inv.getArgument(0),
+                    inv.getArgument(1));
+            return name.equals("isLoaded") ? false : null;
+        });
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.meta.strats;
+
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.MappingDefaultsImpl;
+import org.apache.openjpa.jdbc.meta.MappingRepository;
+import org.apache.openjpa.jdbc.meta.ValueHandler;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.ColumnIO;
+import org.apache.openjpa.jdbc.sql.Result;
+import org.apache.openjpa.jdbc.sql.Row;
+import org.apache.openjpa.jdbc.sql.RowManager;
+import org.apache.openjpa.jdbc.sql.SQLFactory;
+import org.apache.openjpa.jdbc.sql.Select;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Flushes LOB fields mapped under the LazyLobs mapping default. Such a
+ * field is left out of the default fetch group, and a digest of its value
+ * is kept when it is loaded. A value that was never loaded is neither read
+ * nor digested at flush, a value still matching its digest is not written
+ * back, and a modified value is always written.
+ */
+public class LazyLobTest {
+
+    private static final int INDEX = 3;
+
+    private HandlerFieldStrategy strategy;
+    private FieldMapping field;
+    private ValueHandler handler;
+    private Column col;
+    private JDBCStore store;
+    private RowManager rm;
+    private Row row;
+    private OpenJPAStateManager sm;
+    private final Map<Integer, Object> implData = new HashMap<>();
+    private Object value;
+
+    @Before
+    public void setUp() throws Exception {
+        col = new Column();
+        col.setType(Types.BLOB);
+
+        handler = mock(ValueHandler.class);
+        when(handler.toDataStoreValue(any(), any(), any())).thenAnswer(
+            inv -> inv.getArgument(1));
+        when(handler.toObjectValue(any(), any())).thenAnswer(
+            inv -> inv.getArgument(1));
+
+        store = mock(JDBCStore.class);
+        rm = mock(RowManager.class);
+        row = mock(Row.class);
+        when(row.getAction()).thenReturn(Row.ACTION_UPDATE);
+
+        field = mock(FieldMapping.class);
+        when(field.getIndex()).thenReturn(INDEX);
+        when(field.getHandler()).thenReturn(handler);
+        when(field.getColumnIO()).thenReturn(new ColumnIO());
+        when(field.getNullValue()).thenReturn(FieldMetaData.NULL_UNSET);
+        when(field.getRow(sm(), store, rm, Row.ACTION_UPDATE)).thenReturn(row);
+
+        strategy = new HandlerFieldStrategy();
+        strategy.setFieldMapping(field);
+        strategy._cols = new Column[]{ col };
+        strategy._io = new ColumnIO();
+        strategy._lob = true;
+        strategy._lazyLob = true;
+    }
+
+    @Test
+    public void lazyLobsLeaveDefaultFetchGroup() {
+        MappingDefaultsImpl defaults = new MappingDefaultsImpl();
+        MappingRepository repos = mock(MappingRepository.class);
+        when(repos.getMappingDefaults()).thenReturn(defaults);
+        when(field.getMappingRepository()).thenReturn(repos);
+        when(field.getDefiningMetaData()).thenReturn(mock(ClassMapping.class));
+        when(field.getDeclaredType()).thenReturn((Class) byte[].class);
+        Column[] cols = new Column[]{ col };
+
+        assertFalse(HandlerStrategies.mapLazyLob(field, cols));
+        defaults.setLazyLobs(true);
+        assertTrue(HandlerStrategies.mapLazyLob(field, cols));
+        verify(field).setInDefaultFetchGroup(false);
+
+        // an explicit fetch type is kept
+        when(field.isDefaultFetchGroupExplicit()).thenReturn(true);
+        assertFalse(HandlerStrategies.mapLazyLob(field, cols));
+        verify(field, times(1)).setInDefaultFetchGroup(false);
+    }
+
+    @Test
+    public void unloadedLobNotFetchedOrDigested() throws Exception {
+        // a result that does not hold the lob leaves the field unloaded
+        Result res = mock(Result.class);
+        strategy.load(sm, store, mock(JDBCFetchConfiguration.class), res);
+        verify(sm, never()).store(anyInt(), any());
+        assertFalse(implData.containsKey(INDEX));
+
+        // a value written without being loaded has no digest to compare to
+        value = new byte[]{ 1, 2 };
+        strategy.update(sm, store, rm);
+        verify(row).setObject(col, value);
+        verify(handler, times(1)).toDataStoreValue(field, value, store);
+        verify(store, never()).getSQLFactory();
+        assertNull(implData.get(INDEX));
+    }
+
+    @Test
+    public void unchangedLobNotWritten() throws Exception {
+        load(new byte[]{ 1, 2 });
+        assertNotNull(implData.get(INDEX));
+
+        value = new byte[]{ 1, 2 };
+        strategy.update(sm, store, rm);
+        verify(field, never()).getRow(sm, store, rm, Row.ACTION_UPDATE);
+        verify(row, never()).setObject(any(), any());
+
+        // the digest only holds for the state the value was loaded with
+        assertNull(implData.get(INDEX));
+        strategy.update(sm, store, rm);
+        verify(row).setObject(col, value);
+    }
+
+    @Test
+    public void modifiedLobWritten() throws Exception {
+        byte[] bytes = new byte[]{ 1, 2 };
+        load(bytes);
+
+        // modified in place
+        bytes[1] = 3;
+        value = bytes;
+        strategy.update(sm, store, rm);
+        verify(row).setObject(col, bytes);
+
+        // set to null
+        load(new byte[]{ 1, 2 });
+        value = null;
+        strategy.update(sm, store, rm);
+        verify(row).setNull(col, false);
+    }
+
+    @Test
+    public void lazilyLoadedLobDigested() throws Exception {
+        Select sel = mock(Select.class);
+        SQLFactory factory = mock(SQLFactory.class);
+        when(factory.newSelect()).thenReturn(sel);
+        when(store.getSQLFactory()).thenReturn(factory);
+        Result res = result("text");
+        when(res.next()).thenReturn(true);
+        when(sel.execute(eq(store), any())).thenReturn(res);
+
+        // the value is read on first access and not written back unchanged
+        strategy.load(sm, store, mock(JDBCFetchConfiguration.class));
+        verify(sm).store(INDEX, "text");
+        value = new String("text");
+        strategy.update(sm, store, rm);
+        verify(row, never()).setObject(any(), any());
+
+        strategy.load(sm, store, mock(JDBCFetchConfiguration.class));
+        value = "texts";
+        strategy.update(sm, store, rm);
+        verify(row).setObject(col, "texts");
+    }
+
+    /**
+     * Load the given value as part of a select of the field's table.
+     */
+    private void load(Object val) throws Exception {
+        strategy.load(sm, store, mock(JDBCFetchConfiguration.class),
+            result(val));
+    }
+
+    private Result result(Object val) throws Exception {
+        Result res = mock(Result.class);
+        when(res.containsAll(strategy._cols)).thenReturn(true);
+        when(res.getObject(eq(col), any(), any())).thenReturn(val);
+        return res;
+    }
+
+    /**
+     * A state manager holding the field's current value and impl data.
+     */
+    private OpenJPAStateManager sm() {
+        if (sm != null)
+            return sm;
+        sm = mock(OpenJPAStateManager.class);
+        when(sm.fetch(INDEX)).thenAnswer(inv -> value);
+        when(sm.setImplData(eq(INDEX), any())).thenAnswer(
+            inv -> implData.put(INDEX, inv.getArgument(1)));
+        return sm;
+    }
+}
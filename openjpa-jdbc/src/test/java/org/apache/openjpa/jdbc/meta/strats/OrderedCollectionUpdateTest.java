@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.meta.strats;
+
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.ValueMapping;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.ColumnIO;
+import org.apache.openjpa.jdbc.schema.ForeignKey;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.Row;
+import org.apache.openjpa.jdbc.sql.RowManager;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.util.Proxy;
+import org.apache.openjpa.util.ProxyManagerImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Updates an ordered list mapped through a join table with an order column
+ * and replays the statements on an in-memory join table. The join table
+ * must end up holding the list, and no element may be held by two rows at
+ * any time, as a unique constraint on the element column would reject it.
+ */
+public class OrderedCollectionUpdateTest {
+
+    private final Map<Integer, OpenJPAStateManager> joinTable = new TreeMap<>();
+    private final Map<Object, OpenJPAStateManager> elements = new HashMap<>();
+    private final Map<Row, Integer> actions = new HashMap<>();
+    private final Map<Row, Integer> positions = new HashMap<>();
+    private final Map<Row, OpenJPAStateManager> values = new HashMap<>();
+    private boolean rewritten;
+
+    private RelationCollectionTableFieldStrategy strategy;
+    private OpenJPAStateManager sm;
+    private RowManager rm;
+    private List<Object> list;
+
+    @Before
+    public void setUp() throws Exception {
+        Table table = mock(Table.class);
+        Column order = mock(Column.class);
+        ColumnIO io = mock(ColumnIO.class);
+        when(io.isInsertable(any(Column.class), anyBoolean())).thenReturn(true);
+        when(io.isAllUpdatable(any(ForeignKey.class), anyBoolean())).thenReturn(true);
+
+        ValueMapping elem = mock(ValueMapping.class);
+        when(elem.getForeignKey()).thenReturn(mock(ForeignKey.class));
+        when(elem.getColumnIO()).thenReturn(io);
+        doAnswer(inv -> values.put(inv.getArgument(0), inv.getArgument(1)))
+            .when(elem).setForeignKey(any(Row.class), any());
+
+        FieldMapping field = mock(FieldMapping.class);
+        when(field.getIndex()).thenReturn(0);
+        when(field.getTypeCode()).thenReturn(JavaTypes.COLLECTION);
+        when(field.getTable()).thenReturn(table);
+        when(field.getOrderColumn()).thenReturn(order);
+        when(field.getOrderColumnIO()).thenReturn(io);
+        when(field.getElementMapping()).thenReturn(elem);
+        when(field.getJoinForeignKey()).thenReturn(mock(ForeignKey.class));
+        strategy = new RelationCollectionTableFieldStrategy();
+        strategy.setFieldMapping(field);
+
+        StoreContext ctx = mock(StoreContext.class);
+        when(ctx.getStateManager(any())).thenAnswer(inv ->
+            elements.computeIfAbsent(inv.getArgument(0),
+                k -> mock(OpenJPAStateManager.class)));
+        sm = mock(OpenJPAStateManager.class);
+        when(sm.getContext()).thenReturn(ctx);
+
+        rm = mock(RowManager.class);
+        for (int action : new int[]{ Row.ACTION_INSERT, Row.ACTION_UPDATE,
+            Row.ACTION_DELETE }) {
+            Row row = row(action);
+            when(rm.getSecondaryRow(table, action)).thenReturn(row);
+        }
+        Row all = mock(Row.class);
+        when(rm.getAllRows(table, Row.ACTION_DELETE)).thenReturn(all);
+        doAnswer(inv -> flush(inv.getArgument(0))).when(rm)
+            .flushSecondaryRow(any(Row.class));
+        doAnswer(inv -> {
+            joinTable.clear();
+            rewritten = true;
+            return null;
+        }).when(rm).flushAllRows(all);
+
+        // a loaded list whose elements are stored at positions 0 to 4
+        list = (List<Object>) new ProxyManagerImpl().newCollectionProxy(
+            ArrayList.class, null, null, false);
+        list.addAll(Arrays.asList("a", "b", "c", "d", "e"));
+        for (int i = 0; i < list.size(); i++)
+            joinTable.put(i, ctx.getStateManager(list.get(i)));
+        ((Proxy) list).setOwner(sm, 0);
+        ((Proxy) list).getChangeTracker().startTracking();
+        when(sm.fetchObject(0)).thenReturn(list);
+    }
+
+    @Test
+    public void insertInMiddleUpdatesByPosition() throws Exception {
+        list.add(2, "x");
+        update();
+        assertFalse(rewritten);
+    }
+
+    @Test
+    public void removeByIndexUpdatesByPosition() throws Exception {
+        list.remove(1);
+        update();
+        assertFalse(rewritten);
+    }
+
+    @Test
+    public void removeByValueUpdatesByPosition() throws Exception {
+        list.remove("d");
+        update();
+        assertFalse(rewritten);
+    }
+
+    @Test
+    public void removeAndInsertRewritesList() throws Exception {
+        // "c" and "d" move up while "x" pushes "e" down
+        list.remove(1);
+        list.add(3, "x");
+        update();
+        assertTrue(rewritten);
+    }
+
+    @Test
+    public void setRewritesList() throws Exception {
+        list.set(2, "x");
+        update();
+        assertTrue(rewritten);
+    }
+
+    @Test
+    public void iteratorRemovalRewritesList() throws Exception {
+        Iterator<Object> itr = list.iterator();
+        itr.next();
+        itr.next();
+        itr.remove();
+        update();
+        assertTrue(rewritten);
+    }
+
+    @Test
+    public void consecutiveFlushesUpdateByPosition() throws Exception {
+        list.add(1, "x");
+        update();
+        ((Proxy) list).getChangeTracker().startTracking();
+        list.remove(3);
+        update();
+        assertFalse(rewritten);
+    }
+
+    /**
+     * Flush the list and check that the join table holds it.
+     */
+    private void update() throws Exception {
+        strategy.update(sm, null, rm);
+        Map<Integer, OpenJPAStateManager> expected = new TreeMap<>();
+        for (int i = 0; i < list.size(); i++)
+            expected.put(i, elements.get(list.get(i)));
+        assertEquals(expected, joinTable);
+    }
+
+    private Row row(int action) throws Exception {
+        Row row = mock(Row.class);
+        actions.put(row, action);
+        doAnswer(inv -> positions.put(row, inv.getArgument(1)))
+            .when(row).whereInt(any(), anyInt());
+        doAnswer(inv -> positions.put(row, inv.getArgument(1)))
+            .when(row).setInt(any(), anyInt());
+        return row;
+    }
+
+    private Object flush(Row row) {
+        int pos = positions.get(row);
+        switch (actions.get(row)) {
+            case Row.ACTION_INSERT:
+                assertFalse("position " + pos + " held twice",
+                    joinTable.containsKey(pos));
+                joinTable.put(pos, values.get(row));
+                break;
+            case Row.ACTION_UPDATE:
+                assertTrue("position " + pos + " not stored",
+                    joinTable.containsKey(pos));
+                joinTable.put(pos, values.get(row));
+                break;
+            default:
+                assertNotNull("position " + pos + " not stored",
+                    joinTable.remove(pos));
+        }
+        assertEquals("element held by two rows", joinTable.size(),
+            new HashSet<>(joinTable.values()).size());
+        return null;
+    }
+}
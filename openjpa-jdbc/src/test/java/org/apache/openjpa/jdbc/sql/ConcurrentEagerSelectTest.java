@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.sql;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.kernel.LockLevels;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.lib.log.Log;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Runs the separate selects of parallel eager fetching on connections of
+ * their own. Their results must end up under the keys of their selects
+ * whatever order they finish in, each select must get a fetch
+ * configuration of its own, and a failing select must fail the query.
+ * Selects that no thread picked up, and selects that a new connection
+ * could read differently, run on the context's connection.
+ */
+public class ConcurrentEagerSelectTest {
+
+    // a select answering with a result set of its own
+    class TestSelect extends SelectImpl {
+        final String name;
+        final ResultSet rs = mock(ResultSet.class);
+        SQLException failure;
+        CountDownLatch gate;
+        volatile Connection conn;
+        volatile Thread thread;
+        volatile JDBCFetchConfiguration fetch;
+
+        TestSelect(String name) {
+            super(conf);
+            this.name = name;
+        }
+
+        @Override
+        public SQLBuffer toSelect(boolean forUpdate,
+            JDBCFetchConfiguration fetch) {
+            return new SQLBuffer(dict).append("SELECT " + name);
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(Connection conn,
+            SQLBuffer sql, JDBCFetchConfiguration fetch, int rsType,
+            int rsConcur, boolean isLRS) {
+            this.conn = conn;
+            return mock(PreparedStatement.class);
+        }
+
+        @Override
+        protected ResultSet executeQuery(Connection conn,
+            PreparedStatement stmnt, SQLBuffer sql, boolean isLRS,
+            JDBCStore store) throws SQLException {
+            thread = Thread.currentThread();
+            try {
+                if (gate != null)
+                    gate.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                throw new SQLException(ie);
+            }
+            if (failure != null)
+                throw failure;
+            synchronized (finished) {
+                finished.add(name);
+            }
+            return rs;
+        }
+
+        @Override
+        public Result getEagerResult(Connection conn, PreparedStatement stmnt,
+            ResultSet rs, JDBCStore store, JDBCFetchConfiguration fetch,
+            boolean forUpdate, SQLBuffer sql) throws SQLException {
+            if (this != parent)
+                this.fetch = fetch;
+            return super.getEagerResult(conn, stmnt, rs, store, fetch,
+                forUpdate, sql);
+        }
+    }
+
+    // runs each task to its end on a thread of its own
+    static final Executor JOINING = r -> {
+        Thread t = new Thread(r);
+        t.start();
+        try {
+            t.join();
+        } catch (InterruptedException ie) {
+            throw new RuntimeException(ie);
+        }
+    };
+
+    private final List<String> finished = new ArrayList<>();
+    private final List<Connection> newConns =
+        Collections.synchronizedList(new ArrayList<>());
+    private Executor executor;
+    private DBDictionary dict;
+    private JDBCConfiguration conf;
+    private Log log;
+    private StoreContext ctx;
+    private Connection conn;
+    private JDBCStore store;
+    private JDBCFetchConfiguration fetch;
+    private TestSelect parent;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = JOINING;
+        dict = new DBDictionary() {
+            @Override
+            public Executor getEagerSelectExecutor() {
+                return executor;
+            }
+        };
+        log = mock(Log.class);
+        when(log.isWarnEnabled()).thenReturn(true);
+        conf = mock(JDBCConfiguration.class);
+        when(conf.getDBDictionaryInstance()).thenReturn(dict);
+        when(conf.getLog(anyString())).thenReturn(log);
+        dict.conf = conf;
+        dict.log = log;
+
+        ctx = mock(StoreContext.class);
+        conn = mock(Connection.class);
+        when(conn.getAutoCommit()).thenReturn(true);
+        when(conn.getTransactionIsolation()).thenReturn(
+            Connection.TRANSACTION_READ_COMMITTED);
+        store = mock(JDBCStore.class);
+        when(store.getContext()).thenReturn(ctx);
+        when(store.getConnection()).thenReturn(conn);
+        when(store.getDBDictionary()).thenReturn(dict);
+        when(store.getConfiguration()).thenReturn(conf);
+        when(store.getNewConnection()).thenAnswer(inv -> {
+            Connection c = mock(Connection.class);
+            newConns.add(c);
+            return c;
+        });
+
+        fetch = mock(JDBCFetchConfiguration.class);
+        when(fetch.getIsolation()).thenReturn(-1);
+        when(fetch.getReadLockLevel()).thenReturn(LockLevels.LOCK_NONE);
+        when(fetch.clone()).thenAnswer(inv -> mock(
+            JDBCFetchConfiguration.class));
+
+        parent = new TestSelect("P");
+    }
+
+    @Test
+    public void eagerSelectsRunOnOwnConnections() throws Exception {
+        TestSelect a = eager("A");
+        TestSelect b = eager("B");
+        SelectImpl.SelectResult res = execute();
+
+        assertEagerResults(res, a, b);
+        assertSame(conn, parent.conn);
+        assertEquals(2, newConns.size());
+        assertEquals(new HashSet<>(newConns),
+            new HashSet<>(Arrays.asList(a.conn, b.conn)));
+        for (TestSelect sel : new TestSelect[]{ a, b }) {
+            assertNotSame(Thread.currentThread(), sel.thread);
+            assertNotSame(fetch, sel.fetch);
+        }
+        assertNotSame(a.fetch, b.fetch);
+
+        // the results close their own connections
+        res.close();
+        for (Connection c : newConns)
+            verify(c).close();
+    }
+
+    @Test
+    public void eagerResultsKeptUnderTheirKeys() throws Exception {
+        // the last select finishes only once the others have
+        executor = command -> new Thread(command).start();
+        CountDownLatch others = new CountDownLatch(2);
+        TestSelect a = eager("A");
+        a.gate = others;
+        TestSelect b = new TestSelect("B") {
+            @Override
+            protected ResultSet executeQuery(Connection conn,
+                PreparedStatement stmnt, SQLBuffer sql, boolean isLRS,
+                JDBCStore store) throws SQLException {
+                ResultSet rs = super.executeQuery(conn, stmnt, sql, isLRS,
+                    store);
+                others.countDown();
+                return rs;
+            }
+        };
+        TestSelect c = new TestSelect("C") {
+            @Override
+            protected ResultSet executeQuery(Connection conn,
+                PreparedStatement stmnt, SQLBuffer sql, boolean isLRS,
+                JDBCStore store) throws SQLException {
+                ResultSet rs = super.executeQuery(conn, stmnt, sql, isLRS,
+                    store);
+                others.countDown();
+                return rs;
+            }
+        };
+        addEager(b);
+        addEager(c);
+
+        SelectImpl.SelectResult res = execute();
+        assertEagerResults(res, a, b, c);
+        assertEquals("A", finished.get(finished.size() - 1));
+    }
+
+    @Test
+    public void failingSelectFailsQuery() throws Exception {
+        TestSelect a = eager("A");
+        TestSelect b = eager("B");
+        b.failure = new SQLException("B");
+        try {
+            execute();
+            fail("Expected the failed eager select to fail the query");
+        } catch (SQLException se) {
+            assertSame(b.failure, se);
+        }
+
+        // the result of the other select is closed with its connection
+        verify(a.conn).close();
+        verify(b.conn).close();
+    }
+
+    @Test
+    public void unusedFailuresLogged() throws Exception {
+        TestSelect a = eager("A");
+        a.failure = new SQLException("A");
+        TestSelect b = eager("B");
+        b.failure = new SQLException("B");
+        SQLException thrown = null;
+        try {
+            execute();
+            fail("Expected the failed eager selects to fail the query");
+        } catch (SQLException se) {
+            thrown = se;
+        }
+
+        // the failure of the select that was never waited for is logged
+        SQLException unused = thrown == a.failure ? b.failure : a.failure;
+        assertTrue(thrown == a.failure || thrown == b.failure);
+        verify(log).warn(any(), same(unused));
+    }
+
+    @Test
+    public void selectsNotStartedRunOnContextConnection() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        executor = queued::add;
+        TestSelect a = eager("A");
+        TestSelect b = eager("B");
+
+        assertEagerResults(execute(), a, b);
+        assertEquals(2, queued.size());
+        assertOnContextConnection(a, b);
+
+        // cancelled selects do nothing once a thread picks them up
+        for (Runnable r : queued)
+            r.run();
+        verify(store, never()).getNewConnection();
+    }
+
+    @Test
+    public void selectsOnContextConnectionWhenNotSafe() throws Exception {
+        TestSelect a = eager("A");
+        TestSelect b = eager("B");
+
+        when(ctx.isStoreActive()).thenReturn(true);
+        assertEagerResults(execute(), a, b);
+        when(ctx.isStoreActive()).thenReturn(false);
+
+        when(ctx.isManaged()).thenReturn(true);
+        assertEagerResults(execute(), a, b);
+        when(ctx.isManaged()).thenReturn(false);
+
+        // the context's connection runs a transaction of its own
+        when(conn.getAutoCommit()).thenReturn(false);
+        assertEagerResults(execute(), a, b);
+        when(conn.getAutoCommit()).thenReturn(true);
+
+        when(conn.getTransactionIsolation()).thenReturn(
+            Connection.TRANSACTION_SERIALIZABLE);
+        assertEagerResults(execute(), a, b);
+        when(conn.getTransactionIsolation()).thenReturn(
+            Connection.TRANSACTION_READ_COMMITTED);
+
+        when(fetch.getIsolation()).thenReturn(
+            Connection.TRANSACTION_REPEATABLE_READ);
+        assertEagerResults(execute(), a, b);
+        when(fetch.getIsolation()).thenReturn(-1);
+
+        when(fetch.getReadLockLevel()).thenReturn(LockLevels.LOCK_READ);
+        assertEagerResults(execute(), a, b);
+        when(fetch.getReadLockLevel()).thenReturn(LockLevels.LOCK_NONE);
+
+        // the dictionary does not allow concurrent selects
+        executor = null;
+        assertEagerResults(execute(), a, b);
+
+        assertOnContextConnection(a, b);
+        verify(store, never()).getNewConnection();
+    }
+
+    @Test
+    public void singleSelectOnContextConnection() throws Exception {
+        TestSelect a = eager("A");
+        assertEagerResults(execute(), a);
+        assertOnContextConnection(a);
+        verify(store, never()).getNewConnection();
+    }
+
+    private TestSelect eager(String name) {
+        TestSelect sel = new TestSelect(name);
+        addEager(sel);
+        return sel;
+    }
+
+    private void addEager(TestSelect sel) {
+        // a join, which the parent's own result stands in for
+        if (parent.getEagerMap() == null)
+            parent.eagerClone(mock(FieldMapping.class),
+                Select.EAGER_INNER, false, 1);
+        FieldMapping key = mock(FieldMapping.class);
+        parent.eagerClone(key, Select.EAGER_INNER, false, 1);
+        parent.getEagerMap().put(key, sel);
+    }
+
+    private SelectImpl.SelectResult execute() throws SQLException {
+        return (SelectImpl.SelectResult) parent.execute(store, fetch);
+    }
+
+    /**
+     * Assert that the given result holds the result of each of the given
+     * eager selects under the select's key.
+     */
+    private void assertEagerResults(SelectImpl.SelectResult res,
+        TestSelect... sels) {
+        for (Object o : parent.getEagerMap().entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            Object eres = res.getEager((FieldMapping) entry.getKey());
+            if (entry.getValue() == parent)
+                assertSame(res, eres);
+            else
+                assertSame(((TestSelect) entry.getValue()).rs,
+                    ((ResultSetResult) eres).getResultSet());
+        }
+        assertEquals(sels.length + 1, parent.getEagerMap().size());
+    }
+
+    private void assertOnContextConnection(TestSelect... sels) {
+        for (TestSelect sel : sels) {
+            assertSame(conn, sel.conn);
+            assertSame(Thread.currentThread(), sel.thread);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.sql;
+
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.lib.jdbc.DelegatingConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Loads batches of inserts with COPY through PostgresDictionary.insertBulk.
+ * Values are written in the text format of COPY, with the special
+ * characters of text escaped, bytea in hex, and dates and times in a form
+ * that does not depend on the time zone of the server session. Batches with
+ * a value that has no such form are left to insert statements.
+ */
+public class CopyInsertTest {
+
+    private TimeZone zone;
+    private Table table;
+    private CopyManager copy;
+    private final List<String> sqls = new ArrayList<>();
+    private final List<String> payloads = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        zone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+        table = new Table("T", null);
+        copy = mock(CopyManager.class);
+        when(copy.copyIn(anyString(), any(Reader.class))).thenAnswer(inv -> {
+            sqls.add(inv.getArgument(0));
+            try (BufferedReader in = new BufferedReader(
+                (Reader) inv.getArgument(1))) {
+                payloads.add(in.lines().collect(Collectors.joining("\n")));
+            }
+            return 2L;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(zone);
+    }
+
+    @Test
+    public void textEscaped() throws Exception {
+        Column name = column("NAME", Types.VARCHAR);
+        Column code = column("CODE", Types.CHAR);
+        RowImpl first = row();
+        first.setString(name, "a\tb\nc\rd\\e");
+        first.setChar(code, 'x');
+        RowImpl second = row();
+        second.setString(name, "\\N");
+        second.setNull(code);
+
+        assertTrue(insert(first, second));
+        assertEquals("COPY T (NAME, CODE) FROM STDIN", sqls.get(0));
+        assertEquals("a\\tb\\nc\\rd\\\\e\tx\n\\\\N\t\\N", payloads.get(0));
+        assertTrue(first.isFlushed());
+        assertTrue(second.isFlushed());
+    }
+
+    @Test
+    public void numbersAndBytesWritten() throws Exception {
+        Column num = column("NUM", Types.INTEGER);
+        Column dec = column("DEC", Types.DECIMAL);
+        Column data = column("DATA", Types.VARBINARY);
+        RowImpl first = row();
+        first.setInt(num, -7);
+        first.setBigDecimal(dec, new BigDecimal("1E+3"));
+        first.setBytes(data, new byte[]{ 0, 0x7f, (byte) 0xff });
+        RowImpl second = row();
+        second.setLong(num, Long.MAX_VALUE);
+        second.setBigDecimal(dec, new BigDecimal("0.50"));
+        second.setBytes(data, new byte[0]);
+
+        assertTrue(insert(first, second));
+        assertEquals("-7\t1000\t\\\\x007fff\n"
+            + Long.MAX_VALUE + "\t0.50\t\\\\x", payloads.get(0));
+    }
+
+    @Test
+    public void booleansOnlyOnBooleanColumns() throws Exception {
+        Column flag = column("FLAG", Types.BOOLEAN);
+        Column bit = column("BIT", Types.BIT);
+        RowImpl first = row();
+        first.setBoolean(flag, true);
+        first.setBoolean(bit, false);
+        RowImpl second = row();
+        second.setBoolean(flag, false);
+        second.setBoolean(bit, true);
+        assertTrue(insert(first, second));
+        assertEquals("t\tf\nf\tt", payloads.get(0));
+
+        // booleans stored in numeric columns are converted by the inserts
+        Column num = column("NUM", Types.SMALLINT);
+        first = row();
+        first.setBoolean(num, true);
+        second = row();
+        second.setBoolean(num, false);
+        assertFalse(insert(first, second));
+        assertEquals(1, payloads.size());
+        assertFalse(first.isFlushed());
+    }
+
+    @Test
+    public void temporalsIndependentOfSessionZone() throws Exception {
+        Column ts = column("TS", Types.TIMESTAMP);
+        Column d = column("D", Types.DATE);
+        Column t = column("T", Types.TIME);
+        Column ldt = column("LDT", Types.TIMESTAMP);
+        Column odt = column("ODT", Types.TIMESTAMP_WITH_TIMEZONE);
+        Column ot = column("OT", Types.TIME_WITH_TIMEZONE);
+        Column ld = column("LD", Types.DATE);
+        Column lt = column("LT", Types.TIME);
+
+        Timestamp winter = Timestamp.valueOf("2024-01-15 10:20:30.123456789");
+        Timestamp summer = Timestamp.valueOf("2024-07-15 10:20:30");
+        RowImpl first = row();
+        first.setTimestamp(ts, winter, null);
+        first.setDate(d, java.sql.Date.valueOf("2024-01-15"));
+        first.setTime(t, new Time(winter.getTime()), null);
+        first.setObject(ldt, LocalDateTime.of(2024, 1, 15, 10, 20, 30));
+        first.setObject(odt, OffsetDateTime.of(2024, 1, 15, 10, 20, 30,
+            5000, ZoneOffset.ofHoursMinutes(5, 30)));
+        first.setObject(ot, OffsetTime.of(10, 20, 30, 0, ZoneOffset.UTC));
+        first.setObject(ld, LocalDate.of(2024, 1, 15));
+        first.setObject(lt, LocalTime.of(23, 59));
+        RowImpl second = row();
+        second.setTimestamp(ts, summer, null);
+        second.setDate(d, new Date(summer.getTime()));
+        for (Column col : new Column[]{ t, ldt, odt, ot, ld, lt })
+            second.setNull(col);
+
+        assertTrue(insert(first, second));
+        String[] lines = payloads.get(0).split("\n");
+        assertEquals(Arrays.asList(
+            "2024-01-15 10:20:30.123456789+01:00",
+            "2024-01-15",
+            "10:20:30.123000000",
+            "2024-01-15 10:20:30.000000000",
+            "2024-01-15 10:20:30.000005000+05:30",
+            "10:20:30.000000000+00:00",
+            "2024-01-15",
+            "23:59:00.000000000"), Arrays.asList(lines[0].split("\t")));
+        assertEquals(Arrays.asList(
+            "2024-07-15 10:20:30.000000000+02:00",
+            "2024-07-15 10:20:30.000000000+02:00",
+            "\\N", "\\N", "\\N", "\\N", "\\N", "\\N"),
+            Arrays.asList(lines[1].split("\t")));
+    }
+
+    @Test
+    public void valuesWithoutTextFormLeftToInserts() throws Exception {
+        Column ts = column("TS", Types.TIMESTAMP);
+        Column expr = column("EXPR", Types.INTEGER);
+
+        // a calendar for the timestamp
+        RowImpl first = row();
+        first.setTimestamp(ts, new Timestamp(0), Calendar.getInstance());
+        assertFalse(insert(first, row()));
+
+        // a year that the text format can not hold
+        first = row();
+        first.setObject(ts, LocalDate.of(10000, 1, 1));
+        assertFalse(insert(first, row()));
+
+        // an SQL expression
+        first = row();
+        first.setRaw(expr, "NEXTVAL('S')");
+        assertFalse(insert(first, row()));
+
+        // rows that do not set the same columns
+        first = row();
+        first.setTimestamp(ts, new Timestamp(0), null);
+        RowImpl second = row();
+        second.setInt(expr, 1);
+        assertFalse(insert(first, second));
+
+        // values of unknown types
+        first = row();
+        first.setObject(ts, new Object());
+        assertFalse(insert(first, row()));
+
+        verify(copy, never()).copyIn(anyString(), any(Reader.class));
+        assertFalse(first.isFlushed());
+    }
+
+    @Test
+    public void smallBatchesLeftToInserts() throws Exception {
+        Column name = column("NAME", Types.VARCHAR);
+        RowImpl first = row();
+        first.setString(name, "a");
+        RowImpl second = row();
+        second.setString(name, "b");
+
+        PostgresDictionary dict = dict();
+        assertFalse(dict.insertBulk(connection(), null,
+            Arrays.asList(first, second)));
+        dict.copyInsertThreshold = 3;
+        assertFalse(dict.insertBulk(connection(), null,
+            Arrays.asList(first, second)));
+        dict.copyInsertThreshold = 2;
+        assertFalse(dict.insertBulk(mock(Connection.class), null,
+            Arrays.asList(first, second)));
+        verify(copy, never()).copyIn(anyString(), any(Reader.class));
+    }
+
+    @Test
+    public void missingRowsFail() throws Exception {
+        Column name = column("NAME", Types.VARCHAR);
+        RowImpl first = row();
+        first.setString(name, "a");
+        RowImpl second = row();
+        second.setString(name, "b");
+        RowImpl third = row();
+        third.setString(name, "c");
+
+        try {
+            insert(first, second, third);
+            fail("Expected the count mismatch to fail");
+        } catch (SQLException se) {
+            // expected
+        }
+        assertFalse(first.isFlushed());
+    }
+
+    private Column column(String name, int type) {
+        Column col = table.addColumn(name);
+        col.setType(type);
+        return col;
+    }
+
+    private RowImpl row() {
+        return new RowImpl(table, Row.ACTION_INSERT);
+    }
+
+    private boolean insert(RowImpl... rows) throws SQLException {
+        PostgresDictionary dict = dict();
+        dict.copyInsertThreshold = 2;
+        return dict.insertBulk(connection(), null, Arrays.asList(rows));
+    }
+
+    private PostgresDictionary dict() throws SQLException {
+        PGConnection pg = mock(PGConnection.class);
+        when(pg.getCopyAPI()).thenReturn(copy);
+        return new PostgresDictionary() {
+            @Override
+            protected PGConnection getPGConnection(DelegatingConnection conn) {
+                return pg;
+            }
+        };
+    }
+
+    private static Connection connection() {
+        return new DelegatingConnection(mock(Connection.class));
+    }
+}
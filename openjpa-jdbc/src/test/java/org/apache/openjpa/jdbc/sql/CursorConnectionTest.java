@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.sql;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.kernel.StoreContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Prepares the connections that large result sets are streamed on. A
+ * dictionary whose driver only honors the fetch size outside of auto-commit
+ * turns auto-commit off for the cursor and back on when the cursor is
+ * closed. The connection of a transaction, which already runs without
+ * auto-commit, is used as it is and never has its auto-commit changed.
+ */
+public class CursorConnectionTest {
+
+    private JDBCConfiguration conf;
+    private StoreContext ctx;
+    private JDBCStore store;
+
+    @Before
+    public void setUp() {
+        conf = mock(JDBCConfiguration.class);
+        ctx = mock(StoreContext.class);
+        store = mock(JDBCStore.class);
+        when(store.getContext()).thenReturn(ctx);
+    }
+
+    @Test
+    public void cursorConnectionUsedForFetchSize() throws Exception {
+        Connection conn = connection(true);
+        Connection cursor = dict(new PostgresDictionary())
+            .prepareCursorConnection(conn, store, fetch(100));
+
+        assertNotSame(conn, cursor);
+        verify(conn).setAutoCommit(false);
+
+        // statements are prepared on the underlying connection
+        cursor.prepareStatement("SELECT 1");
+        verify(conn).prepareStatement("SELECT 1",
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    }
+
+    @Test
+    public void cursorConnectionReleasedOnClose() throws Exception {
+        Connection conn = connection(true);
+        Connection cursor = dict(new PostgresDictionary())
+            .prepareCursorConnection(conn, store, fetch(100));
+        when(conn.getAutoCommit()).thenReturn(false);
+
+        cursor.close();
+        verify(conn).setAutoCommit(true);
+        verify(conn).close();
+    }
+
+    @Test
+    public void transactionStartedOnCursorKeepsAutoCommit() throws Exception {
+        Connection conn = connection(true);
+        Connection cursor = dict(new PostgresDictionary())
+            .prepareCursorConnection(conn, store, fetch(100));
+        when(conn.getAutoCommit()).thenReturn(false);
+        when(ctx.isActive()).thenReturn(true);
+
+        cursor.close();
+        verify(conn, never()).setAutoCommit(true);
+        verify(conn).close();
+    }
+
+    @Test
+    public void transactionConnectionUsedAsIs() throws Exception {
+        Connection conn = connection(false);
+        when(ctx.isActive()).thenReturn(true);
+        assertSame(conn, dict(new PostgresDictionary())
+            .prepareCursorConnection(conn, store, fetch(100)));
+        verify(conn, never()).setAutoCommit(anyBoolean());
+    }
+
+    @Test
+    public void connectionUsedAsIsWithoutFetchSize() throws Exception {
+        DBDictionary dict = dict(new PostgresDictionary());
+        Connection conn = connection(true);
+        assertSame(conn, dict.prepareCursorConnection(conn, store, null));
+        assertSame(conn, dict.prepareCursorConnection(conn, store, fetch(0)));
+        assertSame(conn, dict.prepareCursorConnection(conn, store, fetch(-1)));
+
+        // managed connections belong to the container's transaction
+        when(conf.isConnectionFactoryModeManaged()).thenReturn(true);
+        assertSame(conn, dict.prepareCursorConnection(conn, store, fetch(100)));
+
+        // other drivers honor the fetch size in auto-commit mode
+        when(conf.isConnectionFactoryModeManaged()).thenReturn(false);
+        assertSame(conn, dict(new DBDictionary())
+            .prepareCursorConnection(conn, store, fetch(100)));
+        verify(conn, never()).setAutoCommit(anyBoolean());
+    }
+
+    private DBDictionary dict(DBDictionary dict) {
+        dict.conf = conf;
+        return dict;
+    }
+
+    private static Connection connection(boolean autoCommit) throws Exception {
+        Connection conn = mock(Connection.class);
+        when(conn.getAutoCommit()).thenReturn(autoCommit);
+        return conn;
+    }
+
+    private static JDBCFetchConfiguration fetch(int batchSize) {
+        JDBCFetchConfiguration fetch = mock(JDBCFetchConfiguration.class);
+        when(fetch.getFetchBatchSize()).thenReturn(batchSize);
+        return fetch;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.sql;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCStore;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.meta.JavaTypes;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Binds the values of rows through the binders generated per table. Every
+ * row must bind the same parameters, in the same order and through the
+ * same setters, as the row's own flush through DBDictionary.setTyped, for
+ * inserts, updates and deletes, with where values and nulls. Dictionaries
+ * that override setTyped keep binding through it.
+ */
+public class RowBinderTest {
+
+    // binds strings in upper case
+    static class UpperCaseDictionary extends DBDictionary {
+        @Override
+        public void setTyped(PreparedStatement stmnt, int idx, Object val,
+            Column col, int type, JDBCStore store)
+            throws SQLException {
+            if (val instanceof String)
+                val = ((String) val).toUpperCase();
+            super.setTyped(stmnt, idx, val, col, type, store);
+        }
+    }
+
+    private Table table;
+    private Column id;
+    private Column count;
+    private Column flag;
+    private Column code;
+    private Column amount;
+    private Column name;
+    private Column text;
+    private Column ratio;
+
+    @Before
+    public void setUp() {
+        table = new Table("T", null);
+        id = column("ID", Types.BIGINT, JavaTypes.LONG);
+        count = column("CNT", Types.INTEGER, JavaTypes.INT_OBJ);
+        flag = column("FLAG", Types.BOOLEAN, JavaTypes.BOOLEAN);
+        code = column("CODE", Types.CHAR, JavaTypes.CHAR);
+        amount = column("AMOUNT", Types.DECIMAL, JavaTypes.BIGDECIMAL);
+        name = column("NAME", Types.VARCHAR, JavaTypes.STRING);
+        text = column("TXT", Types.CLOB, JavaTypes.STRING);
+        ratio = column("RATIO", Types.DOUBLE, JavaTypes.DOUBLE);
+    }
+
+    @Test
+    public void insertBindsAsFlush() throws Exception {
+        RowImpl row = new RowImpl(table, Row.ACTION_INSERT);
+        row.setLong(id, 1L);
+        row.setInt(count, 7);
+        row.setBoolean(flag, true);
+        row.setChar(code, 'x');
+        row.setBigDecimal(amount, new BigDecimal("1.50"));
+        row.setString(name, "name");
+        row.setString(text, "text");
+        row.setNull(ratio);
+        assertBindsAsFlush(row, 8);
+    }
+
+    @Test
+    public void updateBindsAsFlush() throws Exception {
+        RowImpl row = new RowImpl(table, Row.ACTION_UPDATE);
+        row.setInt(count, 8);
+        row.setNull(name);
+        row.setDouble(ratio, 0.5);
+        // a value of another meta type than its column
+        row.setInt(flag, 1);
+        row.setRaw(code, "CODE + 1");
+        row.whereLong(id, 1L);
+        row.whereInt(count, 7);
+        row.whereNull(text);
+        row.whereBigDecimal(amount, BigDecimal.TEN);
+        assertBindsAsFlush(row, 7);
+    }
+
+    @Test
+    public void deleteBindsAsFlush() throws Exception {
+        RowImpl row = new RowImpl(table, Row.ACTION_DELETE);
+        // set values of deletes only serve foreign key checks
+        row.setInt(count, 8);
+        row.whereLong(id, 1L);
+        row.whereChar(code, 'x');
+        row.whereNull(name);
+        assertBindsAsFlush(row, 2);
+    }
+
+    @Test
+    public void bindersCachedPerTable() throws Exception {
+        DBDictionary dict = dict(new DBDictionary(), true);
+        RowImpl row = new RowImpl(table, Row.ACTION_INSERT);
+        RowBinder binder = dict.getRowBinder(row);
+        assertNotNull(binder);
+        assertSame(binder, dict.getRowBinder(
+            new RowImpl(table, Row.ACTION_UPDATE)));
+
+        // a new column makes for a new binder
+        column("EXTRA", Types.INTEGER, JavaTypes.INT);
+        assertTrue(binder != dict.getRowBinder(
+            new RowImpl(table, Row.ACTION_INSERT)));
+
+        assertNull(dict(new DBDictionary(), false).getRowBinder(row));
+    }
+
+    @Test
+    public void setTypedOverrideKeptWithoutBinder() throws Exception {
+        DBDictionary dict = dict(new UpperCaseDictionary(), true);
+        RowImpl row = new RowImpl(table, Row.ACTION_INSERT);
+        row.setLong(id, 1L);
+        row.setString(name, "name");
+        assertNull(dict.getRowBinder(row));
+
+        List<String> calls = new ArrayList<>();
+        row.flush(statement(calls), 1, dict, null);
+        assertEquals(Arrays.asList("setLong(1, 1)", "setString(2, NAME)"),
+            calls);
+    }
+
+    /**
+     * Assert that the generated binder binds the given row exactly as the
+     * row's flush through setTyped does.
+     */
+    private void assertBindsAsFlush(RowImpl row, int params)
+        throws Exception {
+        DBDictionary generated = dict(new DBDictionary(), true);
+        assertNotNull(generated.getRowBinder(row));
+        List<String> bound = new ArrayList<>();
+        row.flush(statement(bound), 1, generated, null);
+
+        List<String> flushed = new ArrayList<>();
+        row.flush(statement(flushed), 1, dict(new DBDictionary(), false),
+            null);
+
+        assertEquals(flushed, bound);
+        assertEquals(params, bound.size());
+        assertTrue(row.isFlushed());
+    }
+
+    private Column column(String name, int type, int javaType) {
+        Column col = table.addColumn(name);
+        col.setType(type);
+        col.setJavaType(javaType);
+        return col;
+    }
+
+    private static DBDictionary dict(DBDictionary dict, boolean binders) {
+        JDBCConfiguration conf = mock(JDBCConfiguration.class);
+        when(conf.getDynamicDataStructs()).thenReturn(binders);
+        when(conf.getLog(anyString())).thenReturn(mock(Log.class));
+        dict.conf = conf;
+        dict.log = mock(Log.class);
+        return dict;
+    }
+
+    /**
+     * A statement recording each parameter it is given.
+     */
+    private static PreparedStatement statement(List<String> calls) {
+        return mock(PreparedStatement.class, inv -> {
+            Object[] args = inv.getArguments();
+            if (inv.getMethod().getName().startsWith("set")) {
+                StringBuilder call = new StringBuilder(inv.getMethod().
+                    getName()).append('(');
+                for (int i = 0; i < args.length; i++)
+                    call.append(i == 0 ? "" : ", ").append(args[i] instanceof
+                        Reader ? "reader" : args[i]);
+                calls.add(call.append(')').toString());
+            }
+            return null;
+        });
+    }
+}
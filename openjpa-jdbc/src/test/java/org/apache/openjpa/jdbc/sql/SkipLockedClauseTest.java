@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.jdbc.sql;
+
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.util.UnsupportedException;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+ * Renders the FOR UPDATE clauses of locking selects that skip locked rows.
+ * Each dictionary only supports skipping locked rows from the database
+ * version that introduced it, and DB2 must lock with RS isolation for the
+ * clause to take effect.
+ */
+public class SkipLockedClauseTest {
+
+    @Test
+    public void defaultDictionaryRejectsSkipLocked() {
+        DBDictionary dict = new DBDictionary();
+        assertEquals("FOR UPDATE", dict.getForUpdateClause(fetch(false, -1),
+            true, null));
+        assertUnsupported(dict);
+    }
+
+    @Test
+    public void postgresSkipsLockedFrom95() throws Exception {
+        assertUnsupported(connect(new PostgresDictionary(), "PostgreSQL",
+            "9.4", 9, 4));
+
+        DBDictionary dict = connect(new PostgresDictionary(), "PostgreSQL",
+            "9.5", 9, 5);
+        assertTrue(dict.supportsSkipLocked);
+        assertEquals("FOR UPDATE SKIP LOCKED", dict.getForUpdateClause(
+            fetch(true, -1), true, null));
+        assertTrue(connect(new PostgresDictionary(), "PostgreSQL", "13.2",
+            13, 2).supportsSkipLocked);
+    }
+
+    @Test
+    public void mysqlSkipsLockedFrom8() throws Exception {
+        assertUnsupported(connect(new MySQLDictionary(), "MySQL", "5.7.30",
+            5, 7));
+
+        DBDictionary dict = connect(new MySQLDictionary(), "MySQL", "8.0.21",
+            8, 0);
+        assertTrue(dict.supportsSkipLocked);
+        assertEquals("FOR UPDATE SKIP LOCKED", dict.getForUpdateClause(
+            fetch(true, -1), true, null));
+    }
+
+    @Test
+    public void skipLockedOnlyAppliesToLockingSelects() throws Exception {
+        DBDictionary dict = connect(new PostgresDictionary(), "PostgreSQL",
+            "13.2", 13, 2);
+        assertNull(dict.getForUpdateClause(fetch(true, -1), false, null));
+    }
+
+    @Test
+    public void db2LuwSkipsLockedDataWithRS() throws Exception {
+        assertUnsupported(connect(new DB2Dictionary(), "DB2/LINUXX8664",
+            "SQL09010", 9, 1));
+
+        DBDictionary dict = connect(new DB2Dictionary(), "DB2/LINUXX8664",
+            "SQL09050", 9, 5);
+        assertTrue(dict.supportsSkipLocked);
+        // a serializable isolation would lock with RR, which ignores the
+        // clause, so skip-locked selects lock with RS
+        assertEquals(" FOR READ ONLY WITH RS USE AND KEEP UPDATE LOCKS"
+            + " SKIP LOCKED DATA", dict.getForUpdateClause(fetch(true,
+            Connection.TRANSACTION_SERIALIZABLE), true, null));
+        assertEquals(" FOR READ ONLY WITH RR USE AND KEEP UPDATE LOCKS",
+            dict.getForUpdateClause(fetch(false,
+            Connection.TRANSACTION_SERIALIZABLE), true, null));
+    }
+
+    @Test
+    public void db2ZosSkipsLockedDataFrom9() throws Exception {
+        assertFalse(connect(new DB2Dictionary(), "DB2", "DSN08015", 8, 1)
+            .supportsSkipLocked);
+
+        DBDictionary dict = connect(new DB2Dictionary(), "DB2", "DSN09015",
+            9, 1);
+        assertTrue(dict.supportsSkipLocked);
+        assertEquals(" FOR READ ONLY WITH RS USE AND KEEP UPDATE LOCKS"
+            + " SKIP LOCKED DATA", dict.getForUpdateClause(fetch(true,
+            Connection.TRANSACTION_READ_COMMITTED), true, null));
+    }
+
+    @Test
+    public void oracleLimitsSkipLockedSelectThroughStatement()
+        throws Exception {
+        DBDictionary dict = connect(new OracleDictionary(), "Oracle",
+            "Oracle Database 19c", 19, 0);
+        assertTrue(dict.supportsSkipLocked);
+
+        // ROWNUM would be assigned before the locked rows are skipped, and
+        // the ordered form would lock an inline view, so neither is used
+        assertEquals("SELECT t0.ID FROM JOB t0 WHERE t0.STATUS = ?"
+            + " ORDER BY t0.ID ASC FOR UPDATE SKIP LOCKED",
+            jobs(dict, true, 0, 10, true).getSQL());
+        assertEquals("SELECT t0.ID FROM JOB t0 WHERE t0.STATUS = ?"
+            + " FOR UPDATE SKIP LOCKED", jobs(dict, true, 0, 10, false)
+            .getSQL());
+
+        PreparedStatement stmnt = mock(PreparedStatement.class);
+        dict.setMaxRows(stmnt, range(0, 10), fetch(true, -1), true);
+        verify(stmnt).setMaxRows(10);
+    }
+
+    @Test
+    public void oracleKeepsRownumWithoutSkipLocked() throws Exception {
+        DBDictionary dict = connect(new OracleDictionary(), "Oracle",
+            "Oracle Database 19c", 19, 0);
+        assertEquals("SELECT t0.ID FROM JOB t0 WHERE t0.STATUS = ?"
+            + " AND ROWNUM <= ? FOR UPDATE", jobs(dict, false, 0, 10, false)
+            .getSQL());
+
+        // the statement is only limited for selects that skip locked rows
+        PreparedStatement stmnt = mock(PreparedStatement.class);
+        dict.setMaxRows(stmnt, range(0, 10), fetch(false, -1), true);
+        dict.setMaxRows(stmnt, range(0, 10), fetch(true, -1), false);
+        dict.setMaxRows(stmnt, range(0, Long.MAX_VALUE), fetch(true, -1),
+            true);
+        verify(stmnt, never()).setMaxRows(anyInt());
+    }
+
+    @Test
+    public void oracleRejectsOffsetWithSkipLocked() throws Exception {
+        DBDictionary dict = connect(new OracleDictionary(), "Oracle",
+            "Oracle Database 19c", 19, 0);
+        try {
+            jobs(dict, true, 5, 10, true);
+            fail("Expected Oracle to reject an offset with SKIP LOCKED");
+        } catch (UnsupportedException ue) {
+            // expected
+        }
+        assertTrue(jobs(dict, false, 5, 10, true).getSQL()
+            .contains("RNUM > ?"));
+    }
+
+    /**
+     * Render a locking select of a work queue table with the given range.
+     */
+    private static SQLBuffer jobs(DBDictionary dict, boolean skipLocked,
+        long start, long end, boolean ordered) {
+        SQLBuffer order = null;
+        if (ordered)
+            order = new SQLBuffer(dict).append("t0.ID ASC");
+        return dict.toSelect(new SQLBuffer(dict).append("t0.ID"),
+            fetch(skipLocked, -1), new SQLBuffer(dict).append("JOB t0"),
+            new SQLBuffer(dict).append("t0.STATUS = ").appendValue(1), null,
+            null, order, false, true, start, end, (Select) null);
+    }
+
+    private static Select range(long start, long end) {
+        Select sel = mock(Select.class);
+        when(sel.getStartIndex()).thenReturn(start);
+        when(sel.getEndIndex()).thenReturn(end);
+        return sel;
+    }
+
+    private static void assertUnsupported(DBDictionary dict) {
+        // only DB2 takes the isolation level of each select
+        int isolation = (dict instanceof DB2Dictionary)
+            ? Connection.TRANSACTION_READ_COMMITTED : -1;
+        try {
+            dict.getForUpdateClause(fetch(true, isolation), true, null);
+            fail("Expected " + dict.getClass().getSimpleName()
+                + " to reject skipping locked rows");
+        } catch (UnsupportedException ue) {
+            // expected
+        }
+    }
+
+    private static JDBCFetchConfiguration fetch(boolean skipLocked,
+        int isolation) {
+        JDBCFetchConfiguration fetch = mock(JDBCFetchConfiguration.class);
+        when(fetch.getSkipLocked()).thenReturn(skipLocked);
+        when(fetch.getIsolation()).thenReturn(isolation);
+        return fetch;
+    }
+
+    private static DBDictionary connect(DBDictionary dict, String product,
+        String version, int major, int minor) throws Exception {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(metaData.getDatabaseProductName()).thenReturn(product);
+        when(metaData.getDatabaseProductVersion()).thenReturn(version);
+        when(metaData.getDatabaseMajorVersion()).thenReturn(major);
+        when(metaData.getDatabaseMinorVersion()).thenReturn(minor);
+        when(metaData.getJDBCMajorVersion()).thenReturn(4);
+        when(metaData.getDriverName()).thenReturn("driver");
+        Connection conn = mock(Connection.class);
+        when(conn.getMetaData()).thenReturn(metaData);
+        dict.log = mock(Log.class);
+        dict.connectedConfiguration(conn);
+        return dict;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.audit;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * An asynchronous counterpart of {@link AuditLogger} that prints the audit
+ * records from a background thread, one line per record.
+ * The output could be directed to a file, defaults to <tt>System.out</tt>.
+ *
+ * @since 3.2.3
+ */
+public class AsyncAuditLogger extends AsyncAuditor {
+	private PrintStream _out = System.out;
+	private String _file;
+
+	@Override
+	protected void write(List<AuditRecord> records) {
+		for (AuditRecord record : records)
+			_out.println(record);
+		_out.flush();
+	}
+
+	public void setFile(String file) throws FileNotFoundException {
+		_out = new PrintStream(new FileOutputStream(_file = file), false);
+	}
+
+	public String getFile() {
+		return _file;
+	}
+
+	@Override
+	public void close() throws Exception {
+		super.close();
+		if (_out != System.out) {
+			_out.close();
+		}
+	}
+}
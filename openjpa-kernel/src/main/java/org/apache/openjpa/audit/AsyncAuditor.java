@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.kernel.Audited;
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * An auditor that takes the audited instances off the committing thread.
+ * Each audited instance is turned into an {@link AuditRecord} and put on a
+ * bounded queue, and a single background thread drains the queue in batches
+ * of up to {@link #getBatchSize() BatchSize} records into
+ * {@link #write(List)}. Records are written in the order they were audited.
+ * <br>
+ * The {@link #getOverflow() Overflow} property decides what happens when the
+ * queue is full: <code>block</code> makes the committing thread wait for
+ * room, <code>drop</code> discards the record and counts it, and
+ * <code>spill</code> appends the record to the {@link #getSpillFile()
+ * SpillFile}, from which it is replayed once the queue has drained.
+ * <br>
+ * As the records are written after the transaction has completed, an
+ * asynchronous auditor never rolls back the audited transaction.
+ *
+ * @since 3.2.3
+ */
+public abstract class AsyncAuditor implements Auditor {
+	private static final Localizer _loc = Localizer.forPackage(AsyncAuditor.class);
+
+	public static final String OVERFLOW_BLOCK = "block";
+	public static final String OVERFLOW_DROP = "drop";
+	public static final String OVERFLOW_SPILL = "spill";
+
+	private int _capacity = 8192;
+	private int _batchSize = 256;
+	private String _overflow = OVERFLOW_BLOCK;
+	private String _spillFile;
+	protected Log _log;
+
+	private BlockingQueue<AuditRecord> _queue;
+	private Thread _writer;
+	private volatile boolean _closed;
+	private final AtomicLong _dropped = new AtomicLong();
+
+	// guards the spill file, which holds the records that arrived while the
+	// queue was full; while it holds records, new records are spilled too so
+	// that records are replayed in order
+	private final Object _spillLock = new Object();
+	private ObjectOutputStream _spillOut;
+	private File _spillOutFile;
+	private int _spilled;
+
+	// while the records of one spill file are replayed, new records are
+	// spilled to the other one
+	private boolean _alternate;
+
+	/**
+	 * Write the given batch of records. Invoked on the background writer
+	 * thread only.
+	 */
+	protected abstract void write(List<AuditRecord> records) throws Exception;
+
+	/**
+	 * The number of records the queue holds before the overflow strategy
+	 * applies. Defaults to 8192.
+	 */
+	public int getCapacity() {
+		return _capacity;
+	}
+
+	public void setCapacity(int capacity) {
+		_capacity = capacity;
+	}
+
+	/**
+	 * The maximum number of records passed to one {@link #write(List)}.
+	 * Defaults to 256.
+	 */
+	public int getBatchSize() {
+		return _batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		_batchSize = batchSize;
+	}
+
+	/**
+	 * What to do with a record when the queue is full: <code>block</code>,
+	 * <code>drop</code> or <code>spill</code>. Defaults to <code>block</code>.
+	 */
+	public String getOverflow() {
+		return _overflow;
+	}
+
+	public void setOverflow(String overflow) {
+		_overflow = overflow;
+	}
+
+	/**
+	 * The file records are spilled to when the queue is full and the
+	 * overflow strategy is <code>spill</code>. Records that are spilled
+	 * while the file is replayed go to a second file of the same name with
+	 * the suffix <code>.2</code>.
+	 */
+	public String getSpillFile() {
+		return _spillFile;
+	}
+
+	public void setSpillFile(String spillFile) {
+		_spillFile = spillFile;
+	}
+
+	/**
+	 * The number of records dropped because the queue was full.
+	 */
+	public long getDroppedCount() {
+		return _dropped.get();
+	}
+
+	@Override
+	public void audit(Broker broker, Collection<Audited> newObjects, Collection<Audited> updates,
+			Collection<Audited> deletes) {
+		for (Audited audited : newObjects)
+			enqueue(audited.toRecord());
+		for (Audited audited : updates)
+			enqueue(audited.toRecord());
+		for (Audited audited : deletes)
+			enqueue(audited.toRecord());
+	}
+
+	/**
+	 * Hands the given record to the writer thread, applying the overflow
+	 * strategy if the queue is full.
+	 */
+	private void enqueue(AuditRecord record) {
+		if (_closed)
+			throw new UserException(_loc.get("audit-closed"));
+		if (OVERFLOW_SPILL.equals(_overflow)) {
+			synchronized (_spillLock) {
+				if (_spilled == 0 && _queue.offer(record))
+					return;
+				spill(record);
+			}
+		} else if (OVERFLOW_DROP.equals(_overflow)) {
+			if (!_queue.offer(record) && _dropped.incrementAndGet() == 1)
+				_log.warn(_loc.get("audit-dropped", _capacity));
+		} else {
+			try {
+				_queue.put(record);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new UserException(_loc.get("audit-interrupted"), ie);
+			}
+		}
+	}
+
+	/**
+	 * Appends the given record to the spill file. The spill lock must be
+	 * held.
+	 */
+	private void spill(AuditRecord record) {
+		try {
+			if (_spillOut == null) {
+				_spillOutFile = new File((_alternate) ? _spillFile + ".2" : _spillFile);
+				_spillOut = new ObjectOutputStream(new BufferedOutputStream(
+						new FileOutputStream(_spillOutFile)));
+			}
+			_spillOut.writeObject(record);
+			_spillOut.reset();
+			_spilled++;
+		} catch (IOException ioe) {
+			if (_dropped.incrementAndGet() == 1)
+				_log.warn(_loc.get("audit-spill-failed", _spillOutFile), ioe);
+		}
+	}
+
+	/**
+	 * Loop of the background writer thread.
+	 */
+	private void drain() {
+		List<AuditRecord> batch = new ArrayList<>(_batchSize);
+		while (true) {
+			try {
+				AuditRecord record = _queue.poll(100, TimeUnit.MILLISECONDS);
+				if (record != null) {
+					batch.add(record);
+					_queue.drainTo(batch, _batchSize - 1);
+					flush(batch);
+				} else if (!replay(batch) && _closed) {
+					return;
+				}
+			} catch (InterruptedException ie) {
+				// stop accepting records, but write the ones queued
+				_closed = true;
+			}
+		}
+	}
+
+	/**
+	 * Writes and clears the given batch, logging but otherwise ignoring
+	 * errors.
+	 */
+	private void flush(List<AuditRecord> batch) {
+		if (batch.isEmpty())
+			return;
+		try {
+			write(batch);
+		} catch (Throwable t) {
+			_log.warn(_loc.get("audit-write-failed", batch.size()), t);
+		} finally {
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Writes the records spilled while the queue was full, if any. Records
+	 * that are audited during the replay go to the queue again, or to the
+	 * other spill file if the queue fills up, so they are written after the
+	 * replayed ones.
+	 *
+	 * @return whether any record has been replayed
+	 */
+	private boolean replay(List<AuditRecord> batch) {
+		File file;
+		synchronized (_spillLock) {
+			if (_spilled == 0)
+				return false;
+			try {
+				_spillOut.close();
+			} catch (IOException ioe) {
+				_log.warn(_loc.get("audit-spill-failed", _spillOutFile), ioe);
+			}
+			file = _spillOutFile;
+			_spillOut = null;
+			_spillOutFile = null;
+			_spilled = 0;
+			_alternate = !_alternate;
+		}
+
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file));
+				ObjectInputStream oin = new ObjectInputStream(in)) {
+			while (true) {
+				batch.add((AuditRecord) oin.readObject());
+				if (batch.size() == _batchSize)
+					flush(batch);
+			}
+		} catch (EOFException eof) {
+			// all records read
+		} catch (Exception e) {
+			_log.warn(_loc.get("audit-spill-failed", file), e);
+		}
+		flush(batch);
+		file.delete();
+		return true;
+	}
+
+	@Override
+	public boolean isRollbackOnError() {
+		return false;
+	}
+
+	@Override
+	public void setConfiguration(Configuration conf) {
+		_log = conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
+	}
+
+	@Override
+	public void startConfiguration() {
+	}
+
+	@Override
+	public void endConfiguration() {
+		if (_capacity < 1 || _batchSize < 1)
+			throw new UserException(_loc.get("audit-bad-size", _capacity, _batchSize));
+		if (!OVERFLOW_BLOCK.equals(_overflow) && !OVERFLOW_DROP.equals(_overflow)
+				&& !OVERFLOW_SPILL.equals(_overflow))
+			throw new UserException(_loc.get("audit-bad-overflow", _overflow));
+		if (OVERFLOW_SPILL.equals(_overflow) && _spillFile == null)
+			throw new UserException(_loc.get("audit-no-spill-file"));
+
+		_queue = new ArrayBlockingQueue<>(_capacity);
+		_writer = new Thread(this::drain, "OpenJPA audit writer");
+		_writer.setDaemon(true);
+		_writer.start();
+	}
+
+	/**
+	 * Stops accepting records and waits for the writer thread to write the
+	 * queued and spilled records.
+	 */
+	@Override
+	public void close() throws Exception {
+		_closed = true;
+		if (_writer != null)
+			_writer.join();
+		if (_dropped.get() > 0)
+			_log.warn(_loc.get("audit-dropped-total", _dropped.get()));
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.audit;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A compact, immutable record of an audited change that does not refer to
+ * the managed instance, so that it can be written after the transaction
+ * has ended. Values of relations are recorded as the object ids of the
+ * related instances, and mutable values are copied.
+ *
+ * @see org.apache.openjpa.kernel.Audited#toRecord()
+ * @since 3.2.3
+ */
+public final class AuditRecord implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final AuditableOperation _op;
+	private final String _type;
+	private final Object _oid;
+	private final Object _version;
+	private final long _time;
+	private final BitSet _fields;
+	private final String[] _names;
+	private final Object[] _old;
+	private final Object[] _new;
+
+	/**
+	 * Supply the record data.
+	 *
+	 * @param op the audited operation
+	 * @param type the name of the audited type
+	 * @param oid the object id of the audited instance
+	 * @param version the version of the audited instance, or null
+	 * @param fields the indexes of the changed fields
+	 * @param names the names of the changed fields, in index order
+	 * @param oldValues the values of the changed fields before the change,
+	 * or null for new instances
+	 * @param newValues the values of the changed fields after the change
+	 */
+	public AuditRecord(AuditableOperation op, String type, Object oid, Object version,
+			BitSet fields, String[] names, Object[] oldValues, Object[] newValues) {
+		_op = op;
+		_type = type;
+		_oid = oid;
+		_version = version;
+		_time = System.currentTimeMillis();
+		_fields = fields;
+		_names = names;
+		_old = oldValues;
+		_new = newValues;
+	}
+
+	/**
+	 * Gets the audited operation.
+	 */
+	public AuditableOperation getOperation() {
+		return _op;
+	}
+
+	/**
+	 * Gets the name of the audited type.
+	 */
+	public String getType() {
+		return _type;
+	}
+
+	/**
+	 * Gets the object id of the audited instance.
+	 */
+	public Object getObjectId() {
+		return _oid;
+	}
+
+	/**
+	 * Gets the version of the audited instance, or null if it is not
+	 * versioned.
+	 */
+	public Object getVersion() {
+		return _version;
+	}
+
+	/**
+	 * Gets the time this record was taken, in milliseconds since the epoch.
+	 */
+	public long getTime() {
+		return _time;
+	}
+
+	/**
+	 * Gets the indexes of the changed fields.
+	 */
+	public BitSet getChangedFields() {
+		return (BitSet) _fields.clone();
+	}
+
+	/**
+	 * Gets the names of the changed fields, in index order.
+	 */
+	public String[] getChangedFieldNames() {
+		return _names.clone();
+	}
+
+	/**
+	 * Gets the values of the changed fields before the change, in index
+	 * order, or null for new instances.
+	 */
+	public Object[] getOldValues() {
+		return (_old == null) ? null : _old.clone();
+	}
+
+	/**
+	 * Gets the values of the changed fields after the change, in index
+	 * order.
+	 */
+	public Object[] getNewValues() {
+		return _new.clone();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		buf.append(_op).append(": ").append(_type).append('[').append(_oid).append(']');
+		if (_version != null)
+			buf.append(" version ").append(_version);
+		for (int i = 0; i < _names.length; i++) {
+			buf.append(i == 0 ? " Fields: " : ", ").append(_names[i]).append('=');
+			if (_old != null)
+				buf.append(toString(_old[i])).append(" -> ");
+			buf.append(toString(_new[i]));
+		}
+		return buf.toString();
+	}
+
+	private static String toString(Object val) {
+		if (val == null || !val.getClass().isArray())
+			return String.valueOf(val);
+		String str = Arrays.deepToString(new Object[]{ val });
+		return str.substring(1, str.length() - 1);
+	}
+}
@@ -35,6 +35,7 @@ public abstract class DetachOptions
 
     private boolean _liteAutoDetach = false;
     private boolean _detachProxyFields = true;
+    private boolean _bulkAttach = false;
 
     /**
      * The {@link DetachState} constant.
@@ -161,6 +162,28 @@ public abstract class DetachOptions
         return _detachProxyFields;
     }
 
+    /**
+     * Whether to load the persistent counterparts of all detached instances
+     * in a graph with set-based queries before attaching it, rather than
+     * finding them one at a time as the graph is walked.
+     *
+     * @since 3.2.3
+     */
+    public boolean getBulkAttach() {
+        return _bulkAttach;
+    }
+
+    /**
+     * Whether to load the persistent counterparts of all detached instances
+     * in a graph with set-based queries before attaching it, rather than
+     * finding them one at a time as the graph is walked.
+     *
+     * @since 3.2.3
+     */
+    public void setBulkAttach(boolean b) {
+        _bulkAttach = b;
+    }
+
     /**
      * Detach loaded state.
      */
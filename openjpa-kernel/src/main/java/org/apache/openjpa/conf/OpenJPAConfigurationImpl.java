@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 
+import org.apache.openjpa.audit.AsyncAuditLogger;
 import org.apache.openjpa.audit.AuditLogger;
 import org.apache.openjpa.audit.Auditor;
 import org.apache.openjpa.datacache.CacheDistributionPolicy;
@@ -668,7 +669,8 @@ public class OpenJPAConfigurationImpl
         instrumentationProviders.setInstantiatingGetter("getInstrumentationInstances");
 
         auditorPlugin = addPlugin("Auditor", true);
-        aliases = new String[] { "default", AuditLogger.class.getName(), };
+        aliases = new String[] { "default", AuditLogger.class.getName(),
+            "async", AsyncAuditLogger.class.getName(), };
         auditorPlugin.setAliases(aliases);
         auditorPlugin.setInstantiatingGetter("getAuditorInstance");
 
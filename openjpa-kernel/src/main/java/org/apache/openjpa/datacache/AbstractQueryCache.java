@@ -22,6 +22,7 @@ import java.io.PrintStream;
 import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -66,7 +67,8 @@ public abstract class AbstractQueryCache
         Localizer.forPackage(AbstractQueryCache.class);
 
     private static final String TIMESTAMP = "timestamp";
-    public enum EvictPolicy {DEFAULT, TIMESTAMP}
+    private static final String ROWS = "rows";
+    public enum EvictPolicy {DEFAULT, TIMESTAMP, ROWS}
 
     /**
      * The configuration set by the system.
@@ -125,7 +127,10 @@ public abstract class AbstractQueryCache
 
     @Override
     public void onTypesChanged(TypesChangedEvent ev) {
-        if (evictPolicy == EvictPolicy.DEFAULT) {
+        if (evictPolicy == EvictPolicy.ROWS
+            && ev instanceof InstancesChangedEvent) {
+            onInstancesChanged((InstancesChangedEvent) ev);
+        } else if (evictPolicy != EvictPolicy.TIMESTAMP) {
             writeLock();
             Collection keys = null;
             try {
@@ -164,6 +169,74 @@ public abstract class AbstractQueryCache
         }
     }
 
+    /**
+     * Evict the results that may be affected by the given changes. A result
+     * is evicted if instances of a type in its access path were added, if
+     * an update changed a field the query traversed, or if a deleted
+     * instance was part of the result. Results that do not record the
+     * fields they traversed, and projections affected by a delete, are
+     * evicted whenever a type in their access path changed.
+     */
+    private void onInstancesChanged(InstancesChangedEvent ev) {
+        writeLock();
+        Collection keys = null;
+        try {
+            if (hasListeners())
+                fireEvent(ev);
+            keys = keySet();
+        } finally {
+            writeUnlock();
+        }
+
+        List<QueryKey> removes = null;
+        for (Object o : keys) {
+            QueryKey qk = (QueryKey) o;
+            if (qk.changeInvalidatesQuery(ev.getTypes())
+                && isAffected(qk, getInternal(qk), ev)) {
+                if (removes == null)
+                    removes = new ArrayList<>();
+                removes.add(qk);
+            }
+        }
+        if (removes != null)
+            removeAllInternal(removes);
+    }
+
+    /**
+     * Whether the given cached result may be changed by the given event.
+     */
+    private static boolean isAffected(QueryKey qk, QueryResult res,
+        InstancesChangedEvent ev) {
+        if (res == null || res.getAccessFields() == null)
+            return true;
+
+        // a new instance may match the query
+        if (qk.changeInvalidatesQuery(ev.getPersistedTypes()))
+            return true;
+
+        // an update only matters if it changed a field the query read
+        for (Map.Entry<Class<?>, Set<String>> entry
+            : ev.getUpdatedFields().entrySet()) {
+            if (qk.changeInvalidatesQuery(Collections.<Class<?>> singleton
+                (entry.getKey())) && !Collections.disjoint
+                (res.getAccessFields(), entry.getValue()))
+                return true;
+        }
+
+        // a delete only matters if it removed an instance of the result;
+        // we can only tell for plain candidate results
+        if (qk.changeInvalidatesQuery(ev.getDeletedTypes())) {
+            if (!res.isCandidateResult()
+                || qk.getAcessPathClassNames().size() > 1)
+                return true;
+            Set<Object> deleted = ev.getDeletedObjectIds();
+            for (Object oid : res)
+                if (deleted.contains(oid))
+                    return true;
+        }
+        return false;
+    }
+
     @Override
     public QueryResult get(QueryKey key) {
         if (_statsEnabled) {
@@ -427,6 +500,8 @@ public abstract class AbstractQueryCache
     public void setEvictPolicy(String evictPolicy) {
         if (evictPolicy.equalsIgnoreCase(TIMESTAMP))
             this.evictPolicy = EvictPolicy.TIMESTAMP;
+        else if (evictPolicy.equalsIgnoreCase(ROWS))
+            this.evictPolicy = EvictPolicy.ROWS;
     }
 
     /**
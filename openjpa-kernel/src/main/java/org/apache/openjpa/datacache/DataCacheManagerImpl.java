@@ -18,6 +18,7 @@
  */
 package org.apache.openjpa.datacache;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -26,9 +27,12 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.enhance.PCDataGenerator;
+import org.apache.openjpa.kernel.BrokerFactory;
 import org.apache.openjpa.kernel.OpenJPAStateManager;
 import org.apache.openjpa.lib.conf.ObjectValue;
+import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Closeable;
+import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.MetaDataRepository;
 import org.apache.openjpa.util.ImplHelper;
@@ -37,6 +41,11 @@ import org.apache.openjpa.util.ImplHelper;
  * Default data cache manager provides handle to utilities {@linkplain PCDataGenerator}, {@linkplain ClearableScheduler}
  * and {@linkplain CacheDistributionPolicy} for the cache operation. This implementation also determines whether a
  * managed type is eligible to cache.
+ * <p>
+ * If a {@linkplain #setSnapshotFile snapshot file} is configured, the hottest cache entries are written to it
+ * when the manager is closed, and reloaded in the background when the next broker factory is created.
+ *
+ * @see DataCacheSnapshot
  *
  * @author Abe White
  * @author Patrick Linskey
@@ -45,6 +54,8 @@ import org.apache.openjpa.util.ImplHelper;
 public class DataCacheManagerImpl
     implements Closeable, DataCacheManager {
 
+    private static final Localizer _loc = Localizer.forPackage(DataCacheManagerImpl.class);
+
     private OpenJPAConfiguration _conf;
     private DataCache _cache = null;
     private QueryCache _queryCache = null;
@@ -52,6 +63,9 @@ public class DataCacheManagerImpl
     private ClearableScheduler _scheduler = null;
     private CacheDistributionPolicy _policy = new DefaultCacheDistributionPolicy();
     private Map<ClassMetaData, Boolean> _cacheable = null;
+    private String _snapshotFile = null;
+    private int _snapshotSize = 10000;
+    private boolean _snapshotQueries = true;
 
     // Properties that are configured via openjpa.DataCache but need to be used here. This is here to support the 1.2
     // way of doing things with openjpa.DataCache(Types=x;y;z,ExcludedTypes=a)
@@ -121,8 +135,100 @@ public class DataCacheManagerImpl
         return _scheduler;
     }
 
+    /**
+     * The file the hottest cache entries are written to on close and reloaded from on startup,
+     * or null for no snapshot.
+     *
+     * @since 3.2.3
+     */
+    public String getSnapshotFile() {
+        return _snapshotFile;
+    }
+
+    /**
+     * The file the hottest cache entries are written to on close and reloaded from on startup,
+     * or null for no snapshot.
+     *
+     * @since 3.2.3
+     */
+    public void setSnapshotFile(String file) {
+        _snapshotFile = file;
+    }
+
+    /**
+     * The maximum number of entries of each cache to write to the snapshot. Defaults to 10000.
+     *
+     * @since 3.2.3
+     */
+    public int getSnapshotSize() {
+        return _snapshotSize;
+    }
+
+    /**
+     * The maximum number of entries of each cache to write to the snapshot. Defaults to 10000.
+     *
+     * @since 3.2.3
+     */
+    public void setSnapshotSize(int size) {
+        _snapshotSize = size;
+    }
+
+    /**
+     * Whether the snapshot includes the query cache. Defaults to true.
+     *
+     * @since 3.2.3
+     */
+    public boolean getSnapshotQueries() {
+        return _snapshotQueries;
+    }
+
+    /**
+     * Whether the snapshot includes the query cache. Defaults to true.
+     *
+     * @since 3.2.3
+     */
+    public void setSnapshotQueries(boolean queries) {
+        _snapshotQueries = queries;
+    }
+
+    /**
+     * Reload the snapshot written when the previous broker factory was closed, if any.
+     * The snapshot is revalidated and put into the caches by a background thread, so the caches warm up
+     * while the factory is already in use.
+     *
+     * @since 3.2.3
+     */
+    public void restoreSnapshot(final BrokerFactory factory) {
+        if (_snapshotFile == null || _cache == null)
+            return;
+        final DataCacheSnapshot snapshot = new DataCacheSnapshot(_conf, new File(_snapshotFile));
+        if (!snapshot.getFile().exists())
+            return;
+
+        Thread restore = new Thread(() -> {
+            try {
+                snapshot.restore(factory, this, _snapshotQueries);
+            } catch (Exception e) {
+                Log log = _conf.getLog(OpenJPAConfiguration.LOG_DATACACHE);
+                if (log.isWarnEnabled())
+                    log.warn(_loc.get("snapshot-restore-failed", snapshot.getFile()), e);
+            }
+        }, "OpenJPA data cache snapshot restore");
+        restore.setDaemon(true);
+        restore.start();
+    }
+
     @Override
     public void close() {
+        if (_snapshotFile != null && _cache != null && _snapshotSize > 0) {
+            try {
+                new DataCacheSnapshot(_conf, new File(_snapshotFile)).write(this, _snapshotSize, _snapshotQueries);
+            } catch (Exception e) {
+                Log log = _conf.getLog(OpenJPAConfiguration.LOG_DATACACHE);
+                if (log.isWarnEnabled())
+                    log.warn(_loc.get("snapshot-write-failed", _snapshotFile), e);
+            }
+        }
         ImplHelper.close(_cache);
         ImplHelper.close(_queryCache);
         if (_scheduler != null)
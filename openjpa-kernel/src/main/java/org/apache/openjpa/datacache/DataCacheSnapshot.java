@@ -0,0 +1,585 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.conf.OpenJPAVersion;
+import org.apache.openjpa.event.AbstractTransactionListener;
+import org.apache.openjpa.event.RemoteCommitEvent;
+import org.apache.openjpa.event.RemoteCommitEventManager;
+import org.apache.openjpa.event.RemoteCommitListener;
+import org.apache.openjpa.event.TransactionEvent;
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.kernel.BrokerFactory;
+import org.apache.openjpa.kernel.Query;
+import org.apache.openjpa.kernel.jpql.JPQLParser;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.OpenJPAId;
+import org.apache.openjpa.util.Serialization;
+
+/**
+ * Writes the hottest entries of the data cache and query cache to a local
+ * file, and reloads them into a fresh cache. The cached data of each class
+ * is revalidated against the database with one version query per batch of
+ * instances before it is put back into the cache; instances whose version
+ * changed or that can not be validated (no version field, or no single
+ * field identity) are dropped. A query result is only restored if all of
+ * its instances were validated and none of the classes in its access path
+ * had dropped instances. Instances and query results that transactions
+ * of this or of a remote broker factory commit changes to while the
+ * snapshot is restored are not put back either, as their validation may
+ * predate the change.
+ *
+ * @since 3.2.3
+ */
+public class DataCacheSnapshot {
+
+    private static final Localizer _loc =
+        Localizer.forPackage(DataCacheSnapshot.class);
+
+    private static final int MAGIC = 0x4F4A4453; // "OJDS"
+    private static final short FORMAT_VERSION = 1;
+
+    /**
+     * Number of instances validated per version query.
+     */
+    public static final int BATCH_SIZE = 500;
+
+    private final OpenJPAConfiguration _conf;
+    private final File _file;
+    private final Log _log;
+
+    /**
+     * Constructor; supply configuration and snapshot file.
+     */
+    public DataCacheSnapshot(OpenJPAConfiguration conf, File file) {
+        _conf = conf;
+        _file = file;
+        _log = conf.getLog(OpenJPAConfiguration.LOG_DATACACHE);
+    }
+
+    /**
+     * The snapshot file.
+     */
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Write up to <code>max</code> of the hottest entries of the caches
+     * of the given manager to the snapshot file.
+     *
+     * @param queries whether to include the query cache
+     * @return the number of data cache entries written
+     */
+    public int write(DataCacheManager mgr, int max, boolean queries)
+        throws IOException {
+        List<DataCachePCData> datas = new ArrayList<>();
+        DataCache cache = mgr.getSystemDataCache();
+        if (cache != null) {
+            collect(cache, max, datas);
+            for (String name : cache.getPartitionNames())
+                collect(cache.getPartition(name, false), max, datas);
+        }
+
+        List<Object> results = Collections.emptyList();
+        QueryCache qc = mgr.getSystemQueryCache();
+        if (queries && qc instanceof ConcurrentQueryCache)
+            results = ((ConcurrentQueryCache) qc).getCacheMap().
+                getHottestValues(max);
+
+        File tmp = new File(_file.getPath() + ".tmp");
+        File dir = _file.getAbsoluteFile().getParentFile();
+        if (dir != null)
+            dir.mkdirs();
+        int count = 0;
+        int qcount = 0;
+        try (DataOutputStream out = new DataOutputStream
+            (new BufferedOutputStream(new FileOutputStream(tmp), 65536))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeUTF(OpenJPAVersion.VERSION_ID);
+
+            for (DataCachePCData data : datas)
+                if (data != null && !data.isTimedOut()
+                    && writeEntry(out, data, null))
+                    count++;
+            out.writeInt(0);
+
+            // query cache values do not know their keys
+            if (queries && qc instanceof ConcurrentQueryCache) {
+                Map<Object, Object> keys = new IdentityHashMap<>();
+                for (Object entry : ((ConcurrentQueryCache) qc).
+                    getCacheMap().entrySet()) {
+                    Map.Entry<?, ?> e = (Map.Entry<?, ?>) entry;
+                    keys.put(e.getValue(), e.getKey());
+                }
+                for (Object result : results) {
+                    Object key = keys.get(result);
+                    if (key != null && !((QueryResult) result).isTimedOut()
+                        && writeEntry(out, key, result))
+                        qcount++;
+                }
+            }
+            out.writeInt(0);
+        }
+        if (!tmp.renameTo(_file)) {
+            _file.delete();
+            if (!tmp.renameTo(_file))
+                throw new IOException(_file.getPath());
+        }
+        if (_log.isInfoEnabled())
+            _log.info(_loc.get("snapshot-written", count, qcount,
+                _file));
+        return count;
+    }
+
+    /**
+     * Add up to <code>max</code> of the hottest entries of the given cache
+     * to the given list. Caches that do not expose their contents are
+     * skipped.
+     */
+    private void collect(DataCache cache, int max,
+        List<DataCachePCData> datas) {
+        if (cache instanceof ConcurrentDataCache) {
+            for (Object data : ((ConcurrentDataCache) cache).getCacheMap().
+                getHottestValues(max))
+                datas.add((DataCachePCData) data);
+        } else if (cache != null && _log.isTraceEnabled())
+            _log.trace(_loc.get("snapshot-skip-cache", cache.getName()));
+    }
+
+    /**
+     * Write the given objects as one length-prefixed serialized entry, so
+     * that an entry that can no longer be read does not spoil the rest of
+     * the file.
+     *
+     * @return false if the entry is not serializable
+     */
+    private boolean writeEntry(DataOutputStream out, Object o1, Object o2)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(o1);
+            if (o2 != null)
+                oos.writeObject(o2);
+        } catch (IOException ioe) {
+            if (_log.isTraceEnabled())
+                _log.trace(_loc.get("snapshot-skip-entry", o1), ioe);
+            return false;
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        return true;
+    }
+
+    /**
+     * Reload the snapshot file into the caches of the given manager,
+     * revalidating the cached data with a broker from the given factory.
+     * The snapshot file is deleted once read, so that it is never loaded
+     * twice.
+     *
+     * @param queries whether to restore query results
+     * @return the number of data cache entries restored
+     */
+    public int restore(BrokerFactory factory, DataCacheManager mgr,
+        boolean queries)
+        throws IOException {
+        if (!_file.exists())
+            return 0;
+
+        List<DataCachePCData> datas = new ArrayList<>();
+        Map<QueryKey, QueryResult> results = new LinkedHashMap<>();
+        try {
+            if (!read(datas, results))
+                return 0;
+        } finally {
+            _file.delete();
+        }
+
+        // record the changes committed while validating, as they may not
+        // be visible to the validation queries but also find nothing in the
+        // caches to evict
+        ChangeTracker changes = new ChangeTracker();
+        factory.addTransactionListener(changes);
+        RemoteCommitEventManager remote = _conf.getRemoteCommitEventManager();
+        if (remote.areRemoteEventsEnabled())
+            remote.addListener(changes);
+
+        Set<Object> valid = new HashSet<>();
+        Set<String> stale = new HashSet<>();
+        int restored = 0;
+        try {
+            Broker broker = factory.newBroker();
+            try {
+                for (Map.Entry<Class<?>, List<DataCachePCData>> entry
+                    : group(datas).entrySet())
+                    validate(broker, entry.getKey(), entry.getValue(), mgr,
+                        changes, valid, stale);
+            } finally {
+                broker.close();
+            }
+
+            QueryCache qc = mgr.getSystemQueryCache();
+            if (queries && qc != null) {
+                for (Map.Entry<QueryKey, QueryResult> entry
+                    : results.entrySet()) {
+                    QueryKey key = entry.getKey();
+                    QueryResult result = entry.getValue();
+                    if (result.isTimedOut() || !valid.containsAll(result)
+                        || !Collections.disjoint(stale,
+                        key.getAcessPathClassNames()))
+                        continue;
+                    if (put(qc, key, result, changes))
+                        restored++;
+                }
+            }
+        } finally {
+            // brokers created meanwhile keep the listener
+            changes.close();
+            factory.removeTransactionListener(changes);
+            if (remote.areRemoteEventsEnabled())
+                remote.removeListener(changes);
+        }
+        if (_log.isInfoEnabled())
+            _log.info(_loc.get("snapshot-restored", new Object[]{
+                valid.size(), datas.size(), restored, results.size(), _file }));
+        return valid.size();
+    }
+
+    /**
+     * Read the snapshot file into the given collections.
+     *
+     * @return false if the file was written by another format or version
+     */
+    private boolean read(List<DataCachePCData> datas,
+        Map<QueryKey, QueryResult> results)
+        throws IOException {
+        try (DataInputStream in = new DataInputStream
+            (new BufferedInputStream(new FileInputStream(_file), 65536))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION
+                || !OpenJPAVersion.VERSION_ID.equals(in.readUTF())) {
+                if (_log.isInfoEnabled())
+                    _log.info(_loc.get("snapshot-stale", _file));
+                return false;
+            }
+
+            for (byte[] bytes; (bytes = readEntry(in)) != null;) {
+                try {
+                    datas.add((DataCachePCData) Serialization.deserialize
+                        (bytes, null));
+                } catch (RuntimeException re) {
+                    if (_log.isTraceEnabled())
+                        _log.trace(_loc.get("snapshot-skip-entry", _file),
+                            re);
+                }
+            }
+            for (byte[] bytes; (bytes = readEntry(in)) != null;) {
+                try (Serialization.ClassResolvingObjectInputStream oin =
+                    new Serialization.ClassResolvingObjectInputStream
+                    (new ByteArrayInputStream(bytes))) {
+                    QueryKey key = (QueryKey) oin.readObject();
+                    results.put(key, (QueryResult) oin.readObject());
+                } catch (Exception e) {
+                    if (_log.isTraceEnabled())
+                        _log.trace(_loc.get("snapshot-skip-entry", _file), e);
+                }
+            }
+        } catch (EOFException eof) {
+            // torn file; keep what was read
+            if (_log.isWarnEnabled())
+                _log.warn(_loc.get("snapshot-truncated", _file));
+        }
+        return true;
+    }
+
+    private static byte[] readEntry(DataInputStream in)
+        throws IOException {
+        int len = in.readInt();
+        if (len == 0)
+            return null;
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static Map<Class<?>, List<DataCachePCData>> group(
+        Collection<DataCachePCData> datas) {
+        Map<Class<?>, List<DataCachePCData>> map = new LinkedHashMap<>();
+        for (DataCachePCData data : datas)
+            map.computeIfAbsent(data.getType(), k -> new ArrayList<>()).
+                add(data);
+        return map;
+    }
+
+    /**
+     * Validate the cached data of the given type in batches, putting the
+     * data whose version is unchanged back into its cache.
+     */
+    private void validate(Broker broker, Class<?> type,
+        List<DataCachePCData> datas, DataCacheManager mgr,
+        ChangeTracker changes, Set<Object> valid, Set<String> stale) {
+        MetaDataRepository repos = _conf.getMetaDataRepositoryInstance();
+        ClassMetaData meta = repos.getMetaData(type,
+            broker.getClassLoader(), false);
+        if (meta == null)
+            return;
+        String root = getLeastDerived(meta).getDescribedType().getName();
+        FieldMetaData[] pks = meta.getPrimaryKeyFields();
+        FieldMetaData version = meta.getVersionField();
+        if (pks.length != 1 || version == null) {
+            if (_log.isTraceEnabled())
+                _log.trace(_loc.get("snapshot-no-validate", type));
+            stale.add(root);
+            return;
+        }
+
+        String jpql = "SELECT x." + pks[0].getName() + ", x."
+            + version.getName() + " FROM " + meta.getTypeAlias() + " x"
+            + " WHERE x." + pks[0].getName() + " IN :ids";
+        for (int i = 0; i < datas.size(); i += BATCH_SIZE) {
+            List<DataCachePCData> batch = datas.subList(i,
+                Math.min(i + BATCH_SIZE, datas.size()));
+            Map<Object, DataCachePCData> byId = new HashMap<>();
+            for (DataCachePCData data : batch) {
+                if (data.getId() instanceof OpenJPAId)
+                    byId.put(((OpenJPAId) data.getId()).getIdObject(), data);
+                else
+                    stale.add(root);
+            }
+            if (byId.isEmpty())
+                continue;
+
+            Query q = broker.newQuery(JPQLParser.LANG_JPQL, jpql);
+            q.getFetchConfiguration().setQueryCacheEnabled(false);
+            try {
+                Collection<?> rows = (Collection<?>) q.execute
+                    (Collections.singletonMap("ids", byId.keySet()));
+                for (Object row : rows) {
+                    Object[] vals = (Object[]) row;
+                    DataCachePCData data = byId.remove(vals[0]);
+                    if (data == null)
+                        continue;
+                    if (!sameVersion(data.getVersion(), vals[1])) {
+                        stale.add(root);
+                        continue;
+                    }
+                    if (put(mgr, data, changes))
+                        valid.add(data.getId());
+                    else
+                        stale.add(root);
+                }
+            } finally {
+                q.closeAll();
+            }
+            // deleted since the snapshot
+            if (!byId.isEmpty())
+                stale.add(root);
+        }
+    }
+
+    /**
+     * Put the given data into its cache unless the application already
+     * cached the instance or committed a change to it since the restore
+     * began. The check is made under the cache's write lock, which a commit
+     * only takes after the change has been recorded; a later commit finds
+     * the data in the cache and updates or evicts it.
+     */
+    private static boolean put(DataCacheManager mgr, DataCachePCData data,
+        ChangeTracker changes) {
+        DataCache cache = mgr.getDataCache(data.getCache(), false);
+        if (cache == null)
+            cache = mgr.getSystemDataCache();
+        if (cache == null)
+            return false;
+        cache.writeLock();
+        try {
+            if (changes.isChanged(data))
+                return false;
+            if (!cache.contains(data.getId()))
+                cache.put(data);
+        } finally {
+            cache.writeUnlock();
+        }
+        return true;
+    }
+
+    /**
+     * Put the given query result into the query cache unless a commit
+     * changed one of the classes in its access path since the restore
+     * began.
+     */
+    private static boolean put(QueryCache qc, QueryKey key,
+        QueryResult result, ChangeTracker changes) {
+        qc.writeLock();
+        try {
+            if (changes.isChanged(key.getAcessPathClassNames()))
+                return false;
+            qc.put(key, result);
+        } finally {
+            qc.writeUnlock();
+        }
+        return true;
+    }
+
+    private static boolean sameVersion(Object cached, Object current) {
+        if (cached == null || current == null)
+            return false;
+        if (cached instanceof Number && current instanceof Number)
+            return ((Number) cached).longValue()
+                == ((Number) current).longValue();
+        return cached.equals(current);
+    }
+
+    private static ClassMetaData getLeastDerived(ClassMetaData meta) {
+        while (meta.getPCSuperclassMetaData() != null)
+            meta = meta.getPCSuperclassMetaData();
+        return meta;
+    }
+
+    /**
+     * Records the instances and classes that local or remote transactions
+     * commit changes to. Local changes are recorded before the transaction
+     * commits to the database.
+     */
+    private static class ChangeTracker
+        extends AbstractTransactionListener
+        implements RemoteCommitListener {
+
+        private final Set<Object> _oids = ConcurrentHashMap.newKeySet();
+        private final Set<String> _types = ConcurrentHashMap.newKeySet();
+
+        // classes whose changed instances are not known individually
+        private final Set<String> _extents = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean _closed = false;
+
+        /**
+         * Whether a change to the instance of the given data was committed.
+         */
+        public boolean isChanged(DataCachePCData data) {
+            return _oids.contains(data.getId())
+                || _extents.contains(data.getType().getName());
+        }
+
+        /**
+         * Whether a change to an instance of one of the given classes was
+         * committed.
+         */
+        public boolean isChanged(Collection<String> classNames) {
+            return !Collections.disjoint(_types, classNames);
+        }
+
+        @Override
+        public void beforeCommit(TransactionEvent event) {
+            record(event);
+        }
+
+        @Override
+        public void afterCommit(TransactionEvent event) {
+            // a commit flushes before firing the event above, which may
+            // record further changed classes
+            record(event);
+        }
+
+        private void record(TransactionEvent event) {
+            if (_closed)
+                return;
+            Broker broker = (Broker) event.getSource();
+            addNames(_types, event.getPersistedTypes());
+            addNames(_types, event.getUpdatedTypes());
+            addNames(_types, event.getDeletedTypes());
+            if (broker.isTrackChangesByType()) {
+                addNames(_extents, event.getUpdatedTypes());
+                addNames(_extents, event.getDeletedTypes());
+            }
+            for (Object o : event.getTransactionalObjects()) {
+                Object oid = broker.getObjectId(o);
+                if (oid != null)
+                    _oids.add(oid);
+                _types.add(o.getClass().getName());
+            }
+        }
+
+        @Override
+        public void afterCommit(RemoteCommitEvent event) {
+            if (_closed)
+                return;
+            _types.addAll(event.getPersistedTypeNames());
+            if (event.getPayloadType() == RemoteCommitEvent.PAYLOAD_EXTENTS) {
+                _extents.addAll(event.getUpdatedTypeNames());
+                _extents.addAll(event.getDeletedTypeNames());
+                _types.addAll(event.getUpdatedTypeNames());
+                _types.addAll(event.getDeletedTypeNames());
+            } else {
+                addIds(event.getUpdatedObjectIds());
+                addIds(event.getDeletedObjectIds());
+            }
+        }
+
+        private void addIds(Collection<?> oids) {
+            for (Object oid : oids) {
+                _oids.add(oid);
+                if (oid instanceof OpenJPAId)
+                    _types.add(((OpenJPAId) oid).getType().getName());
+            }
+        }
+
+        private static void addNames(Set<String> names, Collection<?> types) {
+            for (Object type : types)
+                names.add(((Class<?>) type).getName());
+        }
+
+        @Override
+        public void close() {
+            _closed = true;
+            _oids.clear();
+            _types.clear();
+            _extents.clear();
+        }
+    }
+}
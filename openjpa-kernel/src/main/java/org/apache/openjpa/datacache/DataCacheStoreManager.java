@@ -439,16 +439,27 @@ public class DataCacheStoreManager extends DelegatingStoreManager {
         }
     }
 
+    /**
+     * The number of loaded fields of the given instance.
+     */
+    private static int countLoaded(OpenJPAStateManager sm) {
+        int count = 0;
+        for (int i = 0, len = sm.getMetaData().getFields().length; i < len; i++)
+            if (sm.isLoaded(i))
+                count++;
+        return count;
+    }
+
     @Override
     public boolean load(OpenJPAStateManager sm, BitSet fields,
         FetchConfiguration fetch, int lockLevel, Object edata) {
         DataCache cache = _mgr.selectCache(sm);
 
         boolean found = false;
-        int loadedFieldsBefore = sm.getLoaded().cardinality();
+        int loadedFieldsBefore = countLoaded(sm);
         if (cache == null || sm.isEmbedded() || bypass(fetch, StoreManager.FORCE_LOAD_NONE)) {
             found = super.load(sm, fields, fetch, lockLevel, edata);
-            int loadedFieldsAfter = sm.getLoaded().cardinality();
+            int loadedFieldsAfter = countLoaded(sm);
             boolean changed = loadedFieldsAfter > loadedFieldsBefore;
             updateDataCache(found, sm, fetch, changed);
             return found;
@@ -470,7 +481,7 @@ public class DataCacheStoreManager extends DelegatingStoreManager {
         // so that if the store manager decides to modify it it won't affect us
         found = super.load(sm,(BitSet) fields.clone() , fetch, lockLevel, edata);
 
-        int loadedFieldsAfter = sm.getLoaded().cardinality();
+        int loadedFieldsAfter = countLoaded(sm);
         boolean changed = loadedFieldsAfter > loadedFieldsBefore;
         // Get new instance of cache after DB load since it may have changed
         updateDataCache(found, sm, fetch, changed);
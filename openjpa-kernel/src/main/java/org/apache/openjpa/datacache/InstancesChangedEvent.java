@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.meta.FieldMetaData;
+
+/**
+ * A {@link TypesChangedEvent} that also describes which instances were
+ * deleted and which fields of the updated types were changed, so that
+ * a query cache can evict only the results that may be affected.
+ *
+ * @since 3.2.3
+ */
+public class InstancesChangedEvent
+    extends TypesChangedEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Set<Class<?>> _persisted = new HashSet<>();
+    private final Set<Class<?>> _deleted = new HashSet<>();
+    private final Set<Object> _deletedIds = new HashSet<>();
+    private final Map<Class<?>, Set<String>> _updated = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param source the data or query cache
+     * @param types the changed types
+     * @param states the transactional instances being committed
+     */
+    public InstancesChangedEvent(Object source, Collection types,
+        Collection<? extends OpenJPAStateManager> states) {
+        super(source, types);
+        for (OpenJPAStateManager sm : states) {
+            Class<?> cls = sm.getMetaData().getDescribedType();
+            if (sm.isNew()) {
+                if (!sm.isDeleted())
+                    _persisted.add(cls);
+            } else if (sm.isDeleted()) {
+                _deleted.add(cls);
+                _deletedIds.add(sm.getObjectId());
+            } else if (sm.isDirty()) {
+                BitSet dirty = sm.getDirty();
+                FieldMetaData[] fmds = sm.getMetaData().getFields();
+                Set<String> fields = _updated.computeIfAbsent(cls,
+                    k -> new HashSet<>());
+                for (int i = dirty.nextSetBit(0); i >= 0;
+                    i = dirty.nextSetBit(i + 1))
+                    fields.add(fmds[i].getFullName(false));
+            }
+        }
+    }
+
+    /**
+     * The types of the new instances.
+     */
+    public Set<Class<?>> getPersistedTypes() {
+        return _persisted;
+    }
+
+    /**
+     * The types of the deleted instances.
+     */
+    public Set<Class<?>> getDeletedTypes() {
+        return _deleted;
+    }
+
+    /**
+     * The oids of the deleted instances.
+     */
+    public Set<Object> getDeletedObjectIds() {
+        return _deletedIds;
+    }
+
+    /**
+     * The full names of the changed fields, keyed on the type of the
+     * updated instances.
+     *
+     * @see FieldMetaData#getFullName(boolean)
+     */
+    public Map<Class<?>, Set<String>> getUpdatedFields() {
+        return _updated;
+    }
+}
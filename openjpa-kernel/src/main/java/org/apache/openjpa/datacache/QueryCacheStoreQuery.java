@@ -24,6 +24,7 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -46,6 +47,7 @@ import org.apache.openjpa.lib.rop.ResultObjectProvider;
 import org.apache.openjpa.lib.util.OrderedMap;
 import org.apache.openjpa.lib.util.collections.LinkedMap;
 import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
 import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.meta.MetaDataRepository;
 import org.apache.openjpa.util.ObjectNotFoundException;
@@ -168,11 +170,31 @@ public class QueryCacheStoreQuery
      * caching provider.
      */
     private ResultObjectProvider wrapResult(ResultObjectProvider rop,
-        QueryKey key) {
+        QueryKey key, Set<String> fields) {
         if (key == null)
             return rop;
         return new CachingResultObjectProvider(rop, getContext().
-            getProjectionAliases().length > 0, key);
+            getProjectionAliases().length > 0, key, fields);
+    }
+
+    /**
+     * Return the full names of the fields traversed by the given
+     * expressions, or null if unknown or not needed by the cache's
+     * eviction policy.
+     */
+    private Set<String> getAccessFields(QueryExpressions[] exps) {
+        if (!(_cache instanceof AbstractQueryCache) || ((AbstractQueryCache)
+            _cache).getEvictPolicy() != EvictPolicy.ROWS || exps == null)
+            return null;
+
+        Set<String> fields = new HashSet<>();
+        for (QueryExpressions exp : exps) {
+            if (exp.accessFields == null)
+                return null;
+            for (FieldMetaData fmd : exp.accessFields)
+                fields.add(fmd.getFullName(false));
+        }
+        return fields;
     }
 
     /**
@@ -383,7 +405,8 @@ public class QueryCacheStoreQuery
 
             ResultObjectProvider rop = _ex.executeQuery(cq.getDelegate(), params, range);
             if (_fc.getQueryCacheEnabled())
-                return cq.wrapResult(rop, key);
+                return cq.wrapResult(rop, key,
+                    cq.getAccessFields(_ex.getQueryExpressions()));
             else
                 return rop;
         }
@@ -607,6 +630,7 @@ public class QueryCacheStoreQuery
         private final ResultObjectProvider _rop;
         private final boolean _proj;
         private final QueryKey _qk;
+        private final Set<String> _fields;
         private final TreeMap<Integer,Object> _data = new TreeMap<>();
         private boolean _maintainCache = true;
         private int _pos = -1;
@@ -617,13 +641,15 @@ public class QueryCacheStoreQuery
         private int _size = Integer.MAX_VALUE;
 
         /**
-         * Constructor. Supply delegate result provider and our query key.
+         * Constructor. Supply delegate result provider, our query key and
+         * the fields traversed by the query, if known.
          */
         public CachingResultObjectProvider(ResultObjectProvider rop,
-            boolean proj, QueryKey key) {
+            boolean proj, QueryKey key, Set<String> fields) {
             _rop = rop;
             _proj = proj;
             _qk = key;
+            _fields = fields;
             _cache.addTypesChangedListener(this);
         }
 
@@ -689,6 +715,8 @@ public class QueryCacheStoreQuery
                         synchronized (this) {
                             res = new QueryResult(_qk, _data.values());
                             res.setTimestamp(System.currentTimeMillis());
+                            res.setAccessFields(_fields);
+                            res.setCandidateResult(!_proj);
                         }
                         _cache.put(_qk, res);
                         abortCaching();
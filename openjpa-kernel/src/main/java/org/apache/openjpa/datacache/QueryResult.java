@@ -20,6 +20,7 @@ package org.apache.openjpa.datacache;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Set;
 
 /**
  * A query result.
@@ -32,6 +33,9 @@ public class QueryResult extends ArrayList<Object> {
     private final long _ex;
 
     private long _timestamp = 0L;
+    private Set<String> _fields = null;
+    private boolean _candidates = false;
+
     /**
      * Constructor; supply corresponding query key and result data.
      */
@@ -81,4 +85,45 @@ public class QueryResult extends ArrayList<Object> {
     public long getTimestamp() {
         return this._timestamp;
     }
+
+    /**
+     * The full names of the fields the query traversed, or null if
+     * unknown.
+     *
+     * @see org.apache.openjpa.meta.FieldMetaData#getFullName(boolean)
+     * @since 3.2.3
+     */
+    public Set<String> getAccessFields() {
+        return _fields;
+    }
+
+    /**
+     * The full names of the fields the query traversed, or null if
+     * unknown.
+     *
+     * @since 3.2.3
+     */
+    public void setAccessFields(Set<String> fields) {
+        _fields = fields;
+    }
+
+    /**
+     * Whether this result holds the oids of the matching candidates, as
+     * opposed to projections.
+     *
+     * @since 3.2.3
+     */
+    public boolean isCandidateResult() {
+        return _candidates;
+    }
+
+    /**
+     * Whether this result holds the oids of the matching candidates, as
+     * opposed to projections.
+     *
+     * @since 3.2.3
+     */
+    public void setCandidateResult(boolean candidates) {
+        _candidates = candidates;
+    }
 }
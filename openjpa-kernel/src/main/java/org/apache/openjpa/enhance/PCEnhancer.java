@@ -87,6 +87,7 @@ import org.apache.openjpa.util.InternalException;
 import org.apache.openjpa.util.LongId;
 import org.apache.openjpa.util.ObjectId;
 import org.apache.openjpa.util.OpenJPAException;
+import org.apache.openjpa.util.ProxyManagerImpl;
 import org.apache.openjpa.util.ShortId;
 import org.apache.openjpa.util.StringId;
 import org.apache.openjpa.util.UserException;
@@ -4778,6 +4779,11 @@ public class PCEnhancer {
      * <li><i>-enforcePropertyRestrictions/-epr [true/t | false/f]</i>:
      * Whether to throw an exception if a PROPERTY access entity appears
      * to be violating standard property restrictions. Defaults to false.</li>
+     * <li><i>-generateProxies/-gp [true/t | false/f]</i>: Whether to
+     * write the proxy classes for the collection, map, date and calendar
+     * fields of the enhanced types, so that they need not be generated at
+     * runtime. The proxies are written beneath the output directory, or
+     * beside the enhanced classes by default. Defaults to false.</li>
      * </ul>
      *  Each additional argument can be either the full class name of the
      * type to enhance, the path to the .java file for the type, the path to
@@ -4836,6 +4842,8 @@ public class PCEnhancer {
         flags.enforcePropertyRestrictions = opts.removeBooleanProperty
             ("enforcePropertyRestrictions", "epr",
                 flags.enforcePropertyRestrictions);
+        flags.generateProxies = opts.removeBooleanProperty
+            ("generateProxies", "gp", flags.generateProxies);
 
         // for unit testing
         BytecodeWriter writer = (BytecodeWriter) opts.get(
@@ -4886,6 +4894,13 @@ public class PCEnhancer {
         BCClass bc;
         PCEnhancer enhancer;
         Collection persAwareClasses = new HashSet();
+        ProxyManagerImpl proxies = null;
+        Collection<Class<?>> proxyTypes = new HashSet<>();
+        File proxyRoot = flags.directory;
+        if (flags.generateProxies)
+            proxies = (conf.getProxyManagerInstance() instanceof
+                ProxyManagerImpl) ? (ProxyManagerImpl) conf.
+                getProxyManagerInstance() : new ProxyManagerImpl();
 
         int status;
         for (Object o : classes) {
@@ -4916,15 +4931,92 @@ public class PCEnhancer {
             }
             else {
                 enhancer.record();
+                if (proxies != null) {
+                    addProxyTypes(enhancer.getMetaData(), proxies,
+                        proxyTypes);
+                    if (proxyRoot == null)
+                        proxyRoot = getClassRoot(enhancer.getMetaData().
+                            getDescribedType());
+                }
             }
             project.clear();
         }
         if(log.isInfoEnabled() && !persAwareClasses.isEmpty()){
         	log.info(_loc.get("pers-aware-classes", persAwareClasses.size(), persAwareClasses));
         }
+        if (!proxyTypes.isEmpty())
+            writeProxies(proxies, proxyTypes, proxyRoot, writer, log);
         return true;
     }
 
+    /**
+     * Add the proxy types of the given type's collection, map, date and
+     * calendar fields to the given set.
+     */
+    private static void addProxyTypes(ClassMetaData meta,
+        ProxyManagerImpl proxies, Collection<Class<?>> proxyTypes) {
+        Class<?> type;
+        for (FieldMetaData fmd : meta.getDeclaredFields()) {
+            switch (fmd.getDeclaredTypeCode()) {
+                case JavaTypes.COLLECTION:
+                case JavaTypes.MAP:
+                case JavaTypes.DATE:
+                case JavaTypes.CALENDAR:
+                    type = proxies.toBuildTimeProxyType(fmd.getProxyType());
+                    if (type != null)
+                        proxyTypes.add(type);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Return the class path root directory holding the class file of the
+     * given type, or null if the type was not loaded from a directory.
+     */
+    private static File getClassRoot(Class<?> type) {
+        File file = Files.getClassFile(type);
+        if (file == null)
+            return null;
+        String pkg = ClassUtil.getPackageName(type);
+        int depth = StringUtil.isEmpty(pkg) ? 0 : pkg.split("\\.").length;
+        File root = file.getParentFile();
+        for (int i = 0; i < depth && root != null; i++)
+            root = root.getParentFile();
+        return root;
+    }
+
+    /**
+     * Write the build-time proxies of the given types beneath the given
+     * class path root, where the proxy manager loads them before it
+     * generates proxies at runtime.
+     */
+    private static void writeProxies(ProxyManagerImpl proxies,
+        Collection<Class<?>> types, File root, BytecodeWriter writer, Log log)
+        throws IOException {
+        BCClass bc;
+        File dir;
+        for (Class<?> type : types) {
+            try {
+                bc = proxies.generateBuildTimeProxyBytecode(type);
+            } catch (RuntimeException re) {
+                log.warn(_loc.get("enhance-proxy-failed", type, re));
+                continue;
+            }
+            if (bc == null)
+                continue;
+            if (log.isInfoEnabled())
+                log.info(_loc.get("enhance-proxy", type, bc.getName()));
+            if (writer != null)
+                writer.write(bc);
+            else {
+                dir = Files.getPackageFile(root, bc.getPackageName(), true);
+                AsmAdaptor.write(bc, new File(dir, bc.getClassName()
+                    + ".class"));
+            }
+        }
+    }
+
     /**
      * Run flags.
      */
@@ -4934,6 +5026,7 @@ public class PCEnhancer {
         public boolean addDefaultConstructor = true;
         public boolean tmpClassLoader = true;
         public boolean enforcePropertyRestrictions = false;
+        public boolean generateProxies = false;
     }
 
     /**
@@ -22,10 +22,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
@@ -35,7 +35,11 @@ import org.apache.openjpa.util.InvalidStateException;
 /**
  * Manager that can be used to track and notify listeners on lifecycle events.
  *  This class is optimized for event firing rather than for adding and
- * removing listeners, which are O(n) operations. This class also does not
+ * removing listeners, which are O(n) operations. The listeners to notify of
+ * each event type are kept in flat dispatch tables per source class, which
+ * are built on first use and dropped whenever a listener is added or
+ * removed. The listener lists are copied on write, so events that are
+ * being fired are not affected by such changes. This class also does not
  * maintain perfect set semantics for listeners; it is possible to wind up
  * having the same listener invoked multiple times for a single event if it
  * is added to this manager multiple times with different classes, or with
@@ -51,15 +55,25 @@ public class LifecycleEventManager
     private static final long serialVersionUID = 1L;
 
     private static final Exception[] EMPTY_EXCEPTIONS = new Exception[0];
+    private static final Object[] EMPTY_LISTENERS = new Object[0];
+
+    // number of event types, the size of a dispatch table
+    private static final int EVENT_TYPES;
+    static {
+        int max = 0;
+        for (int type : LifecycleEvent.ALL_EVENTS)
+            max = Math.max(max, type);
+        EVENT_TYPES = max + 1;
+    }
 
     private static final Localizer _loc = Localizer.forPackage(
         LifecycleEventManager.class);
 
-    private Map<Class<?>, ListenerList> _classListeners = null;
-    private ListenerList _listeners = null;
-    // odd-element: Listener even-element: Class[]
-    private List<Object> _addListeners = new LinkedList<>();
-    private List<Object> _remListeners = new LinkedList<>();
+    private volatile Map<Class<?>, ListenerList> _classListeners = null;
+    private volatile ListenerList _listeners = null;
+    // dispatch tables of the listeners above per source class, indexed by
+    // event type; replaced as a whole whenever a listener is added or removed
+    private transient volatile Map<Class<?>, Object[][]> _dispatch = null;
     private List<Exception> _exceps = new LinkedList<>();
     private boolean _firing = false;
     private boolean _fail = false;
@@ -101,50 +115,55 @@ public class LifecycleEventManager
         if (classes != null && classes.length == 0)
             return;
         _activated = true;
-        if (_firing) {
-            _addListeners.add(listener);
-            _addListeners.add(classes);
-            return;
-        }
 
+        // copy on write, so that events fired meanwhile see a consistent
+        // set of listeners
         if (classes == null) {
-            if (_listeners == null)
-                _listeners = new ListenerList(5);
-            _listeners.add(listener);
-            return;
-        }
-
-        if (_classListeners == null)
-            _classListeners = new HashMap<>();
-        ListenerList listeners;
-        for (Class<?> aClass : classes) {
-            listeners = _classListeners.get(aClass);
-            if (listeners == null) {
-                listeners = new ListenerList(3);
-                _classListeners.put(aClass, listeners);
-            }
+            ListenerList listeners = (_listeners == null)
+                ? new ListenerList(5) : new ListenerList(_listeners);
             listeners.add(listener);
+            _listeners = listeners;
+        } else {
+            Map<Class<?>, ListenerList> classListeners =
+                (_classListeners == null) ? new HashMap<>()
+                    : new HashMap<>(_classListeners);
+            ListenerList listeners;
+            for (Class<?> aClass : classes) {
+                listeners = classListeners.get(aClass);
+                listeners = (listeners == null) ? new ListenerList(3)
+                    : new ListenerList(listeners);
+                listeners.add(listener);
+                classListeners.put(aClass, listeners);
+            }
+            _classListeners = classListeners;
         }
+        _dispatch = new ConcurrentHashMap<>();
     }
 
     /**
      * Remove the given listener.
      */
     public synchronized void removeListener(Object listener) {
-        if (_firing) {
-            _remListeners.add(listener);
-            return;
-        }
-
-        if (_listeners != null && _listeners.remove(listener))
-            return;
-        if (_classListeners != null) {
+        if (_listeners != null && _listeners.contains(listener)) {
+            ListenerList listeners = new ListenerList(_listeners);
+            listeners.remove(listener);
+            _listeners = listeners;
+        } else if (_classListeners != null) {
+            Map<Class<?>, ListenerList> classListeners =
+                new HashMap<>(_classListeners);
             ListenerList listeners;
-            for (ListenerList objects : _classListeners.values()) {
-                listeners = objects;
-                listeners.remove(listener);
+            for (Map.Entry<Class<?>, ListenerList> entry
+                : classListeners.entrySet()) {
+                if (entry.getValue().contains(listener)) {
+                    listeners = new ListenerList(entry.getValue());
+                    listeners.remove(listener);
+                    entry.setValue(listeners);
+                }
             }
-        }
+            _classListeners = classListeners;
+        } else
+            return;
+        _dispatch = new ConcurrentHashMap<>();
     }
 
     /**
@@ -249,21 +268,12 @@ public class LifecycleEventManager
         ClassMetaData meta, int type) {
         if (meta.getLifecycleMetaData().getIgnoreSystemListeners())
             return false;
-        if (fireEvent(null, source, null, type, _listeners, true, null) == Boolean.TRUE)
+        Class<?> c = source == null ? meta.getDescribedType() : source.getClass();
+        if (getListeners(c, type).length > 0)
             return true;
         ListenerList system = meta.getRepository().getSystemListeners();
-        if (!system.isEmpty() && fireEvent(null, source, null, type, system,
-            true, null) == Boolean.TRUE)
-            return true;
-        if (_classListeners != null) {
-            Class<?> c = source == null ? meta.getDescribedType() : source.getClass();
-            do {
-                if (fireEvent(null, source, null, type, _classListeners.get(c), true, null) == Boolean.TRUE)
-                    return true;
-                c = c.getSuperclass();
-            } while (c != null && c != Object.class);
-        }
-        return false;
+        return !system.isEmpty() && fireEvent(null, source, null, type, system,
+            true, null) == Boolean.TRUE;
     }
 
     /**
@@ -289,17 +299,9 @@ public class LifecycleEventManager
         if (callbacks)
             makeCallbacks(source, related, meta, type, exceptions);
 
-        LifecycleEvent ev = (LifecycleEvent) fireEvent(null, source, related,
-            type, _listeners, false, exceptions);
-
-        if (_classListeners != null) {
-            Class<?> c = source == null ? meta.getDescribedType() : source.getClass();
-            do {
-                ev = (LifecycleEvent) fireEvent(ev, source, related, type,
-                    _classListeners.get(c), false, exceptions);
-                c = c.getSuperclass();
-            } while (c != null && c != Object.class);
-        }
+        Class<?> c = source == null ? meta.getDescribedType() : source.getClass();
+        LifecycleEvent ev = fireEvent(null, source, related, type,
+            getListeners(c, type), exceptions);
 
         // make system listeners
         if (!meta.getLifecycleMetaData().getIgnoreSystemListeners()) {
@@ -318,26 +320,73 @@ public class LifecycleEventManager
             ret = exceptions.toArray
                 (new Exception[exceptions.size()]);
 
-        // if this wasn't a reentrant call, catch up with calls to add
-        // and remove listeners made while firing
         if (!reentrant) {
             _firing = false;
             _fail = false;
-            if (!_addListeners.isEmpty())
-                for (Iterator<Object> itr = _addListeners.iterator(); itr.hasNext();) {
-                    addListener(itr.next(), (Class[]) itr.next());
-                }
-            if (!_remListeners.isEmpty())
-                for (Object remListener : _remListeners) {
-                    removeListener(remListener);
-                }
-            _addListeners.clear();
-            _remListeners.clear();
             _exceps.clear();
         }
         return ret;
     }
 
+    /**
+     * Return the listeners to notify of events of the given type on
+     * instances of the given class: the listeners registered for all classes
+     * followed by those registered for the class and its superclasses, most
+     * specific first, each of which responds to the event type.
+     */
+    private Object[] getListeners(Class<?> cls, int type) {
+        if (_listeners == null && _classListeners == null)
+            return EMPTY_LISTENERS;
+        if (type < 0 || type >= EVENT_TYPES)
+            return EMPTY_LISTENERS;
+
+        Map<Class<?>, Object[][]> dispatch = _dispatch;
+        if (dispatch == null)
+            _dispatch = dispatch = new ConcurrentHashMap<>();
+        Object[][] table = dispatch.get(cls);
+        if (table == null) {
+            table = newDispatchTable(cls);
+            dispatch.put(cls, table);
+        }
+        return table[type];
+    }
+
+    /**
+     * Create the dispatch table for the given class, holding the listeners
+     * to notify per event type.
+     */
+    private Object[][] newDispatchTable(Class<?> cls) {
+        List<ListenerList> lists = new ArrayList<>();
+        if (_listeners != null)
+            lists.add(_listeners);
+        Map<Class<?>, ListenerList> classListeners = _classListeners;
+        if (classListeners != null) {
+            Class<?> c = cls;
+            do {
+                if (classListeners.get(c) != null)
+                    lists.add(classListeners.get(c));
+                c = c.getSuperclass();
+            } while (c != null && c != Object.class);
+        }
+
+        Object[][] table = new Object[EVENT_TYPES][];
+        List<Object> listeners = new ArrayList<>();
+        for (int type : LifecycleEvent.ALL_EVENTS) {
+            for (ListenerList list : lists) {
+                if (!list.hasListeners(type))
+                    continue;
+                for (Object listener : list)
+                    if (list.size() == 1
+                        || ListenerList.respondsTo(listener, type))
+                        listeners.add(listener);
+            }
+            table[type] = (listeners.isEmpty()) ? EMPTY_LISTENERS
+                : listeners.toArray();
+            listeners.clear();
+        }
+        return table;
+    }
+
     /**
      * Make callbacks, recording any exceptions in the given collection.
      */
@@ -357,6 +406,17 @@ public class LifecycleEventManager
         }
     }
 
+    /**
+     * Fire an event with the given source and type to the given listeners
+     * of a dispatch table. The event may have already been constructed.
+     */
+    private LifecycleEvent fireEvent(LifecycleEvent ev, Object source,
+        Object rel, int type, Object[] listeners, List<Exception> exceptions) {
+        for (int i = 0; !_fail && i < listeners.length; i++)
+            ev = dispatch(ev, source, rel, type, listeners[i], exceptions);
+        return ev;
+    }
+
     /**
      * Fire an event with the given source and type to the given list of
      * listeners. The event may have already been constructed.
@@ -367,180 +427,140 @@ public class LifecycleEventManager
             return null;
 
         Object listener;
-        boolean responds;
         for (int i = 0, size = listeners.size(); !_fail && i < size; i++) {
             listener = listeners.get(i);
-            if (size == 1)
-                responds = true;
-            else if (listener instanceof ListenerAdapter) {
-                responds = ((ListenerAdapter) listener).respondsTo(type);
-                if (!responds)
-                    continue;
-            } else {
-                responds = false;
-            }
-            try {
-                switch (type) {
-                    case LifecycleEvent.BEFORE_CLEAR:
-                    case LifecycleEvent.AFTER_CLEAR:
-                        if (responds || listener instanceof ClearListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, type);
-                            if (type == LifecycleEvent.BEFORE_CLEAR)
-                                ((ClearListener) listener).beforeClear(ev);
-                            else
-                                ((ClearListener) listener).afterClear(ev);
-                        }
-                        break;
-                    case LifecycleEvent.BEFORE_PERSIST:
-                    case LifecycleEvent.AFTER_PERSIST:
-                        if (responds || listener instanceof PersistListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, type);
-                            if (type == LifecycleEvent.BEFORE_PERSIST)
-                                ((PersistListener) listener).beforePersist(ev);
-                            else
-                                ((PersistListener) listener).afterPersist(ev);
-                        }
-                        break;
-                    case LifecycleEvent.BEFORE_DELETE:
-                    case LifecycleEvent.AFTER_DELETE:
-                        if (responds || listener instanceof DeleteListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, type);
-                            if (type == LifecycleEvent.BEFORE_DELETE)
-                                ((DeleteListener) listener).beforeDelete(ev);
-                            else
-                                ((DeleteListener) listener).afterDelete(ev);
-                        }
-                        break;
-                    case LifecycleEvent.BEFORE_DIRTY:
-                    case LifecycleEvent.AFTER_DIRTY:
-                    case LifecycleEvent.BEFORE_DIRTY_FLUSHED:
-                    case LifecycleEvent.AFTER_DIRTY_FLUSHED:
-                        if (responds || listener instanceof DirtyListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, type);
-                            switch (type) {
-                                case LifecycleEvent.BEFORE_DIRTY:
-                                    ((DirtyListener) listener).beforeDirty(ev);
-                                    break;
-                                case LifecycleEvent.AFTER_DIRTY:
-                                    ((DirtyListener) listener).afterDirty(ev);
-                                    break;
-                                case LifecycleEvent.BEFORE_DIRTY_FLUSHED:
-                                    ((DirtyListener) listener)
-                                        .beforeDirtyFlushed(ev);
-                                    break;
-                                case LifecycleEvent.AFTER_DIRTY_FLUSHED:
-                                    ((DirtyListener) listener)
-                                        .afterDirtyFlushed(ev);
-                                    break;
-                            }
-                        }
-                        break;
-                    case LifecycleEvent.AFTER_LOAD:
-                    case LifecycleEvent.AFTER_REFRESH:
-                        if (responds || listener instanceof LoadListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, type);
-                            if (type == LifecycleEvent.AFTER_LOAD)
-                                ((LoadListener) listener).afterLoad(ev);
-                            else
-                                ((LoadListener) listener).afterRefresh(ev);
-                        }
-                        break;
-                    case LifecycleEvent.BEFORE_STORE:
-                    case LifecycleEvent.AFTER_STORE:
-                        if (responds || listener instanceof StoreListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, type);
-                            if (type == LifecycleEvent.BEFORE_STORE)
-                                ((StoreListener) listener).beforeStore(ev);
-                            else
-                                ((StoreListener) listener).afterStore(ev);
-                        }
-                        break;
-                    case LifecycleEvent.BEFORE_DETACH:
-                    case LifecycleEvent.AFTER_DETACH:
-                        if (responds || listener instanceof DetachListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, rel, type);
-                            if (type == LifecycleEvent.BEFORE_DETACH)
-                                ((DetachListener) listener).beforeDetach(ev);
-                            else
-                                ((DetachListener) listener).afterDetach(ev);
-                        }
-                        break;
-                    case LifecycleEvent.BEFORE_ATTACH:
-                    case LifecycleEvent.AFTER_ATTACH:
-                        if (responds || listener instanceof AttachListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, rel, type);
-                            if (type == LifecycleEvent.BEFORE_ATTACH)
-                                ((AttachListener) listener).beforeAttach(ev);
-                            else
-                                ((AttachListener) listener).afterAttach(ev);
-                        }
-                        break;
-
-                    case LifecycleEvent.AFTER_PERSIST_PERFORMED:
-                        if (responds || listener instanceof PostPersistListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, rel, type);
-                            ((PostPersistListener) listener).afterPersistPerformed(ev);
-                        }
-                        break;
-                    case LifecycleEvent.BEFORE_UPDATE:
-                    case LifecycleEvent.AFTER_UPDATE_PERFORMED:
-                        if (responds || listener instanceof UpdateListener) {
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, rel, type);
-                            if (type == LifecycleEvent.BEFORE_UPDATE)
-                                ((UpdateListener) listener).beforeUpdate(ev);
-                            else
-                                ((UpdateListener) listener).afterUpdatePerformed(ev);
-                        }
-                        break;
-                    case LifecycleEvent.AFTER_DELETE_PERFORMED:
-                        if (responds || listener instanceof PostDeleteListener){
-                            if (mock)
-                                return Boolean.TRUE;
-                            if (ev == null)
-                                ev = new LifecycleEvent(source, rel, type);
-                            ((PostDeleteListener) listener).afterDeletePerformed(ev);
-                        }
-                        break;
-                    default:
-                        throw new InvalidStateException(_loc.get("unknown-lifecycle-event", Integer.toString(type)));
-                }
-            }
-            catch (Exception e) {
-                exceptions.add(e);
-                if (_failFast)
-                    _fail = true;
+            if (size > 1 && !ListenerList.respondsTo(listener, type))
+                continue;
+            if (mock)
+                return Boolean.TRUE;
+            ev = dispatch(ev, source, rel, type, listener, exceptions);
+        }
+        return ev;
+    }
+
+    /**
+     * Notify the given listener, which responds to the given event type, of
+     * the event. The event is constructed if it does not exist yet.
+     */
+    private LifecycleEvent dispatch(LifecycleEvent ev, Object source,
+        Object rel, int type, Object listener, List<Exception> exceptions) {
+        try {
+            switch (type) {
+                case LifecycleEvent.BEFORE_CLEAR:
+                case LifecycleEvent.AFTER_CLEAR:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, type);
+                    if (type == LifecycleEvent.BEFORE_CLEAR)
+                        ((ClearListener) listener).beforeClear(ev);
+                    else
+                        ((ClearListener) listener).afterClear(ev);
+                    break;
+                case LifecycleEvent.BEFORE_PERSIST:
+                case LifecycleEvent.AFTER_PERSIST:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, type);
+                    if (type == LifecycleEvent.BEFORE_PERSIST)
+                        ((PersistListener) listener).beforePersist(ev);
+                    else
+                        ((PersistListener) listener).afterPersist(ev);
+                    break;
+                case LifecycleEvent.BEFORE_DELETE:
+                case LifecycleEvent.AFTER_DELETE:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, type);
+                    if (type == LifecycleEvent.BEFORE_DELETE)
+                        ((DeleteListener) listener).beforeDelete(ev);
+                    else
+                        ((DeleteListener) listener).afterDelete(ev);
+                    break;
+                case LifecycleEvent.BEFORE_DIRTY:
+                case LifecycleEvent.AFTER_DIRTY:
+                case LifecycleEvent.BEFORE_DIRTY_FLUSHED:
+                case LifecycleEvent.AFTER_DIRTY_FLUSHED:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, type);
+                    switch (type) {
+                        case LifecycleEvent.BEFORE_DIRTY:
+                            ((DirtyListener) listener).beforeDirty(ev);
+                            break;
+                        case LifecycleEvent.AFTER_DIRTY:
+                            ((DirtyListener) listener).afterDirty(ev);
+                            break;
+                        case LifecycleEvent.BEFORE_DIRTY_FLUSHED:
+                            ((DirtyListener) listener)
+                                .beforeDirtyFlushed(ev);
+                            break;
+                        case LifecycleEvent.AFTER_DIRTY_FLUSHED:
+                            ((DirtyListener) listener)
+                                .afterDirtyFlushed(ev);
+                            break;
+                    }
+                    break;
+                case LifecycleEvent.AFTER_LOAD:
+                case LifecycleEvent.AFTER_REFRESH:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, type);
+                    if (type == LifecycleEvent.AFTER_LOAD)
+                        ((LoadListener) listener).afterLoad(ev);
+                    else
+                        ((LoadListener) listener).afterRefresh(ev);
+                    break;
+                case LifecycleEvent.BEFORE_STORE:
+                case LifecycleEvent.AFTER_STORE:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, type);
+                    if (type == LifecycleEvent.BEFORE_STORE)
+                        ((StoreListener) listener).beforeStore(ev);
+                    else
+                        ((StoreListener) listener).afterStore(ev);
+                    break;
+                case LifecycleEvent.BEFORE_DETACH:
+                case LifecycleEvent.AFTER_DETACH:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, rel, type);
+                    if (type == LifecycleEvent.BEFORE_DETACH)
+                        ((DetachListener) listener).beforeDetach(ev);
+                    else
+                        ((DetachListener) listener).afterDetach(ev);
+                    break;
+                case LifecycleEvent.BEFORE_ATTACH:
+                case LifecycleEvent.AFTER_ATTACH:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, rel, type);
+                    if (type == LifecycleEvent.BEFORE_ATTACH)
+                        ((AttachListener) listener).beforeAttach(ev);
+                    else
+                        ((AttachListener) listener).afterAttach(ev);
+                    break;
+
+                case LifecycleEvent.AFTER_PERSIST_PERFORMED:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, rel, type);
+                    ((PostPersistListener) listener).afterPersistPerformed(ev);
+                    break;
+                case LifecycleEvent.BEFORE_UPDATE:
+                case LifecycleEvent.AFTER_UPDATE_PERFORMED:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, rel, type);
+                    if (type == LifecycleEvent.BEFORE_UPDATE)
+                        ((UpdateListener) listener).beforeUpdate(ev);
+                    else
+                        ((UpdateListener) listener).afterUpdatePerformed(ev);
+                    break;
+                case LifecycleEvent.AFTER_DELETE_PERFORMED:
+                    if (ev == null)
+                        ev = new LifecycleEvent(source, rel, type);
+                    ((PostDeleteListener) listener).afterDeletePerformed(ev);
+                    break;
+                default:
+                    throw new InvalidStateException(_loc.get("unknown-lifecycle-event", Integer.toString(type)));
             }
         }
+        catch (Exception e) {
+            exceptions.add(e);
+            if (_failFast)
+                _fail = true;
+        }
         return ev;
     }
 
@@ -603,6 +623,51 @@ public class LifecycleEventManager
             return true;
         }
 
+        /**
+         * Return whether the given listener processes the given event type.
+         */
+        static boolean respondsTo(Object listener, int type) {
+            if (listener instanceof ListenerAdapter)
+                return ((ListenerAdapter) listener).respondsTo(type);
+            switch (type) {
+                case LifecycleEvent.BEFORE_CLEAR:
+                case LifecycleEvent.AFTER_CLEAR:
+                    return listener instanceof ClearListener;
+                case LifecycleEvent.BEFORE_PERSIST:
+                case LifecycleEvent.AFTER_PERSIST:
+                    return listener instanceof PersistListener;
+                case LifecycleEvent.BEFORE_DELETE:
+                case LifecycleEvent.AFTER_DELETE:
+                    return listener instanceof DeleteListener;
+                case LifecycleEvent.BEFORE_DIRTY:
+                case LifecycleEvent.AFTER_DIRTY:
+                case LifecycleEvent.BEFORE_DIRTY_FLUSHED:
+                case LifecycleEvent.AFTER_DIRTY_FLUSHED:
+                    return listener instanceof DirtyListener;
+                case LifecycleEvent.AFTER_LOAD:
+                case LifecycleEvent.AFTER_REFRESH:
+                    return listener instanceof LoadListener;
+                case LifecycleEvent.BEFORE_STORE:
+                case LifecycleEvent.AFTER_STORE:
+                    return listener instanceof StoreListener;
+                case LifecycleEvent.BEFORE_DETACH:
+                case LifecycleEvent.AFTER_DETACH:
+                    return listener instanceof DetachListener;
+                case LifecycleEvent.BEFORE_ATTACH:
+                case LifecycleEvent.AFTER_ATTACH:
+                    return listener instanceof AttachListener;
+                case LifecycleEvent.AFTER_PERSIST_PERFORMED:
+                    return listener instanceof PostPersistListener;
+                case LifecycleEvent.BEFORE_UPDATE:
+                case LifecycleEvent.AFTER_UPDATE_PERFORMED:
+                    return listener instanceof UpdateListener;
+                case LifecycleEvent.AFTER_DELETE_PERFORMED:
+                    return listener instanceof PostDeleteListener;
+                default:
+                    return false;
+            }
+        }
+
         /**
          * Return a mask of the event types the given listener processes.
          */
@@ -45,6 +45,8 @@ import org.apache.openjpa.conf.BrokerValue;
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.conf.OpenJPAConfigurationImpl;
 import org.apache.openjpa.conf.OpenJPAVersion;
+import org.apache.openjpa.datacache.DataCacheManager;
+import org.apache.openjpa.datacache.DataCacheManagerImpl;
 import org.apache.openjpa.datacache.DataCacheStoreManager;
 import org.apache.openjpa.ee.ManagedRuntime;
 import org.apache.openjpa.enhance.ManagedClassSubclasser;
@@ -910,6 +912,16 @@ public abstract class AbstractBrokerFactory implements BrokerFactory {
         // Get a DataCacheManager instance up front to avoid threading concerns on first call.
         // _conf.getDataCacheManagerInstance();
 
+        // Warm the data cache from the snapshot of the previous run. Only look up the manager if a snapshot is
+        // configured; it is otherwise created on first use.
+        if (Configurations.parseProperties(Configurations.getProperties(_conf.getDataCacheManager()))
+            .containsKey("SnapshotFile")) {
+            DataCacheManager dcm = _conf.getDataCacheManagerInstance();
+            if (dcm instanceof DataCacheManagerImpl) {
+                ((DataCacheManagerImpl) dcm).restoreSnapshot(this);
+            }
+        }
+
         InstrumentationManager imgr = _conf.getInstrumentationManagerInstance();
         if (imgr != null) {
             // Start all factory level instrumentation
@@ -19,9 +19,9 @@
 package org.apache.openjpa.kernel;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -29,17 +29,23 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.openjpa.conf.DetachOptions;
 import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.enhance.Reflection;
 import org.apache.openjpa.event.CallbackModes;
 import org.apache.openjpa.event.LifecycleEvent;
+import org.apache.openjpa.kernel.jpql.JPQLParser;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.meta.MetaDataRepository;
 import org.apache.openjpa.meta.ValueMetaData;
 import org.apache.openjpa.util.CallbackException;
 import org.apache.openjpa.util.Exceptions;
 import org.apache.openjpa.util.ImplHelper;
 import org.apache.openjpa.util.OpenJPAException;
+import org.apache.openjpa.util.OpenJPAId;
 import org.apache.openjpa.util.OptimisticException;
 import org.apache.openjpa.util.ProxyManager;
 import org.apache.openjpa.util.UserException;
@@ -54,11 +60,15 @@ public class AttachManager {
     private static final Localizer _loc = Localizer.forPackage
         (AttachManager.class);
 
+    // number of ids bound to a single set-based find in bulk attach mode
+    private static final int BULK_FIND_SIZE = 500;
+
     private final BrokerImpl _broker;
     private final ProxyManager _proxy;
     private final OpCallbacks _call;
     private final boolean _copyNew;
     private final boolean _failFast;
+    private final boolean _bulk;
     private final IdentityHashMap _attached = new IdentityHashMap();
     private final Collection<StateManagerImpl> _visitedNodes = new ArrayList();
 
@@ -77,6 +87,9 @@ public class AttachManager {
         _failFast = (broker.getConfiguration().getMetaDataRepositoryInstance().
             getMetaDataFactory().getDefaults().getCallbackMode()
             & CallbackModes.CALLBACK_FAIL_FAST) != 0;
+        DetachOptions detach = broker.getConfiguration().
+            getDetachStateInstance();
+        _bulk = detach != null && detach.getBulkAttach();
     }
 
     /**
@@ -102,6 +115,8 @@ public class AttachManager {
 
         CallbackException excep = null;
         try {
+            if (_bulk)
+                loadDetached(Collections.singleton(pc));
             return attach(pc, null, null, null, true);
         } catch (CallbackException ce) {
             excep = ce;
@@ -127,6 +142,8 @@ public class AttachManager {
         boolean opt = true;
         boolean failFast = false;
         try {
+            if (_bulk)
+                loadDetached(instances);
             int i = 0;
             for (Iterator itr = instances.iterator(); itr.hasNext(); i++) {
                 try {
@@ -159,6 +176,133 @@ public class AttachManager {
         return attached;
     }
 
+    /**
+     * Walk the graphs reachable from the given instances through relations
+     * that cascade attach, and load the persistent counterparts of the
+     * detached instances found with set-based queries. Attaching the graphs
+     * then finds these instances and their versions in the context instead
+     * of selecting them one by one.
+     */
+    private void loadDetached(Collection<?> instances) {
+        MetaDataRepository repos = _broker.getConfiguration().
+            getMetaDataRepositoryInstance();
+        Map<ClassMetaData, List<Object>> ids = new HashMap<>();
+        Map<Object, Object> visited = new IdentityHashMap<>();
+        LinkedList<Object> stack = new LinkedList<>(instances);
+        Object obj;
+        ClassMetaData meta;
+        while (!stack.isEmpty()) {
+            obj = stack.removeLast();
+            if (obj == null || !ImplHelper.isManageable(obj)
+                || visited.put(obj, obj) != null
+                || _broker.getStateManagerImpl(obj, false) != null)
+                continue;
+
+            meta = repos.getMetaData(ImplHelper.getManagedInstance(obj).
+                getClass(), _broker.getClassLoader(), true);
+            if (_broker.isDetached(obj, false) && isBulkLoadable(meta)) {
+                Object oid = getDetachedObjectId(obj);
+                if (oid instanceof OpenJPAId && _broker.getStateManagerImplById(oid,
+                    false) == null) {
+                    List<Object> metaIds = ids.get(meta);
+                    if (metaIds == null) {
+                        metaIds = new ArrayList<>();
+                        ids.put(meta, metaIds);
+                    }
+                    metaIds.add(((OpenJPAId) oid).getIdObject());
+                }
+            }
+            for (FieldMetaData fmd : meta.getFields())
+                addCascadedValues(obj, fmd, stack);
+        }
+
+        for (Map.Entry<ClassMetaData, List<Object>> entry : ids.entrySet())
+            loadAll(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Whether instances of the given type can be loaded by a set-based query
+     * on their single primary key field.
+     */
+    private static boolean isBulkLoadable(ClassMetaData meta) {
+        return meta.getIdentityType() == ClassMetaData.ID_APPLICATION
+            && meta.isOpenJPAIdentity() && !meta.isEmbeddedOnly()
+            && meta.getTypeAlias() != null;
+    }
+
+    /**
+     * Push the related instances held by the given field of the given
+     * detached or new instance, if the field cascades attach.
+     */
+    private static void addCascadedValues(Object obj, FieldMetaData fmd,
+        LinkedList<Object> stack) {
+        boolean cascade;
+        switch (fmd.getDeclaredTypeCode()) {
+            case JavaTypes.PC:
+            case JavaTypes.PC_UNTYPED:
+                cascade = !fmd.isEmbeddedPC() && fmd.getCascadeAttach()
+                    == ValueMetaData.CASCADE_IMMEDIATE;
+                break;
+            case JavaTypes.COLLECTION:
+            case JavaTypes.ARRAY:
+                cascade = fmd.getElement().getCascadeAttach()
+                    == ValueMetaData.CASCADE_IMMEDIATE;
+                break;
+            case JavaTypes.MAP:
+                cascade = fmd.getKey().getCascadeAttach()
+                    == ValueMetaData.CASCADE_IMMEDIATE
+                    || fmd.getElement().getCascadeAttach()
+                    == ValueMetaData.CASCADE_IMMEDIATE;
+                break;
+            default:
+                cascade = false;
+        }
+        if (!cascade)
+            return;
+
+        // reading the value is best effort; instances we cannot reach are
+        // simply found one by one when attached
+        Object val;
+        try {
+            val = Reflection.getValue(obj, fmd.getName(), false);
+        } catch (RuntimeException re) {
+            return;
+        }
+        if (val instanceof Collection)
+            stack.addAll((Collection<?>) val);
+        else if (val instanceof Map) {
+            stack.addAll(((Map<?, ?>) val).keySet());
+            stack.addAll(((Map<?, ?>) val).values());
+        } else if (val instanceof Object[])
+            Collections.addAll(stack, (Object[]) val);
+        else if (val != null)
+            stack.add(val);
+    }
+
+    /**
+     * Load the instances of the given type with the given primary key
+     * values, in chunks of {@link #BULK_FIND_SIZE} values per query.
+     */
+    private void loadAll(ClassMetaData meta, List<Object> ids) {
+        String pk = meta.getPrimaryKeyFields()[0].getName();
+        Query q = _broker.newQuery(JPQLParser.LANG_JPQL, "SELECT a FROM "
+            + meta.getTypeAlias() + " a WHERE a." + pk + " IN :ids");
+        // only load rows; pending changes are left to the attach itself
+        q.setIgnoreChanges(true);
+        try {
+            Map<String, Object> params = new HashMap<>();
+            for (int i = 0; i < ids.size(); i += BULK_FIND_SIZE) {
+                params.put("ids", ids.subList(i,
+                    Math.min(i + BULK_FIND_SIZE, ids.size())));
+                Collection<?> res = (Collection<?>) q.execute(params);
+                for (Iterator<?> itr = res.iterator(); itr.hasNext();)
+                    itr.next();
+            }
+        } finally {
+            q.closeAll();
+        }
+    }
+
     /**
      * Invoke postAttach() on any attached instances that implement
      * PostAttachCallback. This will be done after the entire graph has
@@ -256,7 +400,6 @@ public class AttachManager {
 
     private Object handleCascade(Object toAttach, OpenJPAStateManager owner) {
         StateManagerImpl sm = _broker.getStateManagerImpl(toAttach, true);
-        BitSet loaded = sm.getLoaded();
         FieldMetaData[] fmds = sm.getMetaData().getDefinedFields();
         for (FieldMetaData fmd : fmds) {
             if (fmd.getElement().getCascadeAttach() == ValueMetaData.CASCADE_IMMEDIATE) {
@@ -264,7 +407,7 @@ public class AttachManager {
                 if (inverseFieldMappings.length != 0) {
                     _visitedNodes.add(sm);
                     // Only try to attach this field is it is loaded
-                    if (loaded.get(fmd.getIndex())) {
+                    if (sm.isLoaded(fmd.getIndex())) {
                         getStrategy(toAttach).attachField(this, toAttach, sm, fmd, true);
                     }
                 }
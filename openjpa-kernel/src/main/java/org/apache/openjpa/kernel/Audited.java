@@ -18,8 +18,17 @@
  */
 package org.apache.openjpa.kernel;
 
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.openjpa.audit.AuditRecord;
 import org.apache.openjpa.audit.AuditableOperation;
 import org.apache.openjpa.enhance.PersistenceCapable;
 import org.apache.openjpa.enhance.Reflection;
@@ -120,4 +129,73 @@ public final class Audited {
 		if (state.isDirty()) return AuditableOperation.UPDATE;
 		return null; // should not happen
 	}
+
+	/**
+	 * Gets a compact record of this audit that does not refer to the managed
+	 * instance and can hence be written after the transaction has ended.
+	 * Related instances are recorded by their object ids and mutable values
+	 * are copied.
+	 *
+	 * @since 3.2.3
+	 */
+	public AuditRecord toRecord() {
+		AuditableOperation op = getType();
+		BitSet dirty = (BitSet) _sm.getDirty().clone();
+		String[] names = getUpdatedFields();
+		Object[] newValues = new Object[names.length];
+		Object[] oldValues = (op == AuditableOperation.UPDATE) ? new Object[names.length] : null;
+		int j = 0;
+		for (int pos = dirty.nextSetBit(0); pos != -1; pos = dirty.nextSetBit(pos+1), j++) {
+			newValues[j] = toRecordValue(_sm.fetch(pos));
+			if (oldValues != null)
+				oldValues[j] = toRecordValue(getOriginalFieldValue(names[j]));
+		}
+		Object oid = _sm.getObjectId();
+		if (oid == null)
+			oid = _sm.getId();
+		return new AuditRecord(op, _sm.getMetaData().getDescribedType().getName(), oid,
+				_sm.getVersion(), dirty, names, oldValues, newValues);
+	}
+
+	/**
+	 * Converts the given field value to the value held by a record.
+	 */
+	private Object toRecordValue(Object val) {
+		if (val == null)
+			return null;
+		if (val instanceof PersistenceCapable) {
+			Object oid = _sm.getContext().getObjectId(val);
+			return (oid == null) ? val.toString() : oid;
+		}
+		if (val instanceof Collection) {
+			List<Object> copy = new ArrayList<>(((Collection<?>) val).size());
+			for (Object o : (Collection<?>) val)
+				copy.add(toRecordValue(o));
+			return copy;
+		}
+		if (val instanceof Map) {
+			Map<Object,Object> copy = new LinkedHashMap<>();
+			for (Map.Entry<?,?> e : ((Map<?,?>) val).entrySet())
+				copy.put(toRecordValue(e.getKey()), toRecordValue(e.getValue()));
+			return copy;
+		}
+		if (val instanceof Object[]) {
+			Object[] arr = (Object[]) val;
+			Object[] copy = new Object[arr.length];
+			for (int i = 0; i < arr.length; i++)
+				copy[i] = toRecordValue(arr[i]);
+			return copy;
+		}
+		if (val.getClass().isArray()) {
+			int len = Array.getLength(val);
+			Object copy = Array.newInstance(val.getClass().getComponentType(), len);
+			System.arraycopy(val, 0, copy, 0, len);
+			return copy;
+		}
+		if (val instanceof Date)
+			return new Date(((Date) val).getTime());
+		if (val instanceof Calendar)
+			return ((Calendar) val).clone();
+		return val;
+	}
 }
@@ -46,7 +46,10 @@ import javax.transaction.Synchronization;
 
 import org.apache.openjpa.conf.Compatibility;
 import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.datacache.AbstractQueryCache;
+import org.apache.openjpa.datacache.AbstractQueryCache.EvictPolicy;
 import org.apache.openjpa.datacache.DataCache;
+import org.apache.openjpa.datacache.InstancesChangedEvent;
 import org.apache.openjpa.datacache.QueryCache;
 import org.apache.openjpa.datacache.TypesChangedEvent;
 import org.apache.openjpa.ee.ManagedRuntime;
@@ -262,6 +265,11 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
 
     private transient DetachManagerLite _dmLite;
 
+    // instances loaded for stateless or streamed query results and not yet
+    // released, and the nesting of streamed result reads that collect them
+    private transient List<StateManagerImpl> _resultStates = null;
+    private transient int _collectResultStates = 0;
+
     private transient boolean _initializeWasInvoked = false;
     private transient boolean _fromWriteBehindCallback = false;
     private LinkedList<FetchConfiguration> _fcs;
@@ -1072,6 +1080,9 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
 
             // initialize a new state manager for the datastore instance
             sm = newStateManagerImpl(oid, (flags & OID_COPY) != 0);
+            boolean stateless = isStateless(fetch);
+            if (stateless)
+                sm.setStateless();
             boolean load = requiresLoad(sm, false, fetch, edata, flags);
             sm = initialize(sm, load, fetch, edata);
             if (sm == null) {
@@ -1079,6 +1090,8 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                     throw new ObjectNotFoundException(oid);
                 return call.processReturn(oid, null);
             }
+            if (stateless || _collectResultStates > 0)
+                addResultState(sm);
 
             // make sure all configured fields were loaded
             if (load) {
@@ -1296,7 +1309,96 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
     private boolean useTransactionalState(FetchConfiguration fetch) {
         return (_flags & FLAG_ACTIVE) != 0 && (!_optimistic
             || _autoClear == CLEAR_ALL
-            || fetch.getReadLockLevel() != LOCK_NONE);
+            || fetch.getReadLockLevel() != LOCK_NONE)
+            && !isStateless(fetch);
+    }
+
+    /**
+     * Whether the given fetch configuration loads stateless instances.
+     *
+     * @see QueryHints#HINT_STATELESS
+     */
+    private static boolean isStateless(FetchConfiguration fetch) {
+        return isHinted(fetch, QueryHints.HINT_STATELESS);
+    }
+
+    /**
+     * Whether the given boolean hint is set on the given fetch configuration.
+     */
+    static boolean isHinted(FetchConfiguration fetch, String key) {
+        Object hint = fetch.getHint(key);
+        return hint != null && (Boolean.TRUE.equals(hint)
+            || "true".equalsIgnoreCase(hint.toString()));
+    }
+
+    private void addResultState(StateManagerImpl sm) {
+        if (_resultStates == null)
+            _resultStates = new ArrayList<>();
+        _resultStates.add(sm);
+    }
+
+    /**
+     * Collect the instances loaded from now on, until the matching
+     * {@link #endResultStates} call, for {@link #releaseResultStates}.
+     *
+     * @see QueryHints#HINT_EVICT_CONSUMED
+     * @since 3.2.3
+     */
+    void beginResultStates() {
+        _collectResultStates++;
+    }
+
+    /**
+     * Stop collecting loaded instances.
+     *
+     * @see #beginResultStates
+     */
+    void endResultStates() {
+        _collectResultStates--;
+    }
+
+    /**
+     * Detach in place and stop managing the clean instances loaded for
+     * stateless or streamed query results since the last call. Classes
+     * that are not detachable are made transient instead. Instances that
+     * have been changed or locked in the meantime stay managed.
+     *
+     * @see QueryHints#HINT_STATELESS
+     * @see QueryHints#HINT_EVICT_CONSUMED
+     * @since 3.2.3
+     */
+    void releaseResultStates() {
+        if (_resultStates == null || _resultStates.isEmpty())
+            return;
+
+        lock();
+        try {
+            List<StateManagerImpl> detach =
+                new ArrayList<>(_resultStates.size());
+            for (StateManagerImpl sm : _resultStates) {
+                if (!sm.isPersistent() || sm.isDirty() || sm.isNew()
+                    || sm.isDeleted())
+                    continue;
+                if (sm.isTransactional()) {
+                    if (_lm != null && _lm.getLockLevel(sm) != LOCK_NONE)
+                        continue;
+                    removeFromTransaction(sm);
+                }
+                if (!sm.getMetaData().isDetachable())
+                    sm.release(true);
+                else {
+                    _cache.remove(sm.getId(), sm);
+                    detach.add(sm);
+                }
+            }
+            _resultStates.clear();
+
+            if (_dmLite == null)
+                _dmLite = new DetachManagerLite(_conf);
+            _dmLite.detachAll(detach);
+        } finally {
+            unlock();
+        }
     }
 
     @Override
@@ -1553,7 +1655,12 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                             types.addAll(pers);
                             types.addAll(del);
                             types.addAll(up);
-                            queryCache.onTypesChanged(new TypesChangedEvent(this, types));
+                            if (queryCache instanceof AbstractQueryCache
+                                && ((AbstractQueryCache) queryCache).getEvictPolicy() == EvictPolicy.ROWS)
+                                queryCache.onTypesChanged(new InstancesChangedEvent(this, types,
+                                    getTransactionalStates()));
+                            else
+                                queryCache.onTypesChanged(new TypesChangedEvent(this, types));
                         }
                     }
                     _store.commit();
@@ -1777,7 +1884,12 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                     ("savepoint-flush-not-supported"));
 
             OpenJPASavepoint save = _spm.newSavepoint(name, this);
-            if (_savepoints == null || _savepoints.isEmpty()) {
+            if (save.isCopyOnWrite()) {
+                // instances are saved as they are first changed
+                save.save(Collections.EMPTY_SET);
+                if (_savepoints == null)
+                    _savepoints = new LinkedMap();
+            } else if (_savepoints == null || _savepoints.isEmpty()) {
                 save.save(getTransactionalStates());
                 _savepoints = new LinkedMap();
             } else {
@@ -1827,10 +1939,12 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             while (_savepoints.size() > index + 1) {
                 save = (OpenJPASavepoint) _savepoints.remove
                     (_savepoints.size() - 1);
+                mergeSavepoint(save);
                 save.release(false);
             }
 
             save = (OpenJPASavepoint) _savepoints.remove(index);
+            mergeSavepoint(save);
             save.release(true);
             if (_savepointCache != null)
                 _savepointCache.clear();
@@ -1872,10 +1986,12 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             while (_savepoints.size() > index + 1) {
                 save = (OpenJPASavepoint) _savepoints.remove
                     (_savepoints.size() - 1);
+                mergeSavepoint(save);
                 save.release(false);
             }
 
             save = (OpenJPASavepoint) _savepoints.remove(index);
+            Set<StateManagerImpl> added = save.getAdded();
             Collection saved = save.rollback(_savepoints.values());
             if (_savepointCache != null)
                 _savepointCache.clear();
@@ -1906,6 +2022,17 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                 }
                 for (Object o : oldTransCache) {
                     sm = (StateManagerImpl) o;
+
+                    // copy-on-write savepoints keep the instances that
+                    // have not changed since they were set
+                    if (save.isCopyOnWrite()
+                        && (added == null || !added.contains(sm))) {
+                        if (sm.isDirty())
+                            newTransCache.addDirty(sm);
+                        else
+                            newTransCache.addClean(sm);
+                        continue;
+                    }
                     sm.rollback();
                     removeFromTransaction(sm);
                 }
@@ -1921,6 +2048,17 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         }
     }
 
+    /**
+     * Hand the instances saved by the given copy-on-write savepoint, which
+     * has just been removed from the end of the savepoint list, to the
+     * savepoint now at its end.
+     */
+    private void mergeSavepoint(OpenJPASavepoint save) {
+        if (save.isCopyOnWrite() && !_savepoints.isEmpty())
+            save.mergeInto((OpenJPASavepoint) _savepoints.getValue
+                (_savepoints.size() - 1));
+    }
+
     /**
      * Sets the given flag to the status.
      *
@@ -3024,6 +3162,10 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
 
             StateManagerImpl sm = newStateManagerImpl(id, meta);
             sm.setOwner((StateManagerImpl) owner, ownerMeta);
+            boolean stateless = owner instanceof StateManagerImpl
+                && ((StateManagerImpl) owner).isStateless();
+            if (stateless)
+                sm.setStateless();
 
             PersistenceCapable copy;
             PCState state;
@@ -3061,13 +3203,15 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                 }
             } else {
                 copy = PCRegistry.newInstance(type, sm, false);
-                if ((_flags & FLAG_ACTIVE) != 0 && !_optimistic)
+                if ((_flags & FLAG_ACTIVE) != 0 && !_optimistic && !stateless)
                     state = PCState.ECLEAN;
                 else
                     state = PCState.ENONTRANS;
             }
 
             sm.initialize(copy, state);
+            if (stateless || _collectResultStates > 0)
+                addResultState(sm);
             return sm;
         } catch (OpenJPAException ke) {
             throw ke;
@@ -4372,6 +4516,20 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         }
     }
 
+    /**
+     * Notification that the given instance is about to change or to join
+     * the transaction. The last savepoint saves it if it is a copy-on-write
+     * savepoint that has not saved it yet.
+     */
+    void saveOnWrite(StateManagerImpl sm) {
+        if (_savepoints == null || _savepoints.isEmpty())
+            return;
+        OpenJPASavepoint save = (OpenJPASavepoint) _savepoints.getValue
+            (_savepoints.size() - 1);
+        if (save.isCopyOnWrite())
+            save.saveOnWrite(sm);
+    }
+
     /**
      * Notification that the given instance has been dirtied. This
      * notification is given when an object first transitions to a dirty state,
@@ -4381,7 +4539,9 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         if (sm.isPersistent())
             _flags |= FLAG_FLUSH_REQUIRED;
 
-        if (_savepoints != null && !_savepoints.isEmpty()) {
+        if (_savepoints != null && !_savepoints.isEmpty()
+            && !((OpenJPASavepoint) _savepoints.getValue
+            (_savepoints.size() - 1)).isCopyOnWrite()) {
             if (_savepointCache == null)
                 _savepointCache = new HashSet<>();
             _savepointCache.add(sm);
@@ -177,7 +177,7 @@ public class DetachManager
             if (detachMode == DETACH_FETCH_GROUPS)
                 setFetchGroupFields(broker, sm, idxs);
             else
-                idxs.or(sm.getLoaded());
+                idxs.or(sm.copyLoaded());
 
             // clear lrs fields
             FieldMetaData[] fmds = sm.getMetaData().getFields();
@@ -225,8 +225,8 @@ public class DetachManager
             return false;
 
         // only flush if there are actually any dirty non-flushed fields
-        BitSet dirtyFields = sm.getDirty();
-        BitSet flushedFields = sm.getFlushed();
+        BitSet dirtyFields = sm.copyDirty();
+        BitSet flushedFields = sm.copyFlushed();
         for (int i = 0; i < dirtyFields.size(); i++) {
             if (dirtyFields.get(i) && !flushedFields.get(i)) {
                 if (sm.getBroker().getRollbackOnly())
@@ -668,32 +668,39 @@ public class ExpressionStoreQuery
             List results = new ArrayList();
             StoreContext ctx = q.getContext().getStoreContext();
             try {
-                Object obj;
-                while (itr.hasNext()) {
-                    obj = itr.next();
-                    if (_factory.matches(_exps[0], _meta, _subs, obj, ctx,
-                        params))
-                        results.add(obj);
+                try {
+                    Object obj;
+                    while (itr.hasNext()) {
+                        obj = itr.next();
+                        if (_factory.matches(_exps[0], _meta, _subs, obj, ctx,
+                            params))
+                            results.add(obj);
+                    }
+                }
+                finally {
+                    ImplHelper.close(itr);
                 }
-            }
-            finally {
-                ImplHelper.close(itr);
-            }
 
-            // group results
-            results = _factory.group(_exps[0], results, ctx, params);
-
-            // apply having to filter groups
-            if (_exps[0].having != null) {
-                List matches = new ArrayList(results.size());
-                Collection c;
-                itr = results.iterator();
-                while (itr.hasNext()) {
-                    c = (Collection) itr.next();
-                    if (_factory.matches(_exps[0], c, ctx, params))
-                        matches.add(c);
+                // group results
+                results = _factory.group(_exps[0], results, ctx, params);
+
+                // apply having to filter groups
+                if (_exps[0].having != null) {
+                    List matches = new ArrayList(results.size());
+                    Collection c;
+                    itr = results.iterator();
+                    while (itr.hasNext()) {
+                        c = (Collection) itr.next();
+                        if (_factory.matches(_exps[0], c, ctx, params))
+                            matches.add(c);
+                    }
+                    results = matches;
                 }
-                results = matches;
+            }
+            finally {
+                // the extents of unbound variables only hold for this
+                // execution, so never carry them over to the next one
+                _factory.clearExtents();
             }
 
             // apply projections, order results, and filter duplicates
@@ -28,6 +28,7 @@ public class InMemorySavepointManager
     implements SavepointManager {
 
     private boolean _preFlush = true;
+    private boolean _copyOnWrite = false;
 
     /**
      * Return whether to call {@link Broker#preFlush}
@@ -49,11 +50,36 @@ public class InMemorySavepointManager
         _preFlush = preFlush;
     }
 
+    /**
+     * Return whether savepoints save each instance only as it is first
+     * changed after the savepoint is set. Setting a savepoint then no
+     * longer copies every transactional instance, and rolling back only
+     * restores the instances that changed.
+     *
+     * @since 3.2.3
+     */
+    public boolean getCopyOnWrite() {
+        return _copyOnWrite;
+    }
+
+    /**
+     * Set whether savepoints save each instance only as it is first
+     * changed after the savepoint is set. Setting a savepoint then no
+     * longer copies every transactional instance, and rolling back only
+     * restores the instances that changed.
+     *
+     * @since 3.2.3
+     */
+    public void setCopyOnWrite(boolean copyOnWrite) {
+        _copyOnWrite = copyOnWrite;
+    }
+
     @Override
     public OpenJPASavepoint newSavepoint(String name, Broker broker) {
         // pre-flush after creating savepoint b/c pre-flush may add/change
         // states
-        OpenJPASavepoint save = new OpenJPASavepoint(broker, name, true);
+        OpenJPASavepoint save = new OpenJPASavepoint(broker, name, true,
+            _copyOnWrite);
         if (_preFlush)
             broker.preFlush();
         return save;
@@ -212,7 +212,7 @@ public class InverseManager implements Configurable {
      * Return whether the given field is loaded for the given instance.
      */
     private boolean isLoaded(OpenJPAStateManager sm, int field) {
-        if (sm.getLoaded().get(field))
+        if (sm.isLoaded(field))
             return true;
 
         // if the field isn't loaded in the state manager, it still might be
@@ -21,7 +21,9 @@ package org.apache.openjpa.kernel;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a savepoint where operations afterwards can be rolled
@@ -35,16 +37,31 @@ public class OpenJPASavepoint implements Serializable {
     private final Broker _broker;
     private final String _name;
     private final boolean _copy;
+    private final boolean _copyOnWrite;
 
      private Map<StateManagerImpl, SavepointFieldManager> _saved;
+    private Set<StateManagerImpl> _added;
 
     /**
      * Constructor. Indicate whether to copy field data into memory.
      */
     public OpenJPASavepoint(Broker broker, String name, boolean copy) {
+        this(broker, name, copy, false);
+    }
+
+    /**
+     * Constructor. Indicate whether to copy field data into memory, and
+     * whether to save each instance only as it is first changed after
+     * this savepoint is set.
+     *
+     * @since 3.2.3
+     */
+    public OpenJPASavepoint(Broker broker, String name, boolean copy,
+        boolean copyOnWrite) {
         _broker = broker;
         _name = name;
         _copy = copy;
+        _copyOnWrite = copyOnWrite;
     }
 
     /**
@@ -68,6 +85,17 @@ public class OpenJPASavepoint implements Serializable {
         return _copy;
     }
 
+    /**
+     * Whether this savepoint saves each instance only as it is first
+     * changed after the savepoint is set, rather than saving all
+     * transactional instances up front.
+     *
+     * @since 3.2.3
+     */
+    public boolean isCopyOnWrite() {
+        return _copyOnWrite;
+    }
+
     /**
      * Return the map of states to savepoint data.
      */
@@ -98,17 +126,70 @@ public class OpenJPASavepoint implements Serializable {
      */
     public void release(boolean user) {
         _saved = null;
+        _added = null;
+    }
+
+    /**
+     * Save the given instance of a copy-on-write savepoint before it is
+     * first changed. Instances that were not transactional are only
+     * recorded, as rolling back to this savepoint removes them from the
+     * transaction.
+     */
+    void saveOnWrite(StateManagerImpl sm) {
+        if (_saved == null || _saved.containsKey(sm)
+            || (_added != null && _added.contains(sm)))
+            return;
+        if (sm.isTransactional())
+            _saved.put(sm, new SavepointFieldManager(sm, _copy));
+        else {
+            if (_added == null)
+                _added = new HashSet<>();
+            _added.add(sm);
+        }
+    }
+
+    /**
+     * Return the instances that joined the transaction after this
+     * copy-on-write savepoint was set.
+     */
+    Set<StateManagerImpl> getAdded() {
+        return _added;
+    }
+
+    /**
+     * Hand the instances saved by this copy-on-write savepoint to the
+     * given savepoint, set just before it, as this one is released. An
+     * instance this savepoint saved was unchanged since the given one was
+     * set, unless the given one saved it itself.
+     */
+    void mergeInto(OpenJPASavepoint previous) {
+        if (_saved == null || previous._saved == null)
+            return;
+        for (Map.Entry<StateManagerImpl, SavepointFieldManager> entry
+            : _saved.entrySet())
+            if (!previous._saved.containsKey(entry.getKey()))
+                previous._saved.put(entry.getKey(), entry.getValue());
+        if (_added == null)
+            return;
+        for (StateManagerImpl sm : _added)
+            if (!previous._saved.containsKey(sm)) {
+                if (previous._added == null)
+                    previous._added = new HashSet<>();
+                previous._added.add(sm);
+            }
     }
 
     /**
      * Handle the rolled back state, returning saved data.
      * Subclasses should return the collection returned from this method.
+     * A copy-on-write savepoint returns only its own data, which already
+     * holds every instance changed since it was set.
      *
      * @param previous previous savepoints set in the transaction
      */
     public Collection<SavepointFieldManager> rollback(Collection<OpenJPASavepoint> previous) {
         Map<StateManagerImpl, SavepointFieldManager> saved;
-        if (previous.isEmpty())
+        if (previous.isEmpty() || _copyOnWrite)
             saved = _saved;
         else {
             // merge all changes into one collection, allowing for later
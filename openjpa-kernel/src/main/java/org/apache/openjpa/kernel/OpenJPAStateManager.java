@@ -134,6 +134,18 @@ public interface OpenJPAStateManager
      */
     BitSet getLoaded();
 
+    /**
+     * Return whether the field with the given index is loaded. Prefer this
+     * method over {@link #getLoaded} to test single fields, as state
+     * managers may track the loaded fields in a more compact form than a
+     * {@link BitSet}.
+     *
+     * @since 3.2.3
+     */
+    default boolean isLoaded(int field) {
+        return getLoaded().get(field);
+    }
+
     /**
      * Return a read-only mask of the indexes of all dirty fields.
      */
@@ -66,7 +66,7 @@ class PDeletedState extends PCState {
 
     @Override
     PCState persist(StateManagerImpl context) {
-        return (context.getDirty().length() > 0) ? PDIRTY : PCLEAN;
+        return (context.hasDirtyFields()) ? PDIRTY : PCLEAN;
     }
 
     @Override
@@ -206,6 +206,23 @@ public interface PreparedQueryCache extends Configurable {
      */
     boolean getEnableStatistics();
 
+    /**
+     * Enable/disable the replacement of the literals of JPQL queries by
+     * synthetic parameters, so that queries that differ only by their
+     * literals share one cached entry.
+     *
+     * @since 3.2.3
+     */
+    void setAutoParameterize(boolean enable);
+
+    /**
+     * Affirm if the literals of JPQL queries are replaced by synthetic
+     * parameters.
+     *
+     * @since 3.2.3
+     */
+    boolean getAutoParameterize();
+
 	/**
 	 * Gets the simple statistics for executed queries.
 	 * If the statistics gathering is disabled, an empty statistics is returned.
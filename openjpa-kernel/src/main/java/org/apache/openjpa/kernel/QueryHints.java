@@ -108,4 +108,26 @@ public interface QueryHints {
      * if possible.
      */
     String HINT_USE_LITERAL_IN_SQL = "openjpa.hint.UseLiteralInSQL";
+
+    /**
+     * A boolean directive to load the instances of the query result for
+     * reading only. The instances are not proxied, receive no post-load
+     * callbacks and are detached in place as soon as each result is read,
+     * so that they never accumulate in the persistence context.
+     * Instances that are already managed are returned as they are.
+     *
+     * @since 3.2.3
+     */
+    String HINT_STATELESS = "openjpa.hint.Stateless";
+
+    /**
+     * A boolean directive to detach the instances of a query result once
+     * the application has moved on to the next result, as long as they
+     * have not been changed or locked. Combined with a large result set,
+     * this lets a forward-only read of a result of any size run in
+     * constant memory.
+     *
+     * @since 3.2.3
+     */
+    String HINT_EVICT_CONSUMED = "openjpa.hint.EvictConsumed";
 }
@@ -1288,8 +1288,14 @@ public class QueryImpl implements Query {
         ResultObjectProvider rop, StoreQuery.Range range)
         throws Exception {
         if (rop instanceof BatchedResultObjectProvider) {
+            // each result set of the batch comes back through this method
+            // from QueryResultCallback.callback(), and is wrapped below
             return new QueryResultCallback(this, q, ex, (BatchedResultObjectProvider) rop, range);
         }
+        boolean evict = BrokerImpl.isHinted(_fc, QueryHints.HINT_EVICT_CONSUMED);
+        if (evict || BrokerImpl.isHinted(_fc, QueryHints.HINT_STATELESS))
+            rop = new ReleasingResultObjectProvider(rop, _broker, evict);
+
         // pack projections if necessary
         String[] aliases = ex.getProjectionAliases(q);
         if (!ex.isPacking(q)) {
@@ -2240,6 +2246,114 @@ public class QueryImpl implements Query {
         }
     }
 
+    /**
+     * Result object provider that has the broker release the instances
+     * loaded for the results, so that they do not accumulate in the broker.
+     * Stateless results are released as soon as they have been read; when
+     * evicting consumed results, the instances of a result are released
+     * when the next one is read.
+     *
+     * @see QueryHints#HINT_STATELESS
+     * @see QueryHints#HINT_EVICT_CONSUMED
+     * @since 3.2.3
+     */
+    public static class ReleasingResultObjectProvider
+        implements ResultObjectProvider {
+
+        private final ResultObjectProvider _delegate;
+        private final BrokerImpl _broker;
+        private final boolean _evictConsumed;
+
+        public ReleasingResultObjectProvider(ResultObjectProvider delegate,
+            BrokerImpl broker, boolean evictConsumed) {
+            _delegate = delegate;
+            _broker = broker;
+            _evictConsumed = evictConsumed;
+        }
+
+        @Override
+        public boolean supportsRandomAccess() {
+            return _delegate.supportsRandomAccess();
+        }
+
+        @Override
+        public void open()
+            throws Exception {
+            if (!_evictConsumed) {
+                _delegate.open();
+                return;
+            }
+            _broker.beginResultStates();
+            try {
+                _delegate.open();
+            } finally {
+                _broker.endResultStates();
+            }
+        }
+
+        @Override
+        public Object getResultObject()
+            throws Exception {
+            if (!_evictConsumed) {
+                Object ob = _delegate.getResultObject();
+                _broker.releaseResultStates();
+                return ob;
+            }
+
+            // the previous result has been consumed by now
+            _broker.releaseResultStates();
+            _broker.beginResultStates();
+            try {
+                return _delegate.getResultObject();
+            } finally {
+                _broker.endResultStates();
+            }
+        }
+
+        @Override
+        public boolean next()
+            throws Exception {
+            return _delegate.next();
+        }
+
+        @Override
+        public boolean absolute(int pos)
+            throws Exception {
+            return _delegate.absolute(pos);
+        }
+
+        @Override
+        public int size()
+            throws Exception {
+            return _delegate.size();
+        }
+
+        @Override
+        public void reset()
+            throws Exception {
+            _delegate.reset();
+        }
+
+        @Override
+        public void close()
+            throws Exception {
+            try {
+                _delegate.close();
+            } finally {
+                _broker.releaseResultStates();
+            }
+        }
+
+        @Override
+        public void handleCheckedException(Exception e) {
+            _delegate.handleCheckedException(e);
+        }
+
+        public ResultObjectProvider getDelegate() {
+            return _delegate;
+        }
+    }
+
     /**
      * Result list that removes itself from the query's open result list
      * when it is closed. Public for testing.
@@ -95,7 +95,7 @@ public class SaveFieldManager
      */
     public boolean saveField(int field) {
         // if not loaded we can't save orig value; mark as unloaded on rollback
-        if (_sm.getLoaded() != null && !_sm.getLoaded().get(field)) {
+        if (!_sm.isLoaded(field)) {
             _unloaded.set(field);
             return false;
         }
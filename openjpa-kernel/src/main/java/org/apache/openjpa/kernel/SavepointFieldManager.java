@@ -74,9 +74,9 @@ class SavepointFieldManager
         _sm = sm;
         _state = _sm.getPCState();
 
-        _dirty = (BitSet) _sm.getDirty().clone();
-        _flush = (BitSet) _sm.getFlushed().clone();
-        _loaded = (BitSet) _sm.getLoaded().clone();
+        _dirty = _sm.copyDirty();
+        _flush = _sm.copyFlushed();
+        _loaded = _sm.copyLoaded();
 
         FieldMetaData[] fields = _sm.getMetaData().getFields();
         for (int i = 0; i < _loaded.length(); i++) {
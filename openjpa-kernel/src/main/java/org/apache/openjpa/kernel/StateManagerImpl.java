@@ -27,7 +27,6 @@ import java.io.Serializable;
 import java.lang.reflect.Modifier;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Comparator;
@@ -36,6 +35,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
@@ -107,6 +107,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     private static final int FLAG_VERSION_UPDATE = 2 << 15;
     private static final int FLAG_DETACHING = 2 << 16;
     private static final int FLAG_EMBED_DEREF = 2 << 17;
+    private static final int FLAG_LOADED_MASK = 2 << 18;
+    private static final int FLAG_STATELESS = 2 << 19;
+    private static final int FLAG_DIRTY_MASK = 2 << 20;
+    private static final int FLAG_FLUSH_MASK = 2 << 21;
+    private static final int FLAG_MULTITHREADED = 2 << 22;
 
     private static final Localizer _loc = Localizer.forPackage
         (StateManagerImpl.class);
@@ -116,6 +121,13 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     protected transient ClassMetaData _meta = null;
     protected BitSet _loaded = null;
 
+    // the loaded, dirty and flushed fields of types with no more than 64
+    // fields are tracked in these masks until someone asks for the BitSet
+    // form of the set; see getLoaded(), getDirty() and getFlushed()
+    private long _loadedMask = 0L;
+    private long _dirtyMask = 0L;
+    private long _flushMask = 0L;
+
     // Care needs to be taken when accessing these fields as they will can be null if no fields are
     // dirty, or have been flushed.
     private BitSet _dirty = null;
@@ -144,7 +156,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     private int _writeLockLevel = -1;
 
     // delegates when providing/replacing instance data
-    private SingleFieldManager _single = null;
+    private SingleFieldManager _single = null; // created on first use
     private SaveFieldManager _saved = null;
     private FieldManager _fm = null;
 
@@ -159,7 +171,10 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     private int _ownerIndex = -1;
     private List<FieldMetaData> _mappedByIdFields = null;
 
-    private transient ReentrantLock _instanceLock = null;
+    // created on first use if the broker is multithreaded
+    private transient volatile ReentrantLock _instanceLock = null;
+    private static final AtomicReferenceFieldUpdater<StateManagerImpl, ReentrantLock> INSTANCE_LOCK =
+        AtomicReferenceFieldUpdater.newUpdater(StateManagerImpl.class, ReentrantLock.class, "_instanceLock");
 
     private int _datePrecision = -1;
 
@@ -177,9 +192,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         _id = id;
         _meta = meta;
         _broker = broker;
-        _single = new SingleFieldManager(this, broker);
         if (broker.getMultithreaded())
-        	_instanceLock = new ReentrantLock();
+            _flags |= FLAG_MULTITHREADED;
 
         if (_meta.getIdentityType() == ClassMetaData.ID_UNKNOWN && !_meta.isEmbeddable())
             throw new UserException(_loc.get("meta-unknownid", _meta));
@@ -221,9 +235,16 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         _state = newState;
 
         // clone the field bitsets.
-        _dirty=(BitSet)sm.getDirty().clone();
-        _loaded = (BitSet)sm.getLoaded().clone();
-        _flush = (BitSet) sm.getFlushed().clone();
+        _flags |= sm._flags & (FLAG_LOADED_MASK | FLAG_DIRTY_MASK | FLAG_FLUSH_MASK);
+        _loadedMask = sm._loadedMask;
+        _dirtyMask = sm._dirtyMask;
+        _flushMask = sm._flushMask;
+        if ((sm._flags & FLAG_LOADED_MASK) == 0)
+            _loaded = sm.copyLoaded();
+        if ((sm._flags & FLAG_DIRTY_MASK) == 0 && sm._dirty != null)
+            _dirty = (BitSet) sm._dirty.clone();
+        if ((sm._flags & FLAG_FLUSH_MASK) == 0 && sm._flush != null)
+            _flush = (BitSet) sm._flush.clone();
         _version = sm.getVersion();
 
         _oid = sm.getObjectId();
@@ -276,6 +297,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             // notify the store manager that we're changing states; can veto
             _broker.getStoreManager().beforeStateChange(this, _state, state);
 
+            // let a copy-on-write savepoint record an instance joining the
+            // transaction
+            if (!isTransactional() && state.isTransactional())
+                _broker.saveOnWrite(this);
+
             // replace state
             boolean wasDeleted = _state.isDeleted();
             boolean wasDirty = _state.isDirty();
@@ -358,11 +384,19 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         pc.pcReplaceStateManager(this);
 
         FieldMetaData[] fmds = _meta.getFields();
-        _loaded = new BitSet(fmds.length);
+        if (fmds.length <= Long.SIZE) {
+            _loadedMask = 0L;
+            _flags |= FLAG_LOADED_MASK;
+            if (_dirty == null)
+                _flags |= FLAG_DIRTY_MASK;
+            if (_flush == null)
+                _flags |= FLAG_FLUSH_MASK;
+        } else
+            _loaded = new BitSet(fmds.length);
 
         // mark primary key and non-persistent fields as loaded
         for(int i : _meta.getPkAndNonPersistentManagedFmdIndexes()){
-            _loaded.set(i);
+            setLoadedBit(i, true);
         }
 
         _mappedByIdFields = _meta.getMappyedByIdFields();
@@ -504,9 +538,77 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
     @Override
     public BitSet getLoaded() {
+        // callers may hold on to the returned set and expect it to track
+        // later loads, so switch to the BitSet form for good
+        if ((_flags & FLAG_LOADED_MASK) != 0) {
+            _loaded = BitSet.valueOf(new long[]{ _loadedMask });
+            _flags &= ~FLAG_LOADED_MASK;
+        }
         return _loaded;
     }
 
+    /**
+     * Return whether the given field is loaded, without forcing the
+     * compact loaded mask into its {@link BitSet} form.
+     *
+     * @since 3.2.3
+     */
+    @Override
+    public boolean isLoaded(int field) {
+        if ((_flags & FLAG_LOADED_MASK) != 0)
+            return (_loadedMask & (1L << field)) != 0;
+        return _loaded.get(field);
+    }
+
+    /**
+     * The index of the highest loaded field plus one.
+     */
+    private int getLoadedLength() {
+        if ((_flags & FLAG_LOADED_MASK) != 0)
+            return Long.SIZE - Long.numberOfLeadingZeros(_loadedMask);
+        return _loaded.length();
+    }
+
+    private void setLoadedBit(int field, boolean loaded) {
+        if ((_flags & FLAG_LOADED_MASK) != 0) {
+            if (loaded)
+                _loadedMask |= 1L << field;
+            else
+                _loadedMask &= ~(1L << field);
+        } else if (loaded)
+            _loaded.set(field);
+        else
+            _loaded.clear(field);
+    }
+
+    /**
+     * Mark all fields as unloaded.
+     */
+    private void clearLoaded() {
+        if ((_flags & FLAG_LOADED_MASK) != 0)
+            _loadedMask = 0L;
+        else
+            _loaded.clear();
+    }
+
+    /**
+     * Mark the given fields as unloaded.
+     */
+    private void clearLoaded(BitSet fields) {
+        if ((_flags & FLAG_LOADED_MASK) == 0)
+            _loaded.andNot(fields);
+        else
+            _loadedMask &= ~toMask(fields);
+    }
+
+    /**
+     * The mask of the given set of the fields of a type with no more than
+     * 64 fields.
+     */
+    private static long toMask(BitSet fields) {
+        return (fields.isEmpty()) ? 0L : fields.toLongArray()[0];
+    }
+
     @Override
     public BitSet getUnloaded(FetchConfiguration fetch) {
         // collect fields to load from data store based on fetch configuration
@@ -528,7 +630,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         FieldMetaData[] fmds = _meta.getFields();
         boolean load;
         for (int i = 0; i < fmds.length; i++) {
-            if (_loaded.get(i) || (exclude != null && exclude.get(i)))
+            if (isLoaded(i) || (exclude != null && exclude.get(i)))
                 continue;
 
             switch (mode) {
@@ -824,7 +926,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
     @Override
     public synchronized boolean isImplDataCacheable(int field) {
-        if (_fieldImpl == null || !_loaded.get(field))
+        if (_fieldImpl == null || !isLoaded(field))
             return false;
         if (_meta.getField(field).usesImplData() != null)
             return false;
@@ -849,7 +951,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         // only return the field data if the field is in the right loaded
         // state; otherwise we might return intermediate for impl data or
         // vice versa
-        if (_fieldImpl == null || _loaded.get(field) != isLoaded)
+        if (_fieldImpl == null || isLoaded(field) != isLoaded)
             return null;
         int idx = _meta.getExtraFieldDataIndex(field);
         return (idx == -1) ? null : _fieldImpl[idx];
@@ -867,7 +969,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         Object old = (_fieldImpl == null) ? null : _fieldImpl[idx];
         if (data != null) {
             // cannot set if field in wrong loaded state
-            if (_loaded.get(field) != loaded)
+            if (isLoaded(field) != loaded)
                 throw new InternalException(String.valueOf(_meta.getField
                     (field)));
 
@@ -875,11 +977,23 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             if (_fieldImpl == null)
                 _fieldImpl = new Object[_meta.getExtraFieldDataLength()];
             _fieldImpl[idx] = data;
-        } else if (_fieldImpl != null && _loaded.get(field) == loaded)
-            _fieldImpl[idx] = null;
+        } else if (_fieldImpl != null && isLoaded(field) == loaded)
+            clearExtraFieldData(idx);
         return old;
     }
 
+    /**
+     * Clear the given index of the extra field data array, releasing the
+     * array once it holds no data.
+     */
+    private void clearExtraFieldData(int idx) {
+        _fieldImpl[idx] = null;
+        for (Object data : _fieldImpl)
+            if (data != null)
+                return;
+        _fieldImpl = null;
+    }
+
     @Override
     public Object fetch(int field) {
         Object val = fetchField(field, false);
@@ -971,7 +1085,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             // pk and version fields cannot be mutated; don't mark them
             // as such. ##### validate?
             if (!fmds[i].isPrimaryKey() && !fmds[i].isVersion()
-                && _loaded.get(i)) {
+                && isLoaded(i)) {
                 if (!saved.isFieldEqual(i, fetch(i))) {
                     dirty(i);
                 }
@@ -1014,7 +1128,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
         lock();
         try {
-            if (_saved == null || !_loaded.get(field) || !isFieldDirty(field))
+            if (_saved == null || !isLoaded(field) || !isFieldDirty(field))
                 return fetchField(field, false);
 
             // if the field is dirty but we never loaded it, we can't restore it
@@ -1022,8 +1136,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 throw new InvalidStateException(_loc.get("initial-unloaded",
                     fmd));
 
-            provideField(_saved.getState(), _single, field);
-            return fetchField(_single, fmd);
+            provideField(_saved.getState(), getSingleFieldManager(), field);
+            return fetchField(getSingleFieldManager(), fmd);
         } finally {
             unlock();
         }
@@ -1066,8 +1180,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, false);
-            storeField(field, value, _single);
-            replaceField(_pc, _single, field);
+            storeField(field, value, getSingleFieldManager());
+            replaceField(_pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -1129,11 +1243,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             boolean needPostUpdate = !(wasNew && !wasFlushed)
                     && (ImplHelper.getUpdateFields(this) != null);
 
-            // all dirty fields were flushed, we are referencing the _dirty BitSet directly here
-            // because we don't want to instantiate it if we don't have to.
-            if (_dirty != null) {
-                getFlushed().or(_dirty);
-            }
+            // all dirty fields were flushed
+            flushDirty();
 
             // important to set flushed bit after calling _state.flush so
             // that the state can tell whether this is the first flush
@@ -1232,9 +1343,19 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 replaceField(_pc, savepoint, i);
             }
         }
-        _loaded = loaded;
-        _dirty = savepoint.getDirty();
-        _flush = savepoint.getFlushed();
+        if (_meta.getFields().length <= Long.SIZE) {
+            _loadedMask = toMask(loaded);
+            _dirtyMask = toMask(savepoint.getDirty());
+            _flushMask = toMask(savepoint.getFlushed());
+            _loaded = null;
+            _dirty = null;
+            _flush = null;
+            _flags |= FLAG_LOADED_MASK | FLAG_DIRTY_MASK | FLAG_FLUSH_MASK;
+        } else {
+            _loaded = loaded;
+            _dirty = savepoint.getDirty();
+            _flush = savepoint.getFlushed();
+        }
         _version = savepoint.getVersion();
         _loadVersion = savepoint.getLoadVersion();
     }
@@ -1256,6 +1377,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
      * @see Broker#delete
      */
     void delete() {
+        _broker.saveOnWrite(this);
         setPCState(_state.delete(this));
     }
 
@@ -1266,6 +1388,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
      * @see Broker#nontransactional
      */
     void nontransactional() {
+        _broker.saveOnWrite(this);
         setPCState(_state.nontransactional(this));
     }
 
@@ -1330,7 +1453,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     void gatherCascadeRefresh(OpCallbacks call) {
         FieldMetaData[] fmds = _meta.getFields();
         for (int i = 0; i < fmds.length; i++) {
-            if (!_loaded.get(i))
+            if (!isLoaded(i))
                 continue;
 
             if (fmds[i].getCascadeRefresh() == ValueMetaData.CASCADE_IMMEDIATE
@@ -1338,9 +1461,9 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 == ValueMetaData.CASCADE_IMMEDIATE
                 || fmds[i].getElement().getCascadeRefresh()
                 == ValueMetaData.CASCADE_IMMEDIATE) {
-                _single.storeObjectField(i, fetchField(i, false));
-                _single.gatherCascadeRefresh(call);
-                _single.clear();
+                getSingleFieldManager().storeObjectField(i, fetchField(i, false));
+                getSingleFieldManager().gatherCascadeRefresh(call);
+                getSingleFieldManager().clear();
             }
         }
     }
@@ -1365,7 +1488,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             // if some fields have been loaded but the instance is out of
             // date or this is part of a refreshAll() and we don't want to
             // take the extra hit to see if the instance is out of date, clear
-            if (_loaded.length() > 0 && (refreshAll || isEmbedded()
+            if (getLoadedLength() > 0 && (refreshAll || isEmbedded()
                 || !syncVersion(null))) {
                 Object version = _version;
                 clearFields();
@@ -1543,9 +1666,9 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             for (int i = 0; i < fmds.length; i++) {
                 if (fmds[i].isTransient())
                     continue;
-                provideField(_pc, _single, i);
-                _single.serialize(out, !idxs.get(i));
-                _single.clear();
+                provideField(_pc, getSingleFieldManager(), i);
+                getSingleFieldManager().serialize(out, !idxs.get(i));
+                getSingleFieldManager().clear();
             }
             return true;
         } catch (RuntimeException re) {
@@ -1671,7 +1794,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         try {
             // If this field is loaded, and not a PK field allow pass through
             // TODO -- what about version fields? Could probably UT this
-            if(_loaded.get(field) && !_meta.getField(field).isPrimaryKey())
+            if(isLoaded(field) && !_meta.getField(field).isPrimaryKey())
                 return;
 
             beforeRead(field);
@@ -1743,7 +1866,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         try {
             boolean active = _broker.isActive();
             int lockLevel = calculateLockLevel(active, false, null);
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, lockLevel, false, true);
             else
                 assignField(field, false);
@@ -1829,6 +1952,10 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 }
             }
 
+            // let a copy-on-write savepoint save the instance before its
+            // first change
+            _broker.saveOnWrite(this);
+
             // possibly change state
             boolean active = _broker.isActive();
             clean = !_state.isDirty(); // intentional direct access
@@ -1920,9 +2047,9 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             FieldMetaData fmd = _meta.getField(field);
             ValueMetaData vmd = (key) ? fmd.getKey() : fmd.getElement();
             if (vmd.isEmbeddedPC())
-                _single.delete(vmd, removed, null);
+                getSingleFieldManager().delete(vmd, removed, null);
             else if (vmd.getCascadeDelete() == ValueMetaData.CASCADE_AUTO)
-                _single.dereferenceDependent(removed);
+                getSingleFieldManager().dereferenceDependent(removed);
         } catch (RuntimeException re) {
             throw translate(re);
         }
@@ -1985,10 +2112,10 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public boolean isDefaultValue(int field) {
         lock();
         try {
-            _single.clear();
-            provideField(_pc, _single, field);
-            boolean ret = _single.isDefaultValue();
-            _single.clear();
+            getSingleFieldManager().clear();
+            provideField(_pc, getSingleFieldManager(), field);
+            boolean ret = getSingleFieldManager().isDefaultValue();
+            getSingleFieldManager().clear();
             return ret;
         } finally {
             unlock();
@@ -2003,7 +2130,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingBooleanField(PersistenceCapable pc, int field,
         boolean curVal, boolean newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2011,8 +2138,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeBooleanField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeBooleanField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2023,7 +2150,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingByteField(PersistenceCapable pc, int field,
         byte curVal, byte newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2031,8 +2158,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeByteField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeByteField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2043,7 +2170,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingCharField(PersistenceCapable pc, int field,
         char curVal, char newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2051,8 +2178,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeCharField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeCharField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2063,7 +2190,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingDoubleField(PersistenceCapable pc, int field,
         double curVal, double newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2071,8 +2198,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeDoubleField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeDoubleField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2083,7 +2210,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingFloatField(PersistenceCapable pc, int field,
         float curVal, float newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2091,8 +2218,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeFloatField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeFloatField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2103,7 +2230,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingIntField(PersistenceCapable pc, int field,
         int curVal, int newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2111,8 +2238,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeIntField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeIntField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2123,7 +2250,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingLongField(PersistenceCapable pc, int field,
         long curVal, long newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2131,8 +2258,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeLongField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeLongField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2144,7 +2271,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         Object curVal, Object newVal, int set) {
         if (set != SET_REMOTE) {
             FieldMetaData fmd = _meta.getField(field);
-            if (_loaded.get(field)) {
+            if (isLoaded(field)) {
                 if (newVal == curVal)
                     return;
 
@@ -2197,13 +2324,13 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
             if (set != SET_REMOTE) {
-                _single.storeObjectField(field, curVal);
-                _single.unproxy();
-                _single.dereferenceDependent();
-                _single.clear();
+                getSingleFieldManager().storeObjectField(field, curVal);
+                getSingleFieldManager().unproxy();
+                getSingleFieldManager().dereferenceDependent();
+                getSingleFieldManager().clear();
             }
-            _single.storeObjectField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeObjectField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2214,7 +2341,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingShortField(PersistenceCapable pc, int field,
         short curVal, short newVal, int set) {
         if (set != SET_REMOTE) {
-            if (newVal == curVal && _loaded.get(field))
+            if (newVal == curVal && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2222,8 +2349,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeShortField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeShortField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2234,7 +2361,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void settingStringField(PersistenceCapable pc, int field,
         String curVal, String newVal, int set) {
         if (set != SET_REMOTE) {
-            if (Objects.equals(newVal, curVal) && _loaded.get(field))
+            if (Objects.equals(newVal, curVal) && isLoaded(field))
                 return;
             assertNoPrimaryKeyChange(field);
         }
@@ -2242,8 +2369,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         lock();
         try {
             Boolean stat = dirty(field, Boolean.FALSE, set == SET_USER);
-            _single.storeStringField(field, newVal);
-            replaceField(pc, _single, field);
+            getSingleFieldManager().storeStringField(field, newVal);
+            replaceField(pc, getSingleFieldManager(), field);
             postDirty(stat);
         } finally {
             unlock();
@@ -2404,11 +2531,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public boolean fetchBooleanField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchBooleanField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchBooleanField(field);
         } finally {
             unlock();
         }
@@ -2428,11 +2555,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public byte fetchByteField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchByteField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchByteField(field);
         } finally {
             unlock();
         }
@@ -2452,11 +2579,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public char fetchCharField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchCharField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchCharField(field);
         } finally {
             unlock();
         }
@@ -2476,11 +2603,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public double fetchDoubleField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchDoubleField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchDoubleField(field);
         } finally {
             unlock();
         }
@@ -2500,11 +2627,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public float fetchFloatField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchFloatField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchFloatField(field);
         } finally {
             unlock();
         }
@@ -2524,11 +2651,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public int fetchIntField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchIntField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchIntField(field);
         } finally {
             unlock();
         }
@@ -2548,11 +2675,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public long fetchLongField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchLongField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchLongField(field);
         } finally {
             unlock();
         }
@@ -2572,11 +2699,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public Object fetchObjectField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchObjectField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchObjectField(field);
         } finally {
             unlock();
         }
@@ -2596,11 +2723,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public short fetchShortField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchShortField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchShortField(field);
         } finally {
             unlock();
         }
@@ -2620,11 +2747,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public String fetchStringField(int field) {
         lock();
         try {
-            if (!_loaded.get(field))
+            if (!isLoaded(field))
                 loadField(field, LockLevels.LOCK_NONE, false, false);
 
-            provideField(_pc, _single, field);
-            return _single.fetchStringField(field);
+            provideField(_pc, getSingleFieldManager(), field);
+            return getSingleFieldManager().fetchStringField(field);
         } finally {
             unlock();
         }
@@ -2645,8 +2772,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeBooleanField(int field, boolean curVal) {
         lock();
         try {
-            _single.storeBooleanField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeBooleanField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2668,8 +2795,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeByteField(int field, byte curVal) {
         lock();
         try {
-            _single.storeByteField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeByteField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2691,8 +2818,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeCharField(int field, char curVal) {
         lock();
         try {
-            _single.storeCharField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeCharField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2713,8 +2840,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeDoubleField(int field, double curVal) {
         lock();
         try {
-            _single.storeDoubleField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeDoubleField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2735,8 +2862,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeFloatField(int field, float curVal) {
         lock();
         try {
-            _single.storeFloatField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeFloatField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2758,8 +2885,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeIntField(int field, int curVal) {
         lock();
         try {
-            _single.storeIntField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeIntField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2781,8 +2908,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeLongField(int field, long curVal) {
         lock();
         try {
-            _single.storeLongField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeLongField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2804,9 +2931,10 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeObjectField(int field, Object curVal) {
         lock();
         try {
-            _single.storeObjectField(field, curVal);
-            _single.proxy(true, false);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeObjectField(field, curVal);
+            if ((_flags & FLAG_STATELESS) == 0)
+                getSingleFieldManager().proxy(true, false);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2828,8 +2956,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeShortField(int field, short curVal) {
         lock();
         try {
-            _single.storeShortField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeShortField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2850,8 +2978,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     public void storeStringField(int field, String curVal) {
         lock();
         try {
-            _single.storeStringField(field, curVal);
-            replaceField(_pc, _single, field);
+            getSingleFieldManager().storeStringField(field, curVal);
+            replaceField(_pc, getSingleFieldManager(), field);
             setLoaded(field, true);
             postLoad(field, null);
         } finally {
@@ -2922,6 +3050,9 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         _flags &= ~FLAG_FLUSHED_DIRTY;
 
         _flush = null;
+        _flushMask = 0L;
+        if (_meta.getFields().length <= Long.SIZE)
+            _flags |= FLAG_FLUSH_MASK;
     }
 
     /**
@@ -2992,8 +3123,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             setLoaded(false);
             _version = null;
             _loadVersion = null;
-            if (_fieldImpl != null)
-                Arrays.fill(_fieldImpl, null);
+            _fieldImpl = null;
         } finally {
             unlock();
         }
@@ -3012,14 +3142,14 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
         _flags |= FLAG_SAVE;
         if (immediate) {
-            for (int i = 0, len = _loaded.length(); i < len; i++)
+            for (int i = 0, len = getLoadedLength(); i < len; i++)
                 saveField(i);
             _flags &= ~FLAG_SAVE;
             // OPENJPA-659
             // record a saved field manager even if no field is currently loaded
             // as existence of a SaveFieldManager is critical for a dirty check
             if (_saved == null)
-                _saved = new SaveFieldManager(this, getPersistenceCapable(), getDirty());
+                _saved = new SaveFieldManager(this, getPersistenceCapable(), copyDirty());
         }
     }
 
@@ -3034,15 +3164,15 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
         // if this is a managed inverse field, load it so we're sure to have
         // the original value
-        if (!_loaded.get(field) && ((_flags & FLAG_INVERSES) != 0
+        if (!isLoaded(field) && ((_flags & FLAG_INVERSES) != 0
             && _meta.getField(field).getInverseMetaDatas().length > 0))
             loadField(field, LockLevels.LOCK_NONE, false, false);
 
         // don't bother creating the save field manager if we're not going to
         // save the old field value anyway
         if (_saved == null) {
-            if (_loaded.get(field))
-                _saved = new SaveFieldManager(this, null, getDirty());
+            if (isLoaded(field))
+                _saved = new SaveFieldManager(this, null, copyDirty());
             else
                 return;
         }
@@ -3082,19 +3212,19 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 if ((_flags & FLAG_SAVE) == 0)
                     clearFields();
                 else // only unloaded fields were dirtied
-                    _loaded.andNot(_loaded);
+                    clearLoaded();
             }
             // we direct state transitions based on our own getRestoreState
             // method, but to decide whether to actually rollback field
             // values, we consult the broker for the user's setting
             else if (_broker.getRestoreState() != RestoreState.RESTORE_NONE) {
                 // rollback all currently-loaded fields
-                for (int i = 0, len = _loaded.length(); i < len; i++)
-                    if (_loaded.get(i) && _saved.restoreField(i))
+                for (int i = 0, len = getLoadedLength(); i < len; i++)
+                    if (isLoaded(i) && _saved.restoreField(i))
                         replaceField(_pc, _saved, i);
 
                 // rollback loaded set
-                _loaded.andNot(_saved.getUnloaded());
+                clearLoaded(_saved.getUnloaded());
             }
         }
         finally {
@@ -3123,12 +3253,12 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             for (FieldMetaData fmd : _meta.getProxyFields()) {
                 int index = fmd.getIndex();
                 // only reload if dirty
-                if (_loaded.get(index) && isFieldDirty(index)) {
-                    provideField(_pc, _single, index);
-                    if (_single.proxy(reset, replaceNull)) {
-                        replaceField(_pc, _single, index);
+                if (isLoaded(index) && isFieldDirty(index)) {
+                    provideField(_pc, getSingleFieldManager(), index);
+                    if (getSingleFieldManager().proxy(reset, replaceNull)) {
+                        replaceField(_pc, getSingleFieldManager(), index);
                     } else {
-                        _single.clear();
+                        getSingleFieldManager().clear();
                     }
                 }
             }
@@ -3146,11 +3276,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
         lock();
         try {
-            for (int i = 0, len = _loaded.length(); i < len; i++) {
-                provideField(_pc, _single, i);
-                _single.unproxy();
-                _single.releaseEmbedded();
-                _single.clear();
+            for (int i = 0, len = getLoadedLength(); i < len; i++) {
+                provideField(_pc, getSingleFieldManager(), i);
+                getSingleFieldManager().unproxy();
+                getSingleFieldManager().releaseEmbedded();
+                getSingleFieldManager().clear();
             }
         }
         finally {
@@ -3184,11 +3314,11 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 assignObjectId(false, true);
             for (int i = 0, len = _meta.getFields().length; i < len; i++) {
                 if ((logical || !assignField(i, true)) && !isFieldFlushed(i) && isFieldDirty(i)) {
-                    provideField(_pc, _single, i);
-                    if (_single.preFlush(logical, call))
-                        replaceField(_pc, _single, i);
+                    provideField(_pc, getSingleFieldManager(), i);
+                    if (getSingleFieldManager().preFlush(logical, call))
+                        replaceField(_pc, getSingleFieldManager(), i);
                     else
-                        _single.clear();
+                        getSingleFieldManager().clear();
                 }
             }
 
@@ -3226,9 +3356,9 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 != ValueMetaData.CASCADE_NONE
                 || fmds[i].getElement().getCascadeDelete()
                 != ValueMetaData.CASCADE_NONE) {
-                _single.storeObjectField(i, fetchField(i, false));
-                _single.delete(call);
-                _single.clear();
+                getSingleFieldManager().storeObjectField(i, fetchField(i, false));
+                getSingleFieldManager().delete(call);
+                getSingleFieldManager().clear();
             }
         }
     }
@@ -3241,15 +3371,15 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     void cascadePersist(OpCallbacks call) {
         FieldMetaData[] fmds = _meta.getFields();
         for (int i = 0; i < fmds.length; i++) {
-            if (!_loaded.get(i))
+            if (!isLoaded(i))
                 continue;
 
             if (fmds[i].getCascadePersist() == ValueMetaData.CASCADE_IMMEDIATE
              || fmds[i].getKey().getCascadePersist() == ValueMetaData.CASCADE_IMMEDIATE
              || fmds[i].getElement().getCascadePersist() == ValueMetaData.CASCADE_IMMEDIATE) {
-                _single.storeObjectField(i, fetchField(i, false));
-                _single.persist(call);
-                _single.clear();
+                getSingleFieldManager().storeObjectField(i, fetchField(i, false));
+                getSingleFieldManager().persist(call);
+                getSingleFieldManager().clear();
             }
         }
     }
@@ -3289,7 +3419,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             // If the _loadVersion field is null AND the version field has been loaded, skip calling sync version.
             // This indicates that the DB has a null value for the version column.
             FieldMetaData versionMeta = _meta != null ? _meta.getVersionField() : null;
-            if (_loadVersion == null && (versionMeta != null && !_loaded.get(versionMeta.getIndex()))) {
+            if (_loadVersion == null && (versionMeta != null && !isLoaded(versionMeta.getIndex()))) {
                 syncVersion(sdata);
                 ret = ret || _loadVersion != null;
             }
@@ -3327,7 +3457,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         if (lfg != null) {
             FieldMetaData[] fmds = _meta.getFields();
             for (int i = 0; i < fmds.length; i++) {
-                if (!_loaded.get(i) && (i == field
+                if (!isLoaded(i) && (i == field
                     || fmds[i].isInFetchGroup(lfg))) {
                     if (fields == null)
                         fields = new BitSet(fmds.length);
@@ -3345,7 +3475,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             // no load group but dfg: add dfg fields if we haven't already
             if (!unloadedDFGFieldMarked)
                 fields = getUnloadedInternal(fetch, LOAD_FGS, null);
-        } else if (!_loaded.get(fmd.getIndex())) {
+        } else if (!isLoaded(fmd.getIndex())) {
             // no load group or dfg: load individual field
             if (fields == null)
                 fields = new BitSet();
@@ -3394,20 +3524,17 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     private void setLoaded(int field, boolean isLoaded) {
         // don't continue if loaded state is already correct; otherwise we
         // can end up clearing _fieldImpl when we shouldn't
-        if (_loaded.get(field) == isLoaded)
+        if (isLoaded(field) == isLoaded)
             return;
 
         // if loading, clear intermediate data; if unloading, clear impl data
         if (_fieldImpl != null) {
             int idx = _meta.getExtraFieldDataIndex(field);
             if (idx != -1)
-                _fieldImpl[idx] = null;
+                clearExtraFieldData(idx);
         }
 
-        if (isLoaded)
-            _loaded.set(field);
-        else
-            _loaded.clear(field);
+        setLoadedBit(field, isLoaded);
     }
 
     /**
@@ -3418,6 +3545,27 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         this.postLoadCallback = enabled;
     }
 
+    /**
+     * Whether this instance is loaded for a stateless query result.
+     *
+     * @see QueryHints#HINT_STATELESS
+     * @since 3.2.3
+     */
+    boolean isStateless() {
+        return (_flags & FLAG_STATELESS) != 0;
+    }
+
+    /**
+     * Mark this instance as loaded for a stateless query result: its
+     * second class object fields are not proxied and no post-load
+     * callbacks are sent, as the broker detaches it once the result
+     * object has been read.
+     */
+    void setStateless() {
+        _flags |= FLAG_STATELESS;
+        postLoadCallback = false;
+    }
+
     /**
      * Perform post-load steps, including the post load callback.
      * We have to check the dfg after all field loads because it might be
@@ -3475,7 +3623,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
         FieldMetaData[] fmds = _meta.getFields();
         for (int i = 0; i < fmds.length; i++)
-            if (!_loaded.get(i) && fmds[i].isInFetchGroup(fgName))
+            if (!isLoaded(i) && fmds[i].isInFetchGroup(fgName))
                 return false;
 
         _flags |= FLAG_LOADED;
@@ -3549,8 +3697,14 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
      * Lock the state manager if the multithreaded option is set.
      */
     protected void lock() {
-        if (_instanceLock != null)
-        	_instanceLock.lock();
+        if ((_flags & FLAG_MULTITHREADED) == 0)
+            return;
+        ReentrantLock lock = _instanceLock;
+        if (lock == null) {
+            INSTANCE_LOCK.compareAndSet(this, null, new ReentrantLock());
+            lock = _instanceLock;
+        }
+        lock.lock();
     }
 
     /**
@@ -3596,6 +3750,8 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         _meta = _broker.getConfiguration().getMetaDataRepositoryInstance()
             .getMetaData(managedType, null, true);
 
+        // the instance lock was never serialized
+        _flags &= ~FLAG_MULTITHREADED;
         _pc = readPC(in);
     }
 
@@ -3640,13 +3796,19 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
     @Override
     public BitSet getFlushed() {
-        if (_flush == null) {
+        // callers may hold on to the returned set; see getLoaded()
+        if ((_flags & FLAG_FLUSH_MASK) != 0) {
+            _flush = BitSet.valueOf(new long[]{ _flushMask });
+            _flags &= ~FLAG_FLUSH_MASK;
+        } else if (_flush == null) {
             _flush = new BitSet(_meta.getFields().length);
         }
         return _flush;
     }
 
     private boolean isFieldFlushed(int index) {
+        if ((_flags & FLAG_FLUSH_MASK) != 0)
+            return (_flushMask & (1L << index)) != 0;
         if (_flush == null) {
             return false;
         }
@@ -3657,20 +3819,90 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
      * Will clear the bit at the specified if the _flush BetSet has been created.
      */
     private void clearFlushField(int index) {
-        if (_flush != null) {
+        if ((_flags & FLAG_FLUSH_MASK) != 0)
+            _flushMask &= ~(1L << index);
+        else if (_flush != null) {
             getFlushed().clear(index);
         }
     }
 
+    /**
+     * Add the dirty fields to the flushed fields, without creating either
+     * set if it does not exist.
+     */
+    private void flushDirty() {
+        if ((_flags & FLAG_DIRTY_MASK) != 0) {
+            if ((_flags & FLAG_FLUSH_MASK) != 0)
+                _flushMask |= _dirtyMask;
+            else if (_dirtyMask != 0L)
+                getFlushed().or(BitSet.valueOf(new long[]{ _dirtyMask }));
+        } else if (_dirty != null) {
+            if ((_flags & FLAG_FLUSH_MASK) != 0)
+                _flushMask |= toMask(_dirty);
+            else
+                getFlushed().or(_dirty);
+        }
+    }
+
     @Override
     public BitSet getDirty() {
-        if (_dirty == null) {
+        // callers may hold on to the returned set; see getLoaded()
+        if ((_flags & FLAG_DIRTY_MASK) != 0) {
+            _dirty = BitSet.valueOf(new long[]{ _dirtyMask });
+            _flags &= ~FLAG_DIRTY_MASK;
+        } else if (_dirty == null) {
             _dirty = new BitSet(_meta.getFields().length);
         }
         return _dirty;
     }
 
+    /**
+     * Return a copy of the dirty fields, without forcing the compact dirty
+     * mask into its {@link BitSet} form or creating the dirty set.
+     */
+    BitSet copyDirty() {
+        if ((_flags & FLAG_DIRTY_MASK) != 0)
+            return BitSet.valueOf(new long[]{ _dirtyMask });
+        if (_dirty == null)
+            return new BitSet(_meta.getFields().length);
+        return (BitSet) _dirty.clone();
+    }
+
+    /**
+     * Return a copy of the flushed fields, without forcing the compact
+     * flushed mask into its {@link BitSet} form or creating the flushed
+     * set.
+     */
+    BitSet copyFlushed() {
+        if ((_flags & FLAG_FLUSH_MASK) != 0)
+            return BitSet.valueOf(new long[]{ _flushMask });
+        if (_flush == null)
+            return new BitSet(_meta.getFields().length);
+        return (BitSet) _flush.clone();
+    }
+
+    /**
+     * Return a copy of the loaded fields, without forcing the compact
+     * loaded mask into its {@link BitSet} form.
+     */
+    BitSet copyLoaded() {
+        if ((_flags & FLAG_LOADED_MASK) != 0)
+            return BitSet.valueOf(new long[]{ _loadedMask });
+        return (BitSet) _loaded.clone();
+    }
+
+    /**
+     * Whether any field is dirty.
+     */
+    boolean hasDirtyFields() {
+        if ((_flags & FLAG_DIRTY_MASK) != 0)
+            return _dirtyMask != 0L;
+        return _dirty != null && !_dirty.isEmpty();
+    }
+
     private boolean isFieldDirty(int index) {
+        if ((_flags & FLAG_DIRTY_MASK) != 0)
+            return (_dirtyMask & (1L << index)) != 0;
         if (_dirty == null) {
             return false;
         }
@@ -3678,18 +3910,30 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     }
 
     private void setFieldDirty(int index) {
-        getDirty().set(index);
+        if ((_flags & FLAG_DIRTY_MASK) != 0)
+            _dirtyMask |= 1L << index;
+        else
+            getDirty().set(index);
     }
 
     /**
      * Will clear the bit at the specified index if the _dirty BetSet has been created.
      */
     private void clearDirty(int index) {
-        if (_dirty != null) {
+        if ((_flags & FLAG_DIRTY_MASK) != 0)
+            _dirtyMask &= ~(1L << index);
+        else if (_dirty != null) {
             getDirty().clear(index);
         }
     }
 
+    private SingleFieldManager getSingleFieldManager() {
+        if (_single == null) {
+            _single = new SingleFieldManager(this, _broker);
+        }
+        return _single;
+    }
+
     @Override
     public String toString() {
     	return "SM[" + _meta.getDescribedType().getSimpleName() + "]:" + getObjectId();
@@ -73,6 +73,7 @@ public abstract class AbstractExpressionBuilder {
     protected ExpressionFactory factory;
 
     private final Set<ClassMetaData> _accessPath = new HashSet<>();
+    private final Set<FieldMetaData> _accessFields = new HashSet<>();
     private Map<String,Value> _seenVars = null;
     private Set<Value> _boundVars = null;
 
@@ -135,6 +136,31 @@ public abstract class AbstractExpressionBuilder {
             (new ClassMetaData[_accessPath.size()]);
     }
 
+    /**
+     * Register the specified field as being traversed by the query. The
+     * other side of a bidirectional relation is registered too, as either
+     * side may be the one that is changed.
+     *
+     * @since 3.2.3
+     */
+    protected FieldMetaData addAccessField(FieldMetaData fmd) {
+        if (_accessFields.add(fmd)) {
+            if (fmd.getMappedByMetaData() != null)
+                _accessFields.add(fmd.getMappedByMetaData());
+            _accessFields.addAll(Arrays.asList(fmd.getInverseMetaDatas()));
+        }
+        return fmd;
+    }
+
+    /**
+     * Return the recorded fields traversed by the query.
+     *
+     * @since 3.2.3
+     */
+    protected FieldMetaData[] getAccessFields() {
+        return _accessFields.toArray(new FieldMetaData[_accessFields.size()]);
+    }
+
     /**
      * Return true if the given variable has been bound.
      */
@@ -301,6 +327,7 @@ public abstract class AbstractExpressionBuilder {
             return factory.newLiteral(val, Literal.TYPE_UNKNOWN);
         }
 
+        addAccessField(fmd);
         if (fmd.isEmbedded())
             meta = fmd.getEmbeddedMetaData();
         else
@@ -35,6 +35,12 @@ abstract class CompareExpression
     private static final long serialVersionUID = 1L;
     private final Val _val1;
     private final Val _val2;
+    private final boolean _const1;
+    private final boolean _const2;
+
+    // the conversion of the constant value for the type of the other value
+    // it was last compared to, as {type, promoted type, converted constant}
+    private transient volatile Object[] _conversion = null;
 
     /**
      * Constructor. Supply values to compare.
@@ -42,6 +48,8 @@ abstract class CompareExpression
     public CompareExpression(Val val1, Val val2) {
         _val1 = val1;
         _val2 = val2;
+        _const1 = FoldedVal.isConstant(val1);
+        _const2 = FoldedVal.isConstant(val2);
     }
 
     @Override
@@ -49,14 +57,44 @@ abstract class CompareExpression
         StoreContext ctx, Object[] params) {
         Object o1 = _val1.eval(candidate, orig, ctx, params);
         Object o2 = _val2.eval(candidate, orig, ctx, params);
-        if (o1 != null && o2 != null) {
-            Class c = Filters.promote(o1.getClass(), o2.getClass());
-            o1 = Filters.convert(o1, c);
-            o2 = Filters.convert(o2, c);
+        if (o1 != null && o2 != null && o1.getClass() != o2.getClass()) {
+            // the constant side of the comparison is converted once for
+            // each type of the values it is compared to
+            if (_const2 && !_const1) {
+                Object[] conv = convertConstant(o2, o1.getClass(), false);
+                o1 = Filters.convert(o1, (Class) conv[1]);
+                o2 = conv[2];
+            } else if (_const1 && !_const2) {
+                Object[] conv = convertConstant(o1, o2.getClass(), true);
+                o1 = conv[2];
+                o2 = Filters.convert(o2, (Class) conv[1]);
+            } else {
+                Class c = Filters.promote(o1.getClass(), o2.getClass());
+                o1 = Filters.convert(o1, c);
+                o2 = Filters.convert(o2, c);
+            }
         }
         return compare(o1, o2);
     }
 
+    /**
+     * Return the conversion of the given constant for comparison to values
+     * of the given type.
+     *
+     * @param first whether the constant is the first value compared
+     */
+    private Object[] convertConstant(Object constant, Class type,
+        boolean first) {
+        Object[] conv = _conversion;
+        if (conv == null || conv[0] != type) {
+            Class c = (first) ? Filters.promote(constant.getClass(), type)
+                : Filters.promote(type, constant.getClass());
+            conv = new Object[]{ type, c, Filters.convert(constant, c) };
+            _conversion = conv;
+        }
+        return conv;
+    }
+
     @Override
     protected boolean eval(Collection candidates, StoreContext ctx,
         Object[] params) {
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.exps;
+
+import org.apache.openjpa.kernel.StoreContext;
+
+/**
+ * A value computed from literals only. The wrapped value is evaluated
+ * once, on first use, rather than for every candidate.
+ *
+ * @since 3.2.3
+ */
+class FoldedVal
+    extends Val {
+
+    private static final long serialVersionUID = 1L;
+    private final Val _val;
+
+    // holds the folded value once computed
+    private transient volatile Object[] _folded = null;
+
+    /**
+     * Constructor. Provide the value to fold.
+     */
+    public FoldedVal(Val val) {
+        _val = val;
+    }
+
+    /**
+     * Return whether the given value always evaluates to the same result,
+     * i.e. whether it is a literal, a folded value or a list of constant
+     * arguments. A null value, which stands for an omitted argument, is
+     * constant as well.
+     */
+    static boolean isConstant(Value val) {
+        if (val instanceof Args) {
+            for (Value arg : ((Args) val).getValues())
+                if (!isConstant(arg))
+                    return false;
+            return true;
+        }
+        return val == null || val instanceof FoldedVal
+            || (val instanceof Lit && !(val instanceof TypeLit));
+    }
+
+    @Override
+    public Class getType() {
+        return _val.getType();
+    }
+
+    @Override
+    public void setImplicitType(Class type) {
+        _val.setImplicitType(type);
+        _folded = null;
+    }
+
+    @Override
+    protected Object eval(Object candidate, Object orig,
+        StoreContext ctx, Object[] params) {
+        Object[] folded = _folded;
+        if (folded == null) {
+            folded = new Object[]{ _val.eval(candidate, orig, ctx, params) };
+            _folded = folded;
+        }
+        return folded[0];
+    }
+
+    @Override
+    public void acceptVisit(ExpressionVisitor visitor) {
+        _val.acceptVisit(visitor);
+    }
+}
@@ -24,14 +24,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
-import org.apache.openjpa.kernel.Extent;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
@@ -54,6 +55,9 @@ public class InMemoryExpressionFactory
     // list of unbound variables in this query
     private List<UnboundVariable> _unbounds = null;
 
+    // extents of the unbound variables, read once for all candidates
+    private Map<Class<?>, List<Object>> _extents = null;
+
     /**
      * Tests whether the given candidate matches the given type and this
      * expression.
@@ -90,27 +94,58 @@ public class InMemoryExpressionFactory
 
         // grab the extent for this variable
         UnboundVariable var = _unbounds.get(i);
-        Iterator<Object> itr = ctx.extentIterator(var.getType(), true, null, false);
-        try {
-            // if the extent was empty, then alias the variable to null
-            if (!itr.hasNext()) {
-                var.setValue(null);
-                return matches(exp, candidate, ctx, params, i + 1);
-            }
+        List<Object> extent = getExtent(var.getType(), ctx);
 
-            // try every value, short-circuiting on match
-            while (itr.hasNext()) {
-                // set the variable to each extent value and recurse
-                var.setValue(itr.next());
-                if (matches(exp, candidate, ctx, params, i + 1))
-                    return true;
-            }
+        // if the extent was empty, then alias the variable to null
+        if (extent.isEmpty()) {
+            var.setValue(null);
+            return matches(exp, candidate, ctx, params, i + 1);
+        }
 
-            // no match
-            return false;
-        } finally {
-            ImplHelper.close(itr);
+        // try every value, short-circuiting on match
+        for (Object val : extent) {
+            // set the variable to each extent value and recurse
+            var.setValue(val);
+            if (matches(exp, candidate, ctx, params, i + 1))
+                return true;
+        }
+
+        // no match
+        return false;
+    }
+
+    /**
+     * Return the extent of the given variable type. The extent is read
+     * once and then reused for all candidates and groups until
+     * {@link #clearExtents} is invoked, rather than being read again for
+     * each candidate.
+     */
+    private List<Object> getExtent(Class<?> type, StoreContext ctx) {
+        if (_extents == null)
+            _extents = new HashMap<>();
+        List<Object> extent = _extents.get(type);
+        if (extent == null) {
+            extent = new ArrayList<>();
+            Iterator<Object> itr = ctx.extentIterator(type, true, null, false);
+            try {
+                while (itr.hasNext())
+                    extent.add(itr.next());
+            } finally {
+                ImplHelper.close(itr);
+            }
+            _extents.put(type, extent);
         }
+        return extent;
+    }
+
+    /**
+     * Release the extents of the unbound variables read while matching
+     * candidates. Invoke once all candidates of an execution are matched.
+     *
+     * @since 3.2.3
+     */
+    public void clearExtents() {
+        _extents = null;
     }
 
     /**
@@ -191,28 +226,24 @@ public class InMemoryExpressionFactory
 
         // grab the extent for this variable
         UnboundVariable var = _unbounds.get(i);
-        Extent extent = ctx.getBroker().newExtent(var.getType(), true);
-        Iterator itr = extent.iterator();
-        try {
-            // if the extent was empty, then alias the variable to null
-            if (!itr.hasNext()) {
-                var.setValue(null);
-                return matches(exp, group, ctx, params, i + 1);
-            }
+        List<Object> extent = getExtent(var.getType(), ctx);
 
-            // try every value, short-circuiting on match
-            while (itr.hasNext()) {
-                // set the variable to each extent value and recurse
-                var.setValue(itr.next());
-                if (matches(exp, group, ctx, params, i + 1))
-                    return true;
-            }
+        // if the extent was empty, then alias the variable to null
+        if (extent.isEmpty()) {
+            var.setValue(null);
+            return matches(exp, group, ctx, params, i + 1);
+        }
 
-            // no match
-            return false;
-        } finally {
-            ImplHelper.close(itr);
+        // try every value, short-circuiting on match
+        for (Object val : extent) {
+            // set the variable to each extent value and recurse
+            var.setValue(val);
+            if (matches(exp, group, ctx, params, i + 1))
+                return true;
         }
+
+        // no match
+        return false;
     }
 
     /**
@@ -595,74 +626,87 @@ public class InMemoryExpressionFactory
         return val;
     }
 
+    /**
+     * Fold the given value into a constant if all the arguments it is
+     * computed from are constant, so that it is computed only once rather
+     * than for each candidate.
+     */
+    private static Value fold(Val val, Value... args) {
+        for (Value arg : args)
+            if (!FoldedVal.isConstant(arg))
+                return val;
+        return new FoldedVal(val);
+    }
+
     @Override
     public Value add(Value val1, Value val2) {
-        return new Add((Val) val1, (Val) val2);
+        return fold(new Add((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value subtract(Value val1, Value val2) {
-        return new Subtract((Val) val1, (Val) val2);
+        return fold(new Subtract((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value multiply(Value val1, Value val2) {
-        return new Multiply((Val) val1, (Val) val2);
+        return fold(new Multiply((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value divide(Value val1, Value val2) {
-        return new Divide((Val) val1, (Val) val2);
+        return fold(new Divide((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value mod(Value val1, Value val2) {
-        return new Mod((Val) val1, (Val) val2);
+        return fold(new Mod((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value abs(Value val) {
-        return new Abs((Val) val);
+        return fold(new Abs((Val) val), val);
     }
 
     @Override
     public Value indexOf(Value val1, Value val2) {
-        return new IndexOf((Val) val1, (Val) val2);
+        return fold(new IndexOf((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value concat(Value val1, Value val2) {
-        return new Concat((Val) val1, (Val) val2);
+        return fold(new Concat((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value stringLength(Value str) {
-        return new StringLength((Val) str);
+        return fold(new StringLength((Val) str), str);
     }
 
     @Override
     public Value trim(Value str, Value trimChar, Boolean where) {
-        return new Trim((Val) str, (Val) trimChar, where);
+        return fold(new Trim((Val) str, (Val) trimChar, where), str,
+            trimChar);
     }
 
     @Override
     public Value sqrt(Value val) {
-        return new Sqrt((Val) val);
+        return fold(new Sqrt((Val) val), val);
     }
 
     @Override
     public Value substring(Value val1, Value val2) {
-        return new Substring((Val) val1, (Val) val2);
+        return fold(new Substring((Val) val1, (Val) val2), val1, val2);
     }
 
     @Override
     public Value toUpperCase(Value val) {
-        return new ToUpperCase((Val) val);
+        return fold(new ToUpperCase((Val) val), val);
     }
 
     @Override
     public Value toLowerCase(Value val) {
-        return new ToLowerCase((Val) val);
+        return fold(new ToLowerCase((Val) val), val);
     }
 
     @Override
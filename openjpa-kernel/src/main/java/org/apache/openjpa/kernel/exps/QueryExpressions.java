@@ -67,6 +67,7 @@ public class QueryExpressions implements Serializable {
     public OrderedMap<Object,Class<?>> parameterTypes = StoreQuery.EMPTY_ORDERED_PARAMS;
     public int operation = QueryOperations.OP_SELECT;
     public ClassMetaData[] accessPath = StoreQuery.EMPTY_METAS;
+    public FieldMetaData[] accessFields = null;
     public String[] fetchPaths = StoreQuery.EMPTY_STRINGS;
     public String[] fetchInnerPaths = StoreQuery.EMPTY_STRINGS;
     public Value[] range = EMPTY_VALUES;
@@ -313,6 +313,7 @@ public class JPQLExpressionBuilder
             exps.parameterTypes = parameterTypes;
 
         exps.accessPath = getAccessPath();
+        exps.accessFields = getAccessFields();
         exps.hasInExpression = this.hasParameterizedInExpression;
 
         // verify parameters are consistent.
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.jpql;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces the literals of a JPQL query by named parameters, so that
+ * queries that differ only by their literals share one query string, and
+ * hence one compilation and one cached SQL statement.
+ * <br>
+ * The replacement is deliberately conservative. Only string and numeric
+ * literals of a <code>WHERE</code> or <code>HAVING</code> clause that
+ * form the right-hand side of a comparison
+ * (<code>=, &lt;&gt;, &lt;, &gt;, &lt;=, &gt;=</code>) and that are
+ * followed by the end of the condition are replaced. Literals of
+ * <code>LIKE</code> patterns, <code>BETWEEN</code> and <code>IN</code>
+ * expressions, arithmetic, negative numbers, date escapes, booleans and
+ * enum constants are left in place. Queries that use positional parameters
+ * are not parameterized at all.
+ * <br>
+ * The values of the synthetic parameters are of the same type as the
+ * literals they replace would be: integer literals are <code>Long</code>,
+ * decimal literals are <code>BigDecimal</code>.
+ *
+ * @since 3.2.3
+ */
+public class LiteralParameterizer {
+
+    /**
+     * The prefix of the names of the synthetic parameters.
+     */
+    public static final String PARAMETER_PREFIX = "_lit";
+
+    private final String _query;
+    private final Map<String, Object> _params;
+
+    private LiteralParameterizer(String query, Map<String, Object> params) {
+        _query = query;
+        _params = Collections.unmodifiableMap(params);
+    }
+
+    /**
+     * The query string with the replaced literals.
+     */
+    public String getQueryString() {
+        return _query;
+    }
+
+    /**
+     * The values of the synthetic parameters keyed by parameter name, in
+     * the order of their appearance in the query.
+     */
+    public Map<String, Object> getParameters() {
+        return _params;
+    }
+
+    /**
+     * Affirms if the given literal value of a synthetic parameter can be
+     * bound to a parameter of the given type without altering its meaning,
+     * i.e. a string to a string or character parameter and a number to a
+     * numeric parameter. A parameter of unknown type accepts either.
+     */
+    public static boolean isAssignable(Object value, Class<?> type) {
+        if (type == null || type == Object.class)
+            return true;
+        if (value instanceof String)
+            return type == String.class || type == Character.class
+                || type == char.class;
+        return Number.class.isAssignableFrom(type)
+            || (type.isPrimitive() && type != boolean.class
+            && type != char.class);
+    }
+
+    /**
+     * Parameterizes the literals of the given JPQL query.
+     *
+     * @return the parameterized query, or null if the query is not a
+     * <code>SELECT</code> query, uses positional parameters, already uses
+     * synthetic parameter names or holds no replaceable literal
+     */
+    public static LiteralParameterizer parameterize(String jpql) {
+        if (jpql == null)
+            return null;
+
+        int len = jpql.length();
+        StringBuilder buf = new StringBuilder(len);
+        Map<String, Object> params = null;
+        int copied = 0;
+
+        boolean first = true;
+        boolean filter = false;
+        String prev = null;
+
+        // a replaceable literal that waits for the token after it
+        int litStart = -1;
+        int litEnd = -1;
+        Object litValue = null;
+
+        int i = 0;
+        while (true) {
+            while (i < len && Character.isWhitespace(jpql.charAt(i)))
+                i++;
+            if (i == len)
+                break;
+
+            int start = i;
+            char c = jpql.charAt(i++);
+            String token;
+            Object literal = null;
+            if (c == '\'') {
+                StringBuilder str = new StringBuilder();
+                while (true) {
+                    if (i == len)
+                        return null;
+                    char ch = jpql.charAt(i++);
+                    if (ch == '\'') {
+                        if (i < len && jpql.charAt(i) == '\'')
+                            i++;
+                        else
+                            break;
+                    }
+                    str.append(ch);
+                }
+                token = jpql.substring(start, i);
+                literal = str.toString();
+            } else if (c == '"') {
+                i = jpql.indexOf('"', i) + 1;
+                if (i == 0)
+                    return null;
+                token = jpql.substring(start, i);
+            } else if (Character.isDigit(c)) {
+                while (i < len && isNumberPart(jpql, i))
+                    i++;
+                token = jpql.substring(start, i);
+                literal = toNumber(token);
+            } else if (Character.isJavaIdentifierStart(c) || c == ':') {
+                while (i < len && (Character.isJavaIdentifierPart
+                    (jpql.charAt(i)) || jpql.charAt(i) == '.'))
+                    i++;
+                token = jpql.substring(start, i);
+                if (token.startsWith(":" + PARAMETER_PREFIX))
+                    return null;
+            } else if (c == '?') {
+                return null;
+            } else if (c == '<' || c == '>' || c == '=') {
+                while (i < len && "<>=".indexOf(jpql.charAt(i)) != -1)
+                    i++;
+                token = jpql.substring(start, i);
+            } else {
+                token = String.valueOf(c);
+            }
+
+            if (litStart != -1) {
+                if (isConditionEnd(token)) {
+                    if (params == null)
+                        params = new LinkedHashMap<>();
+                    copied = replace(jpql, buf, copied, litStart, litEnd,
+                        litValue, params);
+                }
+                litStart = -1;
+            }
+
+            if (first) {
+                if (!"SELECT".equalsIgnoreCase(token))
+                    return null;
+                first = false;
+            } else if ("WHERE".equalsIgnoreCase(token)
+                || "HAVING".equalsIgnoreCase(token))
+                filter = true;
+            else if ("ORDER".equalsIgnoreCase(token)
+                || "GROUP".equalsIgnoreCase(token))
+                filter = false;
+
+            if (literal != null && filter && isComparison(prev)) {
+                litStart = start;
+                litEnd = i;
+                litValue = literal;
+            }
+            prev = token;
+        }
+
+        if (litStart != -1) {
+            if (params == null)
+                params = new LinkedHashMap<>();
+            copied = replace(jpql, buf, copied, litStart, litEnd, litValue,
+                params);
+        }
+        if (params == null)
+            return null;
+        buf.append(jpql, copied, len);
+        return new LiteralParameterizer(buf.toString(), params);
+    }
+
+    /**
+     * Replaces the literal at the given position by the next synthetic
+     * parameter.
+     *
+     * @return the position up to which the query has been copied
+     */
+    private static int replace(String jpql, StringBuilder buf, int copied,
+        int start, int end, Object value, Map<String, Object> params) {
+        String name = PARAMETER_PREFIX + params.size();
+        buf.append(jpql, copied, start).append(':').append(name);
+        params.put(name, value);
+        return end;
+    }
+
+    private static boolean isNumberPart(String jpql, int i) {
+        char c = jpql.charAt(i);
+        if (Character.isLetterOrDigit(c) || c == '.')
+            return true;
+        char prev = jpql.charAt(i - 1);
+        return (c == '+' || c == '-') && (prev == 'e' || prev == 'E');
+    }
+
+    /**
+     * Converts the given numeric literal the way the JPQL expression
+     * builder does, or returns null if the token is not a plain decimal
+     * literal or is an integer literal beyond the range of a long.
+     */
+    private static Object toNumber(String token) {
+        char last = token.charAt(token.length() - 1);
+        boolean decimal = token.indexOf('.') != -1
+            || token.indexOf('e') != -1 || token.indexOf('E') != -1;
+        String digits = token;
+        if (last == 'l' || last == 'L') {
+            if (decimal)
+                return null;
+            digits = token.substring(0, token.length() - 1);
+        } else if (last == 'd' || last == 'D' || last == 'f' || last == 'F') {
+            digits = token.substring(0, token.length() - 1);
+            decimal = true;
+        }
+        try {
+            BigDecimal num = new BigDecimal(digits);
+            return (decimal) ? num : (Object) num.longValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static boolean isComparison(String token) {
+        return "=".equals(token) || "<>".equals(token) || "<".equals(token)
+            || ">".equals(token) || "<=".equals(token) || ">=".equals(token);
+    }
+
+    private static boolean isConditionEnd(String token) {
+        return ")".equals(token) || "AND".equalsIgnoreCase(token)
+            || "OR".equalsIgnoreCase(token) || "GROUP".equalsIgnoreCase(token)
+            || "HAVING".equalsIgnoreCase(token)
+            || "ORDER".equalsIgnoreCase(token);
+    }
+}
@@ -373,6 +373,16 @@ public abstract class AbstractLRSProxyCollection
         _ct.removed(val);
     }
 
+    @Override
+    public void positionChanged(int index) {
+        _ct.positionChanged(index);
+    }
+
+    @Override
+    public int getChangedPosition() {
+        return _ct.getChangedPosition();
+    }
+
     @Override
     public int getNextSequence() {
         return _ct.getNextSequence();
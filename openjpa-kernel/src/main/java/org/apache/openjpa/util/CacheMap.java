@@ -20,9 +20,11 @@ package org.apache.openjpa.util;
 
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
@@ -279,6 +281,44 @@ public class CacheMap
         }
     }
 
+    /**
+     * Return up to <code>max</code> values, most valuable first: pinned
+     * values, then the cached values (most recently used first if this is
+     * an LRU map), then the values that overflowed to the soft map.
+     *
+     * @since 3.2.3
+     */
+    public List getHottestValues(int max) {
+        List vals = new ArrayList(Math.min(Math.max(max, 0), size()));
+        // LRU maps reorder on access, so keep readers out while copying
+        writeLock();
+        try {
+            for (Iterator itr = pinnedMap.values().iterator();
+                itr.hasNext() && vals.size() < max;) {
+                Object val = itr.next();
+                if (val != null)
+                    vals.add(val);
+            }
+            if (vals.size() < max) {
+                List cached = new ArrayList(cacheMap.values());
+                if (isLRU())
+                    Collections.reverse(cached);
+                for (Iterator itr = cached.iterator();
+                    itr.hasNext() && vals.size() < max;)
+                    vals.add(itr.next());
+            }
+            for (Iterator itr = softMap.values().iterator();
+                itr.hasNext() && vals.size() < max;) {
+                Object val = itr.next();
+                if (val != null)
+                    vals.add(val);
+            }
+        } finally {
+            writeUnlock();
+        }
+        return vals;
+    }
+
     /**
      * Locks the given key and its value into the map. Objects pinned into
      * the map are not counted towards the maximum cache size, and are never
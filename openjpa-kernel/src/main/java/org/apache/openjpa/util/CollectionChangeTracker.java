@@ -38,4 +38,24 @@ public interface CollectionChangeTracker
      * Record that the given element was removed.
      */
     void removed(Object elem);
+
+    /**
+     * Record that an element is about to be inserted at, removed from or
+     * replaced at the given position of an ordered collection. Use -1 if
+     * the position is not known.
+     *
+     * @since 3.2.3
+     */
+    void positionChanged(int index);
+
+    /**
+     * Return the lowest position of an ordered collection whose element
+     * changed since tracking started, or -1 if no element changed position.
+     * The elements from this position on have to be written again by
+     * position. A value of 0 means that the positions could not be tracked
+     * and the whole collection has to be written again.
+     *
+     * @since 3.2.3
+     */
+    int getChangedPosition();
 }
@@ -33,6 +33,7 @@ public class CollectionChangeTrackerImpl
     protected final Collection _coll;
     protected final boolean _dups;
     protected final boolean _order;
+    protected int _pos = -1;
 
     /**
      * Constructor.
@@ -73,6 +74,32 @@ public class CollectionChangeTrackerImpl
         super.removed(elem);
     }
 
+    @Override
+    public void positionChanged(int index) {
+        if (!isTracking() || !_order)
+            return;
+
+        // elements can only be written by position while the stored ones
+        // occupy positions 0 to n-1; appends are not stored yet, and
+        // elements removed without a position leave unknown gaps
+        if (_pos == -1 && (index < 0 || !getRemoved().isEmpty()
+            || getNextSequence() != _coll.size() - getAdded().size()))
+            _pos = 0;
+        else if (_pos == -1 || index < _pos)
+            _pos = Math.max(index, 0);
+    }
+
+    @Override
+    public int getChangedPosition() {
+        return _pos;
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+        _pos = -1;
+    }
+
     @Override
     protected int initialSequence() {
         if (_order)
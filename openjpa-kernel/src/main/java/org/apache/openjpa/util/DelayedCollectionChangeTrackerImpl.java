@@ -59,6 +59,14 @@ public class DelayedCollectionChangeTrackerImpl
         }
     }
 
+    @Override
+    public void positionChanged(int index) {
+        // the positions of a delayed collection are not known until it is
+        // loaded, so the whole collection is written again
+        if (isTracking() && _order)
+            _pos = 0;
+    }
+
     @Override
     protected void change(Object elem) {
         throw new InternalException();
@@ -45,7 +45,13 @@ public class ProxyCollections
      */
     public static void beforeAdd(ProxyCollection coll, int index, Object value){
         assertAllowedType(value, coll.getElementType());
-        dirty(coll, true);
+        dirty(coll, false);
+        if (coll.getChangeTracker() != null) {
+            CollectionChangeTracker ct = (CollectionChangeTracker)
+                coll.getChangeTracker();
+            ct.positionChanged(index);
+            ct.added(value);
+        }
     }
 
     /**
@@ -201,9 +207,12 @@ public class ProxyCollections
             public void remove() {
                 dirty(coll, false);
                 itr.remove();
-                if (coll.getChangeTracker() != null)
-                    ((CollectionChangeTracker) coll.getChangeTracker()).
-                        removed(_last);
+                if (coll.getChangeTracker() != null) {
+                    CollectionChangeTracker ct = (CollectionChangeTracker)
+                        coll.getChangeTracker();
+                    ct.positionChanged(-1);
+                    ct.removed(_last);
+                }
                 Proxies.removed(coll, _last, false);
             }
         };
@@ -290,9 +299,12 @@ public class ProxyCollections
             public void remove() {
                 dirty(coll, false);
                 itr.remove();
-                if (coll.getChangeTracker() != null)
-                    ((CollectionChangeTracker) coll.getChangeTracker()).
-                        removed(_last);
+                if (coll.getChangeTracker() != null) {
+                    CollectionChangeTracker ct = (CollectionChangeTracker)
+                        coll.getChangeTracker();
+                    ct.positionChanged(-1);
+                    ct.removed(_last);
+                }
                 Proxies.removed(coll, _last, false);
             }
         };
@@ -303,6 +315,9 @@ public class ProxyCollections
      */
     public static void beforeRemove(ProxyCollection coll, int index) {
         dirty(coll, false);
+        if (coll.getChangeTracker() != null)
+            ((CollectionChangeTracker) coll.getChangeTracker()).
+                positionChanged(index);
     }
 
     /**
@@ -335,6 +350,16 @@ public class ProxyCollections
         if (!isDirectAccess(coll)) {
             dirty(coll, false);
         }
+        // record the position of the element, unless finding it would
+        // load a delayed collection
+        if (coll instanceof List && !isDelayed(coll)
+            && coll.getChangeTracker() != null
+            && coll.getChangeTracker().isTracking()) {
+            int index = ((List) coll).indexOf(o);
+            if (index != -1)
+                ((CollectionChangeTracker) coll.getChangeTracker()).
+                    positionChanged(index);
+        }
     }
 
     /**
@@ -479,7 +504,7 @@ public class ProxyCollections
     public static void beforeSet(ProxyCollection coll, int index,
         Object element) {
         assertAllowedType(element, coll.getElementType());
-        dirty(coll, true);
+        dirty(coll, false);
     }
 
     /**
@@ -490,8 +515,16 @@ public class ProxyCollections
      */
     public static Object afterSet(ProxyCollection coll, int index,
         Object element, Object replaced) {
-        if (replaced != element)
+        if (replaced != element) {
+            if (coll.getChangeTracker() != null) {
+                CollectionChangeTracker ct = (CollectionChangeTracker)
+                    coll.getChangeTracker();
+                ct.positionChanged(index);
+                ct.removed(replaced);
+                ct.added(element);
+            }
             removed(coll, replaced, false);
+        }
         return replaced;
     }
 
@@ -518,7 +518,18 @@ public class ProxyManagerImpl
                     return proxyClass;
                 }
             }
-            return Class.forName(getProxyClassName(type, false), true, loader);
+            String name = getProxyClassName(type, false);
+            try {
+                return Class.forName(name, true, loader);
+            } catch (ClassNotFoundException cnfe) {
+                // proxies written by the enhancer may sit beside the
+                // application's classes rather than in OpenJPA's loader
+                ClassLoader ctx = AccessController.doPrivileged(
+                    J2DoPrivHelper.getContextClassLoaderAction());
+                if (ctx == null || ctx == loader)
+                    return null;
+                return Class.forName(name, true, ctx);
+            }
         } catch (Throwable t) {
             return null;
         }
@@ -1661,6 +1672,57 @@ public class ProxyManagerImpl
         }
     }
 
+    /**
+     * Return the type whose proxy is used for fields declared with the
+     * given collection, map, date or calendar type, or null if such
+     * fields are not proxied through a generated class.
+     *
+     * @since 3.2.3
+     */
+    public Class<?> toBuildTimeProxyType(Class<?> type) {
+        try {
+            if (Collection.class.isAssignableFrom(type))
+                type = toProxyableCollectionType(type);
+            else if (Map.class.isAssignableFrom(type))
+                type = toProxyableMapType(type);
+            else if (type == Calendar.class)
+                type = GregorianCalendar.class;
+            else if (!Date.class.isAssignableFrom(type)
+                && !Calendar.class.isAssignableFrom(type))
+                return null;
+        } catch (UnsupportedException ue) {
+            return null;
+        }
+        if (Modifier.isAbstract(type.getModifiers()) || !isProxyable(type)
+            || isUnproxyable(type))
+            return null;
+        return type;
+    }
+
+    /**
+     * Generate the bytecode of the build-time proxy for the given type,
+     * which the proxy manager loads before generating its own proxy at
+     * runtime. Returns null if no proxy can be generated for a bean type.
+     *
+     * @since 3.2.3
+     */
+    public BCClass generateBuildTimeProxyBytecode(final Class<?> type) {
+        if (Collection.class.isAssignableFrom(type))
+            return generateProxyCollectionBytecode(type, false);
+        if (Map.class.isAssignableFrom(type))
+            return generateProxyMapBytecode(type, false);
+        if (Date.class.isAssignableFrom(type))
+            return generateProxyDateBytecode(type, false);
+        if (Calendar.class.isAssignableFrom(type))
+            return generateProxyCalendarBytecode(type, false);
+        return AccessController.doPrivileged(new PrivilegedAction<BCClass>() {
+            @Override
+            public BCClass run() {
+                return generateProxyBeanBytecode(type, false);
+            }
+        });
+    }
+
     /**
      * Usage: java org.apache.openjpa.util.proxy.ProxyManagerImpl [option]*
      * &lt;class name&gt;+<br />
@@ -1717,7 +1779,7 @@ public class ProxyManagerImpl
             }));
         }
 
-        final ProxyManagerImpl mgr = new ProxyManagerImpl();
+        ProxyManagerImpl mgr = new ProxyManagerImpl();
         Class cls;
         BCClass bc;
         for (Object type : types) {
@@ -1732,25 +1794,9 @@ public class ProxyManagerImpl
                 // expected if the class hasn't been generated
             }
 
-            if (Collection.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyCollectionBytecode(cls, false);
-            else if (Map.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyMapBytecode(cls, false);
-            else if (Date.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyDateBytecode(cls, false);
-            else if (Calendar.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyCalendarBytecode(cls, false);
-            else {
-                final Class fCls = cls;
-                // TODO Move this to J2DOPrivHelper
-                bc = AccessController
-                        .doPrivileged(new PrivilegedAction<BCClass>() {
-                            @Override
-                            public BCClass run() {
-                                return mgr.generateProxyBeanBytecode(fCls, false);
-                            }
-                        });
-            }
+            bc = mgr.generateBuildTimeProxyBytecode(cls);
+            if (bc == null)
+                continue;
             // START - ALLOW PRINT STATEMENTS
             System.out.println(bc.getName());
             // STOP - ALLOW PRINT STATEMENTS
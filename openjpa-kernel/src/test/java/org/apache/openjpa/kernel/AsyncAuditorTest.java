@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.audit.AsyncAuditor;
+import org.apache.openjpa.audit.AuditRecord;
+import org.apache.openjpa.audit.AuditableOperation;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.log.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Audits records through an AsyncAuditor whose writer can be held inside
+ * write(), so that the queue fills up at a known point. The records must
+ * be written in the order they were audited, also when they overflow to
+ * the spill file while it is being replayed.
+ */
+public class AsyncAuditorTest {
+
+    private File dir;
+    private RecordingAuditor auditor;
+
+    // records that the writer has been handed
+    static class RecordingAuditor extends AsyncAuditor {
+        final List<Object> written = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+        volatile Object blockOn;
+        volatile CountDownLatch entered;
+        volatile CountDownLatch release;
+
+        @Override
+        protected void write(List<AuditRecord> records) throws Exception {
+            batches.add(records.size());
+            boolean block = false;
+            for (AuditRecord record : records) {
+                written.add(record.getObjectId());
+                block |= record.getObjectId().equals(blockOn);
+            }
+            if (block) {
+                entered.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+        }
+
+        /**
+         * Hold the writer once it writes the given record, until the
+         * returned latch is released.
+         */
+        CountDownLatch blockOn(Object id) {
+            entered = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+            blockOn = id;
+            return release;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("audit").toFile();
+        Configuration conf = Mockito.mock(Configuration.class);
+        Mockito.when(conf.getLog(Mockito.anyString())).thenReturn(Mockito.mock(Log.class));
+        auditor = new RecordingAuditor();
+        auditor.setConfiguration(conf);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        auditor.close();
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void blockedRecordsWrittenInOrder() throws Exception {
+        auditor.setCapacity(16);
+        auditor.setBatchSize(10);
+        auditor.endConfiguration();
+
+        audit(0, 1000);
+        auditor.close();
+
+        assertEquals(ids(0, 1000), auditor.written);
+        for (int size : auditor.batches)
+            assertTrue(size <= 10);
+    }
+
+    @Test
+    public void droppedRecordsCounted() throws Exception {
+        auditor.setCapacity(2);
+        auditor.setOverflow(AsyncAuditor.OVERFLOW_DROP);
+        auditor.endConfiguration();
+
+        CountDownLatch release = auditor.blockOn(0);
+        audit(0, 1);
+        auditor.awaitBlocked();
+
+        // two records fit into the queue while the writer is held
+        audit(1, 10);
+        assertEquals(7, auditor.getDroppedCount());
+        release.countDown();
+        auditor.close();
+        assertEquals(ids(0, 3), auditor.written);
+    }
+
+    @Test
+    public void spilledRecordsReplayedInOrder() throws Exception {
+        File spill = new File(dir, "spill");
+        auditor.setCapacity(2);
+        auditor.setBatchSize(4);
+        auditor.setOverflow(AsyncAuditor.OVERFLOW_SPILL);
+        auditor.setSpillFile(spill.getPath());
+        auditor.endConfiguration();
+
+        CountDownLatch release = auditor.blockOn(0);
+        audit(0, 1);
+        auditor.awaitBlocked();
+        audit(1, 21);
+        assertTrue(spill.exists());
+        release.countDown();
+        auditor.close();
+
+        assertEquals(ids(0, 21), auditor.written);
+        assertEquals(0, auditor.getDroppedCount());
+        assertFalse(spill.exists());
+    }
+
+    @Test
+    public void recordsSpilledDuringReplayGoToOtherFile() throws Exception {
+        File spill = new File(dir, "spill");
+        File other = new File(dir, "spill.2");
+        auditor.setCapacity(2);
+        auditor.setBatchSize(4);
+        auditor.setOverflow(AsyncAuditor.OVERFLOW_SPILL);
+        auditor.setSpillFile(spill.getPath());
+        auditor.endConfiguration();
+
+        CountDownLatch release = auditor.blockOn(0);
+        audit(0, 1);
+        auditor.awaitBlocked();
+        audit(1, 21);
+
+        // hold the writer in the middle of replaying the spill file
+        CountDownLatch releaseReplay = auditor.blockOn(3);
+        release.countDown();
+        auditor.awaitBlocked();
+        long length = spill.length();
+
+        // the queue takes two records and the rest is spilled, but not to
+        // the file that is being read
+        audit(21, 41);
+        assertEquals(length, spill.length());
+        assertTrue(other.exists());
+        releaseReplay.countDown();
+        auditor.close();
+
+        assertEquals(ids(0, 41), auditor.written);
+        assertEquals(0, auditor.getDroppedCount());
+        assertFalse(spill.exists());
+        assertFalse(other.exists());
+    }
+
+    private void audit(int from, int to) {
+        List<Audited> audited = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Audited a = Mockito.mock(Audited.class);
+            Mockito.when(a.toRecord()).thenReturn(new AuditRecord(
+                AuditableOperation.CREATE, "T", i, null, new BitSet(),
+                new String[0], null, new Object[0]));
+            audited.add(a);
+        }
+        auditor.audit(null, audited, Collections.emptyList(),
+            Collections.emptyList());
+    }
+
+    private static List<Object> ids(int from, int to) {
+        List<Object> ids = new ArrayList<>();
+        for (int i = from; i < to; i++)
+            ids.add(i);
+        return ids;
+    }
+}
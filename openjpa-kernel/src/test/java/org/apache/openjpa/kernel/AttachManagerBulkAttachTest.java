@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.conf.DetachOptions;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.meta.MetaDataDefaults;
+import org.apache.openjpa.meta.MetaDataFactory;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.meta.ValueMetaData;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.ObjectId;
+import org.apache.openjpa.util.OptimisticException;
+import org.apache.openjpa.util.ProxyManagerImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+/*
+ * Attaches detached graphs with BulkAttach on. The detached instances
+ * reachable through cascading relations must be loaded with one query per
+ * type before the instances are attached one by one, while instances of
+ * types without a single primary key field are left to the per-instance
+ * find of their attach strategy.
+ */
+public class AttachManagerBulkAttachTest {
+
+    // a detached entity whose children cascade attach and whose link does not
+    abstract static class Node implements PersistenceCapable {
+        List<Node> children;
+        Node link;
+    }
+
+    abstract static class Compound implements PersistenceCapable {
+    }
+
+    private BrokerImpl broker;
+    private AttachStrategy strategy;
+    private ClassMetaData nodeMeta;
+    private ClassMetaData compoundMeta;
+    private Query query;
+    private final List<String> queries = new ArrayList<>();
+    private final List<Collection<?>> loaded = new ArrayList<>();
+    private final List<Object> attached = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        MetaDataRepository repos = Mockito.mock(MetaDataRepository.class);
+        MetaDataFactory factory = Mockito.mock(MetaDataFactory.class);
+        Mockito.when(repos.getMetaDataFactory()).thenReturn(factory);
+        Mockito.when(factory.getDefaults()).thenReturn(Mockito.mock(MetaDataDefaults.class));
+
+        DetachOptions detach = new DetachOptions.Loaded();
+        detach.setBulkAttach(true);
+        OpenJPAConfiguration conf = Mockito.mock(OpenJPAConfiguration.class);
+        Mockito.when(conf.getMetaDataRepositoryInstance()).thenReturn(repos);
+        Mockito.when(conf.getProxyManagerInstance()).thenReturn(new ProxyManagerImpl());
+        Mockito.when(conf.getDetachStateInstance()).thenReturn(detach);
+
+        broker = Mockito.mock(BrokerImpl.class);
+        Mockito.when(broker.getConfiguration()).thenReturn(conf);
+        Mockito.when(broker.isDetached(any(), eq(false))).thenReturn(true);
+
+        // the set-based finds return nothing, so every instance is still
+        // attached through its strategy
+        query = Mockito.mock(Query.class);
+        Mockito.when(broker.newQuery(eq("javax.persistence.JPQL"), anyString()))
+            .thenAnswer(inv -> {
+                queries.add(inv.getArgument(1));
+                return query;
+            });
+        Mockito.when(query.execute(any(Map.class))).thenAnswer(inv -> {
+            loaded.add(new ArrayList<>((Collection<?>)
+                ((Map<?, ?>) inv.getArgument(0)).get("ids")));
+            return Collections.emptyList();
+        });
+
+        strategy = Mockito.mock(AttachStrategy.class);
+        Mockito.when(strategy.attach(any(), any(), any(), any(), any(), any(),
+            Mockito.anyBoolean())).thenAnswer(inv -> {
+                attached.add(inv.getArgument(1));
+                return inv.getArgument(1);
+            });
+
+        nodeMeta = meta("Node", true);
+        FieldMetaData children = field("children", JavaTypes.COLLECTION,
+            ValueMetaData.CASCADE_IMMEDIATE);
+        FieldMetaData link = field("link", JavaTypes.PC,
+            ValueMetaData.CASCADE_NONE);
+        Mockito.when(nodeMeta.getFields()).thenReturn(new FieldMetaData[]{ children, link });
+        Mockito.when(repos.getMetaData(any(Class.class), any(), eq(true))).thenAnswer(inv ->
+            Node.class.isAssignableFrom(inv.getArgument(0)) ? nodeMeta : compoundMeta);
+
+        compoundMeta = meta("Compound", false);
+        Mockito.when(compoundMeta.getFields()).thenReturn(new FieldMetaData[0]);
+    }
+
+    @Test
+    public void cascadedGraphLoadedWithOneQuery() {
+        Node root = node(1);
+        Node child = node(2);
+        Node grandChild = node(3);
+        Node linked = node(4);
+        root.children = Arrays.asList(child, node(5));
+        child.children = Collections.singletonList(grandChild);
+        // the link does not cascade attach, and a cycle back to the root
+        // is only visited once
+        child.link = linked;
+        grandChild.children = Collections.singletonList(root);
+
+        Object[] res = new AttachManager(broker, false, null).attachAll(
+            Arrays.asList(root, node(6)));
+
+        assertEquals(1, queries.size());
+        assertEquals("SELECT a FROM Node a WHERE a.id IN :ids", queries.get(0));
+        assertEquals(1, loaded.size());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L, 5L, 6L)),
+            new HashSet<>(loaded.get(0)));
+        assertEquals(5, loaded.get(0).size());
+        Mockito.verify(query).setIgnoreChanges(true);
+        Mockito.verify(query).closeAll();
+        assertEquals(Arrays.asList(root, res[1]), Arrays.asList(res[0], res[1]));
+    }
+
+    @Test
+    public void managedInstancesNotLoaded() {
+        Node root = node(1);
+        Node managed = node(2);
+        root.children = Collections.singletonList(managed);
+        StateManagerImpl sm = Mockito.mock(StateManagerImpl.class);
+        Mockito.when(broker.getStateManagerImplById(new LongId(Node.class, 2L), false))
+            .thenReturn(sm);
+
+        new AttachManager(broker, false, null).attach(root);
+
+        assertEquals(Collections.singletonList(Collections.singletonList(1L)), loaded);
+    }
+
+    @Test
+    public void compoundIdsFoundOneByOne() {
+        Compound a = compound("a");
+        Compound b = compound("b");
+
+        new AttachManager(broker, false, null).attachAll(Arrays.asList(a, b));
+
+        assertTrue(queries.isEmpty());
+        assertEquals(Arrays.asList(a, b), attached);
+    }
+
+    @Test
+    public void largeGraphLoadedInChunks() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 1200; i++)
+            nodes.add(node(i));
+
+        new AttachManager(broker, false, null).attachAll(nodes);
+
+        assertEquals(3, loaded.size());
+        assertEquals(500, loaded.get(0).size());
+        assertEquals(500, loaded.get(1).size());
+        assertEquals(200, loaded.get(2).size());
+        assertEquals(1200, attached.size());
+    }
+
+    @Test
+    public void staleInstanceStillFailsAttach() {
+        Node fresh = node(1);
+        Node stale = node(2);
+        Mockito.doThrow(new OptimisticException(stale)).when(strategy).attach(
+            any(), eq(stale), any(), any(), any(), any(), Mockito.anyBoolean());
+
+        try {
+            new AttachManager(broker, false, null).attachAll(
+                Arrays.asList(fresh, stale));
+            fail("Expected the stale instance to fail the attach");
+        } catch (OptimisticException oe) {
+            assertEquals(stale, oe.getFailedObject());
+        }
+        // the stale row was part of the set-based find, which must not
+        // hide the version check of its attach strategy
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)),
+            new HashSet<>(loaded.get(0)));
+        assertEquals(Collections.singletonList(fresh), attached);
+    }
+
+    private Node node(long id) {
+        Node node = Mockito.mock(Node.class);
+        Mockito.when(node.pcGetDetachedState()).thenReturn(strategy);
+        Mockito.when(strategy.getDetachedObjectId(any(), eq(node)))
+            .thenReturn(new LongId(Node.class, id));
+        return node;
+    }
+
+    private Compound compound(String id) {
+        Compound compound = Mockito.mock(Compound.class);
+        Mockito.when(compound.pcGetDetachedState()).thenReturn(strategy);
+        Mockito.when(strategy.getDetachedObjectId(any(), eq(compound)))
+            .thenReturn(new ObjectId(Compound.class, id));
+        return compound;
+    }
+
+    private static ClassMetaData meta(String alias, boolean openJPAIdentity) {
+        FieldMetaData pk = Mockito.mock(FieldMetaData.class);
+        Mockito.when(pk.getName()).thenReturn("id");
+        ClassMetaData meta = Mockito.mock(ClassMetaData.class);
+        Mockito.when(meta.getIdentityType()).thenReturn(ClassMetaData.ID_APPLICATION);
+        Mockito.when(meta.isOpenJPAIdentity()).thenReturn(openJPAIdentity);
+        Mockito.when(meta.getTypeAlias()).thenReturn(alias);
+        Mockito.when(meta.getPrimaryKeyFields()).thenReturn(new FieldMetaData[]{ pk });
+        return meta;
+    }
+
+    private static FieldMetaData field(String name, int type, int cascade) {
+        FieldMetaData fmd = Mockito.mock(FieldMetaData.class);
+        ValueMetaData elem = Mockito.mock(ValueMetaData.class);
+        Mockito.when(fmd.getName()).thenReturn(name);
+        Mockito.when(fmd.getDeclaredTypeCode()).thenReturn(type);
+        Mockito.when(fmd.getCascadeAttach()).thenReturn(cascade);
+        Mockito.when(fmd.getElement()).thenReturn(elem);
+        Mockito.when(elem.getCascadeAttach()).thenReturn(cascade);
+        return fmd;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.enhance.AsmAdaptor;
+import org.apache.openjpa.util.Proxy;
+import org.apache.openjpa.util.ProxyManagerImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import serp.bytecode.BCClass;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Generates the build-time proxies that the enhancer writes for the
+ * collection, map, date and calendar fields of entities. The proxy manager
+ * must load a written proxy in place of generating its own at runtime, also
+ * when the proxy sits beside the application's classes rather than in the
+ * loader of OpenJPA.
+ */
+public class BuildTimeProxyTest {
+
+    public static class CustomList extends ArrayList<Object> {
+    }
+
+    public static class CustomMap extends HashMap<Object, Object> {
+    }
+
+    public static class CustomDate extends Date {
+    }
+
+    private File dir;
+    private ClassLoader context;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("proxies").toFile();
+        context = Thread.currentThread().getContextClassLoader();
+    }
+
+    @After
+    public void tearDown() {
+        Thread.currentThread().setContextClassLoader(context);
+        delete(dir);
+    }
+
+    @Test
+    public void buildTimeProxyTypes() {
+        ProxyManagerImpl mgr = new ProxyManagerImpl();
+        assertSame(ArrayList.class, mgr.toBuildTimeProxyType(List.class));
+        assertSame(ArrayList.class, mgr.toBuildTimeProxyType(Collection.class));
+        assertSame(TreeSet.class, mgr.toBuildTimeProxyType(SortedSet.class));
+        assertSame(HashMap.class, mgr.toBuildTimeProxyType(Map.class));
+        assertSame(GregorianCalendar.class,
+            mgr.toBuildTimeProxyType(Calendar.class));
+        assertSame(CustomList.class, mgr.toBuildTimeProxyType(CustomList.class));
+        assertSame(CustomDate.class, mgr.toBuildTimeProxyType(CustomDate.class));
+        assertNull(mgr.toBuildTimeProxyType(String.class));
+    }
+
+    @Test
+    public void buildTimeProxiesGenerated() {
+        ProxyManagerImpl mgr = new ProxyManagerImpl();
+        for (Class<?> type : new Class<?>[]{ CustomList.class,
+            CustomMap.class, CustomDate.class }) {
+            BCClass bc = mgr.generateBuildTimeProxyBytecode(type);
+            assertNotNull(bc);
+            assertEquals(ProxyManagerImpl.class.getPackage().getName() + "."
+                + type.getName().replace('.', '$') + "$proxy", bc.getName());
+            assertEquals(type.getName(), bc.getSuperclassName());
+        }
+    }
+
+    @Test
+    public void buildTimeProxiesLoaded() throws Exception {
+        ClassLoader loader = write(CustomList.class, CustomMap.class,
+            CustomDate.class);
+        Thread.currentThread().setContextClassLoader(loader);
+        ProxyManagerImpl mgr = new ProxyManagerImpl();
+
+        Proxy list = mgr.newCollectionProxy(CustomList.class, null,
+            (Comparator) null, true);
+        assertBuildTimeProxy(loader, CustomList.class, list);
+        Proxy map = mgr.newMapProxy(CustomMap.class, null, null,
+            (Comparator) null, true);
+        assertBuildTimeProxy(loader, CustomMap.class, map);
+        Proxy date = mgr.newDateProxy(CustomDate.class);
+        assertBuildTimeProxy(loader, CustomDate.class, date);
+
+        // the written proxies work as the runtime ones do
+        ((List<Object>) list).add("a");
+        assertEquals(1, ((List<Object>) list).size());
+        CustomList copy = (CustomList) mgr.copyCollection((List<Object>) list);
+        assertEquals(1, copy.size());
+        assertFalse(copy instanceof Proxy);
+    }
+
+    @Test
+    public void runtimeProxiesWithoutBuildTimeProxy() throws Exception {
+        write(CustomList.class);
+        Proxy list = new ProxyManagerImpl().newCollectionProxy(
+            CustomList.class, null, (Comparator) null, true);
+        assertTrue(list instanceof CustomList);
+        assertFalse(list.getClass().getName().equals(
+            ProxyManagerImpl.class.getPackage().getName() + "."
+            + CustomList.class.getName().replace('.', '$') + "$proxy"));
+    }
+
+    /**
+     * Write the build-time proxies of the given types as the enhancer does,
+     * and return a loader for them beside the application's classes.
+     */
+    private ClassLoader write(Class<?>... types) throws Exception {
+        ProxyManagerImpl mgr = new ProxyManagerImpl();
+        for (Class<?> type : types) {
+            BCClass bc = mgr.generateBuildTimeProxyBytecode(type);
+            File pkg = new File(dir, bc.getPackageName().replace('.',
+                File.separatorChar));
+            pkg.mkdirs();
+            AsmAdaptor.write(bc, new File(pkg, bc.getClassName() + ".class"));
+        }
+        return new URLClassLoader(new URL[]{ dir.toURI().toURL() },
+            getClass().getClassLoader());
+    }
+
+    private static void assertBuildTimeProxy(ClassLoader loader,
+        Class<?> type, Proxy proxy) {
+        assertTrue(type.isInstance(proxy));
+        assertSame(loader, proxy.getClass().getClassLoader());
+        assertEquals(ProxyManagerImpl.class.getPackage().getName() + "."
+            + type.getName().replace('.', '$') + "$proxy",
+            proxy.getClass().getName());
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null)
+            for (File f : files)
+                delete(f);
+        file.delete();
+    }
+}
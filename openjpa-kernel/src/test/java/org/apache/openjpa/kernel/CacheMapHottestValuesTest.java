@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+/*
+ * Checks the order in which CacheMap.getHottestValues returns the values of
+ * LRU and non-LRU maps: pinned values first, then the cached values, then
+ * the values that overflowed to the soft map.
+ */
+
+import org.apache.openjpa.util.CacheMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheMapHottestValuesTest {
+
+    @Test
+    public void lruValuesMostRecentlyUsedFirst() {
+        CacheMap map = new CacheMap(true, 3);
+        map.put("a", "A");
+        map.put("b", "B");
+        map.put("c", "C");
+        map.get("a");
+
+        assertEquals(Arrays.asList("A", "C", "B"), map.getHottestValues(10));
+    }
+
+    @Test
+    public void pinnedValuesFirst() {
+        CacheMap map = new CacheMap(true, 3);
+        map.put("a", "A");
+        map.put("b", "B");
+        map.put("p", "P");
+        map.pin("p");
+        map.get("a");
+
+        assertEquals(Arrays.asList("P", "A", "B"), map.getHottestValues(10));
+    }
+
+    @Test
+    public void overflowedValuesLast() {
+        CacheMap map = new CacheMap(true, 2);
+        map.put("a", "A");
+        map.put("b", "B");
+        map.put("c", "C");
+
+        // "A" was the least recently used value when the map overflowed
+        List<?> vals = map.getHottestValues(10);
+        assertEquals(Arrays.asList("C", "B"), vals.subList(0, 2));
+        assertTrue(vals.size() == 2 || vals.equals(Arrays.asList("C", "B", "A")));
+    }
+
+    @Test
+    public void atMostMaxValues() {
+        CacheMap map = new CacheMap(true, 5);
+        for (int i = 0; i < 5; i++)
+            map.put(i, i);
+        map.pin(0);
+
+        assertEquals(Arrays.asList(0, 4, 3), map.getHottestValues(3));
+        assertEquals(Collections.emptyList(), map.getHottestValues(0));
+    }
+
+    @Test
+    public void nonLruValuesAllReturned() {
+        CacheMap map = new CacheMap(false, 3);
+        map.put("a", "A");
+        map.put("b", "B");
+        map.put("c", "C");
+        map.pin("c");
+
+        List<?> vals = map.getHottestValues(10);
+        assertEquals("C", vals.get(0));
+        assertEquals(new HashSet<>(Arrays.asList("A", "B", "C")), new HashSet<>(vals));
+        assertEquals(3, vals.size());
+    }
+
+    @Test
+    public void readingDoesNotReorder() {
+        CacheMap map = new CacheMap(true, 3);
+        map.put("a", "A");
+        map.put("b", "B");
+        map.put("c", "C");
+
+        map.getHottestValues(10);
+        map.put("d", "D");
+
+        // "A" is still the eldest value and overflowed first
+        assertEquals(Arrays.asList("D", "C", "B"), map.getHottestValues(3));
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.conf.CallbackOptions;
+import org.apache.openjpa.conf.Compatibility;
+import org.apache.openjpa.conf.DetachOptions;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.enhance.StateManager;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.meta.UpdateStrategies;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.ProxyManagerImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/*
+ * Sets, releases and rolls back copy-on-write savepoints on a broker. An
+ * instance is saved by the last savepoint right before its first change,
+ * so rolling back to any savepoint must restore the values that instances
+ * had when that savepoint was set, also across nested savepoints that are
+ * released into their parent, and must return instances that joined the
+ * transaction afterwards to transient.
+ */
+public class CopyOnWriteSavepointTest {
+
+    private static final int PK = 0;
+    private static final int NAME = 1;
+
+    // the entity type of the managed instances
+    abstract static class Entity implements PersistenceCapable {
+    }
+
+    // the field values of each instance
+    private final Map<Object, Object[]> values = new HashMap<>();
+    private OpenJPAConfiguration conf;
+    private ClassMetaData meta;
+    private BrokerImpl broker;
+
+    @Before
+    public void setUp() throws Exception {
+        conf = Mockito.mock(OpenJPAConfiguration.class);
+        Mockito.when(conf.getCompatibilityInstance()).thenReturn(new Compatibility());
+        Mockito.when(conf.getCallbackOptionsInstance()).thenReturn(new CallbackOptions());
+        Mockito.when(conf.getProxyManagerInstance()).thenReturn(new ProxyManagerImpl());
+        Mockito.when(conf.getDetachStateInstance()).thenReturn(new DetachOptions.Loaded());
+        Mockito.when(conf.getLog(anyString())).thenReturn(Mockito.mock(Log.class));
+
+        FieldMetaData pk = field(PK, JavaTypes.LONG, long.class);
+        Mockito.when(pk.isPrimaryKey()).thenReturn(true);
+        FieldMetaData name = field(NAME, JavaTypes.STRING, String.class);
+        meta = Mockito.mock(ClassMetaData.class);
+        FieldMetaData[] fmds = { pk, name };
+        for (FieldMetaData fmd : fmds)
+            Mockito.when(meta.getField(fmd.getIndex())).thenReturn(fmd);
+        Mockito.when(meta.getDescribedType()).thenReturn((Class) Entity.class);
+        Mockito.when(meta.getIdentityType()).thenReturn(ClassMetaData.ID_APPLICATION);
+        Mockito.when(meta.getFields()).thenReturn(fmds);
+        Mockito.when(meta.getProxyFields()).thenReturn(new FieldMetaData[0]);
+        Mockito.when(meta.getPkAndNonPersistentManagedFmdIndexes()).thenReturn(new int[]{ PK });
+        Mockito.when(meta.isIntercepting()).thenReturn(true);
+
+        broker = newBroker();
+    }
+
+    @Test
+    public void multipleWritesKeepFirstImage() {
+        StateManagerImpl sm = newStateManager(1, PCState.PCLEAN, "a");
+        broker.setSavepoint("s1");
+        write(sm, "b");
+        write(sm, "c");
+        assertEquals("c", name(sm));
+        assertSame(PCState.PDIRTY, sm.getPCState());
+
+        broker.rollbackToSavepoint("s1");
+        assertEquals("a", name(sm));
+        assertSame(PCState.PCLEAN, sm.getPCState());
+        assertFalse(sm.isDirty());
+    }
+
+    @Test
+    public void innerRollbackAfterOuterChange() {
+        StateManagerImpl first = newStateManager(1, PCState.PCLEAN, "a");
+        StateManagerImpl second = newStateManager(2, PCState.PCLEAN, "x");
+        broker.setSavepoint("outer");
+        write(first, "b");
+        broker.setSavepoint("inner");
+        write(first, "c");
+        write(second, "y");
+        assertEquals("c", name(first));
+        assertEquals("y", name(second));
+
+        // the inner savepoint restores the values it was set with
+        broker.rollbackToSavepoint("inner");
+        assertEquals("b", name(first));
+        assertSame(PCState.PDIRTY, first.getPCState());
+        assertEquals("x", name(second));
+        assertSame(PCState.PCLEAN, second.getPCState());
+
+        // and the outer one the values from before both
+        write(first, "d");
+        broker.rollbackToSavepoint("outer");
+        assertEquals("a", name(first));
+        assertSame(PCState.PCLEAN, first.getPCState());
+        assertEquals("x", name(second));
+    }
+
+    @Test
+    public void releasedSavepointMergedIntoParent() {
+        StateManagerImpl first = newStateManager(1, PCState.PCLEAN, "a");
+        StateManagerImpl second = newStateManager(2, PCState.PCLEAN, "x");
+        broker.setSavepoint("outer");
+        write(first, "b");
+        broker.setSavepoint("inner");
+        write(first, "c");
+        write(second, "y");
+        StateManagerImpl added = newStateManager(3, PCState.PNEW, "n");
+
+        broker.releaseSavepoint("inner");
+
+        // the outer savepoint keeps its own image of the first instance and
+        // takes the inner one's images of the others
+        broker.rollbackToSavepoint("outer");
+        assertEquals("a", name(first));
+        assertEquals("x", name(second));
+        assertSame(PCState.PCLEAN, second.getPCState());
+        assertSame(PCState.TRANSIENT, added.getPCState());
+    }
+
+    @Test
+    public void newInstanceRolledBackToTransient() {
+        StateManagerImpl clean = newStateManager(1, PCState.PCLEAN, "a");
+        broker.setSavepoint("s1");
+        StateManagerImpl added = newStateManager(2, PCState.PNEW, "n");
+        write(added, "m");
+        assertTrue(added.isTransactional());
+
+        broker.rollbackToSavepoint("s1");
+        assertSame(PCState.TRANSIENT, added.getPCState());
+        assertFalse(broker.getTransactionalStates().contains(added));
+
+        // instances unchanged since the savepoint stay as they are
+        assertTrue(broker.getTransactionalStates().contains(clean));
+        assertSame(PCState.PCLEAN, clean.getPCState());
+        assertEquals("a", name(clean));
+    }
+
+    @Test
+    public void savepointSavesNothingUpFront() throws Exception {
+        StateManagerImpl sm = newStateManager(1, PCState.PCLEAN, "a");
+        broker.setSavepoint("s1");
+        OpenJPASavepoint save = savepoint("s1");
+        assertTrue(save.getStates().isEmpty());
+
+        write(sm, "b");
+        assertEquals(1, save.getStates().size());
+        assertTrue(save.getStates().containsKey(sm));
+        assertNull(save.getAdded());
+    }
+
+    /**
+     * Write the name field of the given instance as an enhanced setter does.
+     */
+    private void write(StateManagerImpl sm, String name) {
+        sm.settingStringField(sm.getPersistenceCapable(), NAME, name(sm), name,
+            OpenJPAStateManager.SET_USER);
+    }
+
+    private String name(StateManagerImpl sm) {
+        return (String) values.get(sm.getPersistenceCapable())[NAME];
+    }
+
+    private StateManagerImpl newStateManager(long id, PCState state,
+        String name) {
+        Object oid = new LongId(Entity.class, id);
+        StateManagerImpl sm = new StateManagerImpl(oid, meta, broker);
+        sm.setObjectId(oid);
+        PersistenceCapable pc = newInstance();
+        values.get(pc)[PK] = id;
+        values.get(pc)[NAME] = name;
+        sm.initialize(pc, state);
+        sm.setLoaded(true);
+        return sm;
+    }
+
+    /**
+     * An instance holding its field values, which it exchanges with its
+     * state manager and copies from other instances as enhanced code does.
+     */
+    private PersistenceCapable newInstance() {
+        Entity pc = Mockito.mock(Entity.class);
+        Object[] vals = new Object[2];
+        values.put(pc, vals);
+        StateManager[] sm = new StateManager[1];
+        Mockito.doAnswer(inv -> sm[0] = inv.getArgument(0))
+            .when(pc).pcReplaceStateManager(any());
+        Mockito.when(pc.pcGetStateManager()).thenAnswer(inv -> sm[0]);
+        Mockito.when(pc.pcNewInstance(any(StateManager.class), anyBoolean()))
+            .thenAnswer(inv -> newInstance());
+        Mockito.doAnswer(inv -> {
+            Object[] from = values.get(inv.getArgument(0));
+            for (int field : (int[]) inv.getArgument(1))
+                vals[field] = from[field];
+            return null;
+        }).when(pc).pcCopyFields(any(), any(int[].class));
+        Mockito.doAnswer(inv -> {
+            int field = inv.getArgument(0);
+            if (field == NAME)
+                sm[0].providedStringField(pc, field, (String) vals[field]);
+            else
+                sm[0].providedLongField(pc, field, (Long) vals[field]);
+            return null;
+        }).when(pc).pcProvideField(anyInt());
+        Mockito.doAnswer(inv -> {
+            int field = inv.getArgument(0);
+            if (field == NAME)
+                vals[field] = sm[0].replaceStringField(pc, field);
+            else
+                vals[field] = sm[0].replaceLongField(pc, field);
+            return null;
+        }).when(pc).pcReplaceField(anyInt());
+        return pc;
+    }
+
+    /**
+     * A broker in an active transaction with copy-on-write savepoints,
+     * running its own savepoint code without a store.
+     */
+    private BrokerImpl newBroker() throws Exception {
+        BrokerImpl broker = Mockito.spy(new BrokerImpl());
+        Mockito.doReturn(conf).when(broker).getConfiguration();
+        Mockito.doReturn(Mockito.mock(DelegatingStoreManager.class))
+            .when(broker).getStoreManager();
+        Mockito.doReturn(null).when(broker).getInverseManager();
+        Mockito.doReturn(Mockito.mock(FetchConfiguration.class))
+            .when(broker).getFetchConfiguration();
+        Mockito.doReturn(Mockito.mock(LockManager.class))
+            .when(broker).getLockManager();
+        set(broker, "_conf", conf);
+        set(broker, "_compat", new Compatibility());
+        set(broker, "_cache", new ManagedCache(broker));
+        InMemorySavepointManager spm = new InMemorySavepointManager();
+        spm.setPreFlush(false);
+        spm.setCopyOnWrite(true);
+        set(broker, "_spm", spm);
+        set(broker, "_flags", (Integer) get(broker, "_flags")
+            | (Integer) get(broker, "FLAG_ACTIVE"));
+        return broker;
+    }
+
+    private OpenJPASavepoint savepoint(String name) throws Exception {
+        Map<?, ?> savepoints = (Map<?, ?>) get(broker, "_savepoints");
+        return (OpenJPASavepoint) savepoints.get(name);
+    }
+
+    private static FieldMetaData field(int index, int type, Class<?> cls) {
+        FieldMetaData fmd = Mockito.mock(FieldMetaData.class);
+        Mockito.when(fmd.getIndex()).thenReturn(index);
+        Mockito.when(fmd.getDeclaredTypeCode()).thenReturn(type);
+        Mockito.when(fmd.getTypeCode()).thenReturn(type);
+        Mockito.when(fmd.getDeclaredType()).thenReturn((Class) cls);
+        Mockito.when(fmd.getManagement()).thenReturn(FieldMetaData.MANAGE_PERSISTENT);
+        Mockito.when(fmd.getUpdateStrategy()).thenReturn(UpdateStrategies.NONE);
+        Mockito.when(fmd.order(any())).thenAnswer(inv -> inv.getArgument(0));
+        return fmd;
+    }
+
+    private static Object get(Object o, String name) throws Exception {
+        Field field = BrokerImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(o);
+    }
+
+    private static void set(Object o, String name, Object value)
+        throws Exception {
+        Field field = BrokerImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(o, value);
+    }
+}
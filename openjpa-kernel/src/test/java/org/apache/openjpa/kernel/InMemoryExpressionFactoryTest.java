@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.kernel.exps.Exp;
+import org.apache.openjpa.kernel.exps.InMemoryExpressionFactory;
+import org.apache.openjpa.kernel.exps.Literal;
+import org.apache.openjpa.kernel.exps.Parameter;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
+import org.apache.openjpa.kernel.exps.Val;
+import org.apache.openjpa.kernel.exps.Value;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+/*
+ * Evaluates in-memory query expressions built by InMemoryExpressionFactory.
+ * Values computed from literals only are computed once, comparisons to a
+ * constant give the same results whatever the types of the values compared,
+ * and the extents of unbound variables are read once per execution.
+ */
+public class InMemoryExpressionFactoryTest {
+
+    private final InMemoryExpressionFactory factory =
+        new InMemoryExpressionFactory();
+
+    @Test
+    public void constantValuesFolded() {
+        Literal one = factory.newLiteral(1, Literal.TYPE_NUMBER);
+        Literal two = factory.newLiteral(2, Literal.TYPE_NUMBER);
+        Value sum = factory.add(one, two);
+        assertEquals(3, ((Number) eval(sum, null)).intValue());
+
+        // the folded sum is not computed again
+        one.setValue(10);
+        assertEquals(3, ((Number) eval(sum, null)).intValue());
+
+        Value concat = factory.concat(factory.newLiteral("a",
+            Literal.TYPE_STRING), factory.newLiteral("b", Literal.TYPE_STRING));
+        assertEquals("ab", eval(concat, null));
+        assertEquals(2, ((Number) eval(factory.stringLength(concat), null))
+            .intValue());
+    }
+
+    @Test
+    public void parameterValuesNotFolded() {
+        Parameter param = factory.newParameter("p", Integer.class);
+        param.setIndex(0);
+        Value sum = factory.add(param, factory.newLiteral(2,
+            Literal.TYPE_NUMBER));
+        assertEquals(7, ((Number) eval(sum, 5)).intValue());
+        assertEquals(8, ((Number) eval(sum, 6)).intValue());
+    }
+
+    @Test
+    public void constantComparedToValuesOfAnyType() {
+        Exp eq = (Exp) factory.equal(factory.getThis(),
+            factory.newLiteral(3L, Literal.TYPE_NUMBER));
+        Exp lt = (Exp) factory.lessThan(factory.newLiteral(3L,
+            Literal.TYPE_NUMBER), factory.getThis());
+
+        // the conversion of the constant changes with the type of the
+        // candidate values, and switches back when it changes again
+        for (int i = 0; i < 2; i++) {
+            assertTrue(eq.evaluate(3, 3, null, null));
+            assertFalse(eq.evaluate(4, 4, null, null));
+            assertTrue(eq.evaluate(3L, 3L, null, null));
+            assertTrue(eq.evaluate(3.0, 3.0, null, null));
+            assertFalse(eq.evaluate(3.5, 3.5, null, null));
+            assertTrue(lt.evaluate(3.5, 3.5, null, null));
+            assertFalse(lt.evaluate(3, 3, null, null));
+            assertTrue(lt.evaluate((short) 4, (short) 4, null, null));
+        }
+    }
+
+    @Test
+    public void unboundExtentsReadOncePerExecution() {
+        Value var = factory.newUnboundVariable("v", String.class);
+        QueryExpressions exps = new QueryExpressions();
+        exps.filter = factory.equal(var, factory.getThis());
+        ClassMetaData meta = Mockito.mock(ClassMetaData.class);
+        Mockito.when(meta.getDescribedType()).thenReturn((Class) String.class);
+
+        List<Object> extent = Arrays.asList("a", "b", "c");
+        StoreContext ctx = Mockito.mock(StoreContext.class);
+        Mockito.when(ctx.extentIterator(eq(String.class), eq(true), any(),
+            eq(false))).thenAnswer(inv -> extent.iterator());
+
+        assertTrue(factory.matches(exps, meta, false, "a", ctx, null));
+        assertTrue(factory.matches(exps, meta, false, "c", ctx, null));
+        assertFalse(factory.matches(exps, meta, false, "x", ctx, null));
+        Mockito.verify(ctx, Mockito.times(1)).extentIterator(String.class,
+            true, null, false);
+
+        // groups reuse the extent as well
+        exps.having = exps.filter;
+        factory.matches(exps, Collections.singletonList("a"), ctx, null);
+        Mockito.verify(ctx, Mockito.times(1)).extentIterator(String.class,
+            true, null, false);
+
+        // the next execution reads the extent again
+        factory.clearExtents();
+        assertTrue(factory.matches(exps, meta, false, "b", ctx, null));
+        Mockito.verify(ctx, Mockito.times(2)).extentIterator(String.class,
+            true, null, false);
+    }
+
+    private static Object eval(Value val, Object param) {
+        return ((Val) val).evaluate((Object) null, null, null,
+            new Object[]{ param });
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.event.LifecycleCallbacks;
+import org.apache.openjpa.event.LifecycleEvent;
+import org.apache.openjpa.event.LifecycleEventManager;
+import org.apache.openjpa.event.LifecycleEventManager.ListenerAdapter;
+import org.apache.openjpa.event.LifecycleEventManager.ListenerList;
+import org.apache.openjpa.event.LoadListener;
+import org.apache.openjpa.event.PersistListener;
+import org.apache.openjpa.event.PostPersistListener;
+import org.apache.openjpa.event.StoreListener;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.LifecycleMetaData;
+import org.apache.openjpa.meta.MetaDataDefaults;
+import org.apache.openjpa.meta.MetaDataFactory;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Fires lifecycle events through the listener tables of the event manager.
+ * The listeners notified and their order must be those of the former walk
+ * over the listener lists: callbacks before or after the listeners as the
+ * metadata defaults say, then the listeners of all classes, those of the
+ * source's class and of its superclasses, most specific first, and finally
+ * the system listeners unless the class excludes them. Listeners that do
+ * not handle an event type are left out.
+ */
+public class LifecycleListenerDispatchTest {
+
+    static class Base {
+    }
+
+    static class Sub extends Base {
+    }
+
+    static class Other {
+    }
+
+    // records the events it is notified of
+    class Recorder implements PersistListener, StoreListener {
+        private final String name;
+
+        Recorder(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void beforePersist(LifecycleEvent event) {
+            calls.add(name);
+        }
+
+        @Override
+        public void afterPersist(LifecycleEvent event) {
+            calls.add(name);
+        }
+
+        @Override
+        public void beforeStore(LifecycleEvent event) {
+            calls.add(name);
+        }
+
+        @Override
+        public void afterStore(LifecycleEvent event) {
+            calls.add(name);
+        }
+    }
+
+    // notified of loads only
+    class LoadRecorder implements LoadListener {
+        private final String name;
+
+        LoadRecorder(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void afterLoad(LifecycleEvent event) {
+            calls.add(name);
+        }
+
+        @Override
+        public void afterRefresh(LifecycleEvent event) {
+            calls.add(name);
+        }
+    }
+
+    // notified of persist performed events only
+    class PostPersistRecorder implements PostPersistListener {
+        private final String name;
+
+        PostPersistRecorder(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void afterPersistPerformed(LifecycleEvent event) {
+            calls.add(name);
+        }
+    }
+
+    // a facade that chooses the events it responds to
+    class Adapter extends Recorder implements ListenerAdapter,
+        PostPersistListener {
+        private final int[] types;
+
+        Adapter(String name, int... types) {
+            super(name);
+            this.types = types;
+        }
+
+        @Override
+        public boolean respondsTo(int eventType) {
+            for (int type : types)
+                if (type == eventType)
+                    return true;
+            return false;
+        }
+
+        @Override
+        public void afterPersistPerformed(LifecycleEvent event) {
+            calls.add("adapter");
+        }
+    }
+
+    private final List<String> calls = new ArrayList<>();
+    private final ListenerList system = new ListenerList(3);
+    private LifecycleEventManager mgr;
+    private LifecycleMetaData lifecycle;
+    private MetaDataDefaults defaults;
+    private ClassMetaData meta;
+
+    @Before
+    public void setUp() {
+        mgr = new LifecycleEventManager();
+        lifecycle = mock(LifecycleMetaData.class);
+        when(lifecycle.getCallbacks(anyInt()))
+            .thenReturn(new LifecycleCallbacks[0]);
+        defaults = mock(MetaDataDefaults.class);
+        when(defaults.getCallbacksBeforeListeners(anyInt())).thenReturn(true);
+        MetaDataFactory factory = mock(MetaDataFactory.class);
+        when(factory.getDefaults()).thenReturn(defaults);
+        MetaDataRepository repos = mock(MetaDataRepository.class);
+        when(repos.getSystemListeners()).thenReturn(system);
+        when(repos.getMetaDataFactory()).thenReturn(factory);
+        meta = mock(ClassMetaData.class);
+        when(meta.getLifecycleMetaData()).thenReturn(lifecycle);
+        when(meta.getRepository()).thenReturn(repos);
+        when(meta.getDescribedType()).thenReturn((Class) Sub.class);
+    }
+
+    @Test
+    public void listenersNotifiedInRegistrationOrder() {
+        mgr.addListener(new Recorder("base"), new Class[]{ Base.class });
+        mgr.addListener(new Recorder("all1"), null);
+        mgr.addListener(new Recorder("sub"), new Class[]{ Sub.class });
+        mgr.addListener(new Recorder("other"), new Class[]{ Other.class });
+        mgr.addListener(new Recorder("all2"), null);
+        system.add(new Recorder("system"));
+
+        fire(new Sub(), LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Arrays.asList("all1", "all2", "sub", "base", "system"),
+            calls);
+
+        calls.clear();
+        fire(new Base(), LifecycleEvent.BEFORE_STORE);
+        assertEquals(Arrays.asList("all1", "all2", "base", "system"), calls);
+    }
+
+    @Test
+    public void callbacksBeforeOrAfterListeners() throws Exception {
+        LifecycleCallbacks callback = mock(LifecycleCallbacks.class);
+        doAnswer(inv -> calls.add("callback"))
+            .when(callback).makeCallback(any(), any(), anyInt());
+        when(lifecycle.getCallbacks(LifecycleEvent.BEFORE_PERSIST))
+            .thenReturn(new LifecycleCallbacks[]{ callback });
+        mgr.addListener(new Recorder("all"), null);
+        mgr.addListener(new Recorder("sub"), new Class[]{ Sub.class });
+        system.add(new Recorder("system"));
+
+        fire(new Sub(), LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Arrays.asList("callback", "all", "sub", "system"), calls);
+
+        calls.clear();
+        when(defaults.getCallbacksBeforeListeners(anyInt())).thenReturn(false);
+        fire(new Sub(), LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Arrays.asList("all", "sub", "system", "callback"), calls);
+    }
+
+    @Test
+    public void listenersNotHandlingTypeExcluded() {
+        mgr.addListener(new Recorder("all"), null);
+        mgr.addListener(new LoadRecorder("load"), null);
+        mgr.addListener(new Adapter("adapter", LifecycleEvent.BEFORE_PERSIST),
+            null);
+        mgr.addListener(new LoadRecorder("subload"), new Class[]{ Sub.class });
+        mgr.addListener(new Recorder("sub"), new Class[]{ Sub.class });
+
+        Sub sub = new Sub();
+        fire(sub, LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Arrays.asList("all", "adapter", "sub"), calls);
+
+        // an adapter only responds to the events it chooses
+        calls.clear();
+        fire(sub, LifecycleEvent.BEFORE_STORE);
+        assertEquals(Arrays.asList("all", "sub"), calls);
+
+        calls.clear();
+        fire(sub, LifecycleEvent.AFTER_LOAD);
+        assertEquals(Arrays.asList("load", "subload"), calls);
+        assertTrue(mgr.hasLoadListeners(sub, meta));
+
+        // a lone listener of a class is only consulted for its own events
+        calls.clear();
+        assertFalse(mgr.hasDeleteListeners(sub, meta));
+        fire(sub, LifecycleEvent.BEFORE_DELETE);
+        assertEquals(Collections.emptyList(), calls);
+    }
+
+    @Test
+    public void listenersOfOtherClassesExcluded() {
+        mgr.addListener(new LoadRecorder("sub"), new Class[]{ Sub.class });
+        assertTrue(mgr.hasLoadListeners(new Sub(), meta));
+        assertFalse(mgr.hasLoadListeners(new Base(), meta));
+        assertFalse(mgr.hasLoadListeners(new Other(), meta));
+        assertFalse(mgr.hasPersistListeners(new Sub(), meta));
+
+        // without a source the described type selects the class listeners
+        assertTrue(mgr.hasLoadListeners(null, meta));
+        when(meta.getDescribedType()).thenReturn((Class) Other.class);
+        assertFalse(mgr.hasLoadListeners(null, meta));
+
+        fire(new Base(), LifecycleEvent.AFTER_LOAD);
+        assertEquals(Collections.emptyList(), calls);
+        fire(new Sub(), LifecycleEvent.AFTER_LOAD);
+        assertEquals(Collections.singletonList("sub"), calls);
+    }
+
+    @Test
+    public void postPersistListenersBesideAdapterNotified() {
+        mgr.addListener(new Adapter("adapter",
+            LifecycleEvent.AFTER_PERSIST_PERFORMED), null);
+        mgr.addListener(new PostPersistRecorder("post"), null);
+        mgr.addListener(new Recorder("all"), null);
+
+        fire(new Sub(), LifecycleEvent.AFTER_PERSIST_PERFORMED);
+        assertEquals(Arrays.asList("adapter", "post"), calls);
+    }
+
+    @Test
+    public void systemListenersExcluded() {
+        Sub sub = new Sub();
+        system.add(new Recorder("system"));
+        assertTrue(mgr.hasPersistListeners(sub, meta));
+
+        when(lifecycle.getIgnoreSystemListeners()).thenReturn(true);
+        assertFalse(mgr.hasPersistListeners(sub, meta));
+        fire(sub, LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Collections.emptyList(), calls);
+
+        // as are the registered listeners from the has*Listeners checks
+        mgr.addListener(new Recorder("all"), null);
+        assertFalse(mgr.hasPersistListeners(sub, meta));
+        fire(sub, LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Collections.singletonList("all"), calls);
+    }
+
+    @Test
+    public void listenersChangedWhileFiring() {
+        Recorder added = new Recorder("added");
+        Recorder removed = new Recorder("removed");
+        mgr.addListener(new PersistListener() {
+            @Override
+            public void beforePersist(LifecycleEvent event) {
+                calls.add("first");
+                mgr.addListener(added, null);
+                mgr.removeListener(removed);
+            }
+
+            @Override
+            public void afterPersist(LifecycleEvent event) {
+            }
+        }, null);
+        mgr.addListener(removed, null);
+
+        // the event being fired goes to the listeners it started with
+        fire(new Sub(), LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Arrays.asList("first", "removed"), calls);
+
+        // and the next one to the listeners as changed
+        calls.clear();
+        fire(new Sub(), LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(Arrays.asList("first", "added"), calls);
+    }
+
+    @Test
+    public void failFastStopsListeners() {
+        mgr.setFailFast(true);
+        mgr.addListener(new Recorder("first"), null);
+        mgr.addListener(new PersistListener() {
+            @Override
+            public void beforePersist(LifecycleEvent event) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void afterPersist(LifecycleEvent event) {
+            }
+        }, null);
+        mgr.addListener(new Recorder("last"), null);
+        system.add(new Recorder("system"));
+
+        Exception[] exceps = fire(new Sub(), LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(1, exceps.length);
+        assertEquals(Collections.singletonList("first"), calls);
+
+        calls.clear();
+        mgr.setFailFast(false);
+        exceps = fire(new Sub(), LifecycleEvent.BEFORE_PERSIST);
+        assertEquals(1, exceps.length);
+        assertEquals(Arrays.asList("first", "last", "system"), calls);
+    }
+
+    private Exception[] fire(Object source, int type) {
+        return mgr.fireEvent(source, meta, type);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.kernel.jpql.LiteralParameterizer;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Replaces the literals of JPQL queries by synthetic parameters. Only the
+ * string and numeric literals compared in WHERE and HAVING clauses are
+ * replaced, wherever the clause ends, and queries whose literals can not be
+ * replaced safely are left alone.
+ */
+public class LiteralParameterizerTest {
+
+    @Test
+    public void comparedLiteralsReplaced() {
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.name = 'Anna' AND p.age > 30",
+            "SELECT p FROM Person p WHERE p.name = :_lit0 AND p.age > :_lit1",
+            "Anna", 30L);
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.score >= 1.5 OR p.id <> 10L",
+            "SELECT p FROM Person p WHERE p.score >= :_lit0 OR p.id <> :_lit1",
+            new BigDecimal("1.5"), 10L);
+    }
+
+    @Test
+    public void quotedStringsKeptWhole() {
+        // escaped quotes are unescaped in the value
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.name = 'O''Brien'",
+            "SELECT p FROM Person p WHERE p.name = :_lit0",
+            "O'Brien");
+        assertParameterized("SELECT p FROM Person p WHERE p.name = ''''",
+            "SELECT p FROM Person p WHERE p.name = :_lit0", "'");
+
+        // keywords, operators and parameters inside a string are just text
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.note = 'a = 1 AND ?1 ORDER BY :x'"
+                + " ORDER BY p.name",
+            "SELECT p FROM Person p WHERE p.note = :_lit0 ORDER BY p.name",
+            "a = 1 AND ?1 ORDER BY :x");
+    }
+
+    @Test
+    public void subqueryLiteralsReplaced() {
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.age > (SELECT AVG(q.age) FROM"
+                + " Person q WHERE q.city = 'Roma') AND p.city = 'Milano'",
+            "SELECT p FROM Person p WHERE p.age > (SELECT AVG(q.age) FROM"
+                + " Person q WHERE q.city = :_lit0) AND p.city = :_lit1",
+            "Roma", "Milano");
+        assertParameterized(
+            "SELECT p FROM Person p WHERE EXISTS (SELECT q FROM Person q"
+                + " WHERE q.boss = p AND q.age < 18)",
+            "SELECT p FROM Person p WHERE EXISTS (SELECT q FROM Person q"
+                + " WHERE q.boss = p AND q.age < :_lit0)",
+            18L);
+    }
+
+    @Test
+    public void clauseBoundariesEndConditions() {
+        assertParameterized(
+            "SELECT p.city, COUNT(p) FROM Person p WHERE p.age >= 18"
+                + " GROUP BY p.city HAVING COUNT(p) > 10 ORDER BY p.city",
+            "SELECT p.city, COUNT(p) FROM Person p WHERE p.age >= :_lit0"
+                + " GROUP BY p.city HAVING COUNT(p) > :_lit1 ORDER BY p.city",
+            18L, 10L);
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.age = 30 ORDER BY p.name",
+            "SELECT p FROM Person p WHERE p.age = :_lit0 ORDER BY p.name",
+            30L);
+
+        // comparisons outside of WHERE and HAVING keep their literals
+        assertNull(LiteralParameterizer.parameterize(
+            "SELECT CASE WHEN p.age > 18 THEN 'adult' ELSE 'minor' END"
+                + " FROM Person p ORDER BY p.name"));
+    }
+
+    @Test
+    public void unsafeLiteralsLeftInPlace() {
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.name LIKE 'A%' AND p.age"
+                + " BETWEEN 1 AND 5 AND p.age > -1 AND p.age < 1 + 2"
+                + " AND p.active = TRUE AND p.city = 'Roma'",
+            "SELECT p FROM Person p WHERE p.name LIKE 'A%' AND p.age"
+                + " BETWEEN 1 AND 5 AND p.age > -1 AND p.age < 1 + 2"
+                + " AND p.active = TRUE AND p.city = :_lit0",
+            "Roma");
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.born = {d '2020-01-01'}"
+                + " AND p.id IN (1, 2) AND p.age = 3",
+            "SELECT p FROM Person p WHERE p.born = {d '2020-01-01'}"
+                + " AND p.id IN (1, 2) AND p.age = :_lit0",
+            3L);
+    }
+
+    @Test
+    public void integersBeyondLongLeftInPlace() {
+        assertParameterized("SELECT p FROM Person p WHERE p.id = "
+            + Long.MAX_VALUE, "SELECT p FROM Person p WHERE p.id = :_lit0",
+            Long.MAX_VALUE);
+        assertNull(LiteralParameterizer.parameterize(
+            "SELECT p FROM Person p WHERE p.id = 9223372036854775808"));
+        assertParameterized(
+            "SELECT p FROM Person p WHERE p.id = 99999999999999999999"
+                + " AND p.age = 1",
+            "SELECT p FROM Person p WHERE p.id = 99999999999999999999"
+                + " AND p.age = :_lit0",
+            1L);
+    }
+
+    @Test
+    public void unsupportedQueriesRejected() {
+        for (String jpql : Arrays.asList(
+            null,
+            "UPDATE Person p SET p.age = 1 WHERE p.age = 0",
+            "DELETE FROM Person p WHERE p.age = 0",
+            "SELECT p FROM Person p WHERE p.age = ?1 AND p.name = 'Anna'",
+            "SELECT p FROM Person p WHERE p.age = :_lit0 AND p.name = 'Anna'",
+            "SELECT p FROM Person p WHERE p.name = 'Anna",
+            "SELECT p FROM Person p WHERE p.\"name = 'Anna'",
+            "SELECT p FROM Person p WHERE p.name = :name",
+            "SELECT p FROM Person p WHERE p.age = 1 + 1")) {
+            assertNull(jpql, LiteralParameterizer.parameterize(jpql));
+        }
+    }
+
+    @Test
+    public void literalsAssignableToMatchingTypes() {
+        assertTrue(LiteralParameterizer.isAssignable("a", null));
+        assertTrue(LiteralParameterizer.isAssignable("a", Object.class));
+        assertTrue(LiteralParameterizer.isAssignable("a", String.class));
+        assertTrue(LiteralParameterizer.isAssignable("a", char.class));
+        assertFalse(LiteralParameterizer.isAssignable("a", Integer.class));
+        assertTrue(LiteralParameterizer.isAssignable(1L, int.class));
+        assertTrue(LiteralParameterizer.isAssignable(1L, BigDecimal.class));
+        assertFalse(LiteralParameterizer.isAssignable(1L, boolean.class));
+        assertFalse(LiteralParameterizer.isAssignable(1L, String.class));
+    }
+
+    private static void assertParameterized(String jpql, String expected,
+        Object... values) {
+        LiteralParameterizer parameterized =
+            LiteralParameterizer.parameterize(jpql);
+        assertEquals(expected, parameterized.getQueryString());
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++)
+            params.put(LiteralParameterizer.PARAMETER_PREFIX + i, values[i]);
+        assertEquals(params, parameterized.getParameters());
+        // insertion order is the order of appearance
+        assertEquals(Arrays.asList(params.keySet().toArray()),
+            Arrays.asList(parameterized.getParameters().keySet().toArray()));
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.datacache.ConcurrentQueryCache;
+import org.apache.openjpa.datacache.DataCacheManager;
+import org.apache.openjpa.datacache.InstancesChangedEvent;
+import org.apache.openjpa.datacache.QueryKey;
+import org.apache.openjpa.datacache.QueryResult;
+import org.apache.openjpa.datacache.TypesChangedEvent;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.event.RemoteCommitEventManager;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.util.Id;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Evicts the results of a query cache with the "rows" evict policy. Only the
+ * results that an insert, an update of a field the query read, or a delete
+ * of one of their own instances may change are evicted; the other results
+ * of the changed types stay cached. Results that do not record the fields
+ * they read fall back to eviction by type, as with the default policy.
+ */
+public class QueryCacheRowsEvictPolicyTest {
+
+    public static class Person {
+    }
+
+    public static class Address {
+    }
+
+    private ConcurrentQueryCache cache;
+    private ClassMetaData person;
+    private FieldMetaData name;
+    private FieldMetaData age;
+
+    @Before
+    public void setUp() {
+        PCRegistry.register(Person.class, new String[0], new Class[0],
+            new byte[0], null, "Person", null);
+        PCRegistry.register(Address.class, new String[0], new Class[0],
+            new byte[0], null, "Address", null);
+
+        name = field("name");
+        age = field("age");
+        person = mock(ClassMetaData.class);
+        when(person.getDescribedType()).thenReturn((Class) Person.class);
+        when(person.getFields()).thenReturn(new FieldMetaData[]{ name, age });
+
+        cache = newCache("rows");
+    }
+
+    @Test
+    public void updateOfUnreadFieldKeepsResult() {
+        QueryKey byName = key(Person.class, "byName");
+        QueryKey byAge = key(Person.class, "byAge");
+        cache.put(byName, result(byName, fields(name), 1, 2));
+        cache.put(byAge, result(byAge, fields(age), 1, 2));
+
+        cache.onTypesChanged(event(Person.class, updated(3, age)));
+
+        assertNotNull(cache.get(byName));
+        assertNull(cache.get(byAge));
+    }
+
+    @Test
+    public void deleteOfOwnInstanceEvictsResult() {
+        QueryKey adults = key(Person.class, "adults");
+        QueryKey minors = key(Person.class, "minors");
+        cache.put(adults, result(adults, fields(age), 1, 2));
+        cache.put(minors, result(minors, fields(age), 3));
+
+        cache.onTypesChanged(event(Person.class, deleted(3)));
+
+        assertNotNull(cache.get(adults));
+        assertNull(cache.get(minors));
+    }
+
+    @Test
+    public void deleteEvictsProjections() {
+        QueryKey names = key(Person.class, "names");
+        QueryResult res = result(names, fields(name), 1, 2);
+        res.setCandidateResult(false);
+        cache.put(names, res);
+
+        cache.onTypesChanged(event(Person.class, deleted(3)));
+
+        assertNull(cache.get(names));
+    }
+
+    @Test
+    public void insertEvictsResultsOfType() {
+        QueryKey byName = key(Person.class, "byName");
+        QueryKey streets = key(Address.class, "streets");
+        cache.put(byName, result(byName, fields(name), 1));
+        cache.put(streets, result(streets, Collections.emptySet(), 9));
+
+        cache.onTypesChanged(event(Person.class, persisted()));
+
+        assertNull(cache.get(byName));
+        assertNotNull(cache.get(streets));
+    }
+
+    @Test
+    public void resultsWithoutFieldsEvictedByType() {
+        QueryKey criteria = key(Person.class, "criteria");
+        QueryKey streets = key(Address.class, "streets");
+        cache.put(criteria, result(criteria, null, 1, 2));
+        cache.put(streets, result(streets, null, 9));
+
+        cache.onTypesChanged(event(Person.class, updated(3, age)));
+
+        assertNull(cache.get(criteria));
+        assertNotNull(cache.get(streets));
+    }
+
+    @Test
+    public void defaultPolicyEvictsByType() {
+        cache = newCache("default");
+        QueryKey byName = key(Person.class, "byName");
+        QueryKey streets = key(Address.class, "streets");
+        cache.put(byName, result(byName, fields(name), 1, 2));
+        cache.put(streets, result(streets, Collections.emptySet(), 9));
+
+        cache.onTypesChanged(event(Person.class, updated(3, age)));
+
+        assertNull(cache.get(byName));
+        assertNotNull(cache.get(streets));
+    }
+
+    @Test
+    public void plainTypesChangedEventEvictsByType() {
+        QueryKey byName = key(Person.class, "byName");
+        cache.put(byName, result(byName, fields(name), 1, 2));
+
+        cache.onTypesChanged(new TypesChangedEvent(this,
+            Collections.singleton(Person.class)));
+
+        assertNull(cache.get(byName));
+    }
+
+    private static ConcurrentQueryCache newCache(String policy) {
+        OpenJPAConfiguration conf = mock(OpenJPAConfiguration.class);
+        when(conf.getLog(anyString())).thenReturn(mock(Log.class));
+        when(conf.getRemoteCommitEventManager())
+            .thenReturn(mock(RemoteCommitEventManager.class));
+
+        ConcurrentQueryCache cache = new ConcurrentQueryCache();
+        cache.setConfiguration(conf);
+        cache.setEvictPolicy(policy);
+        cache.endConfiguration();
+        cache.initialize(mock(DataCacheManager.class));
+        return cache;
+    }
+
+    private FieldMetaData field(String fieldName) {
+        FieldMetaData fmd = mock(FieldMetaData.class);
+        when(fmd.getFullName(false)).thenReturn(Person.class.getName() + "."
+            + fieldName);
+        return fmd;
+    }
+
+    private static Set<String> fields(FieldMetaData... fmds) {
+        Set<String> names = new HashSet<>();
+        for (FieldMetaData fmd : fmds)
+            names.add(fmd.getFullName(false));
+        return names;
+    }
+
+    private static QueryResult result(QueryKey key, Set<String> fields,
+        long... ids) {
+        Set<Object> oids = new HashSet<>();
+        for (long id : ids)
+            oids.add(new Id(Person.class, id));
+        QueryResult res = new QueryResult(key, oids);
+        res.setAccessFields(fields);
+        res.setCandidateResult(true);
+        return res;
+    }
+
+    private static InstancesChangedEvent event(Class<?> type,
+        OpenJPAStateManager sm) {
+        return new InstancesChangedEvent(sm, Collections.singleton(type),
+            Collections.singleton(sm));
+    }
+
+    private OpenJPAStateManager persisted() {
+        OpenJPAStateManager sm = sm(0);
+        when(sm.isNew()).thenReturn(true);
+        return sm;
+    }
+
+    private OpenJPAStateManager updated(long id, FieldMetaData fmd) {
+        BitSet dirty = new BitSet();
+        dirty.set(Arrays.asList(person.getFields()).indexOf(fmd));
+        OpenJPAStateManager sm = sm(id);
+        when(sm.isDirty()).thenReturn(true);
+        when(sm.getDirty()).thenReturn(dirty);
+        return sm;
+    }
+
+    private OpenJPAStateManager deleted(long id) {
+        OpenJPAStateManager sm = sm(id);
+        when(sm.isDeleted()).thenReturn(true);
+        return sm;
+    }
+
+    private OpenJPAStateManager sm(long id) {
+        OpenJPAStateManager sm = mock(OpenJPAStateManager.class);
+        when(sm.getMetaData()).thenReturn(person);
+        when(sm.getObjectId()).thenReturn(new Id(Person.class, id));
+        return sm;
+    }
+
+    /**
+     * A key for a query over the given candidate type, read back from its
+     * externalized form as the key has no other public constructor.
+     */
+    private static QueryKey key(Class<?> type, String query) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(type.getName());
+                out.writeBoolean(true);
+                out.writeObject(new HashSet<>(Collections.singleton(
+                    type.getName())));
+                out.writeObject(query);
+                out.writeBoolean(false);
+                out.writeObject(null);
+                out.writeLong(0L);
+                out.writeLong(Long.MAX_VALUE);
+                out.writeInt(-1);
+            }
+            QueryKey key = new QueryKey();
+            try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray()))) {
+                key.readExternal(in);
+            }
+            return key;
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.conf.CallbackOptions;
+import org.apache.openjpa.conf.Compatibility;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.meta.UpdateStrategies;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Checks that StateManagerImpl keeps the state of types with no more than
+ * 64 fields in its compact form: the loaded, dirty and flushed fields stay
+ * in inline masks through loads, dirtying and savepoints, and the extra
+ * field data array and the instance lock are only allocated while needed.
+ * Types with more fields keep BitSets, of which the dirty and flushed ones
+ * are only created by the first write to them.
+ *
+ * The memory benchmark compares the retained size of freshly initialized
+ * instances ("after") with the retained size of the same instances once
+ * they carry the structures every state manager used to allocate up front
+ * ("before"): the BitSet of loaded fields and the SingleFieldManager.
+ */
+public class StateManagerImplMemoryTest {
+
+    private static final int INSTANCES = 50000;
+    private static final int FIELDS = 20;
+    private static final int MANY_FIELDS = 100;
+
+    @Test
+    public void loadStaysCompact() throws Exception {
+        ClassMetaData meta = mockMetaData(FIELDS);
+        StateManagerImpl sm = newStateManager(mockBroker(false), meta);
+
+        // load the fields the way the data cache does
+        PCDataImpl data = new PCDataImpl(null, meta);
+        for (int i = 1; i < FIELDS; i += 2)
+            data.setData(i, "value" + i);
+        FetchConfiguration fetch = Mockito.mock(FetchConfiguration.class);
+        Mockito.when(fetch.requiresFetch(Mockito.any())).thenReturn(FetchConfiguration.FETCH_LOAD);
+        data.load(sm, fetch, null);
+
+        for (int i = 0; i < FIELDS; i++)
+            assertEquals(i == 0 || i % 2 == 1, sm.isLoaded(i));
+        assertNull(get(sm, "_loaded"));
+
+        // a copy does not switch to the BitSet form either
+        BitSet copy = sm.copyLoaded();
+        assertEquals(FIELDS / 2 + 1, copy.cardinality());
+        copy.clear();
+        assertTrue(sm.isLoaded(1));
+        assertNull(get(sm, "_loaded"));
+    }
+
+    @Test
+    public void bitSetFormStaysLive() throws Exception {
+        StateManagerImpl sm = newStateManager(mockBroker(false), mockMetaData(FIELDS));
+
+        BitSet loaded = sm.getLoaded();
+        assertSame(loaded, get(sm, "_loaded"));
+        assertEquals(1, loaded.cardinality());
+
+        sm.storeStringField(3, "value");
+        assertTrue(loaded.get(3));
+        assertTrue(sm.isLoaded(3));
+    }
+
+    @Test
+    public void dirtyAndFlushedStayCompact() throws Exception {
+        StateManagerImpl sm = newStateManager(mockBroker(false), mockMetaData(FIELDS));
+        assertFalse(sm.hasDirtyFields());
+
+        sm.setDirty(true);
+        assertTrue(sm.hasDirtyFields());
+        assertEquals(FIELDS, sm.copyDirty().cardinality());
+        assertTrue(sm.copyFlushed().isEmpty());
+
+        sm.setDirty(false);
+        assertFalse(sm.hasDirtyFields());
+        assertNull(get(sm, "_dirty"));
+        assertNull(get(sm, "_flush"));
+
+        // the BitSet form stays live once handed out
+        BitSet dirty = sm.getDirty();
+        sm.setDirty(true);
+        assertEquals(FIELDS, dirty.cardinality());
+        sm.setDirty(false);
+        assertTrue(dirty.isEmpty());
+    }
+
+    @Test
+    public void savepointRestoresCompactForm() throws Exception {
+        StateManagerImpl sm = newStateManager(mockBroker(false), mockMetaData(FIELDS));
+        sm.storeStringField(2, "value");
+        sm.getLoaded();
+        sm.getDirty();
+
+        SavepointFieldManager savepoint = Mockito.mock(SavepointFieldManager.class);
+        BitSet loaded = new BitSet();
+        loaded.set(0);
+        loaded.set(5);
+        BitSet dirty = new BitSet();
+        dirty.set(5);
+        Mockito.when(savepoint.getPCState()).thenReturn(PCState.TRANSIENT);
+        Mockito.when(savepoint.getLoaded()).thenReturn(loaded);
+        Mockito.when(savepoint.getDirty()).thenReturn(dirty);
+        Mockito.when(savepoint.getFlushed()).thenReturn(new BitSet());
+        sm.rollbackToSavepoint(savepoint);
+
+        assertNull(get(sm, "_loaded"));
+        assertNull(get(sm, "_dirty"));
+        assertTrue(sm.isLoaded(5));
+        assertFalse(sm.isLoaded(2));
+        assertEquals(dirty, sm.copyDirty());
+    }
+
+    @Test
+    public void extraFieldDataReleasedWhenEmpty() throws Exception {
+        StateManagerImpl sm = newStateManager(mockBroker(false), mockMetaData(FIELDS));
+
+        sm.setIntermediate(4, "a");
+        sm.setIntermediate(6, "b");
+        assertNotNull(get(sm, "_fieldImpl"));
+        sm.setIntermediate(4, null);
+        assertEquals("b", sm.getIntermediate(6));
+
+        // loading the last field with intermediate data releases the array
+        sm.storeStringField(6, "value");
+        assertNull(get(sm, "_fieldImpl"));
+    }
+
+    @Test
+    public void instanceLockCreatedOnFirstUse() throws Exception {
+        StateManagerImpl single = newStateManager(mockBroker(false), mockMetaData(FIELDS));
+        single.storeStringField(1, "value");
+        assertNull(get(single, "_instanceLock"));
+
+        StateManagerImpl multi = newStateManager(mockBroker(true), mockMetaData(FIELDS));
+        assertNull(get(multi, "_instanceLock"));
+        multi.storeStringField(1, "value");
+        assertNotNull(get(multi, "_instanceLock"));
+    }
+
+    @Test
+    public void masksUpToSixtyFourFields() throws Exception {
+        StateManagerImpl sm = newStateManager(mockBroker(false), mockMetaData(Long.SIZE));
+        sm.storeStringField(Long.SIZE - 1, "value");
+        assertTrue(sm.isLoaded(Long.SIZE - 1));
+        assertFalse(sm.isLoaded(Long.SIZE - 2));
+        assertNull(get(sm, "_loaded"));
+
+        sm = newStateManager(mockBroker(false), mockMetaData(Long.SIZE + 1));
+        sm.storeStringField(Long.SIZE, "value");
+        assertTrue(sm.isLoaded(Long.SIZE));
+        assertTrue(((BitSet) get(sm, "_loaded")).get(Long.SIZE));
+    }
+
+    @Test
+    public void bitSetsCreatedOnFirstWrite() throws Exception {
+        StateManagerImpl sm = newStateManager(mockBroker(false), mockMetaData(MANY_FIELDS),
+            PCState.PCLEAN);
+        assertNull(get(sm, "_dirty"));
+        assertNull(get(sm, "_flush"));
+        assertFalse(sm.hasDirtyFields());
+        assertTrue(sm.copyFlushed().isEmpty());
+
+        // loading a field beyond the first 64 sets its bit
+        sm.storeStringField(MANY_FIELDS - 1, "value");
+        assertTrue(sm.isLoaded(MANY_FIELDS - 1));
+        assertTrue(sm.getLoaded().get(MANY_FIELDS - 1));
+
+        // the first dirty field creates the dirty set only
+        sm.setDirty(true);
+        BitSet dirty = (BitSet) get(sm, "_dirty");
+        assertNotNull(dirty);
+        assertEquals(MANY_FIELDS, dirty.cardinality());
+        assertNull(get(sm, "_flush"));
+
+        // the first flush creates the flushed set from the dirty fields
+        sm.afterFlush(BrokerImpl.FLUSH_COMMIT);
+        BitSet flushed = (BitSet) get(sm, "_flush");
+        assertNotNull(flushed);
+        assertEquals(dirty, flushed);
+        assertNotSame(dirty, flushed);
+
+        // cleaning clears both sets in place
+        sm.setDirty(false);
+        assertSame(dirty, get(sm, "_dirty"));
+        assertTrue(dirty.isEmpty());
+        assertTrue(flushed.isEmpty());
+        assertFalse(sm.hasDirtyFields());
+    }
+
+    @Test
+    public void flushOfCompactDirtyFields() throws Exception {
+        StateManagerImpl sm = newStateManager(mockBroker(false), mockMetaData(FIELDS),
+            PCState.PCLEAN);
+
+        // a flush with no dirty fields sets no flushed field
+        sm.afterFlush(BrokerImpl.FLUSH_COMMIT);
+        assertTrue(sm.copyFlushed().isEmpty());
+        assertNull(get(sm, "_flush"));
+
+        sm.setDirty(true);
+        sm.afterFlush(BrokerImpl.FLUSH_COMMIT);
+        assertEquals(FIELDS, sm.copyFlushed().cardinality());
+        assertNull(get(sm, "_dirty"));
+        assertNull(get(sm, "_flush"));
+
+        // a dirty set handed out before the flush still reaches the mask
+        sm.setDirty(false);
+        BitSet dirty = sm.getDirty();
+        dirty.set(3);
+        sm.afterFlush(BrokerImpl.FLUSH_COMMIT);
+        assertNull(get(sm, "_flush"));
+        assertEquals(dirty, sm.copyFlushed());
+
+        // and a flushed set handed out before receives the dirty fields
+        BitSet flushed = sm.getFlushed();
+        dirty.set(7);
+        sm.afterFlush(BrokerImpl.FLUSH_COMMIT);
+        assertTrue(flushed.get(3));
+        assertTrue(flushed.get(7));
+        assertEquals(2, flushed.cardinality());
+    }
+
+    @Test
+    public void bytesPerManagedInstance() throws Exception {
+        // stub-only mocks do not record invocations, which would otherwise
+        // dominate the measured heap
+        OpenJPAConfiguration conf = Mockito.mock(OpenJPAConfiguration.class,
+            Mockito.withSettings().stubOnly());
+        Mockito.when(conf.getCompatibilityInstance()).thenReturn(new Compatibility());
+        BrokerImpl broker = Mockito.mock(BrokerImpl.class, Mockito.withSettings().stubOnly());
+        Mockito.when(broker.getConfiguration()).thenReturn(conf);
+        ClassMetaData meta = Mockito.mock(ClassMetaData.class, Mockito.withSettings().stubOnly());
+        Mockito.when(meta.getIdentityType()).thenReturn(ClassMetaData.ID_APPLICATION);
+        Mockito.when(meta.getFields()).thenReturn(new FieldMetaData[FIELDS]);
+        Mockito.when(meta.getPkAndNonPersistentManagedFmdIndexes()).thenReturn(new int[]{ 0 });
+        Mockito.when(meta.isIntercepting()).thenReturn(true);
+        PersistenceCapable pc = Mockito.mock(PersistenceCapable.class,
+            Mockito.withSettings().stubOnly());
+        Field single = StateManagerImpl.class.getDeclaredField("_single");
+        single.setAccessible(true);
+
+        StateManagerImpl[] sms = new StateManagerImpl[INSTANCES];
+        long base = usedMemory();
+        for (int i = 0; i < sms.length; i++) {
+            sms[i] = new StateManagerImpl(null, meta, broker);
+            sms[i].initialize(pc, PCState.TRANSIENT);
+        }
+        long after = usedMemory();
+
+        for (StateManagerImpl sm : sms) {
+            sm.getLoaded();
+            single.set(sm, new SingleFieldManager(sm, broker));
+        }
+        long before = usedMemory();
+
+        long bytesBefore = (before - base) / INSTANCES;
+        long bytesAfter = (after - base) / INSTANCES;
+        System.out.println("StateManagerImpl with " + FIELDS + " fields: "
+            + bytesBefore + " bytes per managed instance before, "
+            + bytesAfter + " bytes after");
+        assertEquals(INSTANCES, sms.length);
+        assertTrue(bytesAfter < bytesBefore);
+    }
+
+    private static StateManagerImpl newStateManager(BrokerImpl broker, ClassMetaData meta) {
+        return newStateManager(broker, meta, PCState.TRANSIENT);
+    }
+
+    private static StateManagerImpl newStateManager(BrokerImpl broker, ClassMetaData meta,
+        PCState state) {
+        StateManagerImpl sm = new StateManagerImpl(null, meta, broker);
+        sm.initialize(Mockito.mock(PersistenceCapable.class), state);
+        return sm;
+    }
+
+    private static BrokerImpl mockBroker(boolean multithreaded) {
+        OpenJPAConfiguration conf = Mockito.mock(OpenJPAConfiguration.class);
+        Mockito.when(conf.getCompatibilityInstance()).thenReturn(new Compatibility());
+        Mockito.when(conf.getCallbackOptionsInstance()).thenReturn(new CallbackOptions());
+        BrokerImpl broker = Mockito.mock(BrokerImpl.class);
+        Mockito.when(broker.getMultithreaded()).thenReturn(multithreaded);
+        Mockito.when(broker.getConfiguration()).thenReturn(conf);
+        Mockito.when(broker.getStoreManager()).thenReturn(Mockito.mock(DelegatingStoreManager.class));
+        return broker;
+    }
+
+    private static ClassMetaData mockMetaData(int fields) {
+        ClassMetaData meta = Mockito.mock(ClassMetaData.class);
+        FieldMetaData[] fmds = new FieldMetaData[fields];
+        for (int i = 0; i < fields; i++) {
+            fmds[i] = Mockito.mock(FieldMetaData.class);
+            Mockito.when(fmds[i].getIndex()).thenReturn(i);
+            Mockito.when(fmds[i].getDeclaredTypeCode()).thenReturn(JavaTypes.STRING);
+            Mockito.when(fmds[i].getUpdateStrategy()).thenReturn(UpdateStrategies.NONE);
+            Mockito.when(meta.getField(i)).thenReturn(fmds[i]);
+            Mockito.when(meta.getExtraFieldDataIndex(i)).thenReturn(i);
+        }
+        Mockito.when(meta.getIdentityType()).thenReturn(ClassMetaData.ID_APPLICATION);
+        Mockito.when(meta.getFields()).thenReturn(fmds);
+        Mockito.when(meta.getExtraFieldDataLength()).thenReturn(fields);
+        Mockito.when(meta.getPkAndNonPersistentManagedFmdIndexes()).thenReturn(new int[]{ 0 });
+        Mockito.when(meta.isIntercepting()).thenReturn(true);
+        return meta;
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static Object get(StateManagerImpl sm, String name) throws Exception {
+        Field field = StateManagerImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(sm);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.conf.CallbackOptions;
+import org.apache.openjpa.conf.Compatibility;
+import org.apache.openjpa.conf.DetachOptions;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.rop.BatchedResultObjectProvider;
+import org.apache.openjpa.lib.rop.ListResultObjectProvider;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.meta.UpdateStrategies;
+import org.apache.openjpa.meta.ValueMetaData;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.Proxy;
+import org.apache.openjpa.util.ProxyManagerImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+
+/*
+ * Reads query results with the stateless hint. The instances loaded for a
+ * result keep plain collection and date values instead of proxies, and are
+ * detached in place once the result has been read, so that the persistence
+ * context stays empty. The result sets of a batched provider, as returned
+ * by stored procedures, are released the same way as a single result.
+ */
+public class StatelessQueryResultTest {
+
+    private static final int PK = 0;
+    private static final int DATE = 1;
+    private static final int LIST = 2;
+
+    // the entity type of the loaded instances
+    abstract static class Entity implements PersistenceCapable {
+    }
+
+    private OpenJPAConfiguration conf;
+    private ClassMetaData meta;
+
+    @Before
+    public void setUp() {
+        conf = Mockito.mock(OpenJPAConfiguration.class);
+        Mockito.when(conf.getCompatibilityInstance()).thenReturn(new Compatibility());
+        Mockito.when(conf.getCallbackOptionsInstance()).thenReturn(new CallbackOptions());
+        Mockito.when(conf.getProxyManagerInstance()).thenReturn(new ProxyManagerImpl());
+        Mockito.when(conf.getDetachStateInstance()).thenReturn(new DetachOptions.Loaded());
+        Mockito.when(conf.getLog(anyString())).thenReturn(Mockito.mock(Log.class));
+
+        FieldMetaData pk = field(PK, JavaTypes.LONG, long.class);
+        FieldMetaData date = field(DATE, JavaTypes.DATE, Date.class);
+        FieldMetaData list = field(LIST, JavaTypes.COLLECTION, List.class);
+        Mockito.when(list.getProxyType()).thenReturn((Class) ArrayList.class);
+        ValueMetaData elem = Mockito.mock(ValueMetaData.class);
+        Mockito.when(elem.getDeclaredType()).thenReturn((Class) String.class);
+        Mockito.when(list.getElement()).thenReturn(elem);
+
+        meta = Mockito.mock(ClassMetaData.class);
+        FieldMetaData[] fmds = { pk, date, list };
+        for (FieldMetaData fmd : fmds)
+            Mockito.when(meta.getField(fmd.getIndex())).thenReturn(fmd);
+        Mockito.when(meta.getDescribedType()).thenReturn((Class) Entity.class);
+        Mockito.when(meta.getIdentityType()).thenReturn(ClassMetaData.ID_APPLICATION);
+        Mockito.when(meta.getFields()).thenReturn(fmds);
+        Mockito.when(meta.getProxyFields()).thenReturn(new FieldMetaData[]{ date, list });
+        Mockito.when(meta.getPkAndNonPersistentManagedFmdIndexes()).thenReturn(new int[]{ PK });
+        Mockito.when(meta.isIntercepting()).thenReturn(true);
+        Mockito.when(meta.isDetachable()).thenReturn(true);
+    }
+
+    @Test
+    public void secondClassValuesNotProxied() throws Exception {
+        BrokerImpl broker = newBroker();
+        Date date = new Date();
+        List<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+
+        Object[] stateless = load(broker, 1, true, date, list);
+        assertSame(date, stateless[DATE]);
+        assertSame(list, stateless[LIST]);
+
+        Object[] managed = load(broker, 2, false, date, list);
+        assertTrue(managed[DATE] instanceof Proxy);
+        assertTrue(managed[LIST] instanceof Proxy);
+        assertEquals(list, managed[LIST]);
+    }
+
+    @Test
+    public void readResultsDetachedAndReleased() throws Exception {
+        BrokerImpl broker = newBroker();
+        ManagedCache cache = (ManagedCache) get(broker, "_cache");
+        List<PersistenceCapable> pcs = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            StateManagerImpl sm = newStateManager(broker, id, true);
+            sm.storeObjectField(DATE, new Date());
+            sm.storeObjectField(LIST, new ArrayList<>());
+            addResultState(broker, sm);
+            pcs.add(sm.getPersistenceCapable());
+        }
+        StateManagerImpl managed = newStateManager(broker, 4, false);
+        assertEquals(4, cache.copy().size());
+
+        broker.releaseResultStates();
+
+        // only the instance loaded without the hint stays managed
+        assertEquals(Arrays.asList(managed), new ArrayList<>(cache.copy()));
+        for (PersistenceCapable pc : pcs)
+            Mockito.verify(pc).pcReplaceStateManager(null);
+        Mockito.verify(managed.getPersistenceCapable(), Mockito.never())
+            .pcReplaceStateManager(null);
+
+        // a second release has nothing left to do
+        broker.releaseResultStates();
+        assertEquals(1, cache.copy().size());
+    }
+
+    @Test
+    public void batchedResultSetsReleased() throws Exception {
+        BrokerImpl broker = Mockito.mock(BrokerImpl.class);
+        Mockito.when(broker.getConfiguration()).thenReturn(conf);
+        Mockito.when(broker.getFetchConfiguration()).thenReturn(new FetchConfigurationImpl());
+        StoreQuery sq = Mockito.mock(StoreQuery.class);
+        StoreQuery.Executor ex = Mockito.mock(StoreQuery.Executor.class);
+        Mockito.when(ex.getProjectionAliases(sq)).thenReturn(new String[0]);
+        Mockito.when(ex.isPacking(sq)).thenReturn(true);
+
+        QueryImpl q = new QueryImpl(broker, "test", sq);
+        q.getFetchConfiguration().setHint(QueryHints.HINT_STATELESS, true);
+        BatchedResultObjectProvider batch = Mockito.mock(BatchedResultObjectProvider.class);
+        Mockito.when(batch.getResultObject()).thenAnswer(inv ->
+            new ListResultObjectProvider(Arrays.asList("a", "b", "c")));
+
+        Object res = q.toResult(sq, ex, batch, new StoreQuery.Range());
+        assertTrue(res instanceof QueryResultCallback);
+        Mockito.verify(broker, Mockito.never()).releaseResultStates();
+
+        List<?> list = (List<?>) ((QueryResultCallback) res).callback();
+        assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(list));
+        Mockito.verify(broker, Mockito.atLeast(3)).releaseResultStates();
+
+        // without the hint the result states stay with the broker
+        broker = Mockito.mock(BrokerImpl.class);
+        Mockito.when(broker.getConfiguration()).thenReturn(conf);
+        Mockito.when(broker.getFetchConfiguration()).thenReturn(new FetchConfigurationImpl());
+        q = new QueryImpl(broker, "test", sq);
+        res = q.toResult(sq, ex, batch, new StoreQuery.Range());
+        assertEquals(new ArrayList<>(list), new ArrayList<>((List<?>)
+            ((QueryResultCallback) res).callback()));
+        Mockito.verify(broker, Mockito.never()).releaseResultStates();
+    }
+
+    /**
+     * Load the date and list fields of a new instance, returning the values
+     * its fields were replaced with.
+     */
+    private Object[] load(BrokerImpl broker, long id, boolean stateless,
+        Date date, List<String> list) {
+        StateManagerImpl sm = newStateManager(broker, id, stateless);
+        Object[] values = new Object[3];
+        Mockito.doAnswer(inv -> {
+            int field = inv.getArgument(0);
+            values[field] = sm.replaceObjectField(sm.getPersistenceCapable(), field);
+            return null;
+        }).when(sm.getPersistenceCapable()).pcReplaceField(anyInt());
+        sm.storeObjectField(DATE, date);
+        sm.storeObjectField(LIST, list);
+        return values;
+    }
+
+    private StateManagerImpl newStateManager(BrokerImpl broker, long id,
+        boolean stateless) {
+        Object oid = new LongId(Entity.class, id);
+        StateManagerImpl sm = new StateManagerImpl(oid, meta, broker);
+        sm.setObjectId(oid);
+        if (stateless)
+            sm.setStateless();
+        sm.initialize(Mockito.mock(Entity.class), PCState.PNONTRANS);
+        return sm;
+    }
+
+    /**
+     * A broker that runs its own cache and release code, without a store.
+     */
+    private BrokerImpl newBroker() throws Exception {
+        BrokerImpl broker = Mockito.spy(new BrokerImpl());
+        Mockito.doReturn(conf).when(broker).getConfiguration();
+        Mockito.doReturn(Mockito.mock(DelegatingStoreManager.class))
+            .when(broker).getStoreManager();
+        Mockito.doReturn(null).when(broker).getInverseManager();
+        set(broker, "_conf", conf);
+        set(broker, "_compat", new Compatibility());
+        set(broker, "_cache", new ManagedCache(broker));
+        return broker;
+    }
+
+    private static void addResultState(BrokerImpl broker, StateManagerImpl sm)
+        throws Exception {
+        Method add = BrokerImpl.class.getDeclaredMethod("addResultState",
+            StateManagerImpl.class);
+        add.setAccessible(true);
+        add.invoke(broker, sm);
+    }
+
+    private static FieldMetaData field(int index, int type, Class<?> cls) {
+        FieldMetaData fmd = Mockito.mock(FieldMetaData.class);
+        Mockito.when(fmd.getIndex()).thenReturn(index);
+        Mockito.when(fmd.getDeclaredTypeCode()).thenReturn(type);
+        Mockito.when(fmd.getDeclaredType()).thenReturn((Class) cls);
+        Mockito.when(fmd.getUpdateStrategy()).thenReturn(UpdateStrategies.NONE);
+        Mockito.when(fmd.order(any())).thenAnswer(inv -> inv.getArgument(0));
+        return fmd;
+    }
+
+    private static Object get(Object o, String name) throws Exception {
+        Field field = BrokerImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(o);
+    }
+
+    private static void set(Object o, String name, Object value)
+        throws Exception {
+        Field field = BrokerImpl.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(o, value);
+    }
+}
@@ -248,4 +248,22 @@ public interface JDBCFetchPlan
      * @since 2.2.0
      */
     void setIgnoreDfgForFkSelect(boolean b);
+
+    /**
+     * Affirms if rows that are locked by another transaction are skipped
+     * rather than waited for when the query locks the rows it selects.
+     *
+     * @since 3.2.3
+     */
+    boolean getSkipLocked();
+
+    /**
+     * Sets whether rows that are locked by another transaction are skipped
+     * rather than waited for when the query locks the rows it selects.
+     * Combined with a pessimistic lock mode and a maximum result count, this
+     * lets concurrent consumers each dequeue a different set of rows.
+     *
+     * @since 3.2.3
+     */
+    JDBCFetchPlan setSkipLocked(boolean skip);
 }
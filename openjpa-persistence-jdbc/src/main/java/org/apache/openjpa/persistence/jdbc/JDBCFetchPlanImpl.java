@@ -371,4 +371,15 @@ public class JDBCFetchPlanImpl
     public void setIgnoreDfgForFkSelect(boolean b) {
         _fetch.setIgnoreDfgForFkSelect(b);
     }
+
+    @Override
+    public boolean getSkipLocked() {
+        return _fetch.getSkipLocked();
+    }
+
+    @Override
+    public JDBCFetchPlan setSkipLocked(boolean skip) {
+        _fetch.setSkipLocked(skip);
+        return this;
+    }
 }
@@ -69,6 +69,7 @@ import org.apache.openjpa.kernel.DataCacheRetrieveMode;
 import org.apache.openjpa.kernel.DataCacheStoreMode;
 import org.apache.openjpa.kernel.DelegatingBroker;
 import org.apache.openjpa.kernel.FetchConfiguration;
+import org.apache.openjpa.kernel.Filters;
 import org.apache.openjpa.kernel.FindCallbacks;
 import org.apache.openjpa.kernel.OpCallbacks;
 import org.apache.openjpa.kernel.OpenJPAStateManager;
@@ -78,6 +79,7 @@ import org.apache.openjpa.kernel.QueryFlushModes;
 import org.apache.openjpa.kernel.QueryLanguages;
 import org.apache.openjpa.kernel.Seq;
 import org.apache.openjpa.kernel.jpql.JPQLParser;
+import org.apache.openjpa.kernel.jpql.LiteralParameterizer;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Closeable;
 import org.apache.openjpa.lib.util.Localizer;
@@ -1177,24 +1179,74 @@ public class EntityManagerImpl
             if (query != null && _convertPositionalParams && JPQLParser.LANG_JPQL.equals(language)) {
                 query = query.replaceAll("[\\?]", "\\:_");
             }
-            String qid = query;
-            PreparedQuery pq = JPQLParser.LANG_JPQL.equals(language)
-                ? getPreparedQuery(qid) : null;
-            org.apache.openjpa.kernel.Query q = (pq == null || !pq.isInitialized())
-                ? _broker.newQuery(language, query)
-                : _broker.newQuery(pq.getLanguage(), pq);
-            // have to validate JPQL according to spec
-            if (pq == null && JPQLParser.LANG_JPQL.equals(language))
-                q.compile();
-            if (pq != null) {
-                pq.setInto(q);
+            if (JPQLParser.LANG_JPQL.equals(language)) {
+                OpenJPAQuery q = createParameterizedQuery(query);
+                if (q != null)
+                    return q;
             }
-            return newQueryImpl(q, null).setId(qid);
+            return newQuery(language, query);
         } catch (RuntimeException re) {
             throw PersistenceExceptions.toPersistenceException(re);
         }
     }
 
+    /**
+     * Creates a query for the given query string, using the prepared query
+     * cached by that string if any.
+     */
+    private QueryImpl<?> newQuery(String language, String query) {
+        String qid = query;
+        PreparedQuery pq = JPQLParser.LANG_JPQL.equals(language)
+            ? getPreparedQuery(qid) : null;
+        org.apache.openjpa.kernel.Query q = (pq == null || !pq.isInitialized())
+            ? _broker.newQuery(language, query)
+            : _broker.newQuery(pq.getLanguage(), pq);
+        // have to validate JPQL according to spec
+        if (pq == null && JPQLParser.LANG_JPQL.equals(language))
+            q.compile();
+        if (pq != null) {
+            pq.setInto(q);
+        }
+        return newQueryImpl(q, null).setId(qid);
+    }
+
+    /**
+     * Creates a query for the given JPQL string with its literals replaced
+     * by synthetic parameters bound to the literal values, if the prepared
+     * query cache is configured to do so.
+     *
+     * @return the query, or null if the literals of the given string are
+     * not or can not be replaced, in which case the original string is to
+     * be used
+     */
+    private OpenJPAQuery createParameterizedQuery(String query) {
+        PreparedQueryCache cache = getPreparedQueryCache();
+        if (cache == null || !cache.getAutoParameterize())
+            return null;
+        LiteralParameterizer parameterized = LiteralParameterizer.parameterize(query);
+        if (parameterized == null)
+            return null;
+        try {
+            QueryImpl<?> q = newQuery(JPQLParser.LANG_JPQL, parameterized.getQueryString())
+                .setLiteralQuery(query);
+            for (Map.Entry<String, Object> param : parameterized.getParameters().entrySet()) {
+                Class<?> type = q.getParameter(param.getKey()).getParameterType();
+                if (!LiteralParameterizer.isAssignable(param.getValue(), type))
+                    return null;
+                q.setParameter(param.getKey(), (type == null) ? param.getValue()
+                    : Filters.convert(param.getValue(), type));
+            }
+            return q;
+        } catch (RuntimeException re) {
+            // the replaced literals do not fit the query, fall back to the
+            // original string
+            Log log = getConfiguration().getLog(OpenJPAConfiguration.LOG_QUERY);
+            if (log.isTraceEnabled())
+                log.trace(_loc.get("auto-param-failed", query, re.getMessage()));
+            return null;
+        }
+    }
+
     @Override
     public OpenJPAQuery createQuery(Query query) {
         if (query == null)
@@ -1917,14 +1969,22 @@ public class EntityManagerImpl
     /**
      * Create a query from the given CritriaQuery.
      * Compile to register the parameters in this query.
+     * The query is identified by the {@linkplain OpenJPACriteriaQuery#getFingerprint() fingerprint} of its
+     * structure, so that a query that is rebuilt with the same structure reuses the prepared query cached for it.
      */
     @Override
     public <T> TypedQuery<T> createQuery(CriteriaQuery<T> criteriaQuery) {
-        ((OpenJPACriteriaQuery<T>)criteriaQuery).compile();
+        OpenJPACriteriaQuery<T> criteria = ((OpenJPACriteriaQuery<T>)criteriaQuery).compile();
+        String qid = criteria.getFingerprint();
+        PreparedQuery pq = hasNamedParameters(criteria) ? getPreparedQuery(qid) : null;
 
-        org.apache.openjpa.kernel.Query kernelQuery =_broker.newQuery(OpenJPACriteriaBuilder.LANG_CRITERIA, criteriaQuery);
+        org.apache.openjpa.kernel.Query kernelQuery = (pq == null || !pq.isInitialized())
+            ? _broker.newQuery(OpenJPACriteriaBuilder.LANG_CRITERIA, criteriaQuery)
+            : _broker.newQuery(pq.getLanguage(), pq);
+        if (pq != null && pq.isInitialized())
+            pq.setInto(kernelQuery);
 
-        QueryImpl<T> facadeQuery = newQueryImpl(kernelQuery, null).setId(criteriaQuery.toString());
+        QueryImpl<T> facadeQuery = newQueryImpl(kernelQuery, null).setId(qid).setCriteria(criteria);
         Set<ParameterExpression<?>> params = criteriaQuery.getParameters();
 
         for (ParameterExpression<?> param : params) {
@@ -1933,6 +1993,18 @@ public class EntityManagerImpl
         return facadeQuery;
     }
 
+    /**
+     * Affirms if all the parameters of the given query are named. The prepared query of a criteria query is
+     * parameterized by name, so only such queries can be re-parameterized from their parameter expressions.
+     */
+    private static boolean hasNamedParameters(CriteriaQuery<?> criteriaQuery) {
+        for (ParameterExpression<?> param : criteriaQuery.getParameters()) {
+            if (param.getName() == null)
+                return false;
+        }
+        return true;
+    }
+
     @Override
     public Query createQuery(CriteriaUpdate updateQuery) {
         throw new UnsupportedOperationException("JPA 2.1");
@@ -175,6 +175,9 @@ public class HintHandler  {
         } else if (QueryHints.HINT_IGNORE_PREPARED_QUERY.equals(key)) {
             plan.setHint(key, Filters.convert(value, Boolean.class));
             owner.ignorePreparedQuery();
+        } else if (QueryHints.HINT_STATELESS.equals(key)
+            || QueryHints.HINT_EVICT_CONSUMED.equals(key)) {
+            plan.setHint(key, Filters.convert(value, Boolean.class));
         } else if (QueryHints.HINT_USE_LITERAL_IN_SQL.equals(key)) {
             Boolean convertedValue = (Boolean)Filters.convert(value, Boolean.class);
             plan.setHint(key, convertedValue);
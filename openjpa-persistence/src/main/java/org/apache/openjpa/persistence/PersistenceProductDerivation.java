@@ -148,6 +148,8 @@ public class PersistenceProductDerivation
         _hints.add(QueryHints.HINT_SUBCLASSES);
         _hints.add(QueryHints.HINT_RELAX_BIND_PARAM_TYPE_CHECK);
         _hints.add(QueryHints.HINT_USE_LITERAL_IN_SQL);
+        _hints.add(QueryHints.HINT_STATELESS);
+        _hints.add(QueryHints.HINT_EVICT_CONSUMED);
 
         _hints = Collections.unmodifiableSet(_hints);
     }
@@ -23,15 +23,21 @@ import static org.apache.openjpa.kernel.QueryLanguages.LANG_PREPARED_SQL;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.FlushModeType;
 import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
+import javax.persistence.Parameter;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
@@ -51,12 +57,14 @@ import org.apache.openjpa.kernel.QueryStatistics;
 import org.apache.openjpa.kernel.exps.AggregateListener;
 import org.apache.openjpa.kernel.exps.FilterListener;
 import org.apache.openjpa.kernel.jpql.JPQLParser;
+import org.apache.openjpa.kernel.jpql.LiteralParameterizer;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.rop.ResultList;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.OrderedMap;
 import org.apache.openjpa.meta.QueryMetaData;
 import org.apache.openjpa.persistence.criteria.OpenJPACriteriaBuilder;
+import org.apache.openjpa.persistence.criteria.OpenJPACriteriaQuery;
 import org.apache.openjpa.util.ImplHelper;
 import org.apache.openjpa.util.RuntimeExceptionTranslator;
 import org.apache.openjpa.util.UserException;
@@ -71,9 +79,18 @@ import org.apache.openjpa.util.UserException;
 public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final Localizer _loc = Localizer.forPackage(QueryImpl.class);
+
+    /**
+     * Number of rows fetched at a time by {@link #getResultStream} when the
+     * fetch plan does not set a fetch batch size.
+     */
+    public static final int STREAM_FETCH_SIZE = 1000;
+
 	private transient FetchPlan _fetch;
 
 	private String _id;
+    private String _literalQuery;
+    private transient OpenJPACriteriaQuery<?> _criteria;
     private transient ReentrantLock _lock = null;
 	private HintHandler _hintHandler;
     private DelegatingQuery _query;
@@ -159,6 +176,8 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
 
 	@Override
     public String getQueryString() {
+        if (_literalQuery != null)
+            return _literalQuery;
 		String result = _query.getQueryString();
 		return result != null ? result : _id;
 	}
@@ -358,6 +377,48 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
 		}
 	}
 
+    /**
+     * Stream the results through a single forward-only cursor instead of
+     * reading them into a list first. The rows are fetched in batches of
+     * the fetch plan's fetch batch size, or of {@link #STREAM_FETCH_SIZE}
+     * if the plan reads all rows at once. The instances stay managed
+     * unless the {@link QueryHints#HINT_EVICT_CONSUMED} hint is set, in
+     * which case each instance is detached once the stream has moved past
+     * it, unless it was changed or locked in the meantime. Closing the
+     * stream closes the cursor.
+     *
+     * @see QueryHints#HINT_EVICT_CONSUMED
+     * @since 3.2.3
+     */
+    @Override
+    public Stream<X> getResultStream() {
+        _em.assertNotCloseInvoked();
+        // distinct results are filtered in memory anyway
+        if (_query.isDistinct())
+            return getResultList().stream();
+
+        FetchConfiguration fetch = _query.getFetchConfiguration();
+        int batch = fetch.getFetchBatchSize();
+        boolean queryFetchPlanUsed = pushQueryFetchPlan();
+        Object ob;
+        try {
+            if (batch < 0)
+                fetch.setFetchBatchSize(STREAM_FETCH_SIZE);
+            ob = execute();
+        } finally {
+            fetch.setFetchBatchSize(batch);
+            popQueryFetchPlan(queryFetchPlanUsed);
+        }
+
+        if (!(ob instanceof ResultList))
+            return (ob instanceof List) ? ((List<X>) ob).stream()
+                : Stream.of((X) ob);
+        final ResultList<X> res = new DelegatingResultList<>((ResultList<X>) ob,
+            PersistenceExceptions.getRollbackTranslator(_em));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            res.iterator(), Spliterator.ORDERED), false).onClose(res::close);
+    }
+
 	private boolean pushQueryFetchPlan() {
 		boolean fcPushed = false;
 		if (_hintHandler != null) {
@@ -589,7 +650,8 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
             PreparedQuery pq = _em.getPreparedQuery(_id);
             if (pq.isInitialized()) {
                 try {
-                    Map rep = pq.reparametrize(params, _em.getBroker());
+                    Map rep = pq.reparametrize(_criteria == null ? params : toNamedParameters(params),
+                        _em.getBroker());
                     params.clear();
                     params.putAll(rep);
                 } catch (UserException ue) {
@@ -602,7 +664,7 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
             }
             stats.recordExecution(pq.getOriginalQuery());
         } else {
-            stats.recordExecution(getQueryString());
+            stats.recordExecution(_literalQuery == null ? getQueryString() : _id);
         }
         return registered == Boolean.TRUE;
     }
@@ -642,13 +704,18 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
         if (cached == null)
             return;
         Broker broker = _em.getBroker();
-        // Critical assumption: Only JPQL queries are cached and more
-        // importantly, the identifier of the prepared query is the original
-        // JPQL String
-        String JPQL = JPQLParser.LANG_JPQL;
-        String jpql = _id;
-
-        org.apache.openjpa.kernel.Query newQuery = broker.newQuery(JPQL, jpql);
+        // Critical assumption: Only JPQL and Criteria queries are cached and
+        // more importantly, the identifier of the prepared query is the
+        // original JPQL String unless the query was built from a criteria
+        // query, which is then recreated from the criteria query itself
+        org.apache.openjpa.kernel.Query newQuery;
+        if (_criteria != null) {
+            newQuery = broker.newQuery(OpenJPACriteriaBuilder.LANG_CRITERIA, _criteria);
+        } else {
+            String JPQL = JPQLParser.LANG_JPQL;
+            String jpql = _id;
+            newQuery = broker.newQuery(JPQL, jpql);
+        }
         newQuery.getFetchConfiguration().copy(_query.getFetchConfiguration());
         newQuery.compile();
         _query = new DelegatingQuery(newQuery, _em.getExceptionTranslator());
@@ -659,6 +726,73 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
         _id = id;
         return this;
     }
+
+    /**
+     * Sets the criteria query this query has been created from.
+     */
+    QueryImpl<X> setCriteria(OpenJPACriteriaQuery<?> criteria) {
+        _criteria = criteria;
+        return this;
+    }
+
+    /**
+     * Sets the original string of a query whose literals have been replaced
+     * by synthetic parameters. The query reports the original string, and
+     * hides the synthetic parameters from the parameters of the user.
+     */
+    QueryImpl<X> setLiteralQuery(String query) {
+        _literalQuery = query;
+        return this;
+    }
+
+    /**
+     * Affirms if the given parameter is a synthetic parameter bound to a
+     * literal of the original string of this query.
+     */
+    private boolean isLiteralParameter(Parameter<?> param) {
+        return _literalQuery != null && param.getName() != null
+            && param.getName().startsWith(LiteralParameterizer.PARAMETER_PREFIX);
+    }
+
+    @Override
+    public Set<Parameter<?>> getParameters() {
+        Set<Parameter<?>> result = super.getParameters();
+        result.removeIf(this::isLiteralParameter);
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getNamedParameters() {
+        Map<String, Object> result = super.getNamedParameters();
+        if (_literalQuery != null)
+            result.keySet().removeIf(name -> name.startsWith(LiteralParameterizer.PARAMETER_PREFIX));
+        return result;
+    }
+
+    /**
+     * Clears the values bound by the user, but keeps the values of the
+     * synthetic parameters.
+     */
+    @Override
+    void clearBinding() {
+        if (_literalQuery == null)
+            super.clearBinding();
+        else
+            _boundParams.keySet().removeIf(param -> !isLiteralParameter(param));
+    }
+
+    /**
+     * Gets the given parameter values of a criteria query keyed by the names of their parameter expressions,
+     * which are the keys of the parameters of its prepared query.
+     */
+    private static Map<Object, Object> toNamedParameters(Map<?, ?> params) {
+        Map<Object, Object> named = new HashMap<>();
+        for (Map.Entry<?, ?> entry : params.entrySet()) {
+            Object key = entry.getKey();
+            named.put(key instanceof Parameter ? ((Parameter<?>) key).getName() : key, entry.getValue());
+        }
+        return named;
+    }
     // ================ End of Prepared Query related methods =====================
 
     @Override
@@ -772,6 +772,28 @@ class CriteriaQueryImpl<T> implements OpenJPACriteriaQuery<T>, AliasContext {
         }
     }
 
+    /**
+     * Gets the JPQL-like string of this query followed by its result type and
+     * the names and types of its parameters. The string does not include the
+     * values of the parameters, so rebuilding the same query for other values
+     * yields the same fingerprint.
+     */
+    @Override
+    public String getFingerprint() {
+        StringBuilder buffer = new StringBuilder(toCQL());
+        if (_resultClass != null)
+            buffer.append(" RESULT ").append(_resultClass.getName());
+        if (!_params.isEmpty()) {
+            buffer.append(" PARAMETERS");
+            for (Map.Entry<Object, Class<?>> entry : _params.entrySet()) {
+                String name = ((ParameterExpression<?>) entry.getKey()).getName();
+                buffer.append(' ').append(name == null ? "?" : name)
+                    .append(':').append(entry.getValue().getName());
+            }
+        }
+        return buffer.toString();
+    }
+
     /**
      * Returns a JPQL-like string, if this receiver is populated. Otherwise
      * returns <code>Object.toString()</code>.
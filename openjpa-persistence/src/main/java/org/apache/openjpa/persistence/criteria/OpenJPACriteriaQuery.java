@@ -43,5 +43,15 @@ public interface OpenJPACriteriaQuery<T> extends CriteriaQuery<T> {
      * @return the same instance compiled.
      */
     OpenJPACriteriaQuery<T> compile();
+
+    /**
+     * Gets a string that identifies the structure of this query, i.e. that
+     * is the same for two queries if and only if they differ in the values
+     * bound to their parameters at most. The query must be compiled.
+     *
+     * @return a string identifying the structure of this query.
+     * @since 3.2.3
+     */
+    String getFingerprint();
 }
 
@@ -72,6 +72,18 @@ public abstract class AbstractOpenJpaEnhancerMojo extends AbstractOpenJpaMojo {
      */
     private static final String OPTION_USE_TEMP_CLASSLOADER = "tcl";
 
+    /**
+     * Whether to write the proxy classes for the collection, map, date and
+     * calendar fields of the enhanced entities beside them, so that OpenJPA
+     * does not need to generate those proxies at runtime.
+     */
+    @Parameter(defaultValue="false")
+    protected boolean generateProxies;
+    /**
+     * used for passing the generateProxies parameter to the enhancer tool
+     */
+    private static final String OPTION_GENERATE_PROXIES = "generateProxies";
+
 
     /**
      * {@inheritDoc}
@@ -107,6 +119,7 @@ public abstract class AbstractOpenJpaEnhancerMojo extends AbstractOpenJpaMojo {
         opts.put(OPTION_ADD_DEFAULT_CONSTRUCTOR, Boolean.toString(addDefaultConstructor));
         opts.put(OPTION_ENFORCE_PROPERTY_RESTRICTION, Boolean.toString(enforcePropertyRestrictions));
         opts.put(OPTION_USE_TEMP_CLASSLOADER, Boolean.toString(tmpClassLoader));
+        opts.put(OPTION_GENERATE_PROXIES, Boolean.toString(generateProxies));
 
         return opts;
     }
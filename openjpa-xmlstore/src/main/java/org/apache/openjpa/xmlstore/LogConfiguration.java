@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.xmlstore;
+
+/**
+ * Configuration implementation for the log-structured store. It shares
+ * everything with {@link XMLConfiguration} except the store and file
+ * handler, which append changes to binary logs instead of rewriting XML
+ * extents.
+ *
+ * @see LogStoreManager
+ */
+public class LogConfiguration
+    extends XMLConfiguration {
+
+    // shared resources
+    private LogStore _store;
+    private LogFileHandler _handler;
+
+    /**
+     * Return the {@link LogFileHandler} associated with this configuration.
+     */
+    public synchronized LogFileHandler getLogFileHandler() {
+        if (_handler == null)
+            _handler = new LogFileHandler(this);
+        return _handler;
+    }
+
+    /**
+     * Return the {@link LogStore} associated with this configuration.
+     */
+    @Override
+    public synchronized LogStore getStore() {
+        if (_store == null)
+            _store = new LogStore(this);
+        return _store;
+    }
+
+    @Override
+    protected void preClose() {
+        LogStore store;
+        synchronized (this) {
+            store = _store;
+        }
+        if (store != null)
+            store.close();
+        super.preClose();
+    }
+}
@@ -0,0 +1,747 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.xmlstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.AccessController;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.InternalException;
+import org.apache.openjpa.util.OpenJPAException;
+import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.UnsupportedException;
+
+/**
+ * Stores {@link ObjectData} objects in an append-only binary log with one
+ * file per least-derived type. Each commit appends a record per inserted,
+ * updated or deleted instance; the latest record for an oid wins. Logs are
+ * read back through a memory-mapped buffer, and {@link #compact} rewrites a
+ * log so that it only holds the live records. Each record is prefixed by
+ * the length and the CRC-32 checksum of its payload, so that a record torn
+ * by a crash can be told apart from a record that can not be read.
+ *
+ * @see LogStore
+ */
+public class LogFileHandler {
+
+    private static final int MAGIC = 0x4F4A4C53; // "OJLS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_HEADER_LENGTH = 8;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final Class[] ARGS = new Class[]{ String.class };
+
+    private final XMLConfiguration _conf;
+
+    // open append channels keyed on least-derived metadata
+    private final Map<ClassMetaData, FileChannel> _channels = new HashMap<>();
+
+    /**
+     * Constructor; supply configuration.
+     */
+    public LogFileHandler(XMLConfiguration conf) {
+        _conf = conf;
+    }
+
+    /**
+     * Replays the log of <code>meta</code> and returns the live instances.
+     * The given <code>meta</code> must represent a least-derived
+     * persistence-capable type. A trailing record torn by a crash during an
+     * append is discarded, and the log is truncated to its last complete
+     * record. A record is torn only if its length prefix runs past the end
+     * of the log, or if it is the last record and its checksum does not
+     * match. Any other record that can not be read, such as a record of a
+     * type that can not be loaded, is reported as a corrupt log, and the log
+     * is left as it is.
+     */
+    public synchronized Collection<ObjectData> load(ClassMetaData meta,
+        LogStats stats) {
+        File f = getFile(meta);
+        if (!AccessController.doPrivileged(J2DoPrivHelper.existsAction(f)))
+            return new ArrayList<>(0);
+
+        Map<Object, ObjectData> live = new LinkedHashMap<>();
+        try (FileChannel ch = FileChannel.open(f.toPath(),
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            if (size == 0)
+                return live.values();
+            if (size > Integer.MAX_VALUE)
+                throw new StoreException("Log file " + f + " exceeds the "
+                    + "maximum mappable size; compact or split the store.");
+
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                size);
+            if (size < HEADER_LENGTH || buf.getInt() != MAGIC)
+                throw new StoreException("File " + f + " is not an OpenJPA "
+                    + "log store file.").setFatal(true);
+            int version = buf.getInt();
+            if (version != FORMAT_VERSION)
+                throw new StoreException("Unsupported log store format "
+                    + version + " in " + f).setFatal(true);
+
+            DataInputStream in = new DataInputStream
+                (new ByteBufferInputStream(buf));
+            int records = 0;
+            int end = buf.position();
+            while (buf.remaining() >= RECORD_HEADER_LENGTH) {
+                int len = buf.getInt();
+                int checksum = buf.getInt();
+                if (len > buf.remaining())
+                    break; // the append was cut short
+                if (len <= 0) {
+                    // the unwritten part of a torn append may read back
+                    // as zeros
+                    if (isTail(buf, end))
+                        break;
+                    throw corrupt(f, end, null);
+                }
+                int next = buf.position() + len;
+                if (checksum(buf, len) != checksum) {
+                    if (isTail(buf, next))
+                        break; // the append was not fully written
+                    throw corrupt(f, end, null);
+                }
+
+                // the record is intact, so it must be readable
+                Map.Entry<Object, ObjectData> rec;
+                try {
+                    rec = readRecord(in);
+                } catch (Exception e) {
+                    throw corrupt(f, end, e);
+                }
+                if (buf.position() != next)
+                    throw corrupt(f, end, null);
+                if (rec.getValue() == null)
+                    live.remove(rec.getKey());
+                else
+                    live.put(rec.getKey(), rec.getValue());
+                end = next;
+                records++;
+            }
+
+            // drop a torn trailing record
+            if (end < size)
+                ch.truncate(end);
+            if (stats != null)
+                stats.reset(records, live.size());
+            return live.values();
+        } catch (OpenJPAException ke) {
+            throw ke;
+        } catch (Exception e) {
+            throw new StoreException(e);
+        }
+    }
+
+    /**
+     * Appends one record per update and delete to the log of
+     * <code>meta</code>, forcing the appended bytes to disk.
+     *
+     * @param meta the least-derived type of the given instances
+     * @return the number of records appended
+     */
+    public synchronized int append(ClassMetaData meta,
+        Collection<ObjectData> updates, Collection<ObjectData> deletes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+            DataOutputStream out = new DataOutputStream(bytes);
+            int records = 0;
+            if (updates != null) {
+                for (ObjectData data : updates) {
+                    writeRecord(out, OP_PUT, data);
+                    records++;
+                }
+            }
+            if (deletes != null) {
+                for (ObjectData data : deletes) {
+                    writeRecord(out, OP_DELETE, data);
+                    records++;
+                }
+            }
+            if (records == 0)
+                return 0;
+
+            out.flush();
+            FileChannel ch = getChannel(meta);
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            while (buf.hasRemaining())
+                ch.write(buf);
+            ch.force(false);
+            return records;
+        } catch (OpenJPAException ke) {
+            throw ke;
+        } catch (Exception e) {
+            throw new StoreException(e);
+        }
+    }
+
+    /**
+     * Rewrites the log of <code>meta</code> so that it only contains a put
+     * record per live instance. The compacted log is written to a temporary
+     * file that atomically replaces the current log.
+     */
+    public synchronized void compact(ClassMetaData meta,
+        Collection<ObjectData> datas) {
+        File f = getFile(meta);
+        File tmp = new File(f.getPath() + ".compact");
+        try {
+            closeChannel(meta);
+            try (FileChannel ch = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                ch.write(newHeader());
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+                DataOutputStream out = new DataOutputStream(bytes);
+                for (ObjectData data : datas) {
+                    writeRecord(out, OP_PUT, data);
+                    if (bytes.size() >= 65536) {
+                        out.flush();
+                        writeFully(ch, bytes.toByteArray());
+                        bytes.reset();
+                    }
+                }
+                out.flush();
+                writeFully(ch, bytes.toByteArray());
+                ch.force(true);
+            }
+            Files.move(tmp.toPath(), f.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (OpenJPAException ke) {
+            throw ke;
+        } catch (Exception e) {
+            throw new StoreException(e);
+        }
+    }
+
+    /**
+     * Close all open log files.
+     */
+    public synchronized void close() {
+        for (FileChannel ch : _channels.values()) {
+            try {
+                ch.close();
+            } catch (IOException ioe) {
+            }
+        }
+        _channels.clear();
+    }
+
+    private void closeChannel(ClassMetaData meta) {
+        FileChannel ch = _channels.remove(meta);
+        if (ch != null)
+            try {
+                ch.close();
+            } catch (IOException ioe) {
+            }
+    }
+
+    /**
+     * Return the append channel for the log of <code>meta</code>, creating
+     * the file and writing its header if needed.
+     */
+    private FileChannel getChannel(ClassMetaData meta)
+        throws IOException {
+        FileChannel ch = _channels.get(meta);
+        if (ch != null)
+            return ch;
+
+        File f = getFile(meta);
+        if (!AccessController.doPrivileged(
+            J2DoPrivHelper.existsAction(f.getParentFile())))
+            AccessController.doPrivileged(
+                J2DoPrivHelper.mkdirsAction(f.getParentFile()));
+        ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+        if (ch.size() == 0)
+            ch.write(newHeader());
+        ch.position(ch.size());
+        _channels.put(meta, ch);
+        return ch;
+    }
+
+    private static ByteBuffer newHeader() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static void writeFully(FileChannel ch, byte[] bytes)
+        throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining())
+            ch.write(buf);
+    }
+
+    /**
+     * Returns the log {@link File} for <code>meta</code>. The file name is
+     * the full class name of the type with a <code>.log</code> suffix, and
+     * the base directory is the <code>ConnectionURL</code> property.
+     */
+    private File getFile(ClassMetaData meta) {
+        if (_conf.getConnectionURL() == null) {
+            throw new InternalException("Invalid ConnectionURL");
+        }
+        File baseDir = new File(_conf.getConnectionURL());
+        return new File(baseDir, meta.getDescribedType().getName() + ".log");
+    }
+
+    /**
+     * Write a length-prefixed record for the given data.
+     */
+    private void writeRecord(DataOutputStream out, byte op, ObjectData data)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream rec = new DataOutputStream(bytes);
+        ClassMetaData meta = data.getMetaData();
+        rec.writeByte(op);
+        rec.writeUTF(meta.getDescribedType().getName());
+        rec.writeUTF(data.getId().toString());
+        if (op == OP_PUT) {
+            rec.writeLong(data.getVersion());
+            FieldMetaData[] fmds = meta.getFields();
+            int count = 0;
+            for (FieldMetaData fmd : fmds)
+                if (fmd.getManagement() == FieldMetaData.MANAGE_PERSISTENT)
+                    count++;
+            rec.writeInt(count);
+            for (int i = 0; i < fmds.length; i++) {
+                if (fmds[i].getManagement() != FieldMetaData.MANAGE_PERSISTENT)
+                    continue;
+                rec.writeUTF(fmds[i].getName());
+                writeField(rec, fmds[i], data.getField(i));
+            }
+        }
+        rec.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt(bytes.size());
+        out.writeInt((int) crc.getValue());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Return the CRC-32 checksum of the <code>len</code> bytes at the
+     * current position of the given buffer, leaving its position as is.
+     */
+    private static int checksum(ByteBuffer buf, int len) {
+        ByteBuffer payload = buf.duplicate();
+        payload.limit(payload.position() + len);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static StoreException corrupt(File f, int offset, Throwable t) {
+        return (StoreException) new StoreException("Log file " + f
+            + " holds a corrupt record at offset " + offset + ".", t).
+            setFatal(true);
+    }
+
+    /**
+     * Affirms if nothing but zero bytes follow the given position, i.e. if
+     * a record ending there is the last one written. File systems may fill
+     * the unwritten part of a torn append with zeros.
+     */
+    private static boolean isTail(ByteBuffer buf, int pos) {
+        for (int i = pos; i < buf.limit(); i++)
+            if (buf.get(i) != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Read the record at the current position. The returned entry holds
+     * the oid of the record and its data, or null data for a delete.
+     */
+    private Map.Entry<Object, ObjectData> readRecord(DataInputStream in)
+        throws Exception {
+        byte op = in.readByte();
+        if (op != OP_PUT && op != OP_DELETE)
+            throw new StoreException("Unknown log record type " + op + ".");
+        ClassMetaData meta = _conf.getMetaDataRepositoryInstance().
+            getMetaData(classForName(in.readUTF()), null, true);
+        Object oid;
+        if (meta.getIdentityType() == ClassMetaData.ID_DATASTORE)
+            oid = new Id(in.readUTF(), _conf, null);
+        else
+            oid = PCRegistry.newObjectId(meta.getDescribedType(),
+                in.readUTF());
+
+        if (op == OP_DELETE)
+            return new AbstractMap.SimpleEntry<>(oid, null);
+
+        ObjectData data = new ObjectData(oid, meta);
+        data.setVersion(in.readLong());
+        for (int i = 0, count = in.readInt(); i < count; i++) {
+            String name = in.readUTF();
+            FieldMetaData fmd = meta.getField(name);
+            if (fmd == null)
+                throw new StoreException("Log record for " + oid
+                    + " holds unknown field \"" + name + "\".").
+                    setFatal(true);
+            data.setField(fmd.getIndex(), readField(in, fmd));
+        }
+        return new AbstractMap.SimpleEntry<>(oid, data);
+    }
+
+    private void writeField(DataOutputStream out, FieldMetaData fmd,
+        Object val)
+        throws IOException {
+        switch (fmd.getTypeCode()) {
+            case JavaTypes.COLLECTION:
+            case JavaTypes.ARRAY:
+                Collection c = (Collection) val;
+                out.writeInt(c == null ? -1 : c.size());
+                if (c == null)
+                    break;
+                int elemType = fmd.getElement().getTypeCode();
+                for (Object o : c)
+                    writeDataValue(out, elemType, o);
+                break;
+            case JavaTypes.MAP:
+                Map m = (Map) val;
+                out.writeInt(m == null ? -1 : m.size());
+                if (m == null)
+                    break;
+                int keyType = fmd.getKey().getTypeCode();
+                int valueType = fmd.getElement().getTypeCode();
+                for (Object entry : m.entrySet()) {
+                    Map.Entry e = (Map.Entry) entry;
+                    writeDataValue(out, keyType, e.getKey());
+                    writeDataValue(out, valueType, e.getValue());
+                }
+                break;
+            default:
+                writeDataValue(out, fmd.getTypeCode(), val);
+        }
+    }
+
+    /**
+     * Read a field value written by {@link #writeField}.
+     */
+    private Object readField(DataInputStream in, FieldMetaData fmd)
+        throws Exception {
+        switch (fmd.getTypeCode()) {
+            case JavaTypes.COLLECTION:
+            case JavaTypes.ARRAY:
+                int size = in.readInt();
+                if (size < 0)
+                    return null;
+                Collection c = new ArrayList(size);
+                int elemType = fmd.getElement().getTypeCode();
+                for (int i = 0; i < size; i++)
+                    c.add(readDataValue(in, elemType));
+                return c;
+            case JavaTypes.MAP:
+                size = in.readInt();
+                if (size < 0)
+                    return null;
+                Map m = new HashMap(size * 2);
+                int keyType = fmd.getKey().getTypeCode();
+                int valueType = fmd.getElement().getTypeCode();
+                for (int i = 0; i < size; i++)
+                    m.put(readDataValue(in, keyType),
+                        readDataValue(in, valueType));
+                return m;
+            default:
+                return readDataValue(in, fmd.getTypeCode());
+        }
+    }
+
+    /**
+     * Write out a singular data value, preceded by a null marker.
+     * Primitives, wrappers, strings and dates use their native binary
+     * form; other values fall back to Java serialization, as in the
+     * XML store.
+     */
+    private static void writeDataValue(DataOutputStream out, int type,
+        Object val)
+        throws IOException {
+        out.writeBoolean(val != null);
+        if (val == null)
+            return;
+
+        switch (type) {
+            case JavaTypes.BOOLEAN:
+            case JavaTypes.BOOLEAN_OBJ:
+                out.writeBoolean((Boolean) val);
+                break;
+            case JavaTypes.BYTE:
+            case JavaTypes.BYTE_OBJ:
+                out.writeByte((Byte) val);
+                break;
+            case JavaTypes.CHAR:
+            case JavaTypes.CHAR_OBJ:
+                out.writeChar((Character) val);
+                break;
+            case JavaTypes.DOUBLE:
+            case JavaTypes.DOUBLE_OBJ:
+                out.writeDouble((Double) val);
+                break;
+            case JavaTypes.FLOAT:
+            case JavaTypes.FLOAT_OBJ:
+                out.writeFloat((Float) val);
+                break;
+            case JavaTypes.INT:
+            case JavaTypes.INT_OBJ:
+                out.writeInt((Integer) val);
+                break;
+            case JavaTypes.LONG:
+            case JavaTypes.LONG_OBJ:
+                out.writeLong((Long) val);
+                break;
+            case JavaTypes.SHORT:
+            case JavaTypes.SHORT_OBJ:
+                out.writeShort((Short) val);
+                break;
+            case JavaTypes.STRING:
+                writeString(out, (String) val);
+                break;
+            case JavaTypes.DATE:
+                out.writeLong(((Date) val).getTime());
+                break;
+            case JavaTypes.NUMBER:
+            case JavaTypes.BIGDECIMAL:
+            case JavaTypes.BIGINTEGER:
+            case JavaTypes.LOCALE:
+                out.writeUTF(val.toString());
+                break;
+            case JavaTypes.PC:
+            case JavaTypes.PC_UNTYPED:
+                // write the type of oid object and the oid string
+                out.writeUTF(val.getClass().getName());
+                writeString(out, val.toString());
+                break;
+            case JavaTypes.OBJECT:
+            case JavaTypes.OID:
+                if (!(val instanceof Serializable))
+                    throw new UnsupportedException(
+                        "Cannot store non-serializable,"
+                            + " non-persistence-capable value: " + val);
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+                ObjectOutputStream oos = new ObjectOutputStream(baos);
+                oos.writeObject(val);
+                oos.close();
+                out.writeInt(baos.size());
+                baos.writeTo(out);
+                break;
+            default:
+                throw new InternalException();
+        }
+    }
+
+    private Object readDataValue(DataInputStream in, int type)
+        throws Exception {
+        if (!in.readBoolean())
+            return null;
+
+        switch (type) {
+            case JavaTypes.BOOLEAN:
+            case JavaTypes.BOOLEAN_OBJ:
+                return in.readBoolean();
+            case JavaTypes.BYTE:
+            case JavaTypes.BYTE_OBJ:
+                return in.readByte();
+            case JavaTypes.CHAR:
+            case JavaTypes.CHAR_OBJ:
+                return in.readChar();
+            case JavaTypes.DOUBLE:
+            case JavaTypes.DOUBLE_OBJ:
+                return in.readDouble();
+            case JavaTypes.FLOAT:
+            case JavaTypes.FLOAT_OBJ:
+                return in.readFloat();
+            case JavaTypes.INT:
+            case JavaTypes.INT_OBJ:
+                return in.readInt();
+            case JavaTypes.LONG:
+            case JavaTypes.LONG_OBJ:
+                return in.readLong();
+            case JavaTypes.SHORT:
+            case JavaTypes.SHORT_OBJ:
+                return in.readShort();
+            case JavaTypes.STRING:
+                return readString(in);
+            case JavaTypes.DATE:
+                return new Date(in.readLong());
+            case JavaTypes.NUMBER:
+            case JavaTypes.BIGDECIMAL:
+                return new BigDecimal(in.readUTF());
+            case JavaTypes.BIGINTEGER:
+                return new BigInteger(in.readUTF());
+            case JavaTypes.LOCALE:
+                return toLocale(in.readUTF());
+            case JavaTypes.PC:
+            case JavaTypes.PC_UNTYPED:
+                Class idClass = classForName(in.readUTF());
+                Constructor cons = idClass.getConstructor(ARGS);
+                return cons.newInstance(new Object[]{ readString(in) });
+            case JavaTypes.OBJECT:
+            case JavaTypes.OID:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                try (ObjectInputStream ois = new ObjectInputStream
+                    (new ByteArrayInputStream(bytes))) {
+                    return ois.readObject();
+                }
+            default:
+                throw new InternalException();
+        }
+    }
+
+    /**
+     * Strings may exceed the 64K limit of modified UTF-8, so they are
+     * written as a length-prefixed char sequence.
+     */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    private static String readString(DataInputStream in)
+        throws IOException {
+        int len = in.readInt();
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++)
+            chars[i] = in.readChar();
+        return new String(chars);
+    }
+
+    private static Locale toLocale(String str) {
+        int under1 = str.indexOf('_');
+        if (under1 == -1)
+            return new Locale(str, "");
+        int under2 = str.indexOf('_', under1 + 1);
+        if (under2 == -1)
+            return new Locale(str.substring(0, under1),
+                str.substring(under1 + 1));
+        return new Locale(str.substring(0, under1),
+            str.substring(under1 + 1, under2), str.substring(under2 + 1));
+    }
+
+    /**
+     * Return the class for the specified name.
+     */
+    private Class classForName(String name)
+        throws Exception {
+        ClassLoader loader = _conf.getClassResolverInstance().
+            getClassLoader(getClass(), null);
+        return Class.forName(name, true, loader);
+    }
+
+    /**
+     * Record counts of a log, used by the store to decide when the log
+     * carries enough superseded records to be worth compacting.
+     */
+    public static class LogStats {
+
+        private int _records;
+        private int _live;
+
+        /**
+         * Total number of records in the log, including superseded ones.
+         */
+        public synchronized int getRecords() {
+            return _records;
+        }
+
+        /**
+         * Number of live instances in the log.
+         */
+        public synchronized int getLive() {
+            return _live;
+        }
+
+        synchronized void reset(int records, int live) {
+            _records = records;
+            _live = live;
+        }
+
+        synchronized void appended(int records, int live) {
+            _records += records;
+            _live = live;
+        }
+    }
+
+    /**
+     * Input stream view of a (memory-mapped) byte buffer, so that records
+     * are decoded in place without copying the log onto the heap.
+     */
+    private static class ByteBufferInputStream
+        extends InputStream {
+
+        private final ByteBuffer _buf;
+
+        public ByteBufferInputStream(ByteBuffer buf) {
+            _buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return _buf.hasRemaining() ? _buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!_buf.hasRemaining())
+                return -1;
+            len = Math.min(len, _buf.remaining());
+            _buf.get(b, off, len);
+            return len;
+        }
+    }
+}
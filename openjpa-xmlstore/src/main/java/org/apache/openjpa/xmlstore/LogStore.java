@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.xmlstore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.meta.ClassMetaData;
+
+/**
+ * Store of object data backed by an append-only binary log per
+ * least-derived type. Unlike {@link XMLStore}, a commit only writes the
+ * changed instances, so its cost does not grow with the size of the extent.
+ * The oid index is kept in memory by the superclass; logs are compacted in
+ * a background thread once superseded records outnumber live ones.
+ *
+ * @see LogFileHandler
+ */
+public class LogStore
+    extends XMLStore {
+
+    /**
+     * Minimum number of records a log must hold before it is considered
+     * for compaction.
+     */
+    public static final int COMPACT_MIN_RECORDS = 1024;
+
+    /**
+     * A log is compacted when it holds more than this many records per
+     * live instance.
+     */
+    public static final int COMPACT_RATIO = 2;
+
+    private final LogConfiguration _conf;
+    private final Map<ClassMetaData, LogFileHandler.LogStats> _stats =
+        new HashMap<>();
+    private final Set<ClassMetaData> _compacting = new HashSet<>();
+    private ExecutorService _compactor;
+
+    /**
+     * Constructor; supply configuration.
+     */
+    public LogStore(LogConfiguration conf) {
+        super(conf);
+        _conf = conf;
+    }
+
+    @Override
+    protected Collection load(ClassMetaData meta) {
+        return _conf.getLogFileHandler().load(meta, getStats(meta));
+    }
+
+    @Override
+    protected void store(Set<ClassMetaData> dirty,
+        Collection<ObjectData> updates, Collection<ObjectData> deletes) {
+        // group the changes by least-derived type, as each type has its
+        // own log
+        Map<ClassMetaData, List<ObjectData>> puts = group(updates);
+        Map<ClassMetaData, List<ObjectData>> dels = group(deletes);
+
+        LogFileHandler fh = _conf.getLogFileHandler();
+        for (ClassMetaData meta : dirty) {
+            int records = fh.append(meta, puts.get(meta), dels.get(meta));
+            LogFileHandler.LogStats stats = getStats(meta);
+            stats.appended(records, getExtentSize(meta));
+            if (stats.getRecords() >= COMPACT_MIN_RECORDS
+                && stats.getRecords() > COMPACT_RATIO * stats.getLive())
+                scheduleCompaction(meta);
+        }
+    }
+
+    private static Map<ClassMetaData, List<ObjectData>> group(
+        Collection<ObjectData> datas) {
+        Map<ClassMetaData, List<ObjectData>> map = new HashMap<>();
+        if (datas == null)
+            return map;
+        for (ObjectData data : datas)
+            map.computeIfAbsent(getLeastDerived(data.getMetaData()),
+                k -> new ArrayList<>()).add(data);
+        return map;
+    }
+
+    private synchronized LogFileHandler.LogStats getStats(ClassMetaData meta) {
+        return _stats.computeIfAbsent(meta,
+            k -> new LogFileHandler.LogStats());
+    }
+
+    /**
+     * Queue compaction of the log for the given least-derived type.
+     * Compaction takes the store's transaction lock, so it never overlaps
+     * with a commit.
+     */
+    private synchronized void scheduleCompaction(final ClassMetaData meta) {
+        if (!_compacting.add(meta))
+            return;
+        if (_compactor == null)
+            _compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "OpenJPA log store compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        _compactor.execute(() -> compact(meta));
+    }
+
+    /**
+     * Rewrite the log of the given least-derived type so that it only
+     * holds its live instances.
+     */
+    public void compact(ClassMetaData meta) {
+        Log log = _conf.getLog(LogConfiguration.LOG_RUNTIME);
+        beginTransaction();
+        try {
+            Collection<ObjectData> live = getExtent(meta);
+            _conf.getLogFileHandler().compact(meta, live);
+            getStats(meta).reset(live.size(), live.size());
+            if (log.isTraceEnabled())
+                log.trace("Compacted log store for "
+                    + meta.getDescribedType().getName() + " to "
+                    + live.size() + " records.");
+        } catch (RuntimeException re) {
+            // the old log is left in place; it is still valid
+            log.warn("Log store compaction for "
+                + meta.getDescribedType().getName() + " failed.", re);
+        } finally {
+            synchronized (this) {
+                _compacting.remove(meta);
+            }
+            endTransaction(null, null);
+        }
+    }
+
+    /**
+     * Wait for pending compactions and close the open logs.
+     */
+    public void close() {
+        ExecutorService compactor;
+        synchronized (this) {
+            compactor = _compactor;
+            _compactor = null;
+        }
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _conf.getLogFileHandler().close();
+    }
+}
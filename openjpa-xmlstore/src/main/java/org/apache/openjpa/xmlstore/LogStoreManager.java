@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.xmlstore;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+
+/**
+ * Store manager to a back-end consisting of append-only binary logs. It
+ * behaves like {@link XMLStoreManager}, but each commit appends the changed
+ * instances to the log of their type instead of rewriting the full extent.
+ * To use it, set the <code>openjpa.BrokerFactory</code> property to
+ * <code>abstractstore</code> and
+ * <code>abstractstore.AbstractStoreManager</code> to this class; the
+ * <code>openjpa.ConnectionURL</code> names the directory holding the logs.
+ *
+ * @see LogStore
+ */
+public class LogStoreManager
+    extends XMLStoreManager {
+
+    @Override
+    protected OpenJPAConfiguration newConfiguration() {
+        // override to use our configuration type
+        return new LogConfiguration();
+    }
+}
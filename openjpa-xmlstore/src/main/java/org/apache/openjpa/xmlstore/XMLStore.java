@@ -18,6 +18,7 @@
  */
 package org.apache.openjpa.xmlstore;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -76,7 +77,7 @@ public class XMLStore {
             return m;
 
         // load datas from file and cache them
-        Collection datas = _conf.getFileHandler().load(meta);
+        Collection datas = load(meta);
         m = new HashMap(datas.size());
         for (Object o : datas) {
             ObjectData data = (ObjectData) o;
@@ -86,12 +87,51 @@ public class XMLStore {
         return m;
     }
 
+    /**
+     * Load all instances of the given least-derived type from the backing
+     * files. This implementation parses the type's XML extent file.
+     */
+    protected Collection load(ClassMetaData meta) {
+        return _conf.getFileHandler().load(meta);
+    }
+
+    /**
+     * Write the changes of a committed transaction back to the backing
+     * files. The in-memory maps already reflect the changes. This
+     * implementation rewrites the full XML extent of every dirty type.
+     *
+     * @param dirty the least-derived types touched by the transaction
+     * @param updates {@link ObjectData} instances inserted or updated
+     * @param deletes {@link ObjectData} instances deleted
+     */
+    protected void store(Set<ClassMetaData> dirty,
+        Collection<ObjectData> updates, Collection<ObjectData> deletes) {
+        XMLFileHandler fh = _conf.getFileHandler();
+        for (ClassMetaData meta : dirty)
+            fh.store(meta, getMap(meta).values());
+    }
+
+    /**
+     * Return the data of all instances of the given least-derived type.
+     */
+    protected synchronized Collection<ObjectData> getExtent(
+        ClassMetaData meta) {
+        return new ArrayList<ObjectData>(getMap(meta).values());
+    }
+
+    /**
+     * Return the number of instances of the given least-derived type.
+     */
+    protected synchronized int getExtentSize(ClassMetaData meta) {
+        return getMap(meta).size();
+    }
+
     /**
      * Return the least-derived metadata in the inheritance chain
      * above <code>meta</code>, or <code>meta</code> if it is a
      * least-derived metadata.
      */
-    private static ClassMetaData getLeastDerived(ClassMetaData meta) {
+    protected static ClassMetaData getLeastDerived(ClassMetaData meta) {
         while (meta.getPCSuperclass() != null)
             meta = meta.getPCSuperclassMetaData();
         return meta;
@@ -120,7 +160,7 @@ public class XMLStore {
     public synchronized void endTransaction(Collection<ObjectData> updates,
                                             Collection<ObjectData> deletes) {
         // track dirty types
-        Set dirty = new HashSet();
+        Set<ClassMetaData> dirty = new HashSet<>();
         try {
             // commit updates
             if (updates != null) {
@@ -141,11 +181,8 @@ public class XMLStore {
             }
 
             // write changes to dirty extents back to file
-            XMLFileHandler fh = _conf.getFileHandler();
-            for (Object o : dirty) {
-                ClassMetaData meta = (ClassMetaData) o;
-                fh.store(meta, getMap(meta).values());
-            }
+            if (!dirty.isEmpty())
+                store(dirty, updates, deletes);
         }
         finally {
             // unlock store
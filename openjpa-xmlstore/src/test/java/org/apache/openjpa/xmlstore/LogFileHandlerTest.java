@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.xmlstore;
+
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.ClassResolverImpl;
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.StoreException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Appends records through LogFileHandler and replays the log, including
+ * logs whose last append was torn by a crash. Only a record whose length
+ * or checksum shows that it was not fully written is dropped; any other
+ * record that can not be read fails the replay and leaves the log alone.
+ */
+public class LogFileHandlerTest {
+
+    public static class Item {
+    }
+
+    private File dir;
+    private ClassMetaData meta;
+    private LogFileHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("logstore").toFile();
+
+        FieldMetaData name = mock(FieldMetaData.class);
+        when(name.getName()).thenReturn("name");
+        when(name.getIndex()).thenReturn(0);
+        when(name.getTypeCode()).thenReturn(JavaTypes.STRING);
+        when(name.getManagement()).thenReturn(FieldMetaData.MANAGE_PERSISTENT);
+
+        meta = mock(ClassMetaData.class);
+        when(meta.getDescribedType()).thenReturn((Class) Item.class);
+        when(meta.getIdentityType()).thenReturn(ClassMetaData.ID_DATASTORE);
+        when(meta.getFields()).thenReturn(new FieldMetaData[]{ name });
+        when(meta.getField("name")).thenReturn(name);
+
+        MetaDataRepository repos = mock(MetaDataRepository.class);
+        when(repos.getMetaData(eq(Item.class), any(), anyBoolean())).thenReturn(meta);
+
+        XMLConfiguration conf = mock(XMLConfiguration.class);
+        when(conf.getConnectionURL()).thenReturn(dir.getPath());
+        when(conf.getMetaDataRepositoryInstance()).thenReturn(repos);
+        when(conf.getClassResolverInstance()).thenReturn(new ClassResolverImpl());
+
+        handler = new LogFileHandler(conf);
+    }
+
+    @After
+    public void tearDown() {
+        handler.close();
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void latestRecordWins() {
+        handler.append(meta, Arrays.asList(data(1, "a"), data(2, "b")), null);
+        handler.append(meta, Collections.singletonList(data(1, "c")),
+            Collections.singletonList(data(2, null)));
+
+        LogFileHandler.LogStats stats = new LogFileHandler.LogStats();
+        Collection<ObjectData> live = handler.load(meta, stats);
+        assertEquals(1, live.size());
+        ObjectData data = live.iterator().next();
+        assertEquals(new Id(Item.class, 1), data.getId());
+        assertEquals("c", data.getField(0));
+        assertEquals(4, stats.getRecords());
+        assertEquals(1, stats.getLive());
+    }
+
+    @Test
+    public void cutShortTrailingRecordIsTruncated() throws Exception {
+        handler.append(meta, Collections.singletonList(data(1, "a")), null);
+        handler.close();
+        long length = logFile().length();
+
+        // the length prefix announces more bytes than were written
+        byte[] rec = record(1, "Item", "2");
+        appendToLog(Arrays.copyOf(rec, rec.length - 3));
+        assertEquals(1, handler.load(meta, null).size());
+        assertEquals(length, logFile().length());
+
+        // the append broke off in the length prefix itself
+        appendToLog(new byte[]{ 0, 0, 1 });
+        assertEquals(1, handler.load(meta, null).size());
+        assertEquals(length, logFile().length());
+
+        // the store keeps appending after the truncated tail
+        handler.append(meta, Collections.singletonList(data(2, "b")), null);
+        assertEquals(2, handler.load(meta, null).size());
+    }
+
+    @Test
+    public void unwrittenTrailingRecordIsTruncated() throws Exception {
+        handler.append(meta, Collections.singletonList(data(1, "a")), null);
+        handler.close();
+        long length = logFile().length();
+
+        // the length prefix was written, but the payload reads back as zeros
+        byte[] rec = record(1, "Item", "2");
+        Arrays.fill(rec, 8, rec.length, (byte) 0);
+        appendToLog(rec);
+        assertEquals(1, handler.load(meta, null).size());
+        assertEquals(length, logFile().length());
+
+        // nothing of the append was written but zeros
+        appendToLog(new byte[20]);
+        assertEquals(1, handler.load(meta, null).size());
+        assertEquals(length, logFile().length());
+    }
+
+    @Test
+    public void intactUnreadableTrailingRecordFails() throws Exception {
+        handler.append(meta, Collections.singletonList(data(1, "a")), null);
+        handler.close();
+
+        // a complete record whose type can not be loaded is no torn write
+        appendToLog(record(1, "org.example.NoSuchType", "2"));
+        assertCorrupt();
+
+        // neither is a record of a type without metadata
+        tearDown();
+        setUp();
+        handler.append(meta, Collections.singletonList(data(1, "a")), null);
+        handler.close();
+        appendToLog(record(1, String.class.getName(), "2"));
+        assertCorrupt();
+    }
+
+    @Test
+    public void unknownFieldInTrailingRecordFails() throws Exception {
+        handler.append(meta, Collections.singletonList(data(1, "a")), null);
+        handler.close();
+
+        // the type lost a field the last record still holds
+        when(meta.getField("name")).thenReturn(null);
+        assertCorrupt();
+    }
+
+    @Test
+    public void corruptRecordBeforeLiveRecordsFails() throws Exception {
+        handler.append(meta, Collections.singletonList(data(1, "a")), null);
+        handler.append(meta, Collections.singletonList(data(2, "b")), null);
+        handler.append(meta, Collections.singletonList(data(3, "c")), null);
+        handler.close();
+
+        // flip the last byte of the middle record's payload
+        byte[] log = Files.readAllBytes(logFile().toPath());
+        int first = 8 + 8 + ByteBuffer.wrap(log, 8, 4).getInt();
+        int second = first + 8 + ByteBuffer.wrap(log, first, 4).getInt();
+        log[second - 1] ^= 0x7F;
+        Files.write(logFile().toPath(), log);
+        assertCorrupt();
+    }
+
+    @Test
+    public void compactedLogReplaysLiveRecords() throws Exception {
+        for (int i = 0; i < 5; i++)
+            handler.append(meta, Arrays.asList(data(1, "a" + i),
+                data(2, "b" + i)), null);
+        handler.append(meta, Collections.singletonList(data(3, "c")),
+            Collections.singletonList(data(2, null)));
+        long length = logFile().length();
+
+        LogFileHandler.LogStats stats = new LogFileHandler.LogStats();
+        Collection<ObjectData> live = handler.load(meta, stats);
+        assertEquals(12, stats.getRecords());
+        handler.compact(meta, live);
+        assertTrue(logFile().length() < length);
+
+        // the compacted log takes further appends, and replays them
+        handler.append(meta, Collections.singletonList(data(1, "d")), null);
+        Map<Object, Object> names = new HashMap<>();
+        for (ObjectData data : handler.load(meta, stats))
+            names.put(data.getId(), data.getField(0));
+        Map<Object, Object> expected = new HashMap<>();
+        expected.put(new Id(Item.class, 1), "d");
+        expected.put(new Id(Item.class, 3), "c");
+        assertEquals(expected, names);
+        assertEquals(3, stats.getRecords());
+        assertEquals(2, stats.getLive());
+    }
+
+    /**
+     * Assert that the log is reported as corrupt, and left as it is.
+     */
+    private void assertCorrupt() {
+        long length = logFile().length();
+        try {
+            handler.load(meta, null);
+            fail("Expected a corrupt log to be reported");
+        } catch (StoreException se) {
+            assertTrue(se.isFatal());
+        }
+        assertEquals(length, logFile().length());
+    }
+
+    /**
+     * A complete record in the layout written by the handler: the length
+     * and checksum of the payload, followed by the payload.
+     */
+    private static byte[] record(int op, String type, String id)
+        throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(op);
+        out.writeUTF(type);
+        out.writeUTF(id);
+        out.writeLong(1L);
+        out.writeInt(0);
+        out.flush();
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        return ByteBuffer.allocate(8 + bytes.size()).putInt(bytes.size())
+            .putInt((int) crc.getValue()).put(bytes.toByteArray()).array();
+    }
+
+    private ObjectData data(long id, String name) {
+        ObjectData data = new ObjectData(new Id(Item.class, id), meta);
+        data.setVersion(1L);
+        data.setField(0, name);
+        return data;
+    }
+
+    private File logFile() {
+        return new File(dir, Item.class.getName() + ".log");
+    }
+
+    private void appendToLog(byte[] bytes) throws Exception {
+        Files.write(logFile().toPath(), bytes, StandardOpenOption.APPEND);
+    }
+}
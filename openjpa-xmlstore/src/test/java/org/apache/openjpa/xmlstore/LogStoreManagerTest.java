@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.openjpa.xmlstore;
+
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.PCState;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.Id;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Commits instances through LogStoreManager into the logs of a LogStore,
+ * and replays them through a store opened later on the same directory, as
+ * after a restart. Logs compacted in the background must replay the same
+ * instances as the logs they replace.
+ */
+public class LogStoreManagerTest {
+
+    public static class Item {
+    }
+
+    // a log configuration whose metadata comes from a mocked repository
+    static class TestConfiguration extends LogConfiguration {
+        private final MetaDataRepository repos;
+
+        TestConfiguration(File dir, MetaDataRepository repos) {
+            this.repos = repos;
+            setConnectionURL(dir.getPath());
+        }
+
+        @Override
+        public MetaDataRepository getMetaDataRepositoryInstance() {
+            return repos;
+        }
+    }
+
+    private File dir;
+    private ClassMetaData meta;
+    private MetaDataRepository repos;
+    private final List<LogConfiguration> confs = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("logstore").toFile();
+
+        FieldMetaData name = mock(FieldMetaData.class);
+        when(name.getName()).thenReturn("name");
+        when(name.getIndex()).thenReturn(0);
+        when(name.getTypeCode()).thenReturn(JavaTypes.STRING);
+        when(name.getManagement()).thenReturn(FieldMetaData.MANAGE_PERSISTENT);
+
+        meta = mock(ClassMetaData.class);
+        when(meta.getDescribedType()).thenReturn((Class) Item.class);
+        when(meta.getIdentityType()).thenReturn(ClassMetaData.ID_DATASTORE);
+        when(meta.getFields()).thenReturn(new FieldMetaData[]{ name });
+        when(meta.getField("name")).thenReturn(name);
+
+        repos = mock(MetaDataRepository.class);
+        when(repos.getMetaData(eq(Item.class), any(), anyBoolean())).thenReturn(meta);
+    }
+
+    @After
+    public void tearDown() {
+        for (LogConfiguration conf : confs)
+            conf.close();
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void storeManagerUsesLogStore() {
+        LogStoreManager mgr = new LogStoreManager();
+        assertTrue(mgr.newConfiguration() instanceof LogConfiguration);
+        assertTrue(newManager().getContext().getConfiguration()
+            instanceof LogConfiguration);
+    }
+
+    @Test
+    public void commitsReplayedAfterRestart() {
+        LogStoreManager mgr = newManager();
+        commit(mgr, sm(PCState.PNEW, 1, "a"), sm(PCState.PNEW, 2, "b"),
+            sm(PCState.PNEW, 3, "c"));
+        commit(mgr, sm(PCState.PDIRTY, 1, "d"), sm(PCState.PDELETED, 2, null));
+        assertTrue(new File(dir, Item.class.getName() + ".log").exists());
+
+        Map<Object, Object> expected = new HashMap<>();
+        expected.put(new Id(Item.class, 1), "d");
+        expected.put(new Id(Item.class, 3), "c");
+        assertEquals(expected, names(newManager()));
+    }
+
+    @Test
+    public void compactedLogReplayedAfterRestart() {
+        int count = LogStore.COMPACT_MIN_RECORDS / 2 + 1;
+        LogStoreManager mgr = newManager();
+        for (int round = 0; round < 3; round++) {
+            OpenJPAStateManager[] sms = new OpenJPAStateManager[count];
+            for (int i = 0; i < count; i++)
+                sms[i] = sm(round == 0 ? PCState.PNEW : PCState.PDIRTY, i,
+                    "n" + round + "-" + i);
+            commit(mgr, sms);
+        }
+        // superseded records now outnumber live ones twice over; closing
+        // the configuration waits for the background compaction
+        close(mgr);
+
+        LogFileHandler.LogStats stats = new LogFileHandler.LogStats();
+        LogConfiguration conf = new TestConfiguration(dir, repos);
+        confs.add(conf);
+        assertEquals(count, conf.getLogFileHandler().load(meta, stats).size());
+        assertEquals(count, stats.getRecords());
+
+        // the compacted log takes further commits
+        mgr = newManager();
+        commit(mgr, sm(PCState.PDIRTY, 0, "last"),
+            sm(PCState.PDELETED, 1, null));
+        close(mgr);
+        Map<Object, Object> names = names(newManager());
+        assertEquals(count - 1, names.size());
+        assertEquals("last", names.get(new Id(Item.class, 0)));
+        assertEquals("n2-2", names.get(new Id(Item.class, 2)));
+    }
+
+    private LogStoreManager newManager() {
+        LogConfiguration conf = new TestConfiguration(dir, repos);
+        confs.add(conf);
+        StoreContext ctx = mock(StoreContext.class);
+        when(ctx.getConfiguration()).thenReturn(conf);
+        LogStoreManager mgr = new LogStoreManager();
+        mgr.setContext(ctx);
+        return mgr;
+    }
+
+    private static void close(LogStoreManager mgr) {
+        ((LogConfiguration) mgr.getContext().getConfiguration()).close();
+    }
+
+    private static void commit(LogStoreManager mgr,
+        OpenJPAStateManager... sms) {
+        List<OpenJPAStateManager> list = new ArrayList<>();
+        Collections.addAll(list, sms);
+        mgr.begin();
+        assertTrue(mgr.flush(list).isEmpty());
+        mgr.commit();
+    }
+
+    private Map<Object, Object> names(LogStoreManager mgr) {
+        LogStore store = (LogStore) ((LogConfiguration) mgr.getContext().
+            getConfiguration()).getStore();
+        Map<Object, Object> names = new HashMap<>();
+        for (ObjectData data : store.getData(meta))
+            names.put(data.getId(), data.getField(0));
+        return names;
+    }
+
+    private OpenJPAStateManager sm(PCState state, long id, String name) {
+        BitSet dirty = new BitSet();
+        dirty.set(0);
+        OpenJPAStateManager sm = mock(OpenJPAStateManager.class);
+        when(sm.getPCState()).thenReturn(state);
+        when(sm.getObjectId()).thenReturn(new Id(Item.class, id));
+        when(sm.getMetaData()).thenReturn(meta);
+        when(sm.getDirty()).thenReturn(dirty);
+        when(sm.fetch(0)).thenReturn(name);
+        // the version of the stored data, which is never incremented as the
+        // mocks do not take the next version
+        when(sm.getVersion()).thenReturn(state == PCState.PNEW ? null : 0L);
+        return sm;
+    }
+}